@@ -7,17 +7,21 @@
 
 package com.iandw.musicplayerjavafx;
 
-import com.iandw.musicplayerjavafx.FileIO.ConsoleLogFileIO;
+import com.iandw.musicplayerjavafx.FileIO.AutosaveService;
+import com.iandw.musicplayerjavafx.FileIO.LibraryFileIO;
+import com.iandw.musicplayerjavafx.FileIO.LibraryJournal;
+import com.iandw.musicplayerjavafx.FileIO.LibraryStore;
+import com.iandw.musicplayerjavafx.FileIO.PlaylistFileIO;
 import com.iandw.musicplayerjavafx.FileIO.SettingsFileIO;
 import com.iandw.musicplayerjavafx.Libraries.ListViewLibrary;
 import com.iandw.musicplayerjavafx.Libraries.TableViewLibrary;
+import com.iandw.musicplayerjavafx.Utilities.ConsoleLog;
 import com.iandw.musicplayerjavafx.Utilities.UserSettings;
 
-import java.io.ByteArrayOutputStream;
-import java.io.PrintStream;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ExecutorService;
-import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 
 import javafx.application.Application;
@@ -31,6 +35,7 @@ public class App extends Application {
     private UserSettings userSettings;
     private ListViewLibrary listViewLibrary;
     private TableViewLibrary tableViewLibrary;
+    private MusicPlayerController musicPlayerController;
 
     @Override
     public void start(Stage stage) {
@@ -44,24 +49,45 @@ public class App extends Application {
             listViewLibrary = new ListViewLibrary();
             tableViewLibrary = new TableViewLibrary();
 
-            // Input music library files and settings via ExecutorService
+            // Input music library file and settings via ExecutorService
+            // library.bin holds the tracks, artists and playlists, read once for both libraries,
+            // then the edits of the last session are replayed from library.journal
+            // The settings choose the LibraryStore, so they are read first
             ExecutorService executorService = Executors.newCachedThreadPool();
-            executorService.execute(userSettings);
-            executorService.execute(listViewLibrary);
-            executorService.execute(tableViewLibrary);
+            executorService.execute(() -> {
+                userSettings.run();
+                ConsoleLog.setLevel(userSettings.getLogLevelString());
+                LibraryFileIO.setCodec(userSettings.getLibraryCodecString());
+
+                LibraryStore libraryStore = LibraryFileIO.inputLibrary(
+                        !"memory".equals(userSettings.getLibraryStoreString()));
+                listViewLibrary.load(libraryStore);
+                tableViewLibrary.load(libraryStore);
+
+                List<LibraryJournal.Mutation> mutations = LibraryJournal.open(libraryStore == null ? 0 : libraryStore.getChecksum());
+                listViewLibrary.replayJournal(mutations);
+                tableViewLibrary.replayJournal(mutations);
+                LibraryJournal.setSnapshotSupplier(this::snapshotLibraries);
+
+                // Playlist entries are saved apart from library.bin
+                listViewLibrary.loadPlaylists(PlaylistFileIO.inputPlaylists(), tableViewLibrary);
+
+                // Changes are saved in the background from now on, see AutosaveService
+                registerAutosave();
+            });
             executorService.shutdown();
 
-            // Set console to output text for user to view via Help menu
-            ByteArrayOutputStream consoleOutput = new ByteArrayOutputStream();
-            System.setOut(new PrintStream(consoleOutput));
+            // Set console to output text for user to view via Help menu, written to consolelog.txt
+            // in the background
+            ConsoleLog.start();
 
             // HostServices for accessing developer GitHub page
             stage.getProperties().put("hostServices", this.getHostServices());
 
             // Pass top level objects to MusicPlayerController object via fxmlLoader
             FXMLLoader fxmlLoader = new FXMLLoader(Objects.requireNonNull(getClass().getResource("musicplayer.fxml")));
-            fxmlLoader.setControllerFactory(musicPlayerController -> new MusicPlayerController(
-                    stage, executorService, consoleOutput, userSettings, listViewLibrary, tableViewLibrary));
+            fxmlLoader.setControllerFactory(controllerClass -> musicPlayerController = new MusicPlayerController(
+                    stage, executorService, userSettings, listViewLibrary, tableViewLibrary));
 
             Parent root = fxmlLoader.load();
             Scene scene = new Scene(root);
@@ -73,15 +99,10 @@ public class App extends Application {
             stage.setResizable(false);
             stage.show();
 
-            // Save user settings on close
+            // Save user settings on close, the same shut down as the Exit menu item
             stage.setOnCloseRequest(event -> {
                 event.consume();
-                try {
-                    saveAndExit(stage, consoleOutput);
-
-                } catch (FileNotFoundException | InterruptedException e) {
-                    throw new RuntimeException(e);
-                }
+                musicPlayerController.saveAndExit();
             });
 
         } catch(Exception e) {
@@ -90,28 +111,33 @@ public class App extends Application {
         }
     }
 
-    /**
-     * saveAndExit()
-     *
-     * @param stage => Close App main GUI pane and exit the Application
-     * @param consoleOutput => Write System.out... statements to file on close
-     * @throws FileNotFoundException
-     * @throws InterruptedException
-     */
-    public void saveAndExit(Stage stage, ByteArrayOutputStream consoleOutput) throws FileNotFoundException, InterruptedException {
-
-        // Output to file on close if files data has been altered
-        if (userSettings.getWriteOnClose()) {
-            SettingsFileIO.jsonFileOutput(userSettings);
-        }
-
-        listViewLibrary.onClose();
-        tableViewLibrary.onClose();
+    // Snapshot suppliers run on the JavaFX Application Thread, the copies are written on the Autosave thread
+    private void registerAutosave() {
+        AutosaveService.register(AutosaveService.Store.SETTINGS, () -> {
+            final String jsonString = SettingsFileIO.toJSONString(userSettings);
+            return () -> SettingsFileIO.jsonFileOutput(jsonString);
+        });
+
+        AutosaveService.register(AutosaveService.Store.PLAYLISTS, () -> {
+            final PlaylistFileIO.PlaylistData playlistData = listViewLibrary.getPlaylistLibrary().snapshot();
+            return () -> PlaylistFileIO.outputPlaylists(playlistData);
+        });
+
+        // Written by LibraryJournal on its own writer thread
+        AutosaveService.register(AutosaveService.Store.LIBRARY, () -> {
+            LibraryJournal.compact();
+            return null;
+        });
+    }
 
-        // Write console log to file
-        ConsoleLogFileIO.outputConsoleLog(consoleOutput.toString());
+    // JavaFX Application Thread, copies of both libraries for LibraryJournal compaction
+    private LibraryJournal.Snapshot snapshotLibraries() {
+        listViewLibrary.clearOutputListsOnClose();
+        tableViewLibrary.clearOutputTrackListOnClose();
 
-        stage.close();
+        return new LibraryJournal.Snapshot(tableViewLibrary.snapshotTracks(),
+                new ArrayList<>(listViewLibrary.getArtistObservableList()),
+                new ArrayList<>(listViewLibrary.getPlaylistObservableList()));
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,86 @@
+/**
+ *      Author: Ian Wallace, copyright 2022 all rights reserved.
+ *      Application: MusicPlayer
+ *      Class: AudioProperties.java
+ *      Notes: Numeric fields of a track, read from the audio header and tags while the file is parsed
+ *              (see TagFields). Kept as numbers so the Table View sorts by them and totals are summed
+ *              without parsing the formatted Strings. 0 is unknown, i.e. tracks of an older library.bin
+ *              only have their duration until they are rescanned. Serializable for ScanCheckpoint.
+ *
+ * @param durationMillis => Track length in milliseconds
+ * @param bitrate => Average bitrate in kbps
+ * @param sampleRate => Sample rate in Hz
+ * @param fileSize => Size of the audio file in bytes
+ * @param trackNumber => Track number tag, without the track count
+ * @param discNumber => Disc number tag, without the disc count
+ * @param year => Year of the year or recording date tag
+ */
+
+package com.iandw.musicplayerjavafx;
+
+import java.io.Serializable;
+
+public record AudioProperties(int durationMillis, int bitrate, int sampleRate, long fileSize,
+                              int trackNumber, int discNumber, int year) implements Serializable {
+
+    public static final AudioProperties UNKNOWN = new AudioProperties(0, 0, 0, 0, 0, 0, 0);
+
+    public AudioProperties withFileSize(long fileSize) {
+        return new AudioProperties(durationMillis, bitrate, sampleRate, fileSize, trackNumber, discNumber, year);
+    }
+
+    // Only the duration, from the formatted String of a track saved before the numeric fields
+    public static AudioProperties ofDuration(String trackDurationStr) {
+        final int durationMillis = parseDurationMillis(trackDurationStr);
+
+        return durationMillis == 0 ? UNKNOWN : new AudioProperties(durationMillis, 0, 0, 0, 0, 0, 0);
+    }
+
+    /**
+     * parseDurationMillis() - reads a duration formatted by Utils.formatSeconds(), only used to migrate
+     *                         tracks saved without durationMillis
+     *
+     * @param trackDurationStr => "MM:SS" or "HH:MM:SS"
+     * @return => Milliseconds, 0 if trackDurationStr is null or not a duration
+     */
+    public static int parseDurationMillis(String trackDurationStr) {
+        if (trackDurationStr == null || trackDurationStr.isEmpty()) {
+            return 0;
+        }
+
+        long seconds = 0;
+
+        for (String part : trackDurationStr.split(":")) {
+            final int value = parseLeadingInt(part);
+
+            if (value < 0) {
+                return 0;
+            }
+
+            seconds = seconds * 60 + value;
+        }
+
+        return (int) Math.min(Integer.MAX_VALUE, seconds * 1000);
+    }
+
+    /**
+     * parseLeadingInt() - number at the start of a tag value, i.e. "3/12" track numbers or "1999-05-01" dates
+     *
+     * @param value => Tag value
+     * @return => Number, -1 if value does not start with a digit
+     */
+    public static int parseLeadingInt(String value) {
+        if (value == null) {
+            return -1;
+        }
+
+        final String trimmedValue = value.trim();
+        int end = 0;
+
+        while (end < trimmedValue.length() && end < 9 && Character.isDigit(trimmedValue.charAt(end))) {
+            end++;
+        }
+
+        return end == 0 ? -1 : Integer.parseInt(trimmedValue.substring(0, end));
+    }
+}
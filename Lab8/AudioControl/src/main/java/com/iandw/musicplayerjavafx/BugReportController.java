@@ -7,9 +7,8 @@
 
 package com.iandw.musicplayerjavafx;
 
-import com.iandw.musicplayerjavafx.Utilities.Utils;
+import com.iandw.musicplayerjavafx.Utilities.ConsoleLog;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Date;
 import java.util.Properties;
@@ -49,10 +48,8 @@ public class BugReportController {
     private Button consoleLogButton;
     @FXML
     private Label statusLabel;
-    private ByteArrayOutputStream consoleOutput;
 
-    public void initializeData(ByteArrayOutputStream consoleOutput, Stage stage) {
-        this.consoleOutput = consoleOutput;
+    public void initializeData(Stage stage) {
         setTextFieldFocus();
 
         // Close key binding
@@ -67,16 +64,15 @@ public class BugReportController {
     /**
      * showBugReportWindow() - entry point to bug report object
      *
-     * @param consoleOutput => Allow user to 'attach' console log in bug report
      * @throws IOException
      */
-    public void showBugReportWindow(ByteArrayOutputStream consoleOutput) throws IOException {
+    public void showBugReportWindow() throws IOException {
         FXMLLoader loader = new FXMLLoader(getClass().getResource("bugreport.fxml"));
         Stage stage = new Stage();
         stage.setScene(new Scene(loader.load()));
         BugReportController controller = loader.getController();
 
-        controller.initializeData(consoleOutput, stage);
+        controller.initializeData(stage);
 
         stage.setTitle("Bug Report");
         stage.setAlwaysOnTop(false);
@@ -101,24 +97,8 @@ public class BugReportController {
 
     @FXML
     private void insertConsoleLogClicked() {
-        // Add console log to bottom of text area
-        if (consoleOutput.size() < Utils.maxTextAreaSize()) {
-            textArea.setText(textArea.getText() + '\n' + consoleOutput.toString());
-        } else {
-            Stage stage = (Stage) anchorPane.getScene().getWindow();
-            stage.setAlwaysOnTop(false);
-            Dotenv dotenv = Dotenv.configure().load();
-            final String devEmail = dotenv.get("BUG_REPORT_EMAIL");
-
-            System.out.println("File size too large");
-            Alert alert = new Alert(Alert.AlertType.INFORMATION);
-            alert.setTitle("Console Log");
-            alert.setHeaderText("Console Log size > 1MB.");
-            alert.setContentText("Please e-mail consolelog.txt as an attachment to " + devEmail +
-                    " after closing the application.");
-            alert.showAndWait();
-            alert.onCloseRequestProperty().addListener(observable -> stage.setAlwaysOnTop(true));
-        }
+        // Add the console log tail to bottom of text area, bounded so the TextArea stays responsive
+        textArea.setText(textArea.getText() + '\n' + ConsoleLog.getTail());
     }
 
     @FXML
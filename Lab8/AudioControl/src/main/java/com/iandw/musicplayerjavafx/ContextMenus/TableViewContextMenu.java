@@ -42,8 +42,9 @@ public class TableViewContextMenu {
 
         // Playlist Options
         ArrayList<MenuItem> playlistMenuList = new ArrayList<>();
+        ArrayList<MenuItem> trackPlaylistMenuList = new ArrayList<>();
         Menu addTrackToPlaylist = new Menu("Add to Playlist");
-        MenuItem removeTrackFromPlaylist = new MenuItem("Remove from Playlist");
+        Menu removeTrackFromPlaylist = new Menu("Remove from Playlist");
         final String emptyPlaylist = "* playlists *";
         SeparatorMenuItem divider1 = new SeparatorMenuItem();
 
@@ -54,7 +55,17 @@ public class TableViewContextMenu {
             }
         }
 
+        // Playlists holding the selected track
+        if (trackTableView.getSelectionModel().getSelectedItem() != null) {
+            for (String playlist : listViewLibrary.getPlaylistLibrary().getPlaylistTitles(
+                    trackTableView.getSelectionModel().getSelectedItem().getTrackPathStr())) {
+                trackPlaylistMenuList.add(new MenuItem(playlist));
+            }
+        }
+
         addTrackToPlaylist.getItems().addAll(playlistMenuList);
+        removeTrackFromPlaylist.getItems().addAll(trackPlaylistMenuList);
+        removeTrackFromPlaylist.setDisable(trackPlaylistMenuList.isEmpty());
 
         // Edit track data
         Menu editTrack = new Menu("Edit Track");
@@ -73,12 +84,12 @@ public class TableViewContextMenu {
 
         // Add track to Playlist
         addTrackToPlaylist.setOnAction(event ->  {
-            addTrackToPlaylist(event, trackTableView, tableViewLibrary, trackIndex);
+            addTrackToPlaylist(event, trackTableView, listViewLibrary, trackIndex);
         });
 
         // Remove track from Playlist
         removeTrackFromPlaylist.setOnAction(event -> {
-            removeTrackFromPlaylist(playlistListView, trackTableView, tableViewLibrary, trackIndex);
+            removeTrackFromPlaylist(event, playlistListView, trackTableView, listViewLibrary, trackIndex);
         });
 
         // Edit Artist Name
@@ -127,16 +138,18 @@ public class TableViewContextMenu {
      *
      * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
     private static void addTrackToPlaylist(ActionEvent event, TableView<TrackMetadata> trackTableView,
-                                           TableViewLibrary tableViewLibrary, TrackIndex trackIndex)
+                                           ListViewLibrary listViewLibrary, TrackIndex trackIndex)
     {
         int tableSize = trackIndex.getTableSize();
 
-        if (tableSize > 0) {
-            System.out.printf("Add %s to %s%n", trackTableView.getSelectionModel().getSelectedItem().getTrackTitleStr(), ((MenuItem) event.getTarget()).getText());
-            trackTableView.getSelectionModel().getSelectedItem().setPlaylistStr(((MenuItem) event.getTarget()).getText());
+        if (tableSize > 0 && trackTableView.getSelectionModel().getSelectedItem() != null) {
+            final String playlist = ((MenuItem) event.getTarget()).getText();
+            System.out.printf("Add %s to %s%n", trackTableView.getSelectionModel().getSelectedItem().getTrackTitleStr(), playlist);
 
-            System.out.printf("track playlist set to: %s%n", trackTableView.getSelectionModel().getSelectedItem().getPlaylistStr());
-            tableViewLibrary.setOutputTrackListOnClose();
+            if (!listViewLibrary.getPlaylistLibrary().addTrack(playlist,
+                    trackTableView.getSelectionModel().getSelectedItem().getTrackPathStr())) {
+                System.out.printf("%s is already in %s%n", trackTableView.getSelectionModel().getSelectedItem().getTrackTitleStr(), playlist);
+            }
         }
     }
 
@@ -145,17 +158,19 @@ public class TableViewContextMenu {
      *                          REMOVE FROM PLAYLIST
      *
      * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
-    private static void removeTrackFromPlaylist(ListView<String> playlistListView, TableView<TrackMetadata> trackTableView,
-                                                TableViewLibrary tableViewLibrary, TrackIndex trackIndex)
+    private static void removeTrackFromPlaylist(ActionEvent event, ListView<String> playlistListView,
+                                                TableView<TrackMetadata> trackTableView,
+                                                ListViewLibrary listViewLibrary, TrackIndex trackIndex)
     {
         int tableSize = trackIndex.getTableSize();
 
-        if (tableSize > 0 && !Objects.equals(trackTableView.getSelectionModel().getSelectedItem().getPlaylistStr(), "*")) {
+        if (tableSize > 0 && trackTableView.getSelectionModel().getSelectedItem() != null) {
+            final String playlist = ((MenuItem) event.getTarget()).getText();
             System.out.printf("Removing %s from %s%n", trackTableView.getSelectionModel().getSelectedItem().getTrackTitleStr(),
-                    trackTableView.getSelectionModel().getSelectedItem().getPlaylistStr());
+                    playlist);
 
-            trackTableView.getSelectionModel().getSelectedItem().setPlaylistStr("*");
-            tableViewLibrary.setOutputTrackListOnClose();
+            listViewLibrary.getPlaylistLibrary().removeTrack(playlist,
+                    trackTableView.getSelectionModel().getSelectedItem().getTrackPathStr());
         }
 
         // Simulate mouse click to update tableview
@@ -9,6 +9,7 @@ package com.iandw.musicplayerjavafx;
 
 import com.iandw.musicplayerjavafx.Libraries.ListViewLibrary;
 import com.iandw.musicplayerjavafx.Libraries.TableViewLibrary;
+import com.iandw.musicplayerjavafx.Utilities.TrackField;
 
 import java.io.IOException;
 
@@ -111,7 +112,7 @@ public class EditTrackController {
 
         switch (columnName) {
             case artistName -> {
-                trackTableView.getSelectionModel().getSelectedItem().setArtistNameStr(userInput);
+                tableViewLibrary.setTrackField(trackTableView.getSelectionModel().getSelectedItem(), TrackField.ARTIST, userInput);
 
                 if (!artistListView.getItems().contains(userInput)) {
                     listViewLibrary.addArtist(userInput);
@@ -127,16 +128,17 @@ public class EditTrackController {
                 }
             }
 
-            case trackTitle -> trackTableView.getSelectionModel().getSelectedItem().setTrackTitleStr(userInput);
+            // Each edit is written to the library journal
+            case trackTitle -> tableViewLibrary.setTrackField(trackTableView.getSelectionModel().getSelectedItem(),
+                    TrackField.TITLE, userInput);
 
-            case albumTitle -> trackTableView.getSelectionModel().getSelectedItem().setAlbumTitleStr(userInput);
+            case albumTitle -> tableViewLibrary.setTrackField(trackTableView.getSelectionModel().getSelectedItem(),
+                    TrackField.ALBUM, userInput);
 
-            case genre -> trackTableView.getSelectionModel().getSelectedItem().setTrackGenreStr(userInput);
+            case genre -> tableViewLibrary.setTrackField(trackTableView.getSelectionModel().getSelectedItem(),
+                    TrackField.GENRE, userInput);
         }
 
-        // Write to file on close
-        tableViewLibrary.setOutputTrackListOnClose();
-
         trackTableView.refresh();
 
         stage.close();
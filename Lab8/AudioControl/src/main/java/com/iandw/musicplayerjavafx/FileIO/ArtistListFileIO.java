@@ -5,6 +5,8 @@
  *      Notes: Handles all file input/output from artistlist.ser located in resources.
  *              Observable Lists do not serialize so all String objects are transferred to and
  *              from an ArrayList for serialization.
+ *
+ *             Superseded by library.bin, only read by LibraryFileIO's one time migration.
  */
 
 package com.iandw.musicplayerjavafx.FileIO;
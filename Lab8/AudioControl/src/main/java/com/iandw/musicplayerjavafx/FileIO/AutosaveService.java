@@ -0,0 +1,219 @@
+/**
+ *      Author: Ian Wallace, copyright 2022 all rights reserved.
+ *      Application: MusicPlayer
+ *      Class: AutosaveService.java
+ *      Notes: Saves settings.json, playlists.bin and library.bin in the background while the App runs,
+ *              instead of all of them on the JavaFX Application Thread when the window closes.
+ *
+ *              A store is marked dirty when it changes. Once no change has been made for debounceMillis
+ *              (or maxDelayMillis after the first unsaved change, so a long burst is still saved) every
+ *              dirty store is snapshotted on the JavaFX Application Thread, where the libraries are
+ *              edited, and the snapshot is written on the single "Autosave" thread. A burst of edits
+ *              produces one write, and a snapshot still waiting to be written is replaced by a newer one.
+ *
+ *              Each write goes to a temp file which is then moved over the live file (see SettingsFileIO,
+ *              PlaylistFileIO), a crash leaves either the old or the new file. The library is compacted
+ *              by LibraryJournal on its own writer thread, its edits are already journaled.
+ *
+ *              shutdown() is called on exit, it snapshots the stores still dirty and only waits for the
+ *              writes not finished yet.
+ */
+
+package com.iandw.musicplayerjavafx.FileIO;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javafx.application.Platform;
+
+public final class AutosaveService {
+    private static final long debounceMillis = 2000;
+    private static final long maxDelayMillis = 30000;
+    private static final long shutdownTimeoutSeconds = 60;
+
+    public enum Store { SETTINGS, PLAYLISTS, LIBRARY }
+
+    private static final Map<Store, Supplier<Runnable>> snapshotSuppliers = new EnumMap<>(Store.class);
+    private static final Set<Store> dirtyStores = EnumSet.noneOf(Store.class);
+    private static final Map<Store, Runnable> pendingWrites = new EnumMap<>(Store.class);
+    private static final ScheduledThreadPoolExecutor ioExecutor = createExecutor();
+    private static ScheduledFuture<?> scheduledSnapshot;
+    private static long firstDirtyNanos;
+    private static boolean shutDown;
+
+    private AutosaveService() {}
+
+    private static ScheduledThreadPoolExecutor createExecutor() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "Autosave");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+
+        return executor;
+    }
+
+    /**
+     * register() - set once a store is loaded, changes made before are saved after it is registered
+     *
+     * @param store => Store the supplier snapshots
+     * @param snapshotSupplier => Called on the JavaFX Application Thread, copies the store and returns the
+     *                            write of the copy to run on the Autosave thread (null if nothing to write)
+     */
+    public static synchronized void register(Store store, Supplier<Runnable> snapshotSupplier) {
+        snapshotSuppliers.put(store, snapshotSupplier);
+
+        if (dirtyStores.contains(store)) {
+            scheduleSnapshot();
+        }
+    }
+
+    /**
+     * markDirty() - the store has changed, it is saved once the changes stop. Any thread.
+     *
+     * @param store => Changed store
+     */
+    public static synchronized void markDirty(Store store) {
+        dirtyStores.add(store);
+
+        if (snapshotSuppliers.containsKey(store)) {
+            scheduleSnapshot();
+        }
+    }
+
+    // Restarts the debounce delay, the first unsaved change bounds how long it can be put off
+    private static void scheduleSnapshot() {
+        if (shutDown) {
+            return;
+        }
+
+        final long nowNanos = System.nanoTime();
+
+        if (scheduledSnapshot == null) {
+            firstDirtyNanos = nowNanos;
+
+        } else {
+            scheduledSnapshot.cancel(false);
+        }
+
+        final long dirtyMillis = TimeUnit.NANOSECONDS.toMillis(nowNanos - firstDirtyNanos);
+        final long delayMillis = Math.min(debounceMillis, Math.max(0, maxDelayMillis - dirtyMillis));
+
+        scheduledSnapshot = ioExecutor.schedule(AutosaveService::requestSnapshot, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Autosave thread, the debounce delay has passed
+    private static void requestSnapshot() {
+        synchronized (AutosaveService.class) {
+            scheduledSnapshot = null;
+        }
+
+        Platform.runLater(() -> snapshotDirtyStores(false));
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          SNAPSHOT / WRITE
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    // JavaFX Application Thread, copies every dirty store and queues its write
+    private static void snapshotDirtyStores(boolean shuttingDown) {
+        Map<Store, Supplier<Runnable>> dirtySuppliers = new EnumMap<>(Store.class);
+
+        synchronized (AutosaveService.class) {
+            // shutdown() has already taken the snapshots
+            if (shutDown && !shuttingDown) {
+                return;
+            }
+
+            for (Store store : Store.values()) {
+                if (dirtyStores.contains(store) && snapshotSuppliers.containsKey(store)) {
+                    dirtyStores.remove(store);
+                    dirtySuppliers.put(store, snapshotSuppliers.get(store));
+                }
+            }
+        }
+
+        for (Map.Entry<Store, Supplier<Runnable>> dirtySupplier : dirtySuppliers.entrySet()) {
+            final Store store = dirtySupplier.getKey();
+            final Runnable write;
+
+            try {
+                write = dirtySupplier.getValue().get();
+
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                System.out.println(e.getMessage());
+                continue;
+            }
+
+            if (write != null) {
+                synchronized (AutosaveService.class) {
+                    pendingWrites.put(store, write);
+                }
+
+                ioExecutor.execute(() -> writePending(store));
+            }
+        }
+    }
+
+    // Autosave thread, runs the newest snapshot of a store, older ones queued before it are dropped
+    private static void writePending(Store store) {
+        final Runnable write;
+
+        synchronized (AutosaveService.class) {
+            write = pendingWrites.remove(store);
+        }
+
+        if (write == null) {
+            return;
+        }
+
+        try {
+            write.run();
+
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * shutdown() - snapshots the stores still dirty and waits for the writes not finished yet, called on
+     *              exit on the JavaFX Application Thread before LibraryJournal.close()
+     */
+    public static void shutdown() {
+        synchronized (AutosaveService.class) {
+            if (shutDown) {
+                return;
+            }
+
+            shutDown = true;
+
+            if (scheduledSnapshot != null) {
+                scheduledSnapshot.cancel(false);
+            }
+        }
+
+        snapshotDirtyStores(true);
+        ioExecutor.shutdown();
+
+        try {
+            if (!ioExecutor.awaitTermination(shutdownTimeoutSeconds, TimeUnit.SECONDS)) {
+                System.out.println("Autosave did not finish writing before exit");
+            }
+
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+            System.out.println(e.getMessage());
+        }
+    }
+}
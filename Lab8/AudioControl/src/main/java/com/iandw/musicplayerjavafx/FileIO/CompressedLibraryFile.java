@@ -0,0 +1,550 @@
+/**
+ *      Author: Ian Wallace, copyright 2022 all rights reserved.
+ *      Application: MusicPlayer
+ *      Class: CompressedLibraryFile.java
+ *      Notes: Block compressed library.bin, written when libraryCodec in settings.json is "fast" or
+ *              "compact". The library image (see LibraryFileIO for the layout) is cut into blocks of
+ *              blockBytes, each compressed on its own so the blocks are compressed and decompressed in
+ *              parallel.
+ *
+ *              Layout (big-endian):
+ *                  - Header - magic "MPLZ", container version, codec id, format version of the image,
+ *                    image size, block count. Size and count are written last, a block count of 0 is a
+ *                    file left incomplete.
+ *                  - Blocks - compressed size, image bytes held, CRC32 of the compressed bytes, then the
+ *                    compressed bytes (raw deflate)
+ *
+ *              A block is checked against its CRC32 before it is decompressed. The image keeps its own
+ *              CRC32 trailer, the checksum library.journal is keyed on, which is not read again here.
+ *
+ *              Only codecs of the JDK are used: "fast" is deflate at BEST_SPEED. "compact" first shuffles
+ *              the block into 4 byte lanes, so the high bytes of the int records and indexes (mostly
+ *              zeros) sit together, then deflates it at DEFAULT_COMPRESSION, about half the size of
+ *              "fast". BEST_COMPRESSION is much slower on the int records for no smaller file.
+ *
+ *              The decompressed image is held in the heap, it is no longer paged in by the operating
+ *              system as records are read.
+ */
+
+package com.iandw.musicplayerjavafx.FileIO;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+public class CompressedLibraryFile {
+    static final int magic = 0x4D504C5A; // "MPLZ"
+    static final int containerVersion = 1;
+    static final int headerBytes = 24;
+    static final int blockHeaderBytes = 12;
+    static final int blockBytes = 1 << 20;
+
+    // Blocks compressing at once while writing, each holds blockBytes of the image
+    private static final int blocksInFlight = Runtime.getRuntime().availableProcessors() + 1;
+
+    public enum Codec {
+        NONE(0, Deflater.NO_COMPRESSION, false),
+        FAST(1, Deflater.BEST_SPEED, false),
+        COMPACT(2, Deflater.DEFAULT_COMPRESSION, true);
+
+        private final int id;
+        private final int level;
+        private final boolean shuffled;
+
+        Codec(int id, int level, boolean shuffled) {
+            this.id = id;
+            this.level = level;
+            this.shuffled = shuffled;
+        }
+
+        /**
+         * fromSetting() - codec of libraryCodec in settings.json
+         *
+         * @param codecString => "none", "fast" or "compact"
+         * @return => Codec, NONE if not one of them
+         */
+        public static Codec fromSetting(String codecString) {
+            try {
+                return valueOf(codecString.toUpperCase(Locale.ROOT));
+
+            } catch (IllegalArgumentException | NullPointerException e) {
+                return NONE;
+            }
+        }
+
+        static Codec fromId(int id) throws IOException {
+            for (Codec codec : values()) {
+                if (codec.id != NONE.id && codec.id == id) {
+                    return codec;
+                }
+            }
+
+            throw new IOException(String.format("Unsupported library codec %d", id));
+        }
+    }
+
+    // Compressed bytes of one block
+    private record Block(byte[] bytes, int length, int imageBytes, int checksum) {}
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          READ
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    static boolean isCompressed(Path libraryPath) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(libraryPath))) {
+            return Files.size(libraryPath) >= Integer.BYTES && in.readInt() == magic;
+        }
+    }
+
+    /**
+     * readCodec() - codec a library file was written with
+     *
+     * @param libraryPath => library.bin
+     * @return => Codec, NONE for an uncompressed library file
+     * @throws IOException
+     */
+    static Codec readCodec(Path libraryPath) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(libraryPath))) {
+            if (in.readInt() != magic) {
+                return Codec.NONE;
+            }
+
+            in.readInt(); // container version
+
+            return Codec.fromId(in.readInt());
+        }
+    }
+
+    // Format version of the image held, read from the header without decompressing it
+    static int readFormatVersion(Path libraryPath) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(libraryPath))) {
+            in.readInt(); // magic
+            in.readInt(); // container version
+            in.readInt(); // codec
+
+            return in.readInt();
+        }
+    }
+
+    /**
+     * inflate() - reads a compressed library file and decompresses its blocks in parallel
+     *
+     * @param libraryPath => library.bin
+     * @return => Library image, see LibraryFileIO for the layout
+     * @throws IOException => Incomplete file, a block checksum mismatch or a corrupt block
+     */
+    static ByteBuffer inflate(Path libraryPath) throws IOException {
+        final ByteBuffer file = ByteBuffer.wrap(Files.readAllBytes(libraryPath));
+        final int[] blockOffsets = readBlockOffsets(file);
+        final Codec codec = Codec.fromId(file.getInt(8));
+
+        final int imageSize = file.getInt(16);
+        final byte[] image = new byte[imageSize];
+        final int[] imageOffsets = new int[blockOffsets.length + 1];
+
+        for (int block = 0; block < blockOffsets.length; block++) {
+            imageOffsets[block + 1] = imageOffsets[block] + file.getInt(blockOffsets[block] + Integer.BYTES);
+        }
+
+        if (imageOffsets[blockOffsets.length] != imageSize) {
+            throw new IOException("library.bin is truncated or corrupt");
+        }
+
+        try {
+            IntStream.range(0, blockOffsets.length).parallel().forEach(block -> {
+                try {
+                    inflateBlock(file, blockOffsets[block], codec, image, imageOffsets[block]);
+
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        return ByteBuffer.wrap(image);
+    }
+
+    private static void inflateBlock(ByteBuffer file, int blockOffset, Codec codec, byte[] image,
+                                     int imageOffset) throws IOException {
+        final int compressedBytes = file.getInt(blockOffset);
+        final int imageBytes = file.getInt(blockOffset + Integer.BYTES);
+        final int dataOffset = blockOffset + blockHeaderBytes;
+
+        CRC32 crc32 = new CRC32();
+        crc32.update(file.array(), dataOffset, compressedBytes);
+
+        if ((int) crc32.getValue() != file.getInt(blockOffset + 2 * Integer.BYTES)) {
+            throw new IOException(String.format("library.bin block at %d checksum mismatch, the file is corrupt", blockOffset));
+        }
+
+        // Shuffled blocks are put back in place once inflated
+        final byte[] blockImage = codec.shuffled ? new byte[imageBytes] : image;
+        final int blockImageOffset = codec.shuffled ? 0 : imageOffset;
+        Inflater inflater = new Inflater(true);
+
+        try {
+            inflater.setInput(file.array(), dataOffset, compressedBytes);
+
+            int inflated = 0;
+            while (inflated < imageBytes && !inflater.finished()) {
+                final int bytesInflated = inflater.inflate(blockImage, blockImageOffset + inflated, imageBytes - inflated);
+
+                if (bytesInflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+
+                inflated += bytesInflated;
+            }
+
+            if (inflated != imageBytes) {
+                throw new IOException(String.format("library.bin block at %d is truncated", blockOffset));
+            }
+
+            if (codec.shuffled) {
+                unshuffle(blockImage, imageBytes, image, imageOffset);
+            }
+
+        } catch (DataFormatException e) {
+            throw new IOException(String.format("library.bin block at %d is corrupt", blockOffset), e);
+
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // File offset of each block, checks the blocks end where the file does
+    private static int[] readBlockOffsets(ByteBuffer file) throws IOException {
+        if (file.capacity() < headerBytes || file.getInt(0) != magic) {
+            throw new IOException("library.bin is not a compressed library file");
+        }
+
+        if (file.getInt(4) != containerVersion) {
+            throw new IOException(String.format("Unsupported compressed library version %d", file.getInt(4)));
+        }
+
+        Codec.fromId(file.getInt(8));
+
+        final int blockCount = file.getInt(20);
+
+        if (blockCount <= 0) {
+            throw new IOException("library.bin was not completely written");
+        }
+
+        int[] blockOffsets = new int[blockCount];
+        long offset = headerBytes;
+
+        for (int block = 0; block < blockCount; block++) {
+            if (offset + blockHeaderBytes > file.capacity()) {
+                throw new IOException("library.bin is truncated or corrupt");
+            }
+
+            blockOffsets[block] = (int) offset;
+
+            final int compressedBytes = file.getInt((int) offset);
+            final int imageBytes = file.getInt((int) offset + Integer.BYTES);
+
+            if (compressedBytes < 0 || imageBytes <= 0 || imageBytes > blockBytes) {
+                throw new IOException("library.bin is truncated or corrupt");
+            }
+
+            offset += blockHeaderBytes + (long) compressedBytes;
+        }
+
+        if (offset != file.capacity()) {
+            throw new IOException("library.bin is truncated or corrupt");
+        }
+
+        return blockOffsets;
+    }
+
+    /**
+     * hasValidBlocks() - header and block checksums, without decompressing, used before a pending
+     *                    library replaces library.bin
+     *
+     * @param libraryPath => Compressed library file
+     * @return => False if the file was left incomplete or a block does not match its checksum
+     * @throws IOException
+     */
+    static boolean hasValidBlocks(Path libraryPath) throws IOException {
+        try (FileChannel channel = FileChannel.open(libraryPath, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(headerBytes);
+
+            if (channel.read(header, 0) < headerBytes || header.getInt(20) <= 0) {
+                return false;
+            }
+
+            ByteBuffer blockHeader = ByteBuffer.allocate(blockHeaderBytes);
+            ByteBuffer blockData = ByteBuffer.allocate(0);
+            final int blockCount = header.getInt(20);
+            long imageBytes = 0;
+            long position = headerBytes;
+
+            for (int block = 0; block < blockCount; block++) {
+                if (channel.read(blockHeader.clear(), position) < blockHeaderBytes) {
+                    return false;
+                }
+
+                final int compressedBytes = blockHeader.getInt(0);
+
+                if (compressedBytes < 0 || position + blockHeaderBytes + compressedBytes > channel.size()) {
+                    return false;
+                }
+
+                if (blockData.capacity() < compressedBytes) {
+                    blockData = ByteBuffer.allocate(compressedBytes);
+                }
+
+                blockData.clear().limit(compressedBytes);
+                while (blockData.hasRemaining()) {
+                    if (channel.read(blockData, position + blockHeaderBytes + blockData.position()) < 0) {
+                        return false;
+                    }
+                }
+
+                CRC32 crc32 = new CRC32();
+                crc32.update(blockData.flip());
+
+                if ((int) crc32.getValue() != blockHeader.getInt(2 * Integer.BYTES)) {
+                    return false;
+                }
+
+                imageBytes += blockHeader.getInt(Integer.BYTES);
+                position += blockHeaderBytes + compressedBytes;
+            }
+
+            return position == channel.size() && imageBytes == header.getInt(16);
+        }
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          WRITE
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    /**
+     * BlockOutputStream - compresses the library image written to it into a file, up to blocksInFlight
+     *                     blocks at once on the common ForkJoinPool. finish() completes the file, a file
+     *                     closed without it is left with a block count of 0.
+     */
+    static final class BlockOutputStream extends OutputStream {
+        private final FileChannel channel;
+        private final Codec codec;
+        private final int imageFormatVersion;
+        private final ArrayDeque<CompletableFuture<Block>> pendingBlocks = new ArrayDeque<>();
+        private byte[] buffer = new byte[blockBytes];
+        private int bufferLength;
+        private long position = headerBytes;
+        private long imageSize;
+        private int blockCount;
+        private boolean finished;
+
+        /**
+         * @param channel => Empty file, written from its start
+         * @param codec => FAST or COMPACT
+         * @param imageFormatVersion => Format version of the image, kept in the header
+         * @throws IOException
+         */
+        BlockOutputStream(FileChannel channel, Codec codec, int imageFormatVersion) throws IOException {
+            this.channel = channel;
+            this.codec = codec;
+            this.imageFormatVersion = imageFormatVersion;
+
+            writeHeader();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            buffer[bufferLength++] = (byte) b;
+
+            if (bufferLength == blockBytes) {
+                submitBlock();
+            }
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                final int copyLength = Math.min(length, blockBytes - bufferLength);
+
+                System.arraycopy(bytes, offset, buffer, bufferLength, copyLength);
+                bufferLength += copyLength;
+                offset += copyLength;
+                length -= copyLength;
+
+                if (bufferLength == blockBytes) {
+                    submitBlock();
+                }
+            }
+        }
+
+        /**
+         * finish() - compresses the last block, writes the blocks still compressing and completes the header
+         *
+         * @throws IOException
+         */
+        void finish() throws IOException {
+            if (finished) {
+                return;
+            }
+
+            if (bufferLength > 0) {
+                submitBlock();
+            }
+
+            while (!pendingBlocks.isEmpty()) {
+                writeBlock(pendingBlocks.removeFirst());
+            }
+
+            if (imageSize > Integer.MAX_VALUE) {
+                throw new IOException("Music Library too large for library.bin");
+            }
+
+            writeHeader();
+            finished = true;
+        }
+
+        // The channel is closed by its owner, an unfinished file is left incomplete
+        @Override
+        public void close() {
+            pendingBlocks.forEach(pendingBlock -> pendingBlock.cancel(false));
+            pendingBlocks.clear();
+        }
+
+        private void submitBlock() throws IOException {
+            final byte[] blockImage = buffer;
+            final int blockImageBytes = bufferLength;
+
+            pendingBlocks.addLast(CompletableFuture.supplyAsync(() -> deflate(blockImage, blockImageBytes, codec)));
+            imageSize += blockImageBytes;
+
+            buffer = new byte[blockBytes];
+            bufferLength = 0;
+
+            if (pendingBlocks.size() >= blocksInFlight) {
+                writeBlock(pendingBlocks.removeFirst());
+            }
+        }
+
+        private void writeBlock(CompletableFuture<Block> pendingBlock) throws IOException {
+            final Block block;
+
+            try {
+                block = pendingBlock.join();
+
+            } catch (CompletionException e) {
+                throw new IOException("library.bin block could not be compressed", e.getCause());
+            }
+
+            ByteBuffer blockHeader = ByteBuffer.allocate(blockHeaderBytes)
+                    .putInt(block.length())
+                    .putInt(block.imageBytes())
+                    .putInt(block.checksum())
+                    .flip();
+
+            position += writeFully(blockHeader, position);
+            position += writeFully(ByteBuffer.wrap(block.bytes(), 0, block.length()), position);
+            blockCount++;
+        }
+
+        private void writeHeader() throws IOException {
+            ByteBuffer header = ByteBuffer.allocate(headerBytes)
+                    .putInt(magic)
+                    .putInt(containerVersion)
+                    .putInt(codec.id)
+                    .putInt(imageFormatVersion)
+                    .putInt((int) imageSize)
+                    .putInt(blockCount)
+                    .flip();
+
+            writeFully(header, 0);
+        }
+
+        private int writeFully(ByteBuffer bytes, long filePosition) throws IOException {
+            final int length = bytes.remaining();
+
+            while (bytes.hasRemaining()) {
+                filePosition += channel.write(bytes, filePosition);
+            }
+
+            return length;
+        }
+    }
+
+    private static Block deflate(byte[] blockImage, int blockImageBytes, Codec codec) {
+        Deflater deflater = new Deflater(codec.level, true);
+
+        try {
+            deflater.setInput(codec.shuffled ? shuffle(blockImage, blockImageBytes) : blockImage, 0, blockImageBytes);
+            deflater.finish();
+
+            byte[] bytes = new byte[blockImageBytes / 2 + 64];
+            int length = 0;
+
+            while (!deflater.finished()) {
+                if (length == bytes.length) {
+                    bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                }
+
+                length += deflater.deflate(bytes, length, bytes.length - length);
+            }
+
+            CRC32 crc32 = new CRC32();
+            crc32.update(bytes, 0, length);
+
+            return new Block(bytes, length, blockImageBytes, (int) crc32.getValue());
+
+        } finally {
+            deflater.end();
+        }
+    }
+
+    // Byte k of every 4 byte lane goes to lane k, the bytes past the last whole lane are kept as they are
+    private static byte[] shuffle(byte[] blockImage, int blockImageBytes) {
+        final int lanes = blockImageBytes / Integer.BYTES;
+        byte[] shuffled = new byte[blockImageBytes];
+
+        for (int i = 0; i < lanes; i++) {
+            for (int k = 0; k < Integer.BYTES; k++) {
+                shuffled[k * lanes + i] = blockImage[i * Integer.BYTES + k];
+            }
+        }
+
+        System.arraycopy(blockImage, lanes * Integer.BYTES, shuffled, lanes * Integer.BYTES, blockImageBytes - lanes * Integer.BYTES);
+
+        return shuffled;
+    }
+
+    private static void unshuffle(byte[] shuffled, int blockImageBytes, byte[] image, int imageOffset) {
+        final int lanes = blockImageBytes / Integer.BYTES;
+
+        for (int i = 0; i < lanes; i++) {
+            for (int k = 0; k < Integer.BYTES; k++) {
+                image[imageOffset + i * Integer.BYTES + k] = shuffled[k * lanes + i];
+            }
+        }
+
+        System.arraycopy(shuffled, lanes * Integer.BYTES, image, imageOffset + lanes * Integer.BYTES, blockImageBytes - lanes * Integer.BYTES);
+    }
+}
@@ -2,28 +2,202 @@
  *      Author: Ian Wallace, copyright 2022 all rights reserved.
  *      Application: MusicPlayer
  *      Class: ConsoleLogFileIO.java
- *      Notes: Handles output of System.out.print statements to consolelog.txt on Application close
+ *      Notes: Writes the lines of ConsoleLog to consolelog.txt located in resources, on its own daemon thread
+ *              while the App runs rather than all at once on close.
+ *
+ *              Lines wait in a queue of queueCapacity, a line logged while it is full is dropped (and
+ *              counted in the file) so logging never blocks the thread doing the work. The lines queued
+ *              are written and flushed once per batch.
+ *
+ *              consolelog.txt is rotated once it holds about maxFileBytes, and the log of the last session
+ *              is rotated on open: consolelog.txt => consolelog.1.txt => ... => consolelog.<rotatedFiles>.txt,
+ *              the oldest is deleted.
  */
 
 package com.iandw.musicplayerjavafx.FileIO;
 
 import com.iandw.musicplayerjavafx.ResourceURLs;
 
-import java.io.FileWriter;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ConsoleLogFileIO {
-    public static void outputConsoleLog(String consoleLog) {
+    private static final int queueCapacity = 8192;
+    private static final long maxFileBytes = 4L << 20;
+    private static final int rotatedFiles = 3;
+    private static final long closeTimeoutSeconds = 5;
+
+    // Queued after the last line by close()
+    private static final String stop = new String("stop");
+
+    private static final BlockingQueue<String> queue = new ArrayBlockingQueue<>(queueCapacity);
+    private static final AtomicLong droppedLines = new AtomicLong();
+    private static Thread writerThread;
+    private static BufferedWriter writer;
+    private static long fileBytes;
+
+    /**
+     * open() - rotates the log of the last session and starts the writer thread
+     */
+    public static synchronized void open() {
+        if (writerThread != null) {
+            return;
+        }
+
         try {
-            // Plain text output
-            System.out.println("Writing to consolelog.txt");
-            FileWriter fileWriter = new FileWriter(ResourceURLs.getConsolelogURL());
-            fileWriter.write(consoleLog);
-            fileWriter.close();
+            rotate();
+            writer = Files.newBufferedWriter(logPath(0), StandardCharsets.UTF_8);
+            fileBytes = 0;
 
-        } catch (IOException e){
+        } catch (IOException e) {
             e.printStackTrace();
-            System.out.println(e.getMessage());
+            System.err.println(e.getMessage());
+            return;
+        }
+
+        writerThread = new Thread(ConsoleLogFileIO::writeQueuedLines, "ConsoleLog");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * append() - queues one line for consolelog.txt, dropped if the queue is full
+     *
+     * @param line => Formatted log line without line separator
+     */
+    public static void append(String line) {
+        if (!queue.offer(line)) {
+            droppedLines.incrementAndGet();
+        }
+    }
+
+    // Writes the lines still queued then stops the writer thread. Called on exit.
+    public static void close() {
+        Thread thread;
+
+        synchronized (ConsoleLogFileIO.class) {
+            if (writerThread == null) {
+                return;
+            }
+
+            thread = writerThread;
+            writerThread = null;
         }
+
+        try {
+            // Waits for room rather than dropping the marker
+            if (queue.offer(stop, closeTimeoutSeconds, TimeUnit.SECONDS)) {
+                thread.join(TimeUnit.SECONDS.toMillis(closeTimeoutSeconds));
+            }
+
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          WRITER THREAD
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    private static void writeQueuedLines() {
+        List<String> batch = new ArrayList<>();
+        boolean running = true;
+
+        while (running) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch);
+
+                final long dropped = droppedLines.getAndSet(0);
+
+                if (dropped > 0) {
+                    writeLine(String.format("[%d log lines dropped, the log queue was full]", dropped));
+                }
+
+                for (String line : batch) {
+                    if (line == stop) {
+                        running = false;
+                        break;
+                    }
+
+                    writeLine(line);
+                }
+
+                writer.flush();
+
+            } catch (InterruptedException e) {
+                running = false;
+
+            } catch (IOException e) {
+                // Nothing left to log it to
+                e.printStackTrace();
+            }
+
+            batch.clear();
+        }
+
+        try {
+            writer.close();
+
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void writeLine(String line) throws IOException {
+        // Characters, close to bytes for log text
+        if (fileBytes + line.length() + 1 > maxFileBytes && fileBytes > 0) {
+            writer.close();
+            rotate();
+            writer = Files.newBufferedWriter(logPath(0), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            fileBytes = 0;
+        }
+
+        writer.write(line);
+        writer.newLine();
+        fileBytes += line.length() + 1;
+    }
+
+    // consolelog.txt => consolelog.1.txt ..., an empty consolelog.txt is left in place
+    private static void rotate() throws IOException {
+        if (!Files.exists(logPath(0)) || Files.size(logPath(0)) == 0) {
+            return;
+        }
+
+        Files.deleteIfExists(logPath(rotatedFiles));
+
+        for (int i = rotatedFiles - 1; i >= 0; i--) {
+            if (Files.exists(logPath(i))) {
+                Files.move(logPath(i), logPath(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    // 0 is consolelog.txt, i is consolelog.i.txt
+    private static Path logPath(int index) {
+        final Path logPath = Path.of(ResourceURLs.getConsolelogURL());
+
+        if (index == 0) {
+            return logPath;
+        }
+
+        final String fileName = logPath.getFileName().toString();
+        final int extensionIndex = fileName.lastIndexOf('.');
+
+        return logPath.resolveSibling(fileName.substring(0, extensionIndex) + "." + index + fileName.substring(extensionIndex));
     }
 }
@@ -0,0 +1,86 @@
+/**
+ *      Author: Ian Wallace, copyright 2022 all rights reserved.
+ *      Application: MusicPlayer
+ *      Class: FingerprintFileIO.java
+ *      Notes: Handles all file input/output from fingerprints.ser located in resources.
+ *              Stores one TrackFingerprint per track, keyed by track path, for incremental rescans.
+ */
+
+package com.iandw.musicplayerjavafx.FileIO;
+
+import com.iandw.musicplayerjavafx.ResourceURLs;
+import com.iandw.musicplayerjavafx.TrackFingerprint;
+import com.iandw.musicplayerjavafx.TrackMetadata;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class FingerprintFileIO {
+
+    /**
+     * inputFingerprintMap() - read track fingerprints from fingerprints.ser
+     * @return => HashMap of track path -> TrackFingerprint, empty if no scan has been recorded yet
+     */
+    public static HashMap<String, TrackFingerprint> inputFingerprintMap() {
+        HashMap<String, TrackFingerprint> fingerprintMap = new HashMap<>();
+
+        try {
+            if (Files.size(Path.of(ResourceURLs.getFingerprintsURL())) == 0) {
+                return fingerprintMap;
+            }
+
+            // Read from file
+            System.out.println("Reading from fingerprints.ser");
+            InputStream in = Files.newInputStream(Path.of(ResourceURLs.getFingerprintsURL()));
+            ObjectInputStream ois = new ObjectInputStream(in);
+
+            // Entries are cast one at a time, the type arguments of the map are not kept in the stream
+            if (ois.readObject() instanceof Map<?, ?> map) {
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    fingerprintMap.put((String) entry.getKey(), (TrackFingerprint) entry.getValue());
+                }
+            }
+
+            ois.close();
+
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            e.printStackTrace();
+            System.out.println(e.getMessage());
+        }
+
+        return fingerprintMap;
+    }
+
+    /**
+     * outputFingerprintMap() - write the current file attributes of every track to fingerprints.ser
+     * @param trackMetadataList => Tracks from the Music Library scan that just finished
+     */
+    public static void outputFingerprintMap(List<TrackMetadata> trackMetadataList) {
+        HashMap<String, TrackFingerprint> fingerprintMap = new HashMap<>();
+
+        for (TrackMetadata trackMetadata : trackMetadataList) {
+            TrackFingerprint trackFingerprint = TrackFingerprint.of(Path.of(trackMetadata.getTrackPathStr()));
+
+            if (trackFingerprint != null) {
+                fingerprintMap.put(trackFingerprint.getTrackPathStr(), trackFingerprint);
+            }
+        }
+
+        try {
+            // Write fingerprint objects to file
+            System.out.println("Writing to fingerprints.ser");
+            OutputStream out = Files.newOutputStream(Path.of(ResourceURLs.getFingerprintsURL()));
+            ObjectOutputStream oos = new ObjectOutputStream(out);
+            oos.writeObject(fingerprintMap);
+            oos.close();
+
+        } catch (IOException e){
+            e.printStackTrace();
+            System.out.println(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,812 @@
+/**
+ *      Author: Ian Wallace, copyright 2022 all rights reserved.
+ *      Application: MusicPlayer
+ *      Class: LibraryFileIO.java
+ *      Notes: Handles all file input/output from library.bin located in resources, which holds the
+ *              tracks, artist names and playlist names that used to be written to tracklist.ser,
+ *              artistlist.ser and playlists.ser.
+ *
+ *              library.bin layout (big-endian), format version 4:
+ *                  - Header - magic "MPLB", format version, track count, artist count, playlist count,
+ *                    dictionary size
+ *                  - Dictionary offsets - file offset of each dictionary String plus the end offset,
+ *                    so any String can be decoded on its own
+ *                  - Dictionary - every distinct String once (artist, album, genre, container type,
+ *                    duration, folder of the track path...) as UTF-8. Id 0 is reserved for null.
+ *                  - Track records - trackRecordInts per track, fixed width: 10 dictionary ids, then the
+ *                    track id and the AudioProperties (duration ms, bitrate, sample rate, file size as
+ *                    two ints, track number, disc number, year)
+ *                  - Artist names and playlist names - one dictionary id each
+ *                  - Artist, album, genre and playlist indexes - key count, posting count, then the
+ *                    (dictionary id, first posting) keys sorted by String and the track indexes of each
+ *                    key in ascending order
+ *                  - Path index - capacity, then an open addressing hash table of track index + 1
+ *                  - CRC32 of everything above
+ *
+ *              Track paths are stored as the folder (shared by every track of an album) plus the file
+ *              name (shared with trackFileNameStr).
+ *
+ *              The file is memory-mapped on start up (see MappedLibraryFile) rather than read, tracks
+ *              are decoded as the Table View asks for them. The CRC32 is checked before library.bin.tmp
+ *              replaces library.bin and before an older format or codec is rewritten, not on every start up. With libraryStore "memory" in settings.json
+ *              every track is decoded on start up instead (see MemoryLibraryStore).
+ *
+ *              With libraryCodec "fast" or "compact" in settings.json library.bin is block compressed
+ *              (see CompressedLibraryFile) and decompressed into the heap on start up. A library.bin
+ *              written with another codec is rewritten on start up.
+ *
+ *              Replacing library.bin can fail on Windows while it is mapped, the new library is then
+ *              left in library.bin.tmp and moved over library.bin on the next start up.
+ *
+ *              The first time the App starts without a library.bin the old .ser files are migrated
+ *              and then cleared. Format version 1 to 3 files are rewritten as version 4,
+ *              their tracks only have the duration of the AudioProperties until they are rescanned.
+ *              The journal of the old file is applied before any rewrite, as it no longer matches.
+ *
+ *              Edits made while the App is open are appended to library.journal (see LibraryJournal),
+ *              library.bin is only rewritten when the journal is compacted.
+ */
+
+package com.iandw.musicplayerjavafx.FileIO;
+
+import com.iandw.musicplayerjavafx.FileIO.CompressedLibraryFile.Codec;
+import com.iandw.musicplayerjavafx.AudioProperties;
+import com.iandw.musicplayerjavafx.ResourceURLs;
+import com.iandw.musicplayerjavafx.TrackMetadata;
+import com.iandw.musicplayerjavafx.Utilities.TrackField;
+import com.iandw.musicplayerjavafx.Utilities.TrackPathTable;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+public class LibraryFileIO {
+    static final int magic = 0x4D504C42; // "MPLB"
+    static final int formatVersion = 4;
+    static final int headerBytes = 24;
+    static final int trackRecordInts = 19;
+    static final int dictionaryRecordInts = 10;
+    static final int trackIdField = 10;
+    static final TrackField[] indexedFields = { TrackField.ARTIST, TrackField.ALBUM, TrackField.GENRE, TrackField.PLAYLIST };
+    private static final int bufferSize = 1 << 16;
+    private static volatile Codec codec = Codec.NONE;
+
+    // Tracks, artist names and playlist names of a fully decoded library file
+    private record Library(List<TrackMetadata> tracks, List<String> artistNames, List<String> playlistNames) {}
+
+    // False on first start up, before the Music Library has been initialized
+    public static synchronized boolean hasLibrary() {
+        try {
+            promotePendingLibrary();
+
+            return Files.size(Path.of(ResourceURLs.getLibraryURL())) > 0
+                    || Files.size(Path.of(ResourceURLs.getTrackListURL())) > 0;
+
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.out.println(e.getMessage());
+        }
+
+        return false;
+    }
+
+    /**
+     * inputLibrary() - memory-maps library.bin, migrating the old .ser files or an older library first
+     *
+     * @param indexedStore => True for the mapped, indexed store, false to decode every track into the heap
+     * @return => LibraryStore, or null if the Music Library has not been initialized
+     */
+    public static synchronized LibraryStore inputLibrary(boolean indexedStore) {
+        try {
+            promotePendingLibrary();
+
+            final Path libraryPath = Path.of(ResourceURLs.getLibraryURL());
+
+            if (Files.size(libraryPath) == 0) {
+                if (Files.size(Path.of(ResourceURLs.getTrackListURL())) == 0) {
+                    return null;
+                }
+
+                migrateSerializedFiles();
+
+            } else if (readFormatVersion(libraryPath) < formatVersion) {
+                // Version 1 checks its own trailer while it is read
+                if (readFormatVersion(libraryPath) > 1 && !hasValidChecksum(libraryPath)) {
+                    throw new IOException(libraryPath + " checksum mismatch, the file is corrupt");
+                }
+
+                System.out.printf("Rewriting library.bin as format version %d%n", formatVersion);
+                rewriteLibrary(libraryPath);
+
+            } else if (CompressedLibraryFile.readCodec(libraryPath) != codec) {
+                if (!hasValidChecksum(libraryPath)) {
+                    throw new IOException(libraryPath + " checksum mismatch, the file is corrupt");
+                }
+
+                System.out.printf("Rewriting library.bin with codec %s%n", codec.name().toLowerCase(Locale.ROOT));
+                rewriteLibrary(libraryPath);
+            }
+
+            System.out.println("Mapping library.bin");
+            MappedLibraryFile libraryFile = MappedLibraryFile.map(libraryPath);
+
+            return indexedStore ? libraryFile : MemoryLibraryStore.decode(libraryFile);
+
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.out.println(e.getMessage());
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * setCodec() - codec library.bin is written with from now on, set before inputLibrary()
+     *
+     * @param codecString => "none", "fast" or "compact" from settings.json, none if not one of them
+     */
+    public static void setCodec(String codecString) {
+        codec = Codec.fromSetting(codecString);
+    }
+
+    /**
+     * outputLibrary() - replace library.bin, written to a temporary file first so a crash while
+     *                   writing leaves the previous library intact
+     *
+     * @param tracks => trackMetadataObservableList (TableViewLibrary)
+     * @param artistNames => artistObservableList (ListViewLibrary)
+     * @param playlistNames => playlistObservableList (ListViewLibrary)
+     */
+    public static synchronized void outputLibrary(List<TrackMetadata> tracks, List<String> artistNames,
+                                                  List<String> playlistNames) {
+        try {
+            outputSnapshot(tracks, artistNames, playlistNames);
+
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * outputSnapshot() - outputLibrary() for LibraryJournal compaction, which needs the checksum of the
+     *                    library the journal restarts from
+     *
+     * @param tracks => trackMetadataObservableList (TableViewLibrary)
+     * @param artistNames => artistObservableList (ListViewLibrary)
+     * @param playlistNames => playlistObservableList (ListViewLibrary)
+     * @return => CRC32 trailer of the new library.bin
+     * @throws IOException
+     */
+    public static synchronized int outputSnapshot(List<TrackMetadata> tracks, List<String> artistNames,
+                                                  List<String> playlistNames) throws IOException {
+        System.out.println("Writing to library.bin");
+
+        final int checksum = writeLibrary(pendingLibraryPath(), tracks, artistNames, playlistNames);
+        promotePendingLibrary();
+
+        return checksum;
+    }
+
+    /**
+     * clearLibrary() - replaces library.bin with an empty file when the Music Library is reset.
+     *                  The file is replaced rather than truncated, a mapped file must not shrink.
+     *
+     * @throws IOException
+     */
+    public static synchronized void clearLibrary() throws IOException {
+        Files.write(pendingLibraryPath(), new byte[0]);
+        promotePendingLibrary();
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          PENDING LIBRARY
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    private static Path pendingLibraryPath() {
+        final Path libraryPath = Path.of(ResourceURLs.getLibraryURL());
+
+        return libraryPath.resolveSibling(libraryPath.getFileName() + ".tmp");
+    }
+
+    // Moves a complete library.bin.tmp over library.bin, kept for the next start up if library.bin is mapped
+    private static void promotePendingLibrary() throws IOException {
+        final Path libraryPath = Path.of(ResourceURLs.getLibraryURL());
+        final Path pendingPath = pendingLibraryPath();
+
+        if (!Files.exists(pendingPath)) {
+            return;
+        }
+
+        // Left over from a crash while writing
+        if (Files.size(pendingPath) > 0 && !hasValidChecksum(pendingPath)) {
+            System.out.println("Discarding incomplete library.bin.tmp");
+            Files.delete(pendingPath);
+            return;
+        }
+
+        try {
+            try {
+                Files.move(pendingPath, libraryPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(pendingPath, libraryPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+        } catch (IOException e) {
+            System.out.println("library.bin is in use, the new library will be used on next start up");
+        }
+    }
+
+    // CRC32 trailer check without decoding, used before a pending library replaces library.bin
+    private static boolean hasValidChecksum(Path libraryPath) throws IOException {
+        if (CompressedLibraryFile.isCompressed(libraryPath)) {
+            return CompressedLibraryFile.hasValidBlocks(libraryPath);
+        }
+
+        try (FileChannel channel = FileChannel.open(libraryPath, StandardOpenOption.READ)) {
+            final long dataBytes = channel.size() - Integer.BYTES;
+
+            if (dataBytes < headerBytes) {
+                return false;
+            }
+
+            CRC32 crc32 = new CRC32();
+            ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+            long position = 0;
+
+            while (position < dataBytes) {
+                buffer.clear().limit((int) Math.min(bufferSize, dataBytes - position));
+                final int bytesRead = channel.read(buffer, position);
+
+                if (bytesRead < 0) {
+                    return false;
+                }
+
+                buffer.flip();
+                crc32.update(buffer);
+                position += bytesRead;
+            }
+
+            ByteBuffer trailer = ByteBuffer.allocate(Integer.BYTES);
+            channel.read(trailer, dataBytes);
+
+            return trailer.flip().getInt() == (int) crc32.getValue();
+        }
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          WRITE
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    /**
+     * writeLibrary() - encodes a library file
+     *
+     * @param libraryPath => File to create or replace
+     * @param tracks => Tracks in Table View order
+     * @param artistNames => Artist List View names
+     * @param playlistNames => Playlist List View names
+     * @return => CRC32 trailer
+     * @throws IOException
+     */
+    public static int writeLibrary(Path libraryPath, List<TrackMetadata> tracks, List<String> artistNames,
+                                    List<String> playlistNames) throws IOException {
+        Map<String, Integer> dictionaryIds = new HashMap<>();
+        List<String> dictionary = new ArrayList<>();
+
+        // First pass, ids of every field so the dictionary can be written ahead of the records
+        int[] trackRecords = new int[tracks.size() * trackRecordInts];
+        int position = 0;
+
+        // Tracks without an id, i.e. migrated from .ser files, are numbered after the highest id
+        int nextTrackId = tracks.stream().mapToInt(TrackMetadata::getTrackId).max().orElse(0) + 1;
+
+        for (TrackMetadata trackMetadata : tracks) {
+            final String directoryStr = TrackPathTable.getDirectory(trackMetadata.getTrackDirectoryId());
+
+            trackRecords[position++] = dictionaryId(trackMetadata.getArtistNameStr(), dictionaryIds, dictionary);
+            trackRecords[position++] = dictionaryId(trackMetadata.getTrackFileNameStr(), dictionaryIds, dictionary);
+            trackRecords[position++] = dictionaryId(trackMetadata.getTrackContainerTypeStr(), dictionaryIds, dictionary);
+            trackRecords[position++] = dictionaryId(trackMetadata.getTrackTitleStr(), dictionaryIds, dictionary);
+            trackRecords[position++] = dictionaryId(trackMetadata.getAlbumTitleStr(), dictionaryIds, dictionary);
+            trackRecords[position++] = dictionaryId(trackMetadata.getTrackGenreStr(), dictionaryIds, dictionary);
+            trackRecords[position++] = dictionaryId(trackMetadata.getTrackDurationStr(), dictionaryIds, dictionary);
+
+            // Folder including the trailing separator from TrackPathTable, then the file name
+            if (!directoryStr.isEmpty() && trackMetadata.getTrackPathNameStr() != null) {
+                trackRecords[position++] = dictionaryId(directoryStr, dictionaryIds, dictionary);
+                trackRecords[position++] = dictionaryId(trackMetadata.getTrackPathNameStr(), dictionaryIds, dictionary);
+
+            } else {
+                trackRecords[position++] = 0;
+                trackRecords[position++] = dictionaryId(trackMetadata.getTrackPathNameStr(), dictionaryIds, dictionary);
+            }
+
+            trackRecords[position++] = dictionaryId(trackMetadata.getPlaylistStr(), dictionaryIds, dictionary);
+
+            final AudioProperties audioProperties = trackMetadata.getAudioProperties();
+            trackRecords[position++] = trackMetadata.getTrackId() > 0 ? trackMetadata.getTrackId() : nextTrackId++;
+            trackRecords[position++] = audioProperties.durationMillis();
+            trackRecords[position++] = audioProperties.bitrate();
+            trackRecords[position++] = audioProperties.sampleRate();
+            trackRecords[position++] = (int) (audioProperties.fileSize() >>> 32);
+            trackRecords[position++] = (int) audioProperties.fileSize();
+            trackRecords[position++] = audioProperties.trackNumber();
+            trackRecords[position++] = audioProperties.discNumber();
+            trackRecords[position++] = audioProperties.year();
+        }
+
+        int[] artistIds = new int[artistNames.size()];
+        for (int i = 0; i < artistIds.length; i++) {
+            artistIds[i] = dictionaryId(artistNames.get(i), dictionaryIds, dictionary);
+        }
+
+        int[] playlistIds = new int[playlistNames.size()];
+        for (int i = 0; i < playlistIds.length; i++) {
+            playlistIds[i] = dictionaryId(playlistNames.get(i), dictionaryIds, dictionary);
+        }
+
+        // Indexes, each key of a field with the tracks holding it
+        int[][] indexKeys = new int[indexedFields.length][];
+        int[][] indexPostings = new int[indexedFields.length][];
+
+        for (int field = 0; field < indexedFields.length; field++) {
+            writeIndex(indexedFields[field].getRecordField(), trackRecords, dictionary, indexKeys, indexPostings, field);
+        }
+
+        int[] pathSlots = new int[pathCapacity(tracks.size())];
+
+        for (int i = 0; i < tracks.size(); i++) {
+            int slot = pathSlot(tracks.get(i).getTrackPathStr(), pathSlots.length);
+
+            while (pathSlots[slot] != 0) {
+                slot = (slot + 1) & (pathSlots.length - 1);
+            }
+
+            pathSlots[slot] = i + 1;
+        }
+
+        long indexBytes = (long) pathSlots.length * Integer.BYTES;
+
+        for (int field = 0; field < indexedFields.length; field++) {
+            indexBytes += (2L + indexKeys[field].length + indexPostings[field].length) * Integer.BYTES;
+        }
+
+        // Offsets of each dictionary String, the end offset is where the track records start
+        byte[][] dictionaryBytes = new byte[dictionary.size()][];
+        long offset = headerBytes + (long) (dictionary.size() + 1) * Integer.BYTES;
+
+        for (int i = 0; i < dictionaryBytes.length; i++) {
+            dictionaryBytes[i] = dictionary.get(i).getBytes(StandardCharsets.UTF_8);
+            offset += dictionaryBytes[i].length;
+        }
+
+        if (offset + (long) trackRecords.length * Integer.BYTES + indexBytes > Integer.MAX_VALUE) {
+            throw new IOException("Music Library too large for library.bin");
+        }
+
+        CRC32 crc32 = new CRC32();
+        final Codec fileCodec = codec;
+
+        try (FileChannel channel = FileChannel.open(libraryPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             CompressedLibraryFile.BlockOutputStream blockOut = fileCodec == Codec.NONE
+                     ? null : new CompressedLibraryFile.BlockOutputStream(channel, fileCodec, formatVersion);
+             DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(
+                     blockOut == null ? Channels.newOutputStream(channel) : blockOut, bufferSize), crc32))) {
+
+            out.writeInt(magic);
+            out.writeInt(formatVersion);
+            out.writeInt(tracks.size());
+            out.writeInt(artistIds.length);
+            out.writeInt(playlistIds.length);
+            out.writeInt(dictionary.size());
+
+            int stringOffset = headerBytes + (dictionary.size() + 1) * Integer.BYTES;
+
+            for (byte[] stringBytes : dictionaryBytes) {
+                out.writeInt(stringOffset);
+                stringOffset += stringBytes.length;
+            }
+
+            out.writeInt(stringOffset);
+
+            for (byte[] stringBytes : dictionaryBytes) {
+                out.write(stringBytes);
+            }
+
+            for (int id : trackRecords) {
+                out.writeInt(id);
+            }
+
+            for (int id : artistIds) {
+                out.writeInt(id);
+            }
+
+            for (int id : playlistIds) {
+                out.writeInt(id);
+            }
+
+            for (int field = 0; field < indexedFields.length; field++) {
+                out.writeInt(indexKeys[field].length / 2);
+                out.writeInt(indexPostings[field].length);
+
+                for (int key : indexKeys[field]) {
+                    out.writeInt(key);
+                }
+
+                for (int trackIndex : indexPostings[field]) {
+                    out.writeInt(trackIndex);
+                }
+            }
+
+            out.writeInt(pathSlots.length);
+
+            for (int slot : pathSlots) {
+                out.writeInt(slot);
+            }
+
+            final int checksum = (int) crc32.getValue();
+            out.writeInt(checksum);
+
+            // On disk before it can replace library.bin
+            out.flush();
+
+            if (blockOut != null) {
+                blockOut.finish();
+            }
+
+            channel.force(true);
+
+            return checksum;
+        }
+    }
+
+    /**
+     * writeIndex() - index of one record field, track indexes grouped by dictionary id with the ids
+     *                sorted by their String so MappedLibraryFile can binary search a value
+     *
+     * @param recordField => Field position in a track record
+     * @param trackRecords => Every track record
+     * @param dictionary => Dictionary Strings, id - 1
+     * @param indexKeys => Receives (dictionary id, first posting) pairs
+     * @param indexPostings => Receives the track indexes
+     * @param field => Position of the field in indexedFields
+     */
+    private static void writeIndex(int recordField, int[] trackRecords, List<String> dictionary,
+                                   int[][] indexKeys, int[][] indexPostings, int field) {
+        final int trackCount = trackRecords.length / trackRecordInts;
+        int[] nextPosting = new int[dictionary.size() + 1];
+        int postingCount = 0;
+
+        for (int i = 0; i < trackCount; i++) {
+            final int id = trackRecords[i * trackRecordInts + recordField];
+
+            if (id != 0) {
+                nextPosting[id]++;
+                postingCount++;
+            }
+        }
+
+        List<Integer> keyIds = new ArrayList<>();
+        for (int id = 1; id < nextPosting.length; id++) {
+            if (nextPosting[id] > 0) {
+                keyIds.add(id);
+            }
+        }
+
+        keyIds.sort((id1, id2) -> dictionary.get(id1 - 1).compareTo(dictionary.get(id2 - 1)));
+
+        // Counts become the first posting of each key
+        int[] keys = new int[keyIds.size() * 2];
+        int firstPosting = 0;
+
+        for (int key = 0; key < keyIds.size(); key++) {
+            final int id = keyIds.get(key);
+            final int trackCountOfKey = nextPosting[id];
+
+            keys[key * 2] = id;
+            keys[key * 2 + 1] = firstPosting;
+            nextPosting[id] = firstPosting;
+            firstPosting += trackCountOfKey;
+        }
+
+        int[] postings = new int[postingCount];
+
+        for (int i = 0; i < trackCount; i++) {
+            final int id = trackRecords[i * trackRecordInts + recordField];
+
+            if (id != 0) {
+                postings[nextPosting[id]++] = i;
+            }
+        }
+
+        indexKeys[field] = keys;
+        indexPostings[field] = postings;
+    }
+
+    // Power of two at least twice the track count, the path index stays at most half full
+    static int pathCapacity(int trackCount) {
+        int capacity = 2;
+
+        while (capacity < trackCount * 2L) {
+            capacity <<= 1;
+        }
+
+        return capacity;
+    }
+
+    static int pathSlot(String trackPathStr, int capacity) {
+        final int hash = Objects.hashCode(trackPathStr);
+
+        return (hash ^ (hash >>> 16)) & (capacity - 1);
+    }
+
+    // Id of str in the dictionary, added if new, 0 for null
+    private static int dictionaryId(String str, Map<String, Integer> dictionaryIds, List<String> dictionary) {
+        if (str == null) {
+            return 0;
+        }
+
+        Integer id = dictionaryIds.get(str);
+
+        if (id == null) {
+            dictionary.add(str);
+            id = dictionary.size();
+            dictionaryIds.put(str, id);
+        }
+
+        return id;
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          MIGRATION
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    /**
+     * rewriteLibrary() - decodes library.bin and writes it again in the current format and codec
+     *
+     *      library.journal names the checksum of the old file and is discarded by LibraryJournal.open()
+     *      once library.bin is rewritten, so its records are applied to the decoded library first. A
+     *      crash after the rewrite loses nothing, the edits are already in the new library.bin.
+     *
+     * @param libraryPath => library.bin of an older format version or another codec
+     * @throws IOException
+     */
+    private static void rewriteLibrary(Path libraryPath) throws IOException {
+        Library library;
+        int checksum;
+
+        if (readFormatVersion(libraryPath) == 1) {
+            library = readVersion1Library(libraryPath);
+            checksum = readTrailer(libraryPath);
+
+        } else {
+            MappedLibraryFile libraryFile = MappedLibraryFile.map(libraryPath);
+            library = decodeLibrary(libraryFile);
+            checksum = libraryFile.getChecksum();
+        }
+
+        library = applyJournal(library, LibraryJournal.readRecords(checksum));
+        outputLibrary(library.tracks(), library.artistNames(), library.playlistNames());
+    }
+
+    // Same edits as TableViewLibrary.replayJournal() and ListViewLibrary.replayJournal(), on decoded lists
+    private static Library applyJournal(Library library, List<LibraryJournal.Mutation> mutations) {
+        if (mutations.isEmpty()) {
+            return library;
+        }
+
+        System.out.printf("Applying %d library journal records before the rewrite%n", mutations.size());
+
+        List<TrackMetadata> tracks = new ArrayList<>(library.tracks());
+        List<String> artistNames = new ArrayList<>(library.artistNames());
+        List<String> playlistNames = new ArrayList<>(library.playlistNames());
+        Map<String, Integer> trackIndexes = new HashMap<>();
+
+        for (int i = 0; i < tracks.size(); i++) {
+            trackIndexes.put(tracks.get(i).getTrackPathStr(), i);
+        }
+
+        for (LibraryJournal.Mutation mutation : mutations) {
+            switch (mutation.operation()) {
+                case SET_FIELD -> {
+                    final Integer index = trackIndexes.get(mutation.getTrackPathStr());
+
+                    if (index != null) {
+                        mutation.trackField().set(tracks.get(index), mutation.values().get(1));
+                    }
+                }
+
+                case ADD_TRACK -> {
+                    TrackMetadata trackMetadata = mutation.toTrackMetadata();
+                    final Integer index = trackIndexes.get(trackMetadata.getTrackPathStr());
+
+                    if (index != null) {
+                        tracks.set(index, trackMetadata);
+
+                    } else {
+                        trackIndexes.put(trackMetadata.getTrackPathStr(), tracks.size());
+                        tracks.add(trackMetadata);
+                    }
+                }
+
+                // Left as null until every record is applied so the indexes stay valid
+                case REMOVE_TRACK -> {
+                    final Integer index = trackIndexes.remove(mutation.getTrackPathStr());
+
+                    if (index != null) {
+                        tracks.set(index, null);
+                    }
+                }
+
+                case ADD_ARTIST -> addName(artistNames, mutation.values().get(0));
+                case REMOVE_ARTIST -> artistNames.remove(mutation.values().get(0));
+                case ADD_PLAYLIST -> addName(playlistNames, mutation.values().get(0));
+                case REMOVE_PLAYLIST -> playlistNames.remove(mutation.values().get(0));
+            }
+        }
+
+        tracks.removeIf(Objects::isNull);
+
+        return new Library(tracks, artistNames, playlistNames);
+    }
+
+    private static void addName(List<String> names, String name) {
+        if (!names.contains(name)) {
+            names.add(name);
+            Collections.sort(names);
+        }
+    }
+
+    // CRC32 trailer of an uncompressed library file
+    private static int readTrailer(Path libraryPath) throws IOException {
+        try (FileChannel channel = FileChannel.open(libraryPath, StandardOpenOption.READ)) {
+            ByteBuffer trailer = ByteBuffer.allocate(Integer.BYTES);
+            channel.read(trailer, channel.size() - Integer.BYTES);
+
+            return trailer.flip().getInt();
+        }
+    }
+
+    // One time conversion of tracklist.ser, artistlist.ser and playlists.ser, which are cleared afterwards
+    private static void migrateSerializedFiles() throws IOException {
+        System.out.println("Migrating tracklist.ser, artistlist.ser and playlists.ser to library.bin");
+
+        List<TrackMetadata> tracks = new ArrayList<>(TrackListFileIO.inputTrackObservableList());
+        List<String> artistNames = Files.size(Path.of(ResourceURLs.getArtistListURL())) > 0
+                ? new ArrayList<>(ArtistListFileIO.inputArtistNameObservableList()) : new ArrayList<>();
+        List<String> playlistNames = Files.size(Path.of(ResourceURLs.getPlaylistsURL())) > 0
+                ? new ArrayList<>(PlaylistFileIO.inputPlaylistObservableList()) : new ArrayList<>();
+
+        outputLibrary(tracks, artistNames, playlistNames);
+
+        // Only clear the old files once library.bin is in place
+        if (!hasValidChecksum(Path.of(ResourceURLs.getLibraryURL()))) {
+            throw new IOException("library.bin migration failed, tracklist.ser is kept");
+        }
+
+        PrintWriter clearTrackList = new PrintWriter(ResourceURLs.getTrackListURL());
+        clearTrackList.close();
+
+        PrintWriter clearArtistList = new PrintWriter(ResourceURLs.getArtistListURL());
+        clearArtistList.close();
+
+        PrintWriter clearPlaylists = new PrintWriter(ResourceURLs.getPlaylistsURL());
+        clearPlaylists.close();
+    }
+
+    private static int readFormatVersion(Path libraryPath) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(libraryPath))) {
+            final int fileMagic = in.readInt();
+
+            if (fileMagic == CompressedLibraryFile.magic) {
+                return CompressedLibraryFile.readFormatVersion(libraryPath);
+            }
+
+            if (fileMagic != magic) {
+                throw new IOException(libraryPath + " is not a library file");
+            }
+
+            return in.readInt();
+        }
+    }
+
+    // Format version 2 or 3, before the indexes or the AudioProperties were added
+    private static Library decodeLibrary(MappedLibraryFile libraryFile) {
+        List<TrackMetadata> tracks = new ArrayList<>(libraryFile.getTrackCount());
+
+        for (int i = 0; i < libraryFile.getTrackCount(); i++) {
+            tracks.add(libraryFile.decodeTrack(i));
+        }
+
+        return new Library(tracks, libraryFile.getArtistNames(), libraryFile.getPlaylistNames());
+    }
+
+    // Format version 1, length prefixed dictionary Strings without an offset table
+    private static Library readVersion1Library(Path libraryPath) throws IOException {
+        CRC32 crc32 = new CRC32();
+
+        try (DataInputStream in = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(libraryPath), bufferSize), crc32))) {
+
+            in.readInt(); // magic
+            in.readInt(); // version
+
+            final int trackCount = in.readInt();
+            final int artistCount = in.readInt();
+            final int playlistCount = in.readInt();
+            final int dictionarySize = in.readInt();
+
+            String[] dictionary = new String[dictionarySize + 1];
+
+            for (int id = 1; id <= dictionarySize; id++) {
+                byte[] stringBytes = new byte[in.readInt()];
+                in.readFully(stringBytes);
+                dictionary[id] = new String(stringBytes, StandardCharsets.UTF_8);
+            }
+
+            List<TrackMetadata> tracks = new ArrayList<>(trackCount);
+            int[] record = new int[dictionaryRecordInts];
+
+            for (int i = 0; i < trackCount; i++) {
+                for (int field = 0; field < dictionaryRecordInts; field++) {
+                    record[field] = in.readInt();
+                }
+
+                final String trackFolderStr = dictionary[record[7]];
+                final String trackPathName = dictionary[record[8]];
+
+                TrackMetadata trackMetadata = new TrackMetadata(dictionary[record[0]], dictionary[record[1]],
+                        dictionary[record[2]], dictionary[record[3]], dictionary[record[4]], dictionary[record[5]],
+                        dictionary[record[6]], trackFolderStr == null ? trackPathName : trackFolderStr + trackPathName,
+                        dictionary[record[9]]);
+                trackMetadata.setAudioProperties(AudioProperties.ofDuration(dictionary[record[6]]));
+                tracks.add(trackMetadata);
+            }
+
+            List<String> artistNames = new ArrayList<>(artistCount);
+            for (int i = 0; i < artistCount; i++) {
+                artistNames.add(dictionary[in.readInt()]);
+            }
+
+            List<String> playlistNames = new ArrayList<>(playlistCount);
+            for (int i = 0; i < playlistCount; i++) {
+                playlistNames.add(dictionary[in.readInt()]);
+            }
+
+            final int expectedChecksum = (int) crc32.getValue();
+
+            if (in.readInt() != expectedChecksum) {
+                throw new IOException(libraryPath + " checksum mismatch, the file is corrupt");
+            }
+
+            return new Library(tracks, artistNames, playlistNames);
+
+        } catch (EOFException e) {
+            throw new IOException(libraryPath + " is truncated", e);
+        }
+    }
+}
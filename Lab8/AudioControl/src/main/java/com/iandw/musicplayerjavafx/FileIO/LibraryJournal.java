@@ -0,0 +1,576 @@
+/**
+ *      Author: Ian Wallace, copyright 2022 all rights reserved.
+ *      Application: MusicPlayer
+ *      Class: LibraryJournal.java
+ *      Notes: Write ahead journal of Music Library edits, library.journal located in resources.
+ *
+ *              Each edit (playlist assignment, track edit, artist rename, deleted track...) is appended
+ *              as one small Mutation instead of the whole library being rewritten. On start up
+ *              the journal is replayed on top of library.bin, so a crash only loses the edits that were
+ *              not yet synced.
+ *
+ *              library.journal layout (big-endian):
+ *                  - Header - magic "MPJL", format version, CRC32 trailer of the library.bin it applies to
+ *                  - Records - payload length, payload (operation, track field, Strings), CRC32 of payload
+ *              A torn or corrupt record ends the journal, the records before it are kept.
+ *
+ *              Records are written by a single daemon thread which syncs once per batch of queued records
+ *              rather than once per record. Once the journal holds compactThreshold records or
+ *              compactBytes, or a full library write is requested, the libraries are compacted into a new
+ *              library.bin on the same thread and the journal restarts empty with the new checksum. Records
+ *              queued after the snapshot was taken are written to the new journal. A crash between the two
+ *              leaves a journal whose checksum does not match library.bin, it is discarded as its edits are
+ *              in the snapshot.
+ *
+ *              Closing only writes the records still queued, library.bin is not rewritten on exit. The
+ *              journal is replayed on the next start up, the thresholds bound how many records that is.
+ *
+ *              Replaying a Mutation twice has the same effect as once, the snapshot may already hold
+ *              edits made while it was being written.
+ */
+
+package com.iandw.musicplayerjavafx.FileIO;
+
+import com.iandw.musicplayerjavafx.AudioProperties;
+import com.iandw.musicplayerjavafx.ResourceURLs;
+import com.iandw.musicplayerjavafx.TrackMetadata;
+import com.iandw.musicplayerjavafx.Utilities.TrackField;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+import javafx.application.Platform;
+
+public class LibraryJournal {
+    private static final int magic = 0x4D504A4C; // "MPJL"
+    private static final int formatVersion = 1;
+    private static final int headerBytes = 12;
+    private static final int maxRecordBytes = 1 << 20;
+    private static final int compactThreshold = 5000;
+    private static final long compactBytes = 4 << 20;
+
+    public enum Operation { SET_FIELD, ADD_TRACK, REMOVE_TRACK, ADD_ARTIST, REMOVE_ARTIST, ADD_PLAYLIST, REMOVE_PLAYLIST }
+
+    /**
+     * Mutation - one journal record
+     *
+     *      SET_FIELD => values: track path, new value of trackField
+     *      ADD_TRACK => values: TrackMetadata constructor arguments, then the track id and AudioProperties
+     *                   as decimal Strings, replaces a track with the same path. Records written before the
+     *                   AudioProperties have only the constructor arguments.
+     *      REMOVE_TRACK => values: track path
+     *      ADD_ / REMOVE_ ARTIST / PLAYLIST => values: name
+     */
+    public record Mutation(Operation operation, TrackField trackField, List<String> values) {
+        public static Mutation setField(String trackPathStr, TrackField trackField, String value) {
+            return new Mutation(Operation.SET_FIELD, trackField, nullableList(trackPathStr, value));
+        }
+
+        public static Mutation addTrack(TrackMetadata trackMetadata) {
+            final AudioProperties audioProperties = trackMetadata.getAudioProperties();
+
+            return new Mutation(Operation.ADD_TRACK, null, nullableList(
+                    trackMetadata.getArtistNameStr(), trackMetadata.getTrackFileNameStr(),
+                    trackMetadata.getTrackContainerTypeStr(), trackMetadata.getTrackTitleStr(),
+                    trackMetadata.getAlbumTitleStr(), trackMetadata.getTrackGenreStr(),
+                    trackMetadata.getTrackDurationStr(), trackMetadata.getTrackPathStr(),
+                    trackMetadata.getPlaylistStr(), String.valueOf(trackMetadata.getTrackId()),
+                    String.valueOf(audioProperties.durationMillis()), String.valueOf(audioProperties.bitrate()),
+                    String.valueOf(audioProperties.sampleRate()), String.valueOf(audioProperties.fileSize()),
+                    String.valueOf(audioProperties.trackNumber()), String.valueOf(audioProperties.discNumber()),
+                    String.valueOf(audioProperties.year())));
+        }
+
+        public static Mutation removeTrack(String trackPathStr) {
+            return new Mutation(Operation.REMOVE_TRACK, null, nullableList(trackPathStr));
+        }
+
+        // ADD_ARTIST, REMOVE_ARTIST, ADD_PLAYLIST or REMOVE_PLAYLIST
+        public static Mutation listName(Operation operation, String name) {
+            return new Mutation(operation, null, nullableList(name));
+        }
+
+        public String getTrackPathStr() {
+            return operation == Operation.ADD_TRACK ? values.get(7) : values.get(0);
+        }
+
+        public TrackMetadata toTrackMetadata() {
+            TrackMetadata trackMetadata = new TrackMetadata(values.get(0), values.get(1), values.get(2),
+                    values.get(3), values.get(4), values.get(5), values.get(6), values.get(7), values.get(8));
+
+            if (values.size() < 17) {
+                trackMetadata.setAudioProperties(AudioProperties.ofDuration(values.get(6)));
+                return trackMetadata;
+            }
+
+            trackMetadata.setTrackId(Integer.parseInt(values.get(9)));
+            trackMetadata.setAudioProperties(new AudioProperties(Integer.parseInt(values.get(10)),
+                    Integer.parseInt(values.get(11)), Integer.parseInt(values.get(12)), Long.parseLong(values.get(13)),
+                    Integer.parseInt(values.get(14)), Integer.parseInt(values.get(15)),
+                    Integer.parseInt(values.get(16))));
+
+            return trackMetadata;
+        }
+
+        // List.of() does not allow null
+        private static List<String> nullableList(String... values) {
+            List<String> list = new ArrayList<>(values.length);
+            for (String value : values) {
+                list.add(value);
+            }
+
+            return list;
+        }
+    }
+
+    // Copies of the libraries taken on the JavaFX Application Thread for compaction
+    public record Snapshot(List<TrackMetadata> tracks, List<String> artistNames, List<String> playlistNames) {}
+
+    // Queue markers besides encoded records
+    private record Clear() {}
+    private record Stop() {}
+
+    private static LinkedBlockingQueue<Object> queue;
+    private static Thread writerThread;
+    private static FileChannel channel;
+    private static Supplier<Snapshot> snapshotSupplier;
+    private static int recordCount;
+    private static boolean compactionQueued;
+    private static boolean compactionRequested;
+    private static boolean unjournaledChanges;
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          OPEN / CLOSE
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    /**
+     * open() - reads the journal left by the last session and starts the writer thread
+     *
+     * @param snapshotChecksum => CRC32 trailer of the mapped library.bin, 0 if there is no library
+     * @return => Mutations to replay on top of library.bin, in the order they were made
+     */
+    public static synchronized List<Mutation> open(int snapshotChecksum) {
+        List<Mutation> mutations = new ArrayList<>();
+
+        try {
+            final Path journalPath = Path.of(ResourceURLs.getLibraryJournalURL());
+            channel = FileChannel.open(journalPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+            final long validBytes = readJournal(channel.size(), snapshotChecksum, mutations);
+
+            // Drop a torn tail, or start over if the journal belongs to another library.bin
+            if (validBytes < headerBytes) {
+                writeHeader(snapshotChecksum);
+
+            } else {
+                channel.truncate(validBytes);
+                channel.position(validBytes);
+            }
+
+            if (!mutations.isEmpty()) {
+                System.out.printf("Replaying %d library journal records%n", mutations.size());
+            }
+
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.out.println(e.getMessage());
+            channel = null;
+            return mutations;
+        }
+
+        recordCount = mutations.size();
+        queue = new LinkedBlockingQueue<>();
+        writerThread = new Thread(LibraryJournal::writeQueuedRecords, "LibraryJournal");
+        writerThread.setDaemon(true);
+        writerThread.start();
+
+        return mutations;
+    }
+
+    /**
+     * readRecords() - the records left by the last session without opening the journal, for LibraryFileIO
+     *                 to apply before library.bin is rewritten on start up
+     *
+     * @param snapshotChecksum => CRC32 trailer of the library.bin about to be rewritten
+     * @return => Mutations in the order they were made, empty if the journal names another library.bin
+     */
+    public static synchronized List<Mutation> readRecords(int snapshotChecksum) {
+        List<Mutation> mutations = new ArrayList<>();
+        final Path journalPath = Path.of(ResourceURLs.getLibraryJournalURL());
+
+        try {
+            if (Files.exists(journalPath)) {
+                readJournal(Files.size(journalPath), snapshotChecksum, mutations);
+            }
+
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.out.println(e.getMessage());
+        }
+
+        return mutations;
+    }
+
+    /**
+     * setSnapshotSupplier() - set once the libraries are loaded, compact() needs them
+     *
+     * @param snapshotSupplier => Copies tracks, artist names and playlist names, called on the JavaFX Application Thread
+     */
+    public static synchronized void setSnapshotSupplier(Supplier<Snapshot> snapshotSupplier) {
+        LibraryJournal.snapshotSupplier = snapshotSupplier;
+
+        // The records replayed on start up already reach the threshold
+        if (writerThread != null && recordCount >= compactThreshold) {
+            requestCompaction();
+        }
+    }
+
+    // Writes everything queued, then stops the writer thread. The journal is left for the next start up
+    // to replay. Called on exit on the JavaFX Application Thread.
+    public static void close() {
+        Thread thread;
+
+        synchronized (LibraryJournal.class) {
+            // Journal could not be opened, library.bin is written as a whole
+            if (writerThread == null) {
+                if (unjournaledChanges) {
+                    compact();
+                }
+
+                return;
+            }
+
+            thread = writerThread;
+            writerThread = null;
+            queue.add(new Stop());
+        }
+
+        try {
+            thread.join();
+
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          APPEND / COMPACT
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    /**
+     * append() - queues one edit, synced to disk with the next batch
+     *
+     * @param mutation => Edit already made to TableViewLibrary or ListViewLibrary
+     */
+    public static synchronized void append(Mutation mutation) {
+        if (writerThread == null) {
+            unjournaledChanges = true;
+            return;
+        }
+
+        try {
+            queue.add(encode(mutation));
+            recordCount++;
+
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * compact() - snapshots the libraries now and writes them to library.bin on the writer thread,
+     *             the journal then restarts empty. Written directly if the journal is not open. A
+     *             snapshot still queued is replaced, so repeated calls write the newest one once.
+     *             Call on the JavaFX Application Thread.
+     */
+    public static synchronized void compact() {
+        if (snapshotSupplier == null) {
+            return;
+        }
+
+        if (writerThread == null) {
+            Snapshot snapshot = snapshotSupplier.get();
+            LibraryFileIO.outputLibrary(snapshot.tracks(), snapshot.artistNames(), snapshot.playlistNames());
+            unjournaledChanges = false;
+            return;
+        }
+
+        if (compactionQueued) {
+            queue.removeIf(Snapshot.class::isInstance);
+        }
+
+        compactionQueued = true;
+        compactionRequested = false;
+        recordCount = 0;
+        queue.add(snapshotSupplier.get());
+    }
+
+    /**
+     * clearLibrary() - empties library.bin and the journal when the Music Library is reset. Done on the
+     *                  writer thread after any compaction already running, queued compactions are dropped.
+     *
+     * @throws IOException
+     */
+    public static synchronized void clearLibrary() throws IOException {
+        if (writerThread == null) {
+            LibraryFileIO.clearLibrary();
+            return;
+        }
+
+        queue.removeIf(Snapshot.class::isInstance);
+        compactionQueued = false;
+        recordCount = 0;
+        queue.add(new Clear());
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          WRITER THREAD
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    private static void writeQueuedRecords() {
+        List<Object> batch = new ArrayList<>();
+        boolean running = true;
+
+        while (running) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch);
+
+                boolean unsynced = false;
+
+                for (Object item : batch) {
+                    if (item instanceof byte[] record) {
+                        ByteBuffer buffer = ByteBuffer.wrap(record);
+                        while (buffer.hasRemaining()) {
+                            channel.write(buffer);
+                        }
+
+                        unsynced = true;
+
+                    } else if (item instanceof Snapshot snapshot) {
+                        writeSnapshot(snapshot);
+                        unsynced = false;
+
+                    } else if (item instanceof Clear) {
+                        LibraryFileIO.clearLibrary();
+                        writeHeader(0);
+                        unsynced = false;
+
+                    } else if (item instanceof Stop) {
+                        running = false;
+                    }
+                }
+
+                // One sync per batch
+                if (unsynced) {
+                    channel.force(false);
+                    checkCompactThresholds();
+                }
+
+            } catch (InterruptedException e) {
+                running = false;
+
+            } catch (IOException e) {
+                e.printStackTrace();
+                System.out.println(e.getMessage());
+            }
+
+            batch.clear();
+        }
+
+        try {
+            channel.close();
+
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.out.println(e.getMessage());
+        }
+    }
+
+    // Writer thread, asks for a compaction once the journal holds compactThreshold records or compactBytes
+    private static void checkCompactThresholds() throws IOException {
+        final long journalBytes = channel.size();
+
+        synchronized (LibraryJournal.class) {
+            if (running() && (recordCount >= compactThreshold || journalBytes >= compactBytes)) {
+                requestCompaction();
+            }
+        }
+    }
+
+    // The snapshot is taken on the JavaFX Application Thread, where the libraries are edited, and written
+    // back on the writer thread. Asked for once until compact() runs.
+    private static void requestCompaction() {
+        if (compactionRequested || compactionQueued || snapshotSupplier == null) {
+            return;
+        }
+
+        compactionRequested = true;
+        Platform.runLater(() -> {
+            synchronized (LibraryJournal.class) {
+                if (compactionRequested && running()) {
+                    compact();
+                }
+            }
+        });
+    }
+
+    // False once close() has stopped the writer thread
+    private static boolean running() { return writerThread != null; }
+
+    // Records before the snapshot are in library.bin once it is written, the journal restarts empty
+    private static void writeSnapshot(Snapshot snapshot) throws IOException {
+        synchronized (LibraryJournal.class) {
+            compactionQueued = false;
+        }
+
+        channel.force(false);
+
+        final int snapshotChecksum = LibraryFileIO.outputSnapshot(snapshot.tracks(), snapshot.artistNames(),
+                snapshot.playlistNames());
+
+        writeHeader(snapshotChecksum);
+    }
+
+    private static void writeHeader(int snapshotChecksum) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(headerBytes);
+        header.putInt(magic).putInt(formatVersion).putInt(snapshotChecksum).flip();
+
+        channel.truncate(0);
+        channel.position(0);
+
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+
+        channel.force(false);
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          RECORDS
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    private static byte[] encode(Mutation mutation) throws IOException {
+        ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(payloadBytes);
+
+        payload.writeByte(mutation.operation().ordinal());
+        payload.writeByte(mutation.trackField() == null ? -1 : mutation.trackField().ordinal());
+        payload.writeShort(mutation.values().size());
+
+        for (String value : mutation.values()) {
+            payload.writeBoolean(value != null);
+
+            if (value != null) {
+                payload.writeUTF(value);
+            }
+        }
+
+        CRC32 crc32 = new CRC32();
+        crc32.update(payloadBytes.toByteArray());
+
+        ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(payloadBytes.size() + 2 * Integer.BYTES);
+        DataOutputStream record = new DataOutputStream(recordBytes);
+        record.writeInt(payloadBytes.size());
+        payloadBytes.writeTo(record);
+        record.writeInt((int) crc32.getValue());
+
+        return recordBytes.toByteArray();
+    }
+
+    private static Mutation decode(byte[] payloadBytes) throws IOException {
+        DataInputStream payload = new DataInputStream(new ByteArrayInputStream(payloadBytes));
+
+        final Operation operation = Operation.values()[payload.readByte()];
+        final int trackFieldOrdinal = payload.readByte();
+        final int valueCount = payload.readShort();
+
+        List<String> values = new ArrayList<>(valueCount);
+        for (int i = 0; i < valueCount; i++) {
+            values.add(payload.readBoolean() ? payload.readUTF() : null);
+        }
+
+        return new Mutation(operation, trackFieldOrdinal < 0 ? null : TrackField.values()[trackFieldOrdinal], values);
+    }
+
+    /**
+     * readJournal() - decodes records up to the first torn or corrupt one
+     *
+     * @param journalBytes => Size of library.journal
+     * @param snapshotChecksum => Records are only read if the header names this library.bin
+     * @param mutations => Receives the decoded records
+     * @return => Bytes of valid journal, 0 if the header is missing or names another library.bin
+     * @throws IOException
+     */
+    private static long readJournal(long journalBytes, int snapshotChecksum, List<Mutation> mutations) throws IOException {
+        if (journalBytes < headerBytes) {
+            return 0;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(Path.of(ResourceURLs.getLibraryJournalURL()))))) {
+
+            if (in.readInt() != magic || in.readInt() != formatVersion) {
+                System.out.println("library.journal is not a journal file, discarding it");
+                return 0;
+            }
+
+            if (in.readInt() != snapshotChecksum) {
+                System.out.println("library.journal does not match library.bin, discarding it");
+                return 0;
+            }
+
+            long validBytes = headerBytes;
+
+            while (validBytes + 2 * Integer.BYTES <= journalBytes) {
+                final int payloadLength = in.readInt();
+
+                if (payloadLength <= 0 || payloadLength > maxRecordBytes
+                        || validBytes + payloadLength + 2 * Integer.BYTES > journalBytes) {
+                    break;
+                }
+
+                byte[] payloadBytes = new byte[payloadLength];
+                in.readFully(payloadBytes);
+
+                CRC32 crc32 = new CRC32();
+                crc32.update(payloadBytes);
+
+                if (in.readInt() != (int) crc32.getValue()) {
+                    break;
+                }
+
+                mutations.add(decode(payloadBytes));
+                validBytes += payloadLength + 2 * Integer.BYTES;
+            }
+
+            if (validBytes < journalBytes) {
+                System.out.printf("Discarding %d bytes of incomplete library journal%n", journalBytes - validBytes);
+            }
+
+            return validBytes;
+
+        } catch (EOFException e) {
+            return 0;
+        }
+    }
+}
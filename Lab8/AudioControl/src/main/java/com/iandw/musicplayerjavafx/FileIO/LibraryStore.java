@@ -0,0 +1,86 @@
+/**
+ *      Author: Ian Wallace, copyright 2022 all rights reserved.
+ *      Application: MusicPlayer
+ *      Class: LibraryStore.java
+ *      Notes: The saved Music Library as TableViewLibrary and ListViewLibrary read it on start up,
+ *              returned by LibraryFileIO.inputLibrary(). Tracks are addressed by their position in
+ *              library.bin and only decoded into a TrackMetadata when asked for.
+ *
+ *              Implementations, chosen with libraryStore in settings.json:
+ *                  - MappedLibraryFile ("indexed") - library.bin memory-mapped, lookups by artist,
+ *                    album, genre, playlist and path use the indexes written into the file.
+ *                  - MemoryLibraryStore ("memory") - every track decoded into the heap on start up
+ *                    and searched linearly, as before library.bin was mapped.
+ *
+ *              A LibraryStore is read only, edits are made to TableViewLibrary and written through
+ *              LibraryJournal.
+ */
+
+package com.iandw.musicplayerjavafx.FileIO;
+
+import com.iandw.musicplayerjavafx.TrackMetadata;
+import com.iandw.musicplayerjavafx.Utilities.TrackField;
+import com.iandw.musicplayerjavafx.Utilities.TrackFieldPredicate;
+
+import java.util.List;
+
+public interface LibraryStore {
+
+    int getTrackCount();
+
+    /**
+     * decodeTrack() - builds a new TrackMetadata for one track
+     *
+     * @param trackIndex => Position of the track in the Table View order it was written in
+     * @return => TrackMetadata
+     */
+    TrackMetadata decodeTrack(int trackIndex);
+
+    String getTrackPathStr(int trackIndex);
+
+    // Track id saved with the track, 0 if the library was saved before tracks had ids
+    int getTrackId(int trackIndex);
+
+    // AudioProperties duration of one track, without decoding the track
+    int getDurationMillis(int trackIndex);
+
+    /**
+     * findTrack() - position of the track with a path
+     *
+     * @param trackPathStr => Track path
+     * @return => Track index, -1 if no track has the path
+     */
+    int findTrack(String trackPathStr);
+
+    /**
+     * findTracksUnder() - positions of the tracks at a path or in the directories below it
+     *
+     * @param pathStr => File or directory, without a trailing separator
+     * @return => Track indexes in ascending order
+     */
+    int[] findTracksUnder(String pathStr);
+
+    /**
+     * findTracks() - positions of the tracks whose field equals value
+     *
+     * @param trackField => Field compared
+     * @param value => Artist name, album title, genre, playlist...
+     * @return => Track indexes in ascending order
+     */
+    int[] findTracks(TrackField trackField, String value);
+
+    /**
+     * selectTracks() - positions of the tracks matching a Table View search predicate
+     *
+     * @param trackFieldPredicate => Artist, playlist or search text predicate
+     * @return => Track indexes in ascending order
+     */
+    int[] selectTracks(TrackFieldPredicate trackFieldPredicate);
+
+    List<String> getArtistNames();
+
+    List<String> getPlaylistNames();
+
+    // CRC32 trailer of the library.bin the store was read from, identifies it to LibraryJournal
+    int getChecksum();
+}
@@ -0,0 +1,162 @@
+/**
+ *      Author: Ian Wallace, copyright 2022 all rights reserved.
+ *      Application: MusicPlayer
+ *      Class: M3UFileIO.java
+ *      Notes: Exports and imports playlists as extended M3U (UTF-8, .m3u8), one file per playlist.
+ *
+ *              #EXTM3U
+ *              #PLAYLIST:<title>
+ *              #EXTINF:<seconds>,<artist> - <title>
+ *              <track path>
+ *
+ *              Entries are written and read one at a time. On import relative paths are taken from the
+ *              playlist file's folder and file: URIs are turned into paths, the caller resolves each
+ *              path to a library track.
+ */
+
+package com.iandw.musicplayerjavafx.FileIO;
+
+import com.iandw.musicplayerjavafx.TrackMetadata;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+public class M3UFileIO {
+    public static final String fileExtension = ".m3u8";
+    private static final String header = "#EXTM3U";
+    private static final String playlistDirective = "#PLAYLIST:";
+    private static final String trackDirective = "#EXTINF:";
+
+    /**
+     * outputPlaylist() - writes one playlist in entry order
+     *
+     * @param m3uPath => File to write, replaced if it exists
+     * @param title => Playlist title
+     * @param trackPaths => Entries, see PlaylistLibrary.getTrackPaths()
+     * @param findTrack => Library track of a path for #EXTINF, null if the file is no longer in the library
+     * @throws IOException
+     */
+    public static void outputPlaylist(Path m3uPath, String title, List<String> trackPaths,
+                                      Function<String, TrackMetadata> findTrack) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(m3uPath, StandardCharsets.UTF_8)) {
+            writer.write(header);
+            writer.newLine();
+            writer.write(playlistDirective + title);
+            writer.newLine();
+
+            for (String trackPathStr : trackPaths) {
+                TrackMetadata trackMetadata = findTrack.apply(trackPathStr);
+
+                if (trackMetadata != null) {
+                    writer.write(trackDirective + durationSeconds(trackMetadata.getTrackDurationStr()) + ","
+                            + trackMetadata.getArtistNameStr() + " - " + trackMetadata.getTrackTitleStr());
+                    writer.newLine();
+                }
+
+                writer.write(trackPathStr);
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * inputPlaylist() - reads the entries of one playlist file
+     *
+     * @param m3uPath => File chosen by the user
+     * @param entryConsumer => Called with each entry's absolute path, in order
+     * @return => Title from #PLAYLIST, otherwise the file name without extension
+     * @throws IOException
+     */
+    public static String inputPlaylist(Path m3uPath, Consumer<String> entryConsumer) throws IOException {
+        final Path directory = m3uPath.toAbsolutePath().getParent();
+        String title = null;
+
+        try (BufferedReader reader = Files.newBufferedReader(m3uPath, StandardCharsets.UTF_8)) {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                line = line.strip();
+
+                // Byte order mark left by some players
+                if (line.startsWith("\uFEFF")) {
+                    line = line.substring(1);
+                }
+
+                if (line.startsWith(playlistDirective)) {
+                    title = line.substring(playlistDirective.length()).strip();
+
+                } else if (!line.isEmpty() && !line.startsWith("#")) {
+                    String trackPathStr = entryPath(directory, line);
+
+                    if (trackPathStr != null) {
+                        entryConsumer.accept(trackPathStr);
+                    }
+                }
+            }
+        }
+
+        if (title == null || title.isEmpty()) {
+            final String fileName = m3uPath.getFileName().toString();
+            title = fileName.lastIndexOf('.') > 0 ? fileName.substring(0, fileName.lastIndexOf('.')) : fileName;
+        }
+
+        return title;
+    }
+
+    // Absolute entries are kept as written so they match the library's paths, null for URLs
+    private static String entryPath(Path directory, String entry) {
+        try {
+            if (entry.startsWith("file:")) {
+                return Path.of(URI.create(entry)).toString();
+            }
+
+            if (entry.contains("://")) {
+                return null;
+            }
+
+            final Path entryPath = Path.of(entry);
+
+            if (entryPath.isAbsolute() || directory == null) {
+                return entry;
+            }
+
+            return directory.resolve(entryPath).normalize().toString();
+
+        } catch (IllegalArgumentException e) {
+            return entry;
+        }
+    }
+
+    // "HH:MM:SS" or "MM:SS" to seconds, -1 if unknown
+    private static int durationSeconds(String trackDurationStr) {
+        if (trackDurationStr == null || trackDurationStr.isBlank()) {
+            return -1;
+        }
+
+        int seconds = 0;
+
+        try {
+            for (String part : trackDurationStr.strip().split(":")) {
+                seconds = seconds * 60 + Integer.parseInt(part);
+            }
+
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+
+        return seconds;
+    }
+
+    // Playlist titles may hold characters file names cannot
+    public static String fileName(String title) {
+        return title.replaceAll("[\\\\/:*?\"<>|]", "_") + fileExtension;
+    }
+}
@@ -0,0 +1,454 @@
+/**
+ *      Author: Ian Wallace, copyright 2022 all rights reserved.
+ *      Application: MusicPlayer
+ *      Class: MappedLibraryFile.java
+ *      Notes: Read only, memory-mapped view of library.bin (see LibraryFileIO for the layout), the
+ *              "indexed" LibraryStore.
+ *
+ *              Mapping is constant time, the operating system pages the file in as records are read.
+ *              Only the header, offsets and counts are checked here. The CRC32 trailer would read the whole
+ *              file, it is checked by LibraryFileIO when library.bin.tmp is promoted and before an older
+ *              format or codec is rewritten.
+ *              Track records are fixed width so track i is found without reading the tracks before it,
+ *              dictionary Strings are decoded the first time their id is asked for and kept.
+ *
+ *              Artist, album, genre and playlist lookups binary search the field's index, path lookups
+ *              probe the path hash table, so neither reads the other tracks. Format version 2 and 3 files
+ *              have no indexes (version 2) or AudioProperties and track ids, they are only mapped to be
+ *              rewritten as version 4.
+ *
+ *              A compressed library.bin (see CompressedLibraryFile) is decompressed into the heap on start
+ *              up and read the same way.
+ *
+ *              Thread safe, only absolute reads are made on the mapped buffer.
+ */
+
+package com.iandw.musicplayerjavafx.FileIO;
+
+import com.iandw.musicplayerjavafx.AudioProperties;
+import com.iandw.musicplayerjavafx.TrackMetadata;
+import com.iandw.musicplayerjavafx.Utilities.TrackField;
+import com.iandw.musicplayerjavafx.Utilities.TrackFieldPredicate;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.IntStream;
+
+public class MappedLibraryFile implements LibraryStore {
+    private static final int folderField = 7;
+    private static final int pathNameField = 8;
+
+    private final ByteBuffer buffer;
+    private final int version;
+    private final int trackRecordBytes;
+    private final int trackCount;
+    private final int artistCount;
+    private final int playlistCount;
+    private final int dictionarySize;
+    private final int recordsOffset;
+    private final int[] indexKeysOffsets;
+    private final int[] indexKeyCounts;
+    private final int[] indexPostingsOffsets;
+    private final int[] indexPostingCounts;
+    private final int pathSlotsOffset;
+    private final int pathCapacity;
+    private final String[] decodedStrings;
+
+    private MappedLibraryFile(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+
+        if (buffer.capacity() < LibraryFileIO.headerBytes + Integer.BYTES || buffer.getInt(0) != LibraryFileIO.magic) {
+            throw new IOException("library.bin is not a library file");
+        }
+
+        version = buffer.getInt(4);
+
+        if (version < 2 || version > LibraryFileIO.formatVersion) {
+            throw new IOException(String.format("Unsupported library file version %d", version));
+        }
+
+        trackRecordBytes = (version < 4 ? LibraryFileIO.dictionaryRecordInts : LibraryFileIO.trackRecordInts) * Integer.BYTES;
+
+        trackCount = buffer.getInt(8);
+        artistCount = buffer.getInt(12);
+        playlistCount = buffer.getInt(16);
+        dictionarySize = buffer.getInt(20);
+
+        if (dictionarySize < 0 || LibraryFileIO.headerBytes + (dictionarySize + 1L) * Integer.BYTES > buffer.capacity()) {
+            throw new IOException("library.bin is truncated or corrupt");
+        }
+
+        recordsOffset = buffer.getInt(LibraryFileIO.headerBytes + dictionarySize * Integer.BYTES);
+
+        // Section sizes must add up to the file size before any offset is trusted
+        long offset = (long) recordsOffset + (long) trackCount * trackRecordBytes
+                + (long) (artistCount + playlistCount) * Integer.BYTES;
+
+        final int indexCount = version == 2 ? 0 : LibraryFileIO.indexedFields.length;
+        indexKeysOffsets = new int[indexCount];
+        indexKeyCounts = new int[indexCount];
+        indexPostingsOffsets = new int[indexCount];
+        indexPostingCounts = new int[indexCount];
+
+        for (int field = 0; field < indexCount; field++) {
+            checkBounds(offset + 2L * Integer.BYTES);
+            indexKeyCounts[field] = buffer.getInt((int) offset);
+            indexPostingCounts[field] = buffer.getInt((int) offset + Integer.BYTES);
+            indexKeysOffsets[field] = (int) offset + 2 * Integer.BYTES;
+
+            offset = indexKeysOffsets[field] + 2L * indexKeyCounts[field] * Integer.BYTES;
+            checkBounds(offset);
+            indexPostingsOffsets[field] = (int) offset;
+
+            offset += (long) indexPostingCounts[field] * Integer.BYTES;
+        }
+
+        if (version == 2) {
+            pathCapacity = 0;
+            pathSlotsOffset = 0;
+
+        } else {
+            checkBounds(offset + Integer.BYTES);
+            pathCapacity = buffer.getInt((int) offset);
+            pathSlotsOffset = (int) offset + Integer.BYTES;
+            offset = pathSlotsOffset + (long) pathCapacity * Integer.BYTES;
+
+            if (pathCapacity <= 0 || Integer.bitCount(pathCapacity) != 1) {
+                throw new IOException("library.bin is truncated or corrupt");
+            }
+        }
+
+        if (offset + Integer.BYTES != buffer.capacity()) {
+            throw new IOException("library.bin is truncated or corrupt");
+        }
+
+        decodedStrings = new String[dictionarySize + 1];
+    }
+
+    private void checkBounds(long offset) throws IOException {
+        if (offset < 0 || offset > buffer.capacity() - Integer.BYTES) {
+            throw new IOException("library.bin is truncated or corrupt");
+        }
+    }
+
+    /**
+     * map() - maps a library file, the mapping stays valid after the file is replaced. A compressed
+     *         library file is decompressed instead.
+     *
+     * @param libraryPath => library.bin
+     * @return => MappedLibraryFile
+     * @throws IOException => Not a library file or truncated
+     */
+    static MappedLibraryFile map(Path libraryPath) throws IOException {
+        if (CompressedLibraryFile.isCompressed(libraryPath)) {
+            return new MappedLibraryFile(CompressedLibraryFile.inflate(libraryPath));
+        }
+
+        try (FileChannel channel = FileChannel.open(libraryPath, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("library.bin is too large to map");
+            }
+
+            return new MappedLibraryFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          TRACKS
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    @Override
+    public int getTrackCount() { return trackCount; }
+
+    @Override
+    public int getChecksum() { return buffer.getInt(buffer.capacity() - Integer.BYTES); }
+
+    @Override
+    public TrackMetadata decodeTrack(int trackIndex) {
+        final int recordOffset = recordOffset(trackIndex);
+
+        TrackMetadata trackMetadata = new TrackMetadata(
+                getString(buffer.getInt(recordOffset + TrackField.ARTIST.getRecordField() * Integer.BYTES)),
+                getString(buffer.getInt(recordOffset + TrackField.FILE_NAME.getRecordField() * Integer.BYTES)),
+                getString(buffer.getInt(recordOffset + TrackField.CONTAINER_TYPE.getRecordField() * Integer.BYTES)),
+                getString(buffer.getInt(recordOffset + TrackField.TITLE.getRecordField() * Integer.BYTES)),
+                getString(buffer.getInt(recordOffset + TrackField.ALBUM.getRecordField() * Integer.BYTES)),
+                getString(buffer.getInt(recordOffset + TrackField.GENRE.getRecordField() * Integer.BYTES)),
+                getString(buffer.getInt(recordOffset + TrackField.DURATION.getRecordField() * Integer.BYTES)),
+                getTrackPathStr(trackIndex),
+                getString(buffer.getInt(recordOffset + TrackField.PLAYLIST.getRecordField() * Integer.BYTES))
+        );
+        trackMetadata.setTrackId(getTrackId(trackIndex));
+        trackMetadata.setAudioProperties(getAudioProperties(trackIndex));
+
+        return trackMetadata;
+    }
+
+    // Ids are only saved from format version 4, 0 before that
+    @Override
+    public int getTrackId(int trackIndex) {
+        return version < 4 ? 0 : buffer.getInt(recordOffset(trackIndex) + LibraryFileIO.trackIdField * Integer.BYTES);
+    }
+
+    @Override
+    public int getDurationMillis(int trackIndex) {
+        if (version < 4) {
+            return AudioProperties.parseDurationMillis(getString(getFieldId(trackIndex, TrackField.DURATION)));
+        }
+
+        return buffer.getInt(recordOffset(trackIndex) + (LibraryFileIO.trackIdField + 1) * Integer.BYTES);
+    }
+
+    // Only the duration, parsed from its String, before format version 4
+    private AudioProperties getAudioProperties(int trackIndex) {
+        if (version < 4) {
+            return AudioProperties.ofDuration(getString(getFieldId(trackIndex, TrackField.DURATION)));
+        }
+
+        ByteBuffer record = buffer.duplicate().position(recordOffset(trackIndex) + (LibraryFileIO.trackIdField + 1) * Integer.BYTES);
+        final AudioProperties audioProperties = new AudioProperties(record.getInt(), record.getInt(), record.getInt(),
+                record.getLong(), record.getInt(), record.getInt(), record.getInt());
+
+        return audioProperties.equals(AudioProperties.UNKNOWN) ? AudioProperties.UNKNOWN : audioProperties;
+    }
+
+    // Dictionary id of one field of a track, 0 for null, compared without decoding the String
+    public int getFieldId(int trackIndex, TrackField trackField) {
+        return buffer.getInt(recordOffset(trackIndex) + trackField.getRecordField() * Integer.BYTES);
+    }
+
+    // Folder plus file name, the only field that is not a single dictionary String
+    @Override
+    public String getTrackPathStr(int trackIndex) {
+        final int recordOffset = recordOffset(trackIndex);
+        final String trackFolderStr = getString(buffer.getInt(recordOffset + folderField * Integer.BYTES));
+        final String trackPathName = readString(buffer.getInt(recordOffset + pathNameField * Integer.BYTES));
+
+        return trackFolderStr == null ? trackPathName : trackFolderStr + trackPathName;
+    }
+
+    private int recordOffset(int trackIndex) {
+        if (trackIndex < 0 || trackIndex >= trackCount) {
+            throw new IndexOutOfBoundsException(trackIndex);
+        }
+
+        return recordsOffset + trackIndex * trackRecordBytes;
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          LOOKUPS
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    @Override
+    public int findTrack(String trackPathStr) {
+        if (pathCapacity == 0) {
+            return IntStream.range(0, trackCount)
+                    .filter(i -> Objects.equals(getTrackPathStr(i), trackPathStr))
+                    .findFirst().orElse(-1);
+        }
+
+        int slot = LibraryFileIO.pathSlot(trackPathStr, pathCapacity);
+        int trackSlot;
+
+        while ((trackSlot = buffer.getInt(pathSlotsOffset + slot * Integer.BYTES)) != 0) {
+            if (Objects.equals(getTrackPathStr(trackSlot - 1), trackPathStr)) {
+                return trackSlot - 1;
+            }
+
+            slot = (slot + 1) & (pathCapacity - 1);
+        }
+
+        return -1;
+    }
+
+    // Each folder String is compared once, not each track's path
+    @Override
+    public int[] findTracksUnder(String pathStr) {
+        final String directoryPrefix = pathStr + File.separator;
+        final int fileIndex = findTrack(pathStr);
+        final byte[] folderUnder = new byte[dictionarySize + 1];
+
+        return IntStream.range(0, trackCount)
+                .filter(i -> {
+                    final int folderId = buffer.getInt(recordOffset(i) + folderField * Integer.BYTES);
+
+                    if (folderUnder[folderId] == 0) {
+                        final String trackFolderStr = getString(folderId);
+                        folderUnder[folderId] = (byte) (trackFolderStr != null && trackFolderStr.startsWith(directoryPrefix) ? 1 : -1);
+                    }
+
+                    return i == fileIndex || folderUnder[folderId] > 0;
+                })
+                .toArray();
+    }
+
+    @Override
+    public int[] findTracks(TrackField trackField, String value) {
+        final int field = indexedField(trackField);
+
+        // Fields without an index compare dictionary ids, value is decoded once
+        if (field < 0) {
+            return IntStream.range(0, trackCount)
+                    .filter(i -> Objects.equals(readString(getFieldId(i, trackField)), value))
+                    .toArray();
+        }
+
+        if (value == null) {
+            return new int[0];
+        }
+
+        // Binary search of the keys, sorted by String
+        int low = 0;
+        int high = indexKeyCounts[field] - 1;
+
+        while (low <= high) {
+            final int key = (low + high) >>> 1;
+            final int keyOffset = indexKeysOffsets[field] + key * 2 * Integer.BYTES;
+            final int comparison = getString(buffer.getInt(keyOffset)).compareTo(value);
+
+            if (comparison < 0) {
+                low = key + 1;
+
+            } else if (comparison > 0) {
+                high = key - 1;
+
+            } else {
+                final int firstPosting = buffer.getInt(keyOffset + Integer.BYTES);
+                final int endPosting = key + 1 < indexKeyCounts[field]
+                        ? buffer.getInt(keyOffset + 3 * Integer.BYTES) : indexPostingCounts[field];
+
+                int[] trackIndexes = new int[endPosting - firstPosting];
+                for (int posting = 0; posting < trackIndexes.length; posting++) {
+                    trackIndexes[posting] = buffer.getInt(indexPostingsOffsets[field] + (firstPosting + posting) * Integer.BYTES);
+                }
+
+                return trackIndexes;
+            }
+        }
+
+        return new int[0];
+    }
+
+    @Override
+    public int[] selectTracks(TrackFieldPredicate trackFieldPredicate) {
+        if (trackFieldPredicate.matchesAll()) {
+            return IntStream.range(0, trackCount).toArray();
+        }
+
+        if (trackFieldPredicate.getExactValue() != null) {
+            return findTracks(trackFieldPredicate.getTrackFields()[0], trackFieldPredicate.getExactValue());
+        }
+
+        // Each distinct field value is tested once
+        Map<Integer, Boolean> matchingIds = new HashMap<>();
+
+        return IntStream.range(0, trackCount).filter(i -> {
+            for (TrackField trackField : trackFieldPredicate.getTrackFields()) {
+                final int id = getFieldId(i, trackField);
+
+                if (id != 0 && matchingIds.computeIfAbsent(id, key -> trackFieldPredicate.testValue(readString(key)))) {
+                    return true;
+                }
+            }
+
+            return false;
+        }).toArray();
+    }
+
+    // Position of trackField in indexedFields, -1 if the field is not indexed or the file has no indexes
+    private int indexedField(TrackField trackField) {
+        for (int field = 0; field < indexKeyCounts.length; field++) {
+            if (LibraryFileIO.indexedFields[field] == trackField) {
+                return field;
+            }
+        }
+
+        return -1;
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          DICTIONARY / LISTS
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    /**
+     * getString() - dictionary String of id, decoded once
+     *
+     * @param id => Dictionary id from a track record
+     * @return => String, null for id 0
+     */
+    public String getString(int id) {
+        if (id == 0) {
+            return null;
+        }
+
+        String decodedString = decodedStrings[id];
+
+        // Benign race, two threads decode an equal String
+        if (decodedString == null) {
+            decodedString = readString(id);
+            decodedStrings[id] = decodedString;
+        }
+
+        return decodedString;
+    }
+
+    /**
+     * readString() - dictionary String of id without keeping it, for queries which test every track
+     *
+     * @param id => Dictionary id from a track record
+     * @return => String, null for id 0
+     */
+    public String readString(int id) {
+        if (id == 0) {
+            return null;
+        }
+
+        if (decodedStrings[id] != null) {
+            return decodedStrings[id];
+        }
+
+        final int offsetsPosition = LibraryFileIO.headerBytes + (id - 1) * Integer.BYTES;
+        final int start = buffer.getInt(offsetsPosition);
+        final int end = buffer.getInt(offsetsPosition + Integer.BYTES);
+
+        byte[] stringBytes = new byte[end - start];
+        buffer.get(start, stringBytes);
+
+        return new String(stringBytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public List<String> getArtistNames() { return readNames(recordsOffset + trackCount * trackRecordBytes, artistCount); }
+
+    @Override
+    public List<String> getPlaylistNames() {
+        return readNames(recordsOffset + trackCount * trackRecordBytes + artistCount * Integer.BYTES, playlistCount);
+    }
+
+    private List<String> readNames(int offset, int count) {
+        List<String> names = new ArrayList<>(count);
+        ByteBuffer ids = buffer.duplicate().position(offset);
+
+        for (int i = 0; i < count; i++) {
+            names.add(getString(ids.getInt()));
+        }
+
+        return names;
+    }
+}
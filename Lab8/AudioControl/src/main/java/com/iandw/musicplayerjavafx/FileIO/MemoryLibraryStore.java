@@ -0,0 +1,108 @@
+/**
+ *      Author: Ian Wallace, copyright 2022 all rights reserved.
+ *      Application: MusicPlayer
+ *      Class: MemoryLibraryStore.java
+ *      Notes: LibraryStore holding every track of library.bin in the heap, decoded once on start up.
+ *              Lookups are linear scans, fine for small libraries and used when libraryStore is
+ *              "memory" in settings.json.
+ */
+
+package com.iandw.musicplayerjavafx.FileIO;
+
+import com.iandw.musicplayerjavafx.TrackMetadata;
+import com.iandw.musicplayerjavafx.Utilities.TrackField;
+import com.iandw.musicplayerjavafx.Utilities.TrackFieldPredicate;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.IntStream;
+
+public class MemoryLibraryStore implements LibraryStore {
+    private final List<TrackMetadata> tracks;
+    private final List<String> artistNames;
+    private final List<String> playlistNames;
+    private final int checksum;
+
+    MemoryLibraryStore(List<TrackMetadata> tracks, List<String> artistNames, List<String> playlistNames, int checksum) {
+        this.tracks = tracks;
+        this.artistNames = artistNames;
+        this.playlistNames = playlistNames;
+        this.checksum = checksum;
+    }
+
+    // Decodes every track of a library file, the file is not used afterwards
+    static MemoryLibraryStore decode(MappedLibraryFile libraryFile) {
+        List<TrackMetadata> tracks = new ArrayList<>(libraryFile.getTrackCount());
+
+        for (int i = 0; i < libraryFile.getTrackCount(); i++) {
+            tracks.add(libraryFile.decodeTrack(i));
+        }
+
+        return new MemoryLibraryStore(tracks, libraryFile.getArtistNames(), libraryFile.getPlaylistNames(),
+                libraryFile.getChecksum());
+    }
+
+    @Override
+    public int getTrackCount() { return tracks.size(); }
+
+    // Already decoded, the same TrackMetadata is returned each time
+    @Override
+    public TrackMetadata decodeTrack(int trackIndex) { return tracks.get(trackIndex); }
+
+    @Override
+    public String getTrackPathStr(int trackIndex) { return tracks.get(trackIndex).getTrackPathStr(); }
+
+    @Override
+    public int getTrackId(int trackIndex) { return tracks.get(trackIndex).getTrackId(); }
+
+    @Override
+    public int getDurationMillis(int trackIndex) { return tracks.get(trackIndex).getDurationMillis(); }
+
+    @Override
+    public int findTrack(String trackPathStr) {
+        for (int i = 0; i < tracks.size(); i++) {
+            if (Objects.equals(tracks.get(i).getTrackPathStr(), trackPathStr)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    @Override
+    public int[] findTracksUnder(String pathStr) {
+        final String directoryPrefix = pathStr + File.separator;
+
+        return IntStream.range(0, tracks.size())
+                .filter(i -> {
+                    final String trackPathStr = tracks.get(i).getTrackPathStr();
+                    return trackPathStr != null && (trackPathStr.equals(pathStr) || trackPathStr.startsWith(directoryPrefix));
+                })
+                .toArray();
+    }
+
+    @Override
+    public int[] findTracks(TrackField trackField, String value) {
+        return IntStream.range(0, tracks.size())
+                .filter(i -> Objects.equals(trackField.get(tracks.get(i)), value))
+                .toArray();
+    }
+
+    @Override
+    public int[] selectTracks(TrackFieldPredicate trackFieldPredicate) {
+        return IntStream.range(0, tracks.size())
+                .filter(i -> trackFieldPredicate.test(tracks.get(i)))
+                .toArray();
+    }
+
+    @Override
+    public List<String> getArtistNames() { return new ArrayList<>(artistNames); }
+
+    @Override
+    public List<String> getPlaylistNames() { return new ArrayList<>(playlistNames); }
+
+    @Override
+    public int getChecksum() { return checksum; }
+}
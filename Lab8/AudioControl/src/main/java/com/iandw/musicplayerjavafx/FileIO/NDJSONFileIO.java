@@ -0,0 +1,226 @@
+/**
+ *      Author: Ian Wallace, copyright 2022 all rights reserved.
+ *      Application: MusicPlayer
+ *      Class: NDJSONFileIO.java
+ *      Notes: Exports and imports the Music Library as newline delimited JSON, one track per line, to move
+ *              a library to another machine or hand it to other tooling.
+ *
+ *              {"artist":..,"title":..,"album":..,"genre":..,"duration":..,"container":..,"fileName":..,"path":..,
+ *               "durationMs":..,"bitrate":..,"sampleRate":..,"fileSize":..,"trackNumber":..,"discNumber":..,"year":..}
+ *
+ *              The AudioProperties are JSON numbers, 0 if unknown. Track ids are not exported, they are
+ *              only unique within one library. Files without durationMs get it from the duration String.
+ *
+ *              Both directions go one record at a time, only the current line (and a batch of
+ *              batchSize parsed tracks on import) is held, so the size of the file does not matter.
+ *              Lines that are not a JSON object or have no path are skipped and counted.
+ */
+
+package com.iandw.musicplayerjavafx.FileIO;
+
+import com.iandw.musicplayerjavafx.AudioProperties;
+import com.iandw.musicplayerjavafx.TrackMetadata;
+import com.iandw.musicplayerjavafx.Utilities.TrackPathTable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+public class NDJSONFileIO {
+    private static final int batchSize = 1000;
+
+    /**
+     * outputTracks() - writes one line per track
+     *
+     * @param ndjsonPath => File chosen by the user, replaced if it exists
+     * @param tracks => Tracks in library order, see TableViewLibrary.exportTracks()
+     * @return => Tracks written
+     * @throws IOException
+     */
+    public static int outputTracks(Path ndjsonPath, Iterable<TrackMetadata> tracks) throws IOException {
+        int trackCount = 0;
+
+        try (Writer writer = Files.newBufferedWriter(ndjsonPath, StandardCharsets.UTF_8)) {
+            StringBuilder line = new StringBuilder(256);
+
+            for (TrackMetadata trackMetadata : tracks) {
+                line.setLength(0);
+                line.append('{');
+                appendField(line, "artist", trackMetadata.getArtistNameStr()).append(',');
+                appendField(line, "title", trackMetadata.getTrackTitleStr()).append(',');
+                appendField(line, "album", trackMetadata.getAlbumTitleStr()).append(',');
+                appendField(line, "genre", trackMetadata.getTrackGenreStr()).append(',');
+                appendField(line, "duration", trackMetadata.getTrackDurationStr()).append(',');
+                appendField(line, "container", trackMetadata.getTrackContainerTypeStr()).append(',');
+                appendField(line, "fileName", trackMetadata.getTrackFileNameStr()).append(',');
+                appendField(line, "path", trackMetadata.getTrackPathStr()).append(',');
+
+                final AudioProperties audioProperties = trackMetadata.getAudioProperties();
+                line.append("\"durationMs\":").append(audioProperties.durationMillis())
+                        .append(",\"bitrate\":").append(audioProperties.bitrate())
+                        .append(",\"sampleRate\":").append(audioProperties.sampleRate())
+                        .append(",\"fileSize\":").append(audioProperties.fileSize())
+                        .append(",\"trackNumber\":").append(audioProperties.trackNumber())
+                        .append(",\"discNumber\":").append(audioProperties.discNumber())
+                        .append(",\"year\":").append(audioProperties.year());
+                line.append("}\n");
+
+                writer.append(line);
+                trackCount++;
+            }
+        }
+
+        System.out.printf("Exported %d tracks to %s%n", trackCount, ndjsonPath);
+
+        return trackCount;
+    }
+
+    // Keys are written in a fixed order so exports of the same library compare equal
+    private static StringBuilder appendField(StringBuilder line, String key, String value) {
+        line.append('"').append(key).append("\":");
+
+        if (value == null) {
+            return line.append("null");
+        }
+
+        line.append('"');
+        appendEscaped(line, value);
+        return line.append('"');
+    }
+
+    // Same escapes as JSONValue.escape(), appended in place since it is called for every field
+    private static void appendEscaped(StringBuilder line, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+
+            switch (c) {
+                case '"' -> line.append("\\\"");
+                case '\\' -> line.append("\\\\");
+                case '\b' -> line.append("\\b");
+                case '\f' -> line.append("\\f");
+                case '\n' -> line.append("\\n");
+                case '\r' -> line.append("\\r");
+                case '\t' -> line.append("\\t");
+                default -> {
+                    if (c < 0x20 || (c >= 0x7F && c <= 0x9F) || (c >= 0x2000 && c <= 0x20FF)) {
+                        line.append(String.format("\\u%04X", (int) c));
+                    } else {
+                        line.append(c);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * inputTracks() - reads the file line by line and hands the tracks on in batches
+     *
+     * @param ndjsonPath => File chosen by the user
+     * @param batchConsumer => Called on this thread with up to batchSize tracks at a time
+     * @return => Tracks read
+     * @throws IOException
+     */
+    public static int inputTracks(Path ndjsonPath, Consumer<List<TrackMetadata>> batchConsumer) throws IOException {
+        JSONParser jsonParser = new JSONParser();
+        List<TrackMetadata> batch = new ArrayList<>(batchSize);
+        int trackCount = 0;
+        int skippedCount = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(ndjsonPath, StandardCharsets.UTF_8)) {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+
+                TrackMetadata trackMetadata = parseTrack(jsonParser, line);
+
+                if (trackMetadata == null) {
+                    skippedCount++;
+                    continue;
+                }
+
+                batch.add(trackMetadata);
+                trackCount++;
+
+                if (batch.size() == batchSize) {
+                    batchConsumer.accept(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            batchConsumer.accept(batch);
+        }
+
+        if (skippedCount > 0) {
+            System.out.printf("Skipped %d invalid lines of %s%n", skippedCount, ndjsonPath);
+        }
+
+        return trackCount;
+    }
+
+    // Missing file name and container type are taken from the path
+    private static TrackMetadata parseTrack(JSONParser jsonParser, String line) {
+        final Object object;
+
+        try {
+            object = jsonParser.parse(line);
+
+        } catch (ParseException e) {
+            return null;
+        }
+
+        if (!(object instanceof JSONObject track) || !(track.get("path") instanceof String trackPathStr)) {
+            return null;
+        }
+
+        String trackFileNameStr = stringValue(track, "fileName");
+        if (trackFileNameStr == null) {
+            trackFileNameStr = trackPathStr.substring(TrackPathTable.nameIndex(trackPathStr));
+        }
+
+        String trackContainerTypeStr = stringValue(track, "container");
+        if (trackContainerTypeStr == null && trackFileNameStr.lastIndexOf('.') >= 0) {
+            trackContainerTypeStr = trackFileNameStr.substring(trackFileNameStr.lastIndexOf('.'));
+        }
+
+        TrackMetadata trackMetadata = new TrackMetadata(stringValue(track, "artist"), trackFileNameStr,
+                trackContainerTypeStr, stringValue(track, "title"), stringValue(track, "album"),
+                stringValue(track, "genre"), stringValue(track, "duration"), trackPathStr, null);
+
+        if (track.get("durationMs") instanceof Number) {
+            trackMetadata.setAudioProperties(new AudioProperties((int) longValue(track, "durationMs"),
+                    (int) longValue(track, "bitrate"), (int) longValue(track, "sampleRate"), longValue(track, "fileSize"),
+                    (int) longValue(track, "trackNumber"), (int) longValue(track, "discNumber"),
+                    (int) longValue(track, "year")));
+
+        } else {
+            trackMetadata.setAudioProperties(AudioProperties.ofDuration(trackMetadata.getTrackDurationStr()));
+        }
+
+        return trackMetadata;
+    }
+
+    private static String stringValue(JSONObject track, String key) {
+        Object value = track.get(key);
+        return value == null ? null : value.toString();
+    }
+
+    // 0 if the key is missing or not a number
+    private static long longValue(JSONObject track, String key) {
+        return track.get(key) instanceof Number number ? Math.max(0, number.longValue()) : 0;
+    }
+}
@@ -2,9 +2,24 @@
  *      Author: Ian Wallace copyright 2022 all rights reserved.
  *      Application: MusicPlayer
  *      Class: PlaylistFileIO.java
- *      Notes: Handles all file input/output from playlists.ser located in resources.
- *             Observable Lists do not serialize so all String objects are transferred to and
- *             from an ArrayList for serialization.
+ *      Notes: Handles all file input/output from playlists.bin and playlists.ser located in resources.
+ *
+ *             playlists.bin holds the entries of every playlist (see PlaylistLibrary), written apart
+ *             from the track list in library.bin. Layout (big-endian):
+ *                  - Header - magic "MPPL", format version
+ *                  - Track paths - count, then each path as UTF, a track id is its position here
+ *                  - Playlists - count, then each title as UTF, entry count and the track ids in order
+ *                  - CRC32 of everything above
+ *             The file is written to playlists.bin.tmp first and moved over playlists.bin. An empty
+ *             playlists.bin means the playlists have not been saved yet.
+ *
+ *             A playlists.bin that can't be read is copied to playlists.bin.bad (or .bad2, .bad3...), which
+ *             is never written over, and emptied. The App then starts with empty playlists. The entries are not
+ *             migrated from the tracks again while a .bad file is kept, they would be stale.
+ *
+ *             playlists.ser held the playlist titles, superseded by library.bin and only read by
+ *             LibraryFileIO's one time migration. Observable Lists do not serialize so all String
+ *             objects are transferred to and from an ArrayList for serialization.
  */
 
 package com.iandw.musicplayerjavafx.FileIO;
@@ -14,11 +29,196 @@ import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
 
 public class PlaylistFileIO implements Serializable {
+    private static final int magic = 0x4D50504C; // "MPPL"
+    private static final int formatVersion = 1;
+
+    // Playlist entries as track ids into trackPaths, in playlist order
+    public record PlaylistData(List<String> trackPaths, Map<String, int[]> playlistEntries) {}
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          PLAYLISTS.BIN
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    /**
+     * inputPlaylists() - reads playlists.bin, a damaged file is moved aside
+     *
+     * @return => Track paths and playlist entries, empty if playlists.bin is or was damaged, null if
+     *            playlists.bin has never been written
+     */
+    public static synchronized PlaylistData inputPlaylists() {
+        final Path playlistsPath = Path.of(ResourceURLs.getPlaylistEntriesURL());
+
+        try {
+            if (!Files.exists(playlistsPath) || Files.size(playlistsPath) == 0) {
+                return Files.exists(damagedPlaylistsPath(playlistsPath, 1)) ? emptyPlaylistData() : null;
+            }
+
+            return readPlaylists(playlistsPath);
+
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            System.out.println(e.getMessage());
+            setAsideDamagedPlaylists(playlistsPath);
+
+            return emptyPlaylistData();
+        }
+    }
+
+    private static PlaylistData readPlaylists(Path playlistsPath) throws IOException {
+        System.out.println("Reading from playlists.bin");
+        CRC32 crc32 = new CRC32();
+
+        try (DataInputStream in = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(playlistsPath)), crc32))) {
+            if (in.readInt() != magic || in.readInt() != formatVersion) {
+                throw new IOException("playlists.bin is not a playlist file");
+            }
+
+            final int trackCount = in.readInt();
+            List<String> trackPaths = new ArrayList<>(trackCount);
+
+            for (int i = 0; i < trackCount; i++) {
+                trackPaths.add(in.readUTF());
+            }
+
+            final int playlistCount = in.readInt();
+            Map<String, int[]> playlistEntries = new LinkedHashMap<>();
+
+            for (int i = 0; i < playlistCount; i++) {
+                final String title = in.readUTF();
+                int[] entries = new int[in.readInt()];
+
+                for (int j = 0; j < entries.length; j++) {
+                    entries[j] = in.readInt();
+
+                    if (entries[j] < 0 || entries[j] >= trackCount) {
+                        throw new IOException("playlists.bin track id out of range");
+                    }
+                }
+
+                playlistEntries.put(title, entries);
+            }
+
+            final int checksum = (int) crc32.getValue();
+
+            if (in.readInt() != checksum) {
+                throw new IOException("playlists.bin checksum mismatch");
+            }
+
+            return new PlaylistData(trackPaths, playlistEntries);
+        }
+    }
+
+    // Kept for the user to recover, playlists.bin is written fresh by the next save
+    private static void setAsideDamagedPlaylists(Path playlistsPath) {
+        try {
+            int attempt = 1;
+
+            while (Files.exists(damagedPlaylistsPath(playlistsPath, attempt))) {
+                attempt++;
+            }
+
+            // playlists.bin itself must stay, ResourceURLs looks it up
+            Files.copy(playlistsPath, damagedPlaylistsPath(playlistsPath, attempt));
+            Files.write(playlistsPath, new byte[0]);
+            System.out.printf("playlists.bin could not be read, kept as %s%n",
+                    damagedPlaylistsPath(playlistsPath, attempt).getFileName());
+
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.out.println(e.getMessage());
+        }
+    }
+
+    // playlists.bin.bad, playlists.bin.bad2...
+    private static Path damagedPlaylistsPath(Path playlistsPath, int attempt) {
+        return playlistsPath.resolveSibling(playlistsPath.getFileName() + ".bad" + (attempt > 1 ? attempt : ""));
+    }
+
+    private static PlaylistData emptyPlaylistData() {
+        return new PlaylistData(new ArrayList<>(), new LinkedHashMap<>());
+    }
+
+    /**
+     * outputPlaylists() - writes playlists.bin.tmp and moves it over playlists.bin
+     *
+     * @param playlistData => Snapshot from PlaylistLibrary
+     */
+    public static synchronized void outputPlaylists(PlaylistData playlistData) {
+        final Path playlistsPath = Path.of(ResourceURLs.getPlaylistEntriesURL());
+        final Path pendingPath = playlistsPath.resolveSibling(playlistsPath.getFileName() + ".tmp");
+
+        try {
+            System.out.println("Writing to playlists.bin");
+            CRC32 crc32 = new CRC32();
+
+            try (FileChannel channel = FileChannel.open(pendingPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                 DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                         new BufferedOutputStream(Channels.newOutputStream(channel)), crc32))) {
+                out.writeInt(magic);
+                out.writeInt(formatVersion);
+                out.writeInt(playlistData.trackPaths().size());
+
+                for (String trackPathStr : playlistData.trackPaths()) {
+                    out.writeUTF(trackPathStr);
+                }
+
+                out.writeInt(playlistData.playlistEntries().size());
+
+                for (Map.Entry<String, int[]> playlist : playlistData.playlistEntries().entrySet()) {
+                    out.writeUTF(playlist.getKey());
+                    out.writeInt(playlist.getValue().length);
+
+                    for (int trackId : playlist.getValue()) {
+                        out.writeInt(trackId);
+                    }
+                }
+
+                out.writeInt((int) crc32.getValue());
+
+                // On disk before it can replace playlists.bin
+                out.flush();
+                channel.force(true);
+            }
+
+            try {
+                Files.move(pendingPath, playlistsPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(pendingPath, playlistsPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          PLAYLISTS.SER
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
     /**
      * inputPlaylistObservableList() - read Artist names from artistlist.ser
      * @return => ObservableList for playlistObservableList (ListViewLibrary) to handle.
@@ -0,0 +1,238 @@
+/**
+ *      Author: Ian Wallace, copyright 2022 all rights reserved.
+ *      Application: MusicPlayer
+ *      Class: ScanCheckpointFileIO.java
+ *      Notes: Handles all file input/output from scancheckpoint.ser located in resources.
+ *
+ *              scancheckpoint.ser layout (big-endian):
+ *                  - Header - magic "MPSC", format version
+ *                  - Records - payload length, payload (serialized ScanCheckpoint), CRC32 of payload
+ *              A running scan appends one record per checkpoint with only what it has done since the last
+ *              one, a torn or corrupt record ends the log and the records before it are kept. A cancelled
+ *              scan compacts the log into one record written to a temporary file first and moved over
+ *              scancheckpoint.ser, so a crash while compacting leaves the log intact.
+ *
+ *              Files written before the log format hold a single serialized ScanCheckpoint, still read.
+ */
+
+package com.iandw.musicplayerjavafx.FileIO;
+
+import com.iandw.musicplayerjavafx.ResourceURLs;
+import com.iandw.musicplayerjavafx.ScanCheckpoint;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+public class ScanCheckpointFileIO {
+    private static final int magic = 0x4D505343; // "MPSC"
+    private static final int formatVersion = 1;
+    private static final int headerBytes = 8;
+
+    // True if the last Standard or Recursive Initialization did not finish
+    public static boolean hasCheckpoint() {
+        try {
+            return Files.size(Path.of(ResourceURLs.getScanCheckpointURL())) > 0;
+
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.out.println(e.getMessage());
+        }
+
+        return false;
+    }
+
+    /**
+     * inputCheckpoint() - read the checkpoint of an unfinished scan from scancheckpoint.ser
+     * @return => ScanCheckpoint or null if the last scan finished
+     */
+    public static ScanCheckpoint inputCheckpoint() {
+        Path checkpointPath = Path.of(ResourceURLs.getScanCheckpointURL());
+
+        try {
+            if (Files.size(checkpointPath) == 0) {
+                return null;
+            }
+
+            // Read from file
+            System.out.println("Reading from scancheckpoint.ser");
+            ScanCheckpoint scanCheckpoint = null;
+
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(checkpointPath)))) {
+                if (in.readInt() != magic) {
+                    return inputSerializedCheckpoint(checkpointPath);
+                }
+
+                if (in.readInt() != formatVersion) {
+                    System.out.println("Unknown scancheckpoint.ser version, ignoring checkpoint");
+                    return null;
+                }
+
+                for (ScanCheckpoint record = readRecord(in); record != null; record = readRecord(in)) {
+                    if (scanCheckpoint == null) {
+                        scanCheckpoint = record;
+                    } else {
+                        scanCheckpoint.append(record);
+                    }
+                }
+            }
+
+            return scanCheckpoint;
+
+        } catch (IOException | ClassNotFoundException e) {
+            e.printStackTrace();
+            System.out.println(e.getMessage());
+        }
+
+        return null;
+    }
+
+    /**
+     * appendCheckpoint() - append one record to the scancheckpoint.ser log
+     *
+     * @param scanCheckpoint => Tracks and directories completed since the last record
+     * @param newLog => true for the first record of a scan, the previous log is replaced
+     */
+    public static void appendCheckpoint(ScanCheckpoint scanCheckpoint, boolean newLog) {
+        Path checkpointPath = Path.of(ResourceURLs.getScanCheckpointURL());
+
+        try (FileChannel channel = newLog
+                ? FileChannel.open(checkpointPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)
+                : FileChannel.open(checkpointPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.APPEND))
+        {
+            if (newLog) {
+                writeFully(channel, ByteBuffer.allocate(headerBytes).putInt(magic).putInt(formatVersion).flip());
+            }
+
+            writeFully(channel, encodeRecord(scanCheckpoint));
+            channel.force(false);
+
+            System.out.printf("Scan checkpoint: +%d tracks, +%d completed directories%n",
+                    scanCheckpoint.getTrackCount(), scanCheckpoint.getCompletedDirectories().size());
+
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * outputCheckpoint() - replace scancheckpoint.ser with a log of the single record scanCheckpoint
+     * @param scanCheckpoint => Progress of the whole scan
+     */
+    public static void outputCheckpoint(ScanCheckpoint scanCheckpoint) {
+        Path checkpointPath = Path.of(ResourceURLs.getScanCheckpointURL());
+        Path tempPath = checkpointPath.resolveSibling(checkpointPath.getFileName() + ".tmp");
+
+        try {
+            // Write the compacted log to temporary file
+            try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+            {
+                writeFully(channel, ByteBuffer.allocate(headerBytes).putInt(magic).putInt(formatVersion).flip());
+                writeFully(channel, encodeRecord(scanCheckpoint));
+                channel.force(false);
+            }
+
+            try {
+                Files.move(tempPath, checkpointPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempPath, checkpointPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            System.out.printf("Scan checkpoint: %d tracks, %d completed directories%n",
+                    scanCheckpoint.getTrackCount(), scanCheckpoint.getCompletedDirectories().size());
+
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * clearCheckpoint() - called once a scan finishes or a new one is started
+     * @throws FileNotFoundException
+     */
+    public static void clearCheckpoint() throws FileNotFoundException {
+        PrintWriter clearCheckpoint = new PrintWriter(ResourceURLs.getScanCheckpointURL());
+        clearCheckpoint.close();
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          RECORDS
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    private static ByteBuffer encodeRecord(ScanCheckpoint scanCheckpoint) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+
+        try (ObjectOutputStream oos = new ObjectOutputStream(payload)) {
+            oos.writeObject(scanCheckpoint);
+        }
+
+        byte[] payloadBytes = payload.toByteArray();
+        CRC32 crc32 = new CRC32();
+        crc32.update(payloadBytes);
+
+        return ByteBuffer.allocate(payloadBytes.length + 8)
+                .putInt(payloadBytes.length)
+                .put(payloadBytes)
+                .putInt((int) crc32.getValue())
+                .flip();
+    }
+
+    // null at the end of the log or at a torn or corrupt record
+    private static ScanCheckpoint readRecord(DataInputStream in) throws IOException, ClassNotFoundException {
+        try {
+            final int payloadLength = in.readInt();
+
+            if (payloadLength <= 0) {
+                return null;
+            }
+
+            byte[] payloadBytes = in.readNBytes(payloadLength);
+
+            if (payloadBytes.length < payloadLength) {
+                return null;
+            }
+
+            CRC32 crc32 = new CRC32();
+            crc32.update(payloadBytes);
+
+            if (in.readInt() != (int) crc32.getValue()) {
+                System.out.println("Corrupt scancheckpoint.ser record, ignoring the rest of the checkpoint");
+                return null;
+            }
+
+            try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(payloadBytes))) {
+                return (ScanCheckpoint) ois.readObject();
+            }
+
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    // scancheckpoint.ser written before the log format
+    private static ScanCheckpoint inputSerializedCheckpoint(Path checkpointPath) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(checkpointPath)))) {
+            return (ScanCheckpoint) ois.readObject();
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -12,10 +12,17 @@ import com.iandw.musicplayerjavafx.ResourceURLs;
 import com.iandw.musicplayerjavafx.Utilities.UserSettings;
 
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
@@ -31,6 +38,10 @@ public class SettingsFileIO {
      *              1. Root File Directory for user's music library
      *              2. Application Theme selection
      *              3. Music Library initialization type (Standard or Recursive)
+     *              4. Music Library scan parallelism (worker thread count)
+     *              5. Music Library scan include/exclude rules
+     *              6. Symbolic link policy of Recursive Initialization
+     *              7. Music Library store and console log level
      */
     public static JSONArray jsonFileInput() {
 
@@ -55,14 +66,42 @@ public class SettingsFileIO {
      * @param userSettings => UserSettings object encapsulating all user settings
      */
     public static void jsonFileOutput(UserSettings userSettings) {
+        jsonFileOutput(toJSONString(userSettings));
+    }
+
+    /**
+     * toJSONString() - copy of userSettings as written to settings.json, taken on the JavaFX Application
+     *                  Thread so AutosaveService can write it on its own thread
+     * @param userSettings => UserSettings object encapsulating all user settings
+     * @return => settings.json contents
+     */
+    public static String toJSONString(UserSettings userSettings) {
         final String rootMusicDirectoryString = userSettings.getRootMusicDirectoryString();
         final String themeFileNameString = userSettings.getThemeFileNameString();
         final String initializationString = userSettings.getInitalizationString();
+        final int scanParallelism = userSettings.getScanParallelism();
 
         JSONObject userSettingsDetails = new JSONObject();
         userSettingsDetails.put("musicLibrary", rootMusicDirectoryString);
         userSettingsDetails.put("themeFileName", themeFileNameString);
         userSettingsDetails.put("initialization", initializationString);
+        userSettingsDetails.put("scanParallelism", scanParallelism);
+
+        JSONArray scanIncludeArray = new JSONArray();
+        scanIncludeArray.addAll(userSettings.getScanIncludeGlobs());
+        JSONArray scanExcludeArray = new JSONArray();
+        scanExcludeArray.addAll(userSettings.getScanExcludeGlobs());
+
+        userSettingsDetails.put("scanInclude", scanIncludeArray);
+        userSettingsDetails.put("scanExclude", scanExcludeArray);
+        userSettingsDetails.put("scanSkipHidden", userSettings.getScanSkipHidden());
+        userSettingsDetails.put("scanMaxDepth", userSettings.getScanMaxDepth());
+        userSettingsDetails.put("scanMinFileSize", userSettings.getScanMinFileSize());
+        userSettingsDetails.put("scanFollowSymlinks", userSettings.getScanFollowSymlinks());
+        userSettingsDetails.put("libraryStore", userSettings.getLibraryStoreString());
+        userSettingsDetails.put("logLevel", userSettings.getLogLevelString());
+        userSettingsDetails.put("libraryCodec", userSettings.getLibraryCodecString());
+        userSettingsDetails.put("searchMode", userSettings.getSearchModeString());
 
         JSONObject userSettingsObject = new JSONObject();
         userSettingsObject.put("userSettings", userSettingsDetails);
@@ -70,10 +109,37 @@ public class SettingsFileIO {
         JSONArray userSettingsList = new JSONArray();
         userSettingsList.add(userSettingsObject);
 
-        try (FileWriter file = new FileWriter(ResourceURLs.getSettingsURL())) {
+        return userSettingsList.toJSONString();
+    }
+
+    /**
+     * jsonFileOutput() - writes settings.json.tmp and moves it over settings.json, a crash while writing
+     *                    leaves the previous settings
+     * @param jsonString => From toJSONString()
+     */
+    public static synchronized void jsonFileOutput(String jsonString) {
+        final Path settingsPath = Paths.get(ResourceURLs.getSettingsURL());
+        final Path pendingPath = settingsPath.resolveSibling(settingsPath.getFileName() + ".tmp");
+
+        try {
             System.out.println("Writing user settings to settings.json");
-            file.write(userSettingsList.toJSONString());
-            file.flush();
+
+            try (FileChannel channel = FileChannel.open(pendingPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                 Writer writer = Channels.newWriter(channel, StandardCharsets.UTF_8)) {
+                writer.write(jsonString);
+
+                // On disk before it can replace settings.json
+                writer.flush();
+                channel.force(true);
+            }
+
+            try {
+                Files.move(pendingPath, settingsPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(pendingPath, settingsPath, StandardCopyOption.REPLACE_EXISTING);
+            }
 
         } catch (IOException e) {
             e.printStackTrace();
@@ -5,10 +5,13 @@
  *      Notes: Handles all file input/output from tracklist.ser located in resources.
  *             Observable Lists do not serialize so all TrackMetadata objects are transferred to
  *             and from an ArrayList for serialization.
+ *
+ *             Superseded by library.bin, only read by LibraryFileIO's one time migration.
  */
 
 package com.iandw.musicplayerjavafx.FileIO;
 
+import com.iandw.musicplayerjavafx.AudioProperties;
 import com.iandw.musicplayerjavafx.ResourceURLs;
 import com.iandw.musicplayerjavafx.TrackMetadata;
 import com.iandw.musicplayerjavafx.TrackSerializable;
@@ -49,7 +52,7 @@ public class TrackListFileIO {
             // Deep copy ArrayList<TrackSerializable> to ObservableList<TrackMetadata>
             // String -> SimpleStringProperty
             for (TrackSerializable trackSerializable : trackArrayList) {
-                trackMetadataObservableList.add(new TrackMetadata(
+                TrackMetadata trackMetadata = new TrackMetadata(
                         trackSerializable.getArtistNameStr(),
                         trackSerializable.getTrackFileNameStr(),
                         trackSerializable.getTrackContainerTypeStr(),
@@ -59,7 +62,9 @@ public class TrackListFileIO {
                         trackSerializable.getTrackDurationStr(),
                         trackSerializable.getTrackPathStr(),
                         trackSerializable.getPlaylistStr()
-                ));
+                );
+                trackMetadata.setAudioProperties(AudioProperties.ofDuration(trackSerializable.getTrackDurationStr()));
+                trackMetadataObservableList.add(trackMetadata);
             }
 
         } catch (IOException | ClassNotFoundException e) {
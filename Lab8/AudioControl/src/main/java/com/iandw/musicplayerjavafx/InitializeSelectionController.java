@@ -8,6 +8,7 @@
 
 package com.iandw.musicplayerjavafx;
 
+import com.iandw.musicplayerjavafx.FileIO.LibraryJournal;
 import com.iandw.musicplayerjavafx.Libraries.ListViewLibrary;
 import com.iandw.musicplayerjavafx.Libraries.MusicLibrary;
 import com.iandw.musicplayerjavafx.Libraries.TableViewLibrary;
@@ -20,9 +21,10 @@ import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Collections;
+import java.util.List;
 
 import javafx.application.Platform;
+import javafx.collections.FXCollections;
 import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
@@ -130,6 +132,11 @@ public class InitializeSelectionController {
 
     @FXML
     private void standardClicked() throws IOException {
+        if (musicLibrary.isScanning()) {
+            System.out.println("Music Library scan already running.");
+            return;
+        }
+
         // Create DirectoryChooser for root Music Directory
         DirectoryChooser rootMusicDirectoryChooser = new DirectoryChooser();
         rootMusicDirectoryChooser.setTitle("Select Music Folder");
@@ -190,6 +197,9 @@ public class InitializeSelectionController {
                 musicLibrary.clearMusicLibrary();
                 musicLibrary.setRootMusicDirectoryString(rootDirectoryPath.toString());
 
+                // Stream tracks into the Artist List and Table View as they are parsed
+                musicLibrary.setOnTracksPublished(this::streamTracks);
+
                 // Cancel task thread on Cancel Button clicked
                 progressBarData.addPropertyChangeListener(evt -> {
                     if (evt.getPropertyName().equals("continueInitialization")) {
@@ -231,6 +241,11 @@ public class InitializeSelectionController {
 
     @FXML
     private void recursiveClicked() throws IOException {
+        if (musicLibrary.isScanning()) {
+            System.out.println("Music Library scan already running.");
+            return;
+        }
+
         // Create DirectoryChooser for root Music Directory
         DirectoryChooser rootMusicDirectoryChooser = new DirectoryChooser();
         rootMusicDirectoryChooser.setTitle("Select Music Folder");
@@ -273,7 +288,6 @@ public class InitializeSelectionController {
                             }
 
                             Platform.runLater(() -> loadLibraries());
-                            Platform.runLater(() -> Collections.sort(listViewLibrary.getArtistObservableList()));
                             System.out.println("Finished initializing.");
                             System.out.printf("updated root directory: %s%n", rootDirectoryPath);
 
@@ -293,6 +307,9 @@ public class InitializeSelectionController {
                 musicLibrary.clearMusicLibrary();
                 musicLibrary.setRootMusicDirectoryString(rootDirectoryPath.toString());
 
+                // Stream tracks into the Artist List and Table View as they are parsed
+                musicLibrary.setOnTracksPublished(this::streamTracks);
+
                 // Cancel task thread on Cancel Button clicked
                 progressBarData.addPropertyChangeListener(evt -> {
                     if (evt.getPropertyName().equals("continueInitialization")) {
@@ -331,17 +348,28 @@ public class InitializeSelectionController {
         stage.close();
     }
 
+    // JavaFX Application Thread, called with each batch of tracks while initializing
+    private void streamTracks(List<TrackMetadata> trackBatch) {
+        tableViewLibrary.addTracks(trackBatch);
+        listViewLibrary.addArtists(trackBatch.stream().map(TrackMetadata::getArtistNameStr).toList());
+    }
+
+    // Replaces the streamed tracks with the finished scan, MusicLibrary lists are copied so later imports
+    // do not clear the views
     private void loadLibraries() {
-        listViewLibrary.setArtistObservableList(musicLibrary.getArtistNameObservableList());
-        tableViewLibrary.setTrackObservableList(musicLibrary.getTrackObservableList());
+        listViewLibrary.setArtistObservableList(FXCollections.observableArrayList(musicLibrary.getArtistNameObservableList()));
+        tableViewLibrary.replaceTrackObservableList(musicLibrary.getTrackObservableList());
 
         // Set Listview and Tableview
         artistListView.setItems(listViewLibrary.getArtistObservableList());
         playlistListView.setItems(listViewLibrary.getPlaylistObservableList());
-        trackTableView.setItems(musicLibrary.getTrackObservableList());
+        trackTableView.setItems(tableViewLibrary.getTrackObservableList());
 
         trackTableView.refresh();
         artistListView.refresh();
         playlistListView.refresh();
+
+        // Write the new library now rather than on close
+        LibraryJournal.compact();
     }
 }
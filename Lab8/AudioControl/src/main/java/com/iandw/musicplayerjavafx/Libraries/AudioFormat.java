@@ -0,0 +1,47 @@
+/**
+ *      Author: Ian Wallace, copyright 2022 all rights reserved.
+ *      Application: MusicPlayer
+ *      Class: AudioFormat.java
+ *      Notes: Audio container format plug-in for AudioFormatRegistry. A format recognises its files by
+ *              their first bytes rather than their extension and provides the fast path tag reader for
+ *              them, see StandardAudioFormat for the formats the Music Player ships with.
+ */
+
+package com.iandw.musicplayerjavafx.Libraries;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+interface AudioFormat {
+
+    // Format name for console output i.e. "MP3"
+    String getName();
+
+    // Extension stored as the track container type when the file's own extension is not one of this format's
+    String getContainerType();
+
+    // True if containerType (includes dot, any case) is a usual extension of this format
+    boolean hasExtension(String containerType);
+
+    // False for formats that are recognised but can't be played by the Media Player, their files are passed over
+    boolean isPlayable();
+
+    /**
+     * matches() - Magic byte check
+     *
+     * @param header => First bytes of the file from position 0, at most AudioFormatRegistry.headerLength,
+     *               fewer for short files
+     * @return => True if the file is of this format
+     */
+    boolean matches(ByteBuffer header);
+
+    /**
+     * readTags() - Fast path tag read, the channel is closed by the caller
+     *
+     * @param channel => Open audio file
+     * @return => Tag fields, or null when jaudiotagger should read the file instead
+     * @throws IOException => Unreadable file, jaudiotagger reads it instead
+     */
+    TagFields readTags(FileChannel channel) throws IOException;
+}
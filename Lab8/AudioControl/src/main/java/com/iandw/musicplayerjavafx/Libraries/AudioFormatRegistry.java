@@ -0,0 +1,69 @@
+/**
+ *      Author: Ian Wallace, copyright 2022 all rights reserved.
+ *      Application: MusicPlayer
+ *      Class: AudioFormatRegistry.java
+ *      Notes: Identifies audio files by their first headerLength bytes instead of their extension, so
+ *              cover art, .cue, .log and other non-audio files in the music folder are passed over after
+ *              a single small read, and audio files with a wrong or missing extension are still found.
+ *
+ *              Formats are checked in registration order, StandardAudioFormat is registered first.
+ *              The header buffer is reused, one per scan thread.
+ */
+
+package com.iandw.musicplayerjavafx.Libraries;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+final class AudioFormatRegistry {
+    static final int headerLength = 12;
+
+    private static final List<AudioFormat> audioFormats = new CopyOnWriteArrayList<>(StandardAudioFormat.values());
+    private static final ThreadLocal<ByteBuffer> headerBuffer =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(headerLength));
+
+    private AudioFormatRegistry() {}
+
+    // Adds a format plug-in, checked after every format already registered
+    static void register(AudioFormat audioFormat) {
+        audioFormats.add(audioFormat);
+    }
+
+    /**
+     * sniff() - Reads the first headerLength bytes of a file and matches them against each registered format
+     *
+     * @param trackPath => Any file within the music folder
+     * @return => Format of the file, or null if it is not a recognised audio file or can't be read
+     */
+    static AudioFormat sniff(Path trackPath) {
+        ByteBuffer header = headerBuffer.get();
+        header.clear();
+
+        try (FileChannel channel = FileChannel.open(trackPath, StandardOpenOption.READ)) {
+            int bytesRead;
+
+            // Until full or end of file
+            do {
+                bytesRead = channel.read(header, header.position());
+            } while (bytesRead > 0 && header.hasRemaining());
+
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+
+        header.flip();
+
+        for (AudioFormat audioFormat : audioFormats) {
+            if (audioFormat.matches(header)) {
+                return audioFormat;
+            }
+        }
+
+        return null;
+    }
+}
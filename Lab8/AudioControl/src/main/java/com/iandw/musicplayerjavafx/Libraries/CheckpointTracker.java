@@ -0,0 +1,269 @@
+/**
+ *      Author: Ian Wallace, copyright 2022 all rights reserved.
+ *      Application: MusicPlayer
+ *      Class: CheckpointTracker.java
+ *      Notes: Tracks which directories of a running initialization are finished and writes
+ *              scancheckpoint.ser in the background, used by ScanPipeline.
+ *
+ *              Each directory the walker enters keeps a pending count of its own walk, its queued
+ *              audio files and its open subdirectories. A directory is completed once that count
+ *              reaches zero, i.e. its whole subtree has been walked and every file in it has been
+ *              published. Tracks in completed subtrees of a resumed checkpoint are published before
+ *              the walk starts and those subtrees are not walked again.
+ *
+ *              Checkpoints are taken by the ScanPipeline publisher and written by a single writer
+ *              thread, the parse workers never wait on disk. Each checkpoint only appends the tracks
+ *              published and the directories completed since the one before to the checkpoint log (see
+ *              ScanCheckpointFileIO), so a scan writes each track once. A cancelled scan compacts the log
+ *              into a single record, a finished scan clears it.
+ */
+
+package com.iandw.musicplayerjavafx.Libraries;
+
+import com.iandw.musicplayerjavafx.FileIO.ScanCheckpointFileIO;
+import com.iandw.musicplayerjavafx.ScanCheckpoint;
+import com.iandw.musicplayerjavafx.TrackMetadata;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+final class CheckpointTracker {
+    static final long checkpointMillis = 5000;
+
+    private final String rootDirectoryStr;
+    private final String initializationStr;
+    private final Set<String> completedDirectories;
+    private final Map<String, DirectoryNode> openDirectories;
+    private final List<TrackMetadata> resumedCompletedTracks;
+    private final Map<String, TrackMetadata> resumedTrackMap;
+    private final long resumedMillis;
+    private final ExecutorService checkpointWriter;
+
+    // Completed since the last checkpoint, and the published tracks already in the log (publisher thread)
+    private final Queue<String> uncheckpointedDirectories;
+    private int checkpointedTrackCount;
+    // Writer thread, the first record starts a new log
+    private boolean logStarted;
+
+    /**
+     * CheckpointTracker - constructor
+     *
+     * @param rootDirectoryStr => Root music directory being scanned
+     * @param initializationStr => "standard" or "recursive"
+     * @param resumedCheckpoint => Checkpoint of the scan being resumed, null for a new scan
+     */
+    CheckpointTracker(String rootDirectoryStr, String initializationStr, ScanCheckpoint resumedCheckpoint) {
+        this.rootDirectoryStr = rootDirectoryStr;
+        this.initializationStr = initializationStr;
+        completedDirectories = ConcurrentHashMap.newKeySet();
+        openDirectories = new ConcurrentHashMap<>();
+        resumedCompletedTracks = new ArrayList<>();
+        resumedTrackMap = new HashMap<>();
+        uncheckpointedDirectories = new ConcurrentLinkedQueue<>();
+
+        checkpointWriter = Executors.newSingleThreadExecutor(runnable -> {
+            Thread writerThread = new Thread(runnable, "scan-checkpoint-writer");
+            writerThread.setDaemon(true);
+            return writerThread;
+        });
+
+        if (resumedCheckpoint != null) {
+            completedDirectories.addAll(resumedCheckpoint.getCompletedDirectories());
+            uncheckpointedDirectories.addAll(resumedCheckpoint.getCompletedDirectories());
+            resumedCheckpoint.getTrackList().forEach(trackMetadata -> {
+                if (isInCompletedDirectory(trackMetadata.getTrackPathStr())) {
+                    resumedCompletedTracks.add(trackMetadata);
+                } else {
+                    resumedTrackMap.put(trackMetadata.getTrackPathStr(), trackMetadata);
+                }
+            });
+            resumedMillis = resumedCheckpoint.getCreatedMillis();
+
+        } else {
+            resumedMillis = 0;
+        }
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          WALKER
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    // Tracks of every directory completed before the scan was resumed, published ahead of the walk
+    List<TrackMetadata> getResumedCompletedTracks() { return resumedCompletedTracks; }
+
+    // Completed before the scan was resumed, the walker passes over it
+    boolean isCompleted(String directoryStr) { return completedDirectories.contains(directoryStr); }
+
+    void enterDirectory(String directoryStr) {
+        DirectoryNode parentNode = openDirectories.get(parentOf(directoryStr));
+
+        if (parentNode != null) {
+            parentNode.pending.incrementAndGet();
+        }
+
+        openDirectories.put(directoryStr, new DirectoryNode(directoryStr, parentNode));
+    }
+
+    // Every entry of directoryStr has been walked, its files may still be parsing
+    void exitDirectory(String directoryStr) {
+        release(openDirectories.get(directoryStr));
+    }
+
+    // Before the file is queued, so the directory can't complete ahead of it
+    void fileSubmitted(String trackPathStr) {
+        DirectoryNode directoryNode = openDirectories.get(parentOf(trackPathStr));
+
+        if (directoryNode != null) {
+            directoryNode.pending.incrementAndGet();
+        }
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          PARSE WORKERS / PUBLISHER
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    /**
+     * resumedTrack() - Checkpointed track of a directory that was not completed before the scan was resumed
+     *
+     * @param trackPathStr => Audio file about to be parsed
+     * @return => Checkpointed track if the file has not been modified since the checkpoint, otherwise null
+     */
+    TrackMetadata resumedTrack(String trackPathStr) {
+        TrackMetadata resumedTrack = resumedTrackMap.get(trackPathStr);
+
+        if (resumedTrack != null && new File(trackPathStr).lastModified() <= resumedMillis) {
+            return resumedTrack;
+        }
+
+        return null;
+    }
+
+    // Publisher thread, called once the file's track has been added to the published tracks
+    void filePublished(String trackPathStr) {
+        release(openDirectories.get(parentOf(trackPathStr)));
+    }
+
+    /**
+     * checkpoint() - Publisher thread, queues the tracks published and the directories completed since the
+     *                last checkpoint for the writer thread to append to the checkpoint log
+     *
+     * @param publishedTracks => Tracks published so far, only ever appended to
+     */
+    void checkpoint(List<TrackMetadata> publishedTracks) {
+        // Directories are only completed after their tracks are published, copy tracks first
+        List<TrackMetadata> trackList = new ArrayList<>(publishedTracks.subList(checkpointedTrackCount, publishedTracks.size()));
+        List<String> directoryList = new ArrayList<>();
+        checkpointedTrackCount = publishedTracks.size();
+
+        for (String directoryStr = uncheckpointedDirectories.poll(); directoryStr != null;
+             directoryStr = uncheckpointedDirectories.poll()) {
+            directoryList.add(directoryStr);
+        }
+
+        if ((!trackList.isEmpty() || !directoryList.isEmpty()) && !checkpointWriter.isShutdown()) {
+            checkpointWriter.execute(() -> writeCheckpoint(directoryList, trackList));
+        }
+    }
+
+    // Writer thread
+    private void writeCheckpoint(List<String> directoryList, List<TrackMetadata> trackList) {
+        ScanCheckpointFileIO.appendCheckpoint(new ScanCheckpoint(rootDirectoryStr, initializationStr,
+                directoryList, trackList), !logStarted);
+        logStarted = true;
+    }
+
+    /**
+     * finish() - Called once the scan is finished, the checkpoint is no longer needed
+     * @throws FileNotFoundException
+     */
+    void finish() throws FileNotFoundException {
+        checkpointWriter.shutdownNow();
+
+        try {
+            if (!checkpointWriter.awaitTermination(10, TimeUnit.SECONDS)) {
+                System.out.println("Scan checkpoint writer did not finish.");
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        ScanCheckpointFileIO.clearCheckpoint();
+    }
+
+    /**
+     * shutdown() - Publisher thread, a cancelled scan keeps its checkpoint for a resumed scan. The log is
+     *              replaced by one record of everything published once the records queued before are written.
+     *
+     * @param publishedTracks => Every track published by the cancelled scan
+     */
+    void shutdown(List<TrackMetadata> publishedTracks) {
+        List<TrackMetadata> trackList = new ArrayList<>(publishedTracks);
+        List<String> directoryList = new ArrayList<>(completedDirectories);
+
+        if (!checkpointWriter.isShutdown()) {
+            checkpointWriter.execute(() -> ScanCheckpointFileIO.outputCheckpoint(
+                    new ScanCheckpoint(rootDirectoryStr, initializationStr, directoryList, trackList)));
+        }
+
+        checkpointWriter.shutdown();
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          DIRECTORY COMPLETION
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    private void release(DirectoryNode directoryNode) {
+        while (directoryNode != null && directoryNode.pending.decrementAndGet() == 0) {
+            completedDirectories.add(directoryNode.directoryStr);
+            uncheckpointedDirectories.add(directoryNode.directoryStr);
+            openDirectories.remove(directoryNode.directoryStr);
+            directoryNode = directoryNode.parentNode;
+        }
+    }
+
+    private boolean isInCompletedDirectory(String trackPathStr) {
+        for (Path parentPath = Paths.get(trackPathStr).getParent(); parentPath != null; parentPath = parentPath.getParent()) {
+            if (completedDirectories.contains(parentPath.toString())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static String parentOf(String pathStr) {
+        Path parentPath = Paths.get(pathStr).getParent();
+
+        return parentPath != null ? parentPath.toString() : "";
+    }
+
+    private static final class DirectoryNode {
+        private final String directoryStr;
+        private final DirectoryNode parentNode;
+        // Walk of this directory + queued files + open subdirectories
+        private final AtomicInteger pending;
+
+        private DirectoryNode(String directoryStr, DirectoryNode parentNode) {
+            this.directoryStr = directoryStr;
+            this.parentNode = parentNode;
+            pending = new AtomicInteger(1);
+        }
+    }
+
+}
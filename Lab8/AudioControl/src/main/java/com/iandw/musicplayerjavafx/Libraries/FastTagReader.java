@@ -0,0 +1,964 @@
+/**
+ *      Author: Ian Wallace, copyright 2022 all rights reserved.
+ *      Application: MusicPlayer
+ *      Class: FastTagReader.java
+ *      Notes: Header-only tag reader used by Music Library scans in place of AudioFileIO.read(), which builds
+ *              the full jaudiotagger object graph (artwork, every frame, audio header) for each file.
+ *
+ *              Called through the AudioFormat found by AudioFormatRegistry, see StandardAudioFormat.
+ *              Reads only the bytes needed for TagFields with positional FileChannel reads into a reusable
+ *              direct buffer, one per scan thread:
+ *                  - MP3 - ID3v2.2/2.3/2.4 text frames or ID3v1, first MPEG frame with Xing/Info/VBRI header.
+ *                  - WAV - RIFF fmt/data chunks, id3 chunk or LIST INFO chunk.
+ *                  - AIFF - FORM COMM chunk, ID3 chunk.
+ *                  - M4A - moov/mvhd and moov/udta/meta/ilst atoms.
+ *
+ *              The audio header also gives the numbers of AudioProperties: sample rate, bitrate (the header's
+ *              for constant bitrate MP3, otherwise the average over the audio data) and duration in
+ *              milliseconds. Track number, disc number and year come from the tag.
+ *
+ *              Returns null whenever the file is outside what it handles (unsynchronised or compressed
+ *              ID3 frames, free format MPEG, compressed WAV, tags in both WAV tag chunks, ...) so that
+ *              TagFields falls back to jaudiotagger.
+ */
+
+package com.iandw.musicplayerjavafx.Libraries;
+
+import com.iandw.musicplayerjavafx.AudioProperties;
+import com.iandw.musicplayerjavafx.Utilities.ID3v1Genres;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+final class FastTagReader {
+    private static final int bufferSize = 64 * 1024;
+    private static final ThreadLocal<ByteBuffer> threadBuffer =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(bufferSize));
+
+    // MPEG audio tables, [MPEG 1 / MPEG 2 and 2.5][Layer I, II, III][bitrate index]
+    private static final int[][][] bitrates = {
+            {
+                    {0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448},
+                    {0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384},
+                    {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320}
+            },
+            {
+                    {0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256},
+                    {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160},
+                    {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160}
+            }
+    };
+    // [MPEG 2.5, reserved, MPEG 2, MPEG 1][sample rate index]
+    private static final int[][] sampleRates = {
+            {11025, 12000, 8000}, {0, 0, 0}, {22050, 24000, 16000}, {44100, 48000, 32000}
+    };
+
+    private FastTagReader() {}
+
+    /**
+     * read() - Fast path tag read
+     *
+     * @param trackPath => Audio file
+     * @param audioFormat => Format identified by AudioFormatRegistry
+     * @return => Tag fields, or null when jaudiotagger should read the file instead
+     */
+    static TagFields read(Path trackPath, AudioFormat audioFormat) {
+        try (FileChannel channel = FileChannel.open(trackPath, StandardOpenOption.READ)) {
+            return audioFormat.readTags(channel);
+
+        } catch (IOException | RuntimeException e) {
+            // Unreadable or malformed headers are left to jaudiotagger, which reports the error
+            return null;
+        }
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          MP3
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    static TagFields readMp3(FileChannel channel) throws IOException {
+        TagBuilder tagBuilder = new TagBuilder();
+        final long fileSize = channel.size();
+
+        final long audioStart = readId3v2(channel, 0, fileSize, tagBuilder);
+
+        if (audioStart < 0) {
+            return null;
+        }
+
+        // jaudiotagger only uses the ID3v1 tag when there is no ID3v2 tag
+        final boolean hasId3v1 = readId3v1(channel, fileSize, tagBuilder.hasId3v2 ? new TagBuilder() : tagBuilder);
+        final long audioEnd = fileSize - (hasId3v1 ? 128 : 0);
+
+        final double trackLength = mpegTrackLength(channel, audioStart, audioEnd, tagBuilder);
+
+        if (trackLength < 0) {
+            return null;
+        }
+
+        return tagBuilder.build(trackLength);
+    }
+
+    // Returns true if the file ends with an ID3v1 tag
+    private static boolean readId3v1(FileChannel channel, long fileSize, TagBuilder tagBuilder) throws IOException {
+        if (fileSize < 128) {
+            return false;
+        }
+
+        ByteBuffer buffer = read(channel, fileSize - 128, 128);
+
+        if (buffer == null || buffer.get(0) != 'T' || buffer.get(1) != 'A' || buffer.get(2) != 'G') {
+            return false;
+        }
+
+        tagBuilder.title = latin1(buffer, 3, 30);
+        tagBuilder.artist = latin1(buffer, 33, 30);
+        tagBuilder.album = latin1(buffer, 63, 30);
+
+        final int genreIndex = buffer.get(127) & 0xFF;
+        tagBuilder.genre = genreIndex < ID3v1Genres.getGenreCount() ? "(" + genreIndex + ")" : "";
+        tagBuilder.year = Math.max(0, AudioProperties.parseLeadingInt(latin1(buffer, 93, 4)));
+
+        // ID3v1.1, a zero byte ends the comment before the track number
+        if (buffer.get(125) == 0 && buffer.get(126) != 0) {
+            tagBuilder.trackNumber = buffer.get(126) & 0xFF;
+        }
+
+        return true;
+    }
+
+    /**
+     * mpegTrackLength() - Track length in seconds from the first MPEG audio frame, which also sets the
+     *                     sample rate and bitrate of tagBuilder.
+     *
+     *      Uses the Xing/Info or VBRI frame count when present, otherwise treats the stream as
+     *      constant bitrate. The frame after the first one must also be valid so a stray sync
+     *      word in leftover tag data is not mistaken for audio.
+     *
+     * @return => Seconds, or -1 if no frame was found in the first bufferSize bytes
+     */
+    private static double mpegTrackLength(FileChannel channel, long audioStart, long audioEnd,
+                                          TagBuilder tagBuilder) throws IOException {
+        ByteBuffer buffer = read(channel, audioStart, (int) Math.min(bufferSize, audioEnd - audioStart));
+
+        if (buffer == null) {
+            return -1;
+        }
+
+        final int limit = buffer.limit();
+
+        for (int i = 0; i + 4 <= limit; i++) {
+            if ((buffer.get(i) & 0xFF) != 0xFF || (buffer.get(i + 1) & 0xE0) != 0xE0) {
+                continue;
+            }
+
+            final int header = buffer.getInt(i);
+            final int frameLength = mpegFrameLength(header);
+
+            if (frameLength <= 0 || i + frameLength + 4 > limit) {
+                continue;
+            }
+
+            final int nextHeader = buffer.getInt(i + frameLength);
+
+            // Next frame must have the same version, layer and sample rate
+            if (mpegFrameLength(nextHeader) <= 0 || (nextHeader & 0xFFFE0C00) != (header & 0xFFFE0C00)) {
+                continue;
+            }
+
+            final int versionBits = (header >> 19) & 3;
+            final int layerBits = (header >> 17) & 3;
+            final boolean mono = ((header >> 6) & 3) == 3;
+            final int sampleRate = sampleRates[versionBits][(header >> 10) & 3];
+            final int samplesPerFrame = layerBits == 3 ? 384 : (layerBits == 1 && versionBits != 3) ? 576 : 1152;
+            final int bitrate = bitrates[versionBits == 3 ? 0 : 1][3 - layerBits][(header >> 12) & 0xF];
+
+            final long audioBytes = audioEnd - audioStart - i;
+            long frameCount = -1;
+            tagBuilder.sampleRate = sampleRate;
+
+            // Xing/Info header follows the side information
+            final int xingOffset = i + 4 + (versionBits == 3 ? (mono ? 17 : 32) : (mono ? 9 : 17));
+
+            if (xingOffset + 12 <= limit && (ascii(buffer, xingOffset, 4).equals("Xing") ||
+                    ascii(buffer, xingOffset, 4).equals("Info")) && (buffer.getInt(xingOffset + 4) & 1) != 0) {
+                frameCount = buffer.getInt(xingOffset + 8) & 0xFFFFFFFFL;
+            }
+
+            // VBRI header is always 32 bytes after the frame header
+            final int vbriOffset = i + 4 + 32;
+
+            if (frameCount < 0 && vbriOffset + 18 <= limit && ascii(buffer, vbriOffset, 4).equals("VBRI")) {
+                frameCount = buffer.getInt(vbriOffset + 14) & 0xFFFFFFFFL;
+            }
+
+            if (frameCount >= 0) {
+                final double trackLength = (double) frameCount * samplesPerFrame / sampleRate;
+                tagBuilder.bitrate = trackLength > 0 ? (int) Math.round(audioBytes * 8 / trackLength / 1000) : 0;
+
+                return trackLength;
+            }
+
+            tagBuilder.bitrate = bitrate;
+
+            return audioBytes * 8.0 / (bitrate * 1000.0);
+        }
+
+        return -1;
+    }
+
+    // Frame length in bytes, or -1 for an invalid or free format header
+    private static int mpegFrameLength(int header) {
+        if ((header & 0xFFE00000) != 0xFFE00000) {
+            return -1;
+        }
+
+        final int versionBits = (header >> 19) & 3;
+        final int layerBits = (header >> 17) & 3;
+        final int bitrateIndex = (header >> 12) & 0xF;
+        final int sampleRateIndex = (header >> 10) & 3;
+        final int padding = (header >> 9) & 1;
+
+        if (versionBits == 1 || layerBits == 0 || bitrateIndex == 0 || bitrateIndex == 15 || sampleRateIndex == 3) {
+            return -1;
+        }
+
+        final int bitrate = bitrates[versionBits == 3 ? 0 : 1][3 - layerBits][bitrateIndex] * 1000;
+        final int sampleRate = sampleRates[versionBits][sampleRateIndex];
+
+        if (layerBits == 3) {
+            return (12 * bitrate / sampleRate + padding) * 4;
+        }
+
+        final int samplesPerFrame = (layerBits == 1 && versionBits != 3) ? 576 : 1152;
+
+        return samplesPerFrame / 8 * bitrate / sampleRate + padding;
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          ID3v2
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    /**
+     * readId3v2() - Reads the text frames TagFields needs from an ID3v2 tag, skipping every other
+     *               frame (artwork, lyrics, ...) by its header alone.
+     *
+     * @param offset => Position of the tag, 0 for MP3 or the start of a WAV/AIFF ID3 chunk
+     * @param end => Position the tag may not extend past
+     * @return => Size of the tag, 0 if there is none, -1 if jaudiotagger should read the file
+     */
+    private static long readId3v2(FileChannel channel, long offset, long end, TagBuilder tagBuilder) throws IOException {
+        ByteBuffer buffer = read(channel, offset, (int) Math.min(10, end - offset));
+
+        if (buffer == null || buffer.limit() < 10 || !ascii(buffer, 0, 3).equals("ID3")) {
+            return 0;
+        }
+
+        final int majorVersion = buffer.get(3) & 0xFF;
+        final int tagFlags = buffer.get(5) & 0xFF;
+        final int tagSize = syncsafe(buffer, 6);
+        final boolean hasFooter = majorVersion == 4 && (tagFlags & 0x10) != 0;
+
+        // Unsynchronised tags and ID3v2.2 compression are left to jaudiotagger
+        if (majorVersion < 2 || majorVersion > 4 || (tagFlags & 0x80) != 0 ||
+                (majorVersion == 2 && (tagFlags & 0x40) != 0)) {
+            return -1;
+        }
+
+        long position = offset + 10;
+        final long tagEnd = position + tagSize;
+
+        if (tagEnd > end) {
+            return -1;
+        }
+
+        // Skip extended header
+        if ((tagFlags & 0x40) != 0) {
+            buffer = read(channel, position, 4);
+
+            if (buffer == null) {
+                return -1;
+            }
+
+            position += majorVersion == 4 ? syncsafe(buffer, 0) : buffer.getInt(0) + 4;
+        }
+
+        tagBuilder.hasId3v2 = true;
+        final int frameHeaderSize = majorVersion == 2 ? 6 : 10;
+
+        while (position + frameHeaderSize <= tagEnd) {
+            buffer = read(channel, position, frameHeaderSize);
+
+            // Padding
+            if (buffer == null || buffer.get(0) == 0) {
+                break;
+            }
+
+            final String frameId;
+            final int frameSize;
+            int frameFlags = 0;
+
+            if (majorVersion == 2) {
+                frameId = ascii(buffer, 0, 3);
+                frameSize = ((buffer.get(3) & 0xFF) << 16) | ((buffer.get(4) & 0xFF) << 8) | (buffer.get(5) & 0xFF);
+
+            } else {
+                frameId = ascii(buffer, 0, 4);
+                frameSize = majorVersion == 4 ? syncsafe(buffer, 4) : buffer.getInt(4);
+                frameFlags = buffer.getShort(8) & 0xFFFF;
+            }
+
+            // Bad frame size, often an ID3v2.4 writer using plain sizes
+            if (frameSize <= 0 || position + frameHeaderSize + frameSize > tagEnd) {
+                return -1;
+            }
+
+            final TextField textField = TextField.of(frameId);
+
+            // Compressed, encrypted, unsynchronised or data length frames
+            final int unsupportedFlags = majorVersion == 4 ? 0x000F : 0x00C0;
+            final boolean unsupportedFrame = (frameFlags & unsupportedFlags) != 0 || frameSize > bufferSize;
+
+            // Numbers are not read by jaudiotagger for the fields it compares, such frames are skipped
+            if (textField != null && !(textField.isNumber() && unsupportedFrame)) {
+                if (unsupportedFrame) {
+                    return -1;
+                }
+
+                buffer = read(channel, position + frameHeaderSize, frameSize);
+
+                if (buffer == null) {
+                    return -1;
+                }
+
+                String value = decodeText(buffer, frameSize);
+
+                if (textField == TextField.GENRE) {
+                    value = normalizeGenre(value);
+
+                    if (value == null) {
+                        return -1;
+                    }
+                }
+
+                textField.set(tagBuilder, value);
+            }
+
+            position += frameHeaderSize + frameSize;
+        }
+
+        return 10 + tagSize + (hasFooter ? 10 : 0);
+    }
+
+    // ID3v2 text frame ids per field, ID3v2.2 ids are 3 characters. TDRC (recording time) is ID3v2.4 only.
+    private enum TextField {
+        TITLE("TIT2", "TT2"),
+        ARTIST("TPE1", "TP1"),
+        ALBUM_ARTIST("TPE2", "TP2"),
+        ALBUM("TALB", "TAL"),
+        GENRE("TCON", "TCO"),
+        TRACK_NUMBER("TRCK", "TRK"),
+        DISC_NUMBER("TPOS", "TPA"),
+        YEAR("TYER", "TYE"),
+        RECORDING_TIME("TDRC", "TDRC");
+
+        private final String frameId;
+        private final String shortFrameId;
+
+        TextField(String frameId, String shortFrameId) {
+            this.frameId = frameId;
+            this.shortFrameId = shortFrameId;
+        }
+
+        static TextField of(String frameId) {
+            for (TextField textField : values()) {
+                if (textField.frameId.equals(frameId) || textField.shortFrameId.equals(frameId)) {
+                    return textField;
+                }
+            }
+
+            return null;
+        }
+
+        boolean isNumber() { return ordinal() >= TRACK_NUMBER.ordinal(); }
+
+        void set(TagBuilder tagBuilder, String value) {
+            switch (this) {
+                case TITLE -> tagBuilder.title = value;
+                case ARTIST -> tagBuilder.artist = value;
+                case ALBUM_ARTIST -> tagBuilder.albumArtist = value;
+                case ALBUM -> tagBuilder.album = value;
+                case GENRE -> tagBuilder.genre = value;
+                case TRACK_NUMBER -> tagBuilder.trackNumber = Math.max(0, AudioProperties.parseLeadingInt(value));
+                case DISC_NUMBER -> tagBuilder.discNumber = Math.max(0, AudioProperties.parseLeadingInt(value));
+                case YEAR, RECORDING_TIME -> tagBuilder.year = Math.max(0, AudioProperties.parseLeadingInt(value));
+            }
+        }
+    }
+
+    // First value of an ID3v2 text frame
+    private static String decodeText(ByteBuffer buffer, int frameSize) {
+        final Charset charset = switch (buffer.get(0)) {
+            case 1 -> StandardCharsets.UTF_16;
+            case 2 -> StandardCharsets.UTF_16BE;
+            case 3 -> StandardCharsets.UTF_8;
+            default -> StandardCharsets.ISO_8859_1;
+        };
+
+        byte[] bytes = new byte[frameSize - 1];
+        buffer.get(1, bytes);
+
+        String value = new String(bytes, charset);
+        final int nullIndex = value.indexOf('\0');
+
+        return nullIndex >= 0 ? value.substring(0, nullIndex) : value;
+    }
+
+    /**
+     * normalizeGenre() - Numeric genres ("17", "(17)", "(17)Rock") are returned as "(17)" so MusicLibrary maps
+     *                    them with ID3v1Genres, same as genres read by jaudiotagger.
+     *
+     * @return => Genre, or null for genre references jaudiotagger resolves itself, such as "(RX)" or "(CR)"
+     */
+    private static String normalizeGenre(String value) {
+        String genreId;
+
+        if (value.matches("\\d{1,3}")) {
+            genreId = value;
+
+        } else if (value.startsWith("(")) {
+            if (!value.matches("\\(\\d{1,3}\\).*")) {
+                return null;
+            }
+
+            genreId = value.substring(1, value.indexOf(')'));
+
+        } else {
+            return value;
+        }
+
+        final int genreIndex = Integer.parseInt(genreId);
+
+        return genreIndex < ID3v1Genres.getGenreCount() ? "(" + genreIndex + ")" : null;
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          WAV / AIFF
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    static TagFields readWav(FileChannel channel) throws IOException {
+        final long fileSize = channel.size();
+        ByteBuffer buffer = read(channel, 0, 12);
+
+        if (buffer == null || !ascii(buffer, 0, 4).equals("RIFF") || !ascii(buffer, 8, 4).equals("WAVE")) {
+            return null;
+        }
+
+        TagBuilder id3Tag = new TagBuilder();
+        TagBuilder infoTag = new TagBuilder();
+        boolean hasId3 = false;
+        boolean hasInfo = false;
+        long byteRate = 0;
+        int sampleRate = 0;
+        long dataSize = -1;
+        long position = 12;
+
+        while (position + 8 <= fileSize) {
+            buffer = read(channel, position, 8);
+
+            if (buffer == null) {
+                break;
+            }
+
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            final String chunkId = ascii(buffer, 0, 4);
+            final long chunkSize = buffer.getInt(4) & 0xFFFFFFFFL;
+            final long chunkData = position + 8;
+
+            switch (chunkId) {
+                case "fmt " -> {
+                    buffer = read(channel, chunkData, 12);
+
+                    if (buffer == null) {
+                        return null;
+                    }
+
+                    buffer.order(ByteOrder.LITTLE_ENDIAN);
+                    final int audioFormat = buffer.getShort(0) & 0xFFFF;
+
+                    // PCM, IEEE float and extensible only, compressed formats need the fact chunk
+                    if (audioFormat != 1 && audioFormat != 3 && audioFormat != 0xFFFE) {
+                        return null;
+                    }
+
+                    sampleRate = buffer.getInt(4);
+                    byteRate = buffer.getInt(8) & 0xFFFFFFFFL;
+                }
+
+                case "data" -> dataSize = Math.min(chunkSize, fileSize - chunkData);
+
+                case "id3 ", "ID3 " -> {
+                    hasId3 = true;
+
+                    if (readId3v2(channel, chunkData, chunkData + chunkSize, id3Tag) < 0) {
+                        return null;
+                    }
+                }
+
+                case "LIST" -> {
+                    if (chunkSize > bufferSize) {
+                        return null;
+                    }
+
+                    buffer = read(channel, chunkData, (int) chunkSize);
+
+                    if (buffer != null && ascii(buffer, 0, 4).equals("INFO")) {
+                        hasInfo = true;
+                        readInfoChunk(buffer, infoTag);
+                    }
+                }
+            }
+
+            // Chunks are padded to an even size
+            position = chunkData + chunkSize + (chunkSize & 1);
+        }
+
+        // Which tag jaudiotagger reports when both exist depends on TagOptionSingleton
+        if (byteRate == 0 || dataSize < 0 || (hasId3 && hasInfo)) {
+            return null;
+        }
+
+        TagBuilder tagBuilder = hasInfo ? infoTag : id3Tag;
+        tagBuilder.sampleRate = sampleRate;
+        tagBuilder.bitrate = (int) Math.round(byteRate * 8 / 1000.0);
+
+        return tagBuilder.build((double) dataSize / byteRate);
+    }
+
+    private static void readInfoChunk(ByteBuffer buffer, TagBuilder tagBuilder) {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        int position = 4;
+
+        while (position + 8 <= buffer.limit()) {
+            final String infoId = ascii(buffer, position, 4);
+            final int infoSize = buffer.getInt(position + 4);
+
+            if (infoSize < 0 || position + 8 + infoSize > buffer.limit()) {
+                break;
+            }
+
+            byte[] bytes = new byte[infoSize];
+            buffer.get(position + 8, bytes);
+
+            String value = new String(bytes, StandardCharsets.UTF_8);
+            final int nullIndex = value.indexOf('\0');
+            value = nullIndex >= 0 ? value.substring(0, nullIndex) : value;
+
+            switch (infoId) {
+                case "INAM" -> tagBuilder.title = value;
+                case "IART" -> tagBuilder.artist = value;
+                case "IAAR" -> tagBuilder.albumArtist = value;
+                case "IPRD" -> tagBuilder.album = value;
+                case "IGNR" -> tagBuilder.genre = value;
+                case "ITRK", "IPRT" -> tagBuilder.trackNumber = Math.max(0, AudioProperties.parseLeadingInt(value));
+                case "ICRD" -> tagBuilder.year = Math.max(0, AudioProperties.parseLeadingInt(value));
+            }
+
+            position += 8 + infoSize + (infoSize & 1);
+        }
+    }
+
+    static TagFields readAiff(FileChannel channel) throws IOException {
+        final long fileSize = channel.size();
+        ByteBuffer buffer = read(channel, 0, 12);
+
+        if (buffer == null || !ascii(buffer, 0, 4).equals("FORM") ||
+                !(ascii(buffer, 8, 4).equals("AIFF") || ascii(buffer, 8, 4).equals("AIFC"))) {
+            return null;
+        }
+
+        TagBuilder tagBuilder = new TagBuilder();
+        double trackLength = -1;
+        long position = 12;
+
+        while (position + 8 <= fileSize) {
+            buffer = read(channel, position, 8);
+
+            if (buffer == null) {
+                break;
+            }
+
+            final String chunkId = ascii(buffer, 0, 4);
+            final long chunkSize = buffer.getInt(4) & 0xFFFFFFFFL;
+            final long chunkData = position + 8;
+
+            switch (chunkId) {
+                case "COMM" -> {
+                    buffer = read(channel, chunkData, 18);
+
+                    if (buffer == null) {
+                        return null;
+                    }
+
+                    final int channels = buffer.getShort(0);
+                    final long sampleFrames = buffer.getInt(2) & 0xFFFFFFFFL;
+                    final int sampleSize = buffer.getShort(6);
+                    final double sampleRate = extendedToDouble(buffer, 8);
+
+                    if (sampleRate <= 0) {
+                        return null;
+                    }
+
+                    trackLength = sampleFrames / sampleRate;
+                    tagBuilder.sampleRate = (int) Math.round(sampleRate);
+                    tagBuilder.bitrate = (int) Math.round(channels * sampleSize * sampleRate / 1000);
+                }
+
+                case "ID3 ", "id3 " -> {
+                    if (readId3v2(channel, chunkData, chunkData + chunkSize, tagBuilder) < 0) {
+                        return null;
+                    }
+                }
+
+                // Text chunks are merged into the tag by jaudiotagger
+                case "NAME", "AUTH", "ANNO", "(c) " -> {
+                    return null;
+                }
+            }
+
+            position = chunkData + chunkSize + (chunkSize & 1);
+        }
+
+        if (trackLength < 0) {
+            return null;
+        }
+
+        return tagBuilder.build(trackLength);
+    }
+
+    // 80 bit IEEE 754 extended precision, AIFF sample rate
+    private static double extendedToDouble(ByteBuffer buffer, int index) {
+        final int exponent = ((buffer.get(index) & 0x7F) << 8) | (buffer.get(index + 1) & 0xFF);
+        final long mantissaHigh = buffer.getInt(index + 2) & 0xFFFFFFFFL;
+        final long mantissaLow = buffer.getInt(index + 6) & 0xFFFFFFFFL;
+
+        if (exponent == 0 && mantissaHigh == 0 && mantissaLow == 0) {
+            return 0;
+        }
+
+        final double mantissa = mantissaHigh * 4294967296.0 + mantissaLow;
+        final double value = mantissa * Math.pow(2, exponent - 16383 - 63);
+
+        return (buffer.get(index) & 0x80) != 0 ? -value : value;
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          MP4 / M4A
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    static TagFields readMp4(FileChannel channel) throws IOException {
+        final long fileSize = channel.size();
+        final long[] moov = findAtom(channel, 0, fileSize, "moov");
+
+        if (moov == null) {
+            return null;
+        }
+
+        // Track length from the movie header
+        final long[] mvhd = findAtom(channel, moov[0], moov[1], "mvhd");
+
+        if (mvhd == null) {
+            return null;
+        }
+
+        ByteBuffer buffer = read(channel, mvhd[0], 32);
+
+        if (buffer == null) {
+            return null;
+        }
+
+        final long timeScale;
+        final long duration;
+
+        if (buffer.get(0) == 1) {
+            timeScale = buffer.getInt(20) & 0xFFFFFFFFL;
+            duration = buffer.getLong(24);
+        } else {
+            timeScale = buffer.getInt(12) & 0xFFFFFFFFL;
+            duration = buffer.getInt(16) & 0xFFFFFFFFL;
+        }
+
+        if (timeScale == 0) {
+            return null;
+        }
+
+        TagBuilder tagBuilder = new TagBuilder();
+        final double trackLength = (double) duration / timeScale;
+        readMp4AudioProperties(channel, fileSize, moov, trackLength, tagBuilder);
+
+        final long[] udta = findAtom(channel, moov[0], moov[1], "udta");
+        final long[] meta = udta == null ? null : findAtom(channel, udta[0], udta[1], "meta");
+
+        if (meta == null) {
+            return tagBuilder.build(trackLength);
+        }
+
+        // meta is usually a full atom with 4 bytes of version and flags before its children
+        buffer = read(channel, meta[0], 4);
+        final long metaStart = buffer != null && buffer.getInt(0) == 0 ? meta[0] + 4 : meta[0];
+        final long[] ilst = findAtom(channel, metaStart, meta[1], "ilst");
+
+        if (ilst == null) {
+            return tagBuilder.build(trackLength);
+        }
+
+        long position = ilst[0];
+
+        while (position + 8 <= ilst[1]) {
+            buffer = read(channel, position, 8);
+
+            if (buffer == null) {
+                return null;
+            }
+
+            final long itemSize = buffer.getInt(0) & 0xFFFFFFFFL;
+            final String itemId = ascii(buffer, 4, 4);
+
+            if (itemSize < 8 || position + itemSize > ilst[1]) {
+                return null;
+            }
+
+            switch (itemId) {
+                case "\u00A9nam", "\u00A9ART", "aART", "\u00A9alb", "\u00A9gen", "gnre", "trkn", "disk", "\u00A9day" -> {
+                    if (!readIlstItem(channel, position + 8, position + itemSize, itemId, tagBuilder)) {
+                        return null;
+                    }
+                }
+            }
+
+            position += itemSize;
+        }
+
+        return tagBuilder.build(trackLength);
+    }
+
+    private static boolean readIlstItem(FileChannel channel, long start, long end, String itemId,
+                                        TagBuilder tagBuilder) throws IOException {
+        final long[] data = findAtom(channel, start, end, "data");
+
+        // Item without a value
+        if (data == null) {
+            return true;
+        }
+
+        if (data[1] - data[0] < 8 || data[1] - data[0] > bufferSize) {
+            return false;
+        }
+
+        final int dataSize = (int) (data[1] - data[0]);
+        ByteBuffer buffer = read(channel, data[0], dataSize);
+
+        if (buffer == null) {
+            return false;
+        }
+
+        // Type indicator and locale, then the value. trkn and disk hold reserved, number and count shorts.
+        if (itemId.equals("trkn") || itemId.equals("disk")) {
+            final int number = dataSize >= 12 ? buffer.getShort(10) & 0xFFFF : 0;
+
+            if (itemId.equals("trkn")) {
+                tagBuilder.trackNumber = number;
+            } else {
+                tagBuilder.discNumber = number;
+            }
+
+            return true;
+        }
+
+        if (itemId.equals("gnre")) {
+            final int genreIndex = dataSize >= 10 ? (buffer.getShort(8) & 0xFFFF) - 1 : -1;
+
+            if (genreIndex < 0 || genreIndex >= ID3v1Genres.getGenreCount()) {
+                return false;
+            }
+
+            tagBuilder.genre = "(" + genreIndex + ")";
+            return true;
+        }
+
+        byte[] bytes = new byte[dataSize - 8];
+        buffer.get(8, bytes);
+        final String value = new String(bytes, StandardCharsets.UTF_8);
+
+        switch (itemId) {
+            case "\u00A9nam" -> tagBuilder.title = value;
+            case "\u00A9ART" -> tagBuilder.artist = value;
+            case "aART" -> tagBuilder.albumArtist = value;
+            case "\u00A9alb" -> tagBuilder.album = value;
+            case "\u00A9gen" -> tagBuilder.genre = value;
+            case "\u00A9day" -> tagBuilder.year = Math.max(0, AudioProperties.parseLeadingInt(value));
+        }
+
+        return true;
+    }
+
+    // Sample rate from the time scale of the first track's media header, average bitrate from the mdat size
+    private static void readMp4AudioProperties(FileChannel channel, long fileSize, long[] moov, double trackLength,
+                                               TagBuilder tagBuilder) throws IOException {
+        final long[] trak = findAtom(channel, moov[0], moov[1], "trak");
+        final long[] mdia = trak == null ? null : findAtom(channel, trak[0], trak[1], "mdia");
+        final long[] mdhd = mdia == null ? null : findAtom(channel, mdia[0], mdia[1], "mdhd");
+        ByteBuffer buffer = mdhd == null ? null : read(channel, mdhd[0], 24);
+
+        if (buffer != null) {
+            tagBuilder.sampleRate = buffer.get(0) == 1 ? buffer.getInt(20) : buffer.getInt(12);
+        }
+
+        final long[] mdat = findAtom(channel, 0, fileSize, "mdat");
+
+        if (mdat != null && trackLength > 0) {
+            tagBuilder.bitrate = (int) Math.round((mdat[1] - mdat[0]) * 8 / trackLength / 1000);
+        }
+    }
+
+    /**
+     * findAtom() - Finds a child atom by reading atom headers only
+     *
+     * @param start => First child atom position
+     * @param end => End of the parent atom
+     * @param atomType => Four character atom type
+     * @return => {data start, data end} of the atom, or null if not found
+     */
+    private static long[] findAtom(FileChannel channel, long start, long end, String atomType) throws IOException {
+        long position = start;
+
+        while (position + 8 <= end) {
+            ByteBuffer buffer = read(channel, position, (int) Math.min(16, end - position));
+
+            if (buffer == null) {
+                return null;
+            }
+
+            long atomSize = buffer.getInt(0) & 0xFFFFFFFFL;
+            final String type = ascii(buffer, 4, 4);
+            int headerSize = 8;
+
+            if (atomSize == 1) {
+                if (buffer.limit() < 16) {
+                    return null;
+                }
+
+                atomSize = buffer.getLong(8);
+                headerSize = 16;
+
+            } else if (atomSize == 0) {
+                atomSize = end - position;
+            }
+
+            if (atomSize < headerSize || position + atomSize > end) {
+                return null;
+            }
+
+            if (type.equals(atomType)) {
+                return new long[] {position + headerSize, position + atomSize};
+            }
+
+            position += atomSize;
+        }
+
+        return null;
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          BUFFER HELPERS
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    /**
+     * read() - Reads length bytes at position into this thread's buffer. The buffer is reused by
+     *          the next read, so callers take what they need from it first.
+     *
+     * @return => Big endian buffer from 0 to length, or null if length bytes could not be read
+     */
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        if (length < 0 || length > bufferSize) {
+            return null;
+        }
+
+        ByteBuffer buffer = threadBuffer.get();
+        buffer.clear();
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        buffer.limit(length);
+
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                return null;
+            }
+        }
+
+        buffer.flip();
+
+        return buffer;
+    }
+
+    private static int syncsafe(ByteBuffer buffer, int index) {
+        return ((buffer.get(index) & 0x7F) << 21) | ((buffer.get(index + 1) & 0x7F) << 14) |
+                ((buffer.get(index + 2) & 0x7F) << 7) | (buffer.get(index + 3) & 0x7F);
+    }
+
+    // Chunk and frame ids, ISO-8859-1 so the MP4 copyright sign reads as one character
+    private static String ascii(ByteBuffer buffer, int index, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(index, bytes);
+
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    // ID3v1 field, null padded
+    private static String latin1(ByteBuffer buffer, int index, int length) {
+        String value = ascii(buffer, index, length);
+        final int nullIndex = value.indexOf('\0');
+
+        return (nullIndex >= 0 ? value.substring(0, nullIndex) : value).trim();
+    }
+
+    // Collects fields while reading, missing fields build as empty Strings and numbers as 0
+    private static final class TagBuilder {
+        private String title;
+        private String artist;
+        private String albumArtist;
+        private String album;
+        private String genre;
+        private int bitrate;
+        private int sampleRate;
+        private int trackNumber;
+        private int discNumber;
+        private int year;
+        private boolean hasId3v2;
+
+        // trackLength => Seconds, rounded for TagFields and kept in milliseconds for AudioProperties
+        TagFields build(double trackLength) {
+            return new TagFields(orEmpty(title), orEmpty(artist), orEmpty(albumArtist), orEmpty(album),
+                    orEmpty(genre), (int) Math.round(trackLength), new AudioProperties((int) Math.round(trackLength * 1000),
+                    bitrate, sampleRate, 0, trackNumber, discNumber, year));
+        }
+
+        private static String orEmpty(String value) { return value == null ? "" : value; }
+    }
+
+}
@@ -0,0 +1,556 @@
+/**
+ *      Author: Ian Wallace, copyright 2022 all rights reserved.
+ *      Application: MusicPlayer
+ *      Class: LazyTrackList.java
+ *      Notes: Track list of TableViewLibrary. Tracks are held as rows, a TrackMetadata is only made for a
+ *              row when get() asks for it, i.e. the rows the trackTableView virtual flow shows or the
+ *              tracks of the selected artist.
+ *
+ *              From start up the rows are those of the LibraryStore read from library.bin. The first
+ *              change (add, remove, set or a field edit) copies them into a TrackStore, which holds the
+ *              rows from then on, as columns. A list made from tracks starts out with a TrackStore.
+ *
+ *              The TrackMetadata of a row is kept with a weak reference, so it is the same object for as
+ *              long as anything (the Table View, a selection, the track playing) holds it and is
+ *              collected afterwards. Edits go through setField(), which updates the row and the
+ *              TrackMetadata of it still held, neither is ever ahead of the other.
+ *
+ *              Tracks are found by their track id in constant time, from the TrackStore's id index or, while
+ *              the rows are those of the LibraryStore, an id index built on the first lookup.
+ *
+ *              Search field text is looked up in a SearchIndex, made on the first search and told of every
+ *              change from then on. The index also finds the tracks of a fuzzy search, ranked by their edits.
+ */
+
+package com.iandw.musicplayerjavafx.Libraries;
+
+import com.iandw.musicplayerjavafx.FileIO.LibraryStore;
+import com.iandw.musicplayerjavafx.TrackMetadata;
+import com.iandw.musicplayerjavafx.Utilities.TrackField;
+import com.iandw.musicplayerjavafx.Utilities.TrackFieldPredicate;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import javafx.collections.ModifiableObservableListBase;
+
+final class LazyTrackList extends ModifiableObservableListBase<TrackMetadata> {
+    private LibraryStore libraryStore;
+    private TrackStore trackStore;
+    private RowReference[] rowReferences;
+    private int[] storeIdRows;
+    private SearchIndex searchIndex;
+    private final ReferenceQueue<TrackMetadata> collectedRows = new ReferenceQueue<>();
+
+    // TrackMetadata of a row, row is kept up to date as rows move
+    private static final class RowReference extends WeakReference<TrackMetadata> {
+        private int row;
+
+        RowReference(TrackMetadata trackMetadata, int row, ReferenceQueue<TrackMetadata> collectedRows) {
+            super(trackMetadata, collectedRows);
+            this.row = row;
+        }
+    }
+
+    LazyTrackList(LibraryStore libraryStore) {
+        this.libraryStore = libraryStore;
+        rowReferences = new RowReference[libraryStore.getTrackCount()];
+    }
+
+    LazyTrackList(Collection<TrackMetadata> tracks) {
+        trackStore = new TrackStore(tracks.size());
+        rowReferences = new RowReference[tracks.size()];
+
+        for (TrackMetadata trackMetadata : tracks) {
+            trackStore.insert(trackStore.size(), trackMetadata);
+        }
+    }
+
+    @Override
+    public synchronized TrackMetadata get(int index) {
+        Objects.checkIndex(index, size());
+        TrackMetadata trackMetadata = getHeld(index);
+
+        if (trackMetadata == null) {
+            trackMetadata = decode(index);
+            hold(index, trackMetadata);
+        }
+
+        return trackMetadata;
+    }
+
+    @Override
+    public synchronized int size() { return trackStore != null ? trackStore.size() : rowReferences.length; }
+
+    // Finds a held TrackMetadata by its id or path rather than making one for every row
+    @Override
+    public synchronized int indexOf(Object object) {
+        if (!(object instanceof TrackMetadata trackMetadata)) {
+            return -1;
+        }
+
+        final int idIndex = indexOfTrackId(trackMetadata.getTrackId());
+
+        if (idIndex >= 0 && getHeld(idIndex) == trackMetadata) {
+            return idIndex;
+        }
+
+        final int index = indexOfTrackPath(trackMetadata.getTrackPathStr());
+
+        if (index >= 0 && getHeld(index) == trackMetadata) {
+            return index;
+        }
+
+        // Tracks sharing a path
+        for (int i = 0; i < size(); i++) {
+            if (getHeld(i) == trackMetadata) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    @Override
+    public boolean contains(Object object) { return indexOf(object) >= 0; }
+
+    @Override
+    protected synchronized void doAdd(int index, TrackMetadata trackMetadata) {
+        toTrackStore();
+        trackStore.insert(index, trackMetadata);
+        insertRow(index);
+        hold(index, trackMetadata);
+
+        if (searchIndex != null) {
+            searchIndex.addTrack(trackMetadata);
+        }
+    }
+
+    @Override
+    protected synchronized TrackMetadata doSet(int index, TrackMetadata trackMetadata) {
+        TrackMetadata replacedTrack = get(index);
+
+        toTrackStore();
+        trackStore.set(index, trackMetadata);
+        hold(index, trackMetadata);
+
+        if (searchIndex != null) {
+            searchIndex.markDirty(replacedTrack.getTrackId());
+            searchIndex.addTrack(trackMetadata);
+        }
+
+        return replacedTrack;
+    }
+
+    @Override
+    protected synchronized TrackMetadata doRemove(int index) {
+        TrackMetadata removedTrack = get(index);
+
+        toTrackStore();
+        trackStore.remove(index);
+        removeRow(index);
+
+        if (searchIndex != null) {
+            searchIndex.markDirty(removedTrack.getTrackId());
+        }
+
+        return removedTrack;
+    }
+
+    // Every row at once, tracks removed are only made if a listener reads them
+    @Override
+    public synchronized void clear() {
+        if (size() == 0) {
+            return;
+        }
+
+        final List<TrackMetadata> removedTracks = rowList(libraryStore, trackStore, size());
+
+        libraryStore = null;
+        trackStore = new TrackStore();
+        rowReferences = new RowReference[0];
+        storeIdRows = null;
+        searchIndex = null;
+
+        beginChange();
+        nextRemove(0, removedTracks);
+        endChange();
+    }
+
+    // Runs a number of adds, sets and removes as one list change
+    void applyChanges(Runnable changes) {
+        beginChange();
+
+        try {
+            changes.run();
+
+        } finally {
+            endChange();
+        }
+    }
+
+    // Copies the rows out of the LibraryStore now, i.e. before paths move
+    synchronized void unmap() { toTrackStore(); }
+
+    /**
+     * setField() - edits one field of a row and of its TrackMetadata if held
+     *
+     * @param index => Row
+     * @param trackField => ARTIST, TITLE, ALBUM, GENRE or PLAYLIST
+     * @param value => New value
+     */
+    synchronized void setField(int index, TrackField trackField, String value) {
+        toTrackStore();
+        trackStore.setField(index, trackField, value);
+
+        TrackMetadata trackMetadata = getHeld(index);
+        if (trackMetadata != null) {
+            trackField.set(trackMetadata, value);
+        }
+
+        if (searchIndex != null) {
+            searchIndex.markDirty(trackStore.getTrackId(index));
+            searchIndex.addTrack(peek(index));
+        }
+    }
+
+    /**
+     * snapshot() - the rows as they are now, for LibraryJournal to write on its own thread. Each get()
+     *              makes a TrackMetadata which is not kept.
+     *
+     * @return => Read only list
+     */
+    synchronized List<TrackMetadata> snapshot() {
+        return rowList(libraryStore, trackStore == null ? null : trackStore.copy(), size());
+    }
+
+    // Rows of a store no longer changed by the list, a TrackMetadata is made on every get()
+    private static List<TrackMetadata> rowList(LibraryStore libraryStore, TrackStore trackStore, int size) {
+        return new AbstractList<>() {
+            @Override
+            public TrackMetadata get(int index) {
+                Objects.checkIndex(index, size);
+
+                return trackStore != null ? trackStore.decode(index) : libraryStore.decodeTrack(index);
+            }
+
+            @Override
+            public int size() { return size; }
+        };
+    }
+
+    private void toTrackStore() {
+        if (trackStore != null) {
+            return;
+        }
+
+        TrackStore copiedTrackStore = new TrackStore(rowReferences.length);
+
+        for (int i = 0; i < rowReferences.length; i++) {
+            TrackMetadata trackMetadata = getHeld(i);
+            copiedTrackStore.insert(i, trackMetadata != null ? trackMetadata : libraryStore.decodeTrack(i));
+        }
+
+        trackStore = copiedTrackStore;
+        libraryStore = null;
+        storeIdRows = null;
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          ROW REFERENCES
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    private TrackMetadata decode(int index) {
+        return trackStore != null ? trackStore.decode(index) : libraryStore.decodeTrack(index);
+    }
+
+    private TrackMetadata getHeld(int index) {
+        RowReference rowReference = rowReferences[index];
+
+        return rowReference == null ? null : rowReference.get();
+    }
+
+    private void hold(int index, TrackMetadata trackMetadata) {
+        clearCollectedRows();
+        rowReferences[index] = new RowReference(trackMetadata, index, collectedRows);
+    }
+
+    // A row was inserted at index, rowReferences is kept at least as long as the list
+    private void insertRow(int index) {
+        if (rowReferences.length < size()) {
+            rowReferences = Arrays.copyOf(rowReferences, Math.max(size(), rowReferences.length + (rowReferences.length >> 1)));
+        }
+
+        System.arraycopy(rowReferences, index, rowReferences, index + 1, size() - 1 - index);
+        rowReferences[index] = null;
+        renumberRows(index + 1);
+    }
+
+    // The row at index was removed
+    private void removeRow(int index) {
+        System.arraycopy(rowReferences, index + 1, rowReferences, index, size() - index);
+        rowReferences[size()] = null;
+        renumberRows(index);
+    }
+
+    private void renumberRows(int fromIndex) {
+        for (int i = fromIndex; i < size(); i++) {
+            if (rowReferences[i] != null) {
+                rowReferences[i].row = i;
+            }
+        }
+    }
+
+    // Frees the slots of TrackMetadata no longer held
+    private void clearCollectedRows() {
+        Reference<? extends TrackMetadata> reference;
+
+        while ((reference = collectedRows.poll()) != null) {
+            RowReference rowReference = (RowReference) reference;
+
+            if (rowReference.row < rowReferences.length && rowReferences[rowReference.row] == rowReference) {
+                rowReferences[rowReference.row] = null;
+            }
+        }
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          QUERIES
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    /**
+     * select() - tracks matching trackFieldPredicate, in list order. The store answers from its rows,
+     *            a TrackMetadata is only made for the matching tracks.
+     *
+     * @param trackFieldPredicate => Artist, playlist or search text predicate
+     * @return => Matching tracks
+     */
+    synchronized List<TrackMetadata> select(TrackFieldPredicate trackFieldPredicate) {
+        final int[] indexes = trackStore != null
+                ? trackStore.select(trackFieldPredicate) : libraryStore.selectTracks(trackFieldPredicate);
+
+        return IntStream.of(indexes).mapToObj(this::get).toList();
+    }
+
+    /**
+     * search() - tracks whose search fields contain searchText, any case, in list order. Called off the
+     *            JavaFX Application Thread, the first search builds the SearchIndex without holding the list.
+     *            A fuzzy search follows them with the tracks near searchText (see SearchIndex.fuzzyMatches()),
+     *            fewest edits first.
+     *
+     * @param searchText => Search field text, not empty
+     * @param searchPredicate => The same search as a predicate, checks tracks the index cannot tell apart
+     * @param fuzzy => Also find tracks with typos or accents the search text does not have
+     * @param cancelled => True once a newer search has started
+     * @return => Matching tracks, null if cancelled
+     */
+    List<TrackMetadata> search(String searchText, TrackFieldPredicate searchPredicate, boolean fuzzy,
+                               BooleanSupplier cancelled) {
+        final SearchIndex currentSearchIndex = getSearchIndex();
+        currentSearchIndex.build();
+
+        final String lowerCaseSearchText = searchText.toLowerCase();
+        final int version = currentSearchIndex.getVersion();
+        final BitSet candidates = currentSearchIndex.candidates(lowerCaseSearchText, cancelled);
+
+        final SearchIndex.FuzzyMatches fuzzyMatches = fuzzy ? currentSearchIndex.fuzzyMatches(searchText, cancelled) : null;
+
+        if (candidates == null || fuzzy && fuzzyMatches == null) {
+            return null;
+        }
+
+        // Token matches are exact for a single term, as long as the track's postings are up to date
+        final boolean singleTerm = lowerCaseSearchText.chars().noneMatch(Character::isWhitespace);
+        final BitSet matches = new BitSet();
+        final List<TrackMetadata> tracks;
+
+        synchronized (this) {
+            int[] indexes = new int[candidates.cardinality()];
+            int indexCount = 0;
+
+            for (int trackId = candidates.nextSetBit(0); trackId >= 0; trackId = candidates.nextSetBit(trackId + 1)) {
+                if ((indexCount & 0xFFF) == 0 && cancelled.getAsBoolean()) {
+                    return null;
+                }
+
+                final int index = indexOfTrackId(trackId);
+
+                if (index < 0 || (!singleTerm || currentSearchIndex.isDirty(trackId)) && !searchPredicate.test(peek(index))) {
+                    continue;
+                }
+
+                indexes[indexCount++] = index;
+                matches.set(trackId);
+            }
+
+            indexes = Arrays.copyOf(indexes, indexCount);
+            Arrays.sort(indexes);
+            tracks = new ArrayList<>(IntStream.of(indexes).mapToObj(this::get).toList());
+
+            if (fuzzy) {
+                tracks.addAll(rankFuzzyMatches(fuzzyMatches, matches, currentSearchIndex, searchText));
+            }
+        }
+
+        currentSearchIndex.setPreviousMatches(lowerCaseSearchText, matches, version);
+
+        return tracks;
+    }
+
+    // Fuzzy matches not among the exact matches, by edits then list order
+    private List<TrackMetadata> rankFuzzyMatches(SearchIndex.FuzzyMatches fuzzyMatches, BitSet matches,
+                                                 SearchIndex currentSearchIndex, String searchText) {
+        final BitSet fuzzyTrackIds = fuzzyMatches.trackIds();
+        long[] rankedIndexes = new long[fuzzyTrackIds.cardinality()];
+        int rankedCount = 0;
+
+        for (int trackId = fuzzyTrackIds.nextSetBit(0); trackId >= 0; trackId = fuzzyTrackIds.nextSetBit(trackId + 1)) {
+            final int index = matches.get(trackId) ? -1 : indexOfTrackId(trackId);
+
+            if (index < 0) {
+                continue;
+            }
+
+            final int edits = currentSearchIndex.isDirty(trackId)
+                    ? SearchIndex.fuzzyEdits(peek(index), searchText) : fuzzyMatches.edits()[trackId];
+
+            if (edits >= 0) {
+                rankedIndexes[rankedCount++] = (long) edits << 32 | index;
+            }
+        }
+
+        rankedIndexes = Arrays.copyOf(rankedIndexes, rankedCount);
+        Arrays.sort(rankedIndexes);
+
+        return LongStream.of(rankedIndexes).mapToObj(rankedIndex -> get((int) rankedIndex)).toList();
+    }
+
+    // The search index, a new one once the edits checked against their rows are too many
+    private synchronized SearchIndex getSearchIndex() {
+        if (searchIndex == null || searchIndex.getDirtyCount() > Math.max(4096, size() / 8)) {
+            searchIndex = new SearchIndex(snapshot());
+        }
+
+        return searchIndex;
+    }
+
+    // True if any track's field equals value
+    synchronized boolean containsValue(TrackField trackField, String value) {
+        return (trackStore != null ? trackStore.find(trackField, value) : libraryStore.findTracks(trackField, value)).length > 0;
+    }
+
+    // Track at index, made without being kept if not held, used to export the library
+    synchronized TrackMetadata peek(int index) {
+        TrackMetadata trackMetadata = getHeld(index);
+
+        return trackMetadata != null ? trackMetadata : decode(index);
+    }
+
+    // Every track path, without making a TrackMetadata per row
+    synchronized Set<String> getTrackPathSet() {
+        Set<String> trackPathSet = new HashSet<>();
+
+        for (int i = 0; i < size(); i++) {
+            trackPathSet.add(getTrackPathStr(i));
+        }
+
+        return trackPathSet;
+    }
+
+    // Paths of the tracks at a path or in the directories below it, the other tracks' paths are not made
+    synchronized List<String> getTrackPathsUnder(String pathStr) {
+        final int[] indexes = trackStore != null ? trackStore.indexesUnder(pathStr) : libraryStore.findTracksUnder(pathStr);
+
+        return IntStream.of(indexes).mapToObj(this::getTrackPathStr).toList();
+    }
+
+    // Path of one track, without making its TrackMetadata
+    synchronized String getTrackPathStr(int index) {
+        return trackStore != null ? trackStore.getTrackPathStr(index) : libraryStore.getTrackPathStr(index);
+    }
+
+    /**
+     * indexOfTrackId() - position of the track with an id
+     *
+     * @param trackId => TrackMetadata.getTrackId()
+     * @return => Index, -1 if no track has the id
+     */
+    synchronized int indexOfTrackId(int trackId) {
+        if (trackStore != null) {
+            return trackStore.indexOfTrackId(trackId);
+        }
+
+        if (storeIdRows == null) {
+            buildStoreIdRows();
+        }
+
+        return trackId > 0 && trackId < storeIdRows.length ? storeIdRows[trackId] - 1 : -1;
+    }
+
+    // Index + 1 by the ids saved in library.bin, tracks of an older library.bin have none
+    private void buildStoreIdRows() {
+        int maxTrackId = 0;
+
+        for (int i = 0; i < rowReferences.length; i++) {
+            maxTrackId = Math.max(maxTrackId, libraryStore.getTrackId(i));
+        }
+
+        storeIdRows = new int[maxTrackId + 1];
+
+        for (int i = 0; i < rowReferences.length; i++) {
+            final int trackId = libraryStore.getTrackId(i);
+
+            if (trackId > 0 && storeIdRows[trackId] == 0) {
+                storeIdRows[trackId] = i + 1;
+            }
+        }
+    }
+
+    // Sum of every track's duration, read from the rows without making a TrackMetadata
+    synchronized long totalDurationMillis() {
+        if (trackStore != null) {
+            return trackStore.sumDurationMillis();
+        }
+
+        long durationMillis = 0;
+
+        for (int i = 0; i < rowReferences.length; i++) {
+            durationMillis += libraryStore.getDurationMillis(i);
+        }
+
+        return durationMillis;
+    }
+
+    /**
+     * indexOfTrackPath() - position of the track with a path, from the store's path index
+     *
+     * @param trackPathStr => Track path
+     * @return => Index, -1 if no track has the path
+     */
+    synchronized int indexOfTrackPath(String trackPathStr) {
+        if (trackStore != null) {
+            return trackStore.indexOfTrackPath(trackPathStr);
+        }
+
+        final int index = libraryStore.findTrack(trackPathStr);
+
+        return index >= 0 && Objects.equals(getTrackPathStr(index), trackPathStr) ? index : -1;
+    }
+}
@@ -0,0 +1,478 @@
+/**
+ *      Author: Ian Wallace, copyright 2022 all rights reserved.
+ *      Application: MusicPlayer
+ *      Class: LibraryWatcher.java
+ *      Notes: Keeps the Music Library in sync with the root music directory while the Application is open.
+ *
+ *              Runs on a daemon thread with a WatchService registered on the root directory and its
+ *              sub-folders. Changed paths are collected and only processed once the directory has been
+ *              quiet for debounceMillis (or maxBatchMillis has passed), so copying an album folder is
+ *              parsed once as a single batch instead of once per file event.
+ *
+ *              Watch limits:
+ *                  - Standard Initialization only registers Root -> Artist -> Album folders, Recursive
+ *                    Initialization registers every folder.
+ *                  - No more than maxWatchedDirectories folders are registered so the OS watch limit
+ *                    (inotify on Linux) is not used up by large libraries. Folders past the limit are
+ *                    reconciled against the library every unwatchedPollMillis instead, new, removed and
+ *                    modified files included, and the user is told that live sync is partial.
+ *                  - On OVERFLOW events were dropped, the folder is reconciled against the library instead.
+ *
+ *              Batches are published to TableViewLibrary and ListViewLibrary with one Platform.runLater().
+ */
+
+package com.iandw.musicplayerjavafx.Libraries;
+
+import com.iandw.musicplayerjavafx.TrackMetadata;
+import com.iandw.musicplayerjavafx.Utilities.UserSettings;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import javafx.application.Platform;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+public class LibraryWatcher implements Runnable {
+    private static final int maxWatchedDirectories = 4096;
+    private static final int standardWatchDepth = 2;
+    private static final long debounceMillis = 1500;
+    private static final long maxBatchMillis = 10000;
+    private static final long pollMillis = 250;
+    private static final long unwatchedPollMillis = 60000;
+
+    private final MusicLibrary musicLibrary;
+    private final TableViewLibrary tableViewLibrary;
+    private final ListViewLibrary listViewLibrary;
+    private final UserSettings userSettings;
+    private final Consumer<Set<String>> onLibraryChanged;
+    private final Runnable onPartialSync;
+    private final Map<WatchKey, Path> watchKeyMap;
+    private final Set<Path> watchedDirectories;
+    private final Set<Path> unwatchedDirectories;
+    private final Set<Path> pendingPaths;
+    private volatile WatchService watchService;
+    private Path rootPath;
+    private String rootMusicDirectoryString;
+    private long firstEventMillis;
+    private long lastEventMillis;
+    private long lastUnwatchedPollMillis;
+    private boolean watchLimitReached;
+    private volatile boolean running;
+
+    /**
+     * LibraryWatcher()
+     *
+     * @param musicLibrary => Parses changed audio files
+     * @param tableViewLibrary => Receives new, modified and removed tracks
+     * @param listViewLibrary => Receives new and removed artist names
+     * @param userSettings => Root music directory and initialization type
+     * @param onLibraryChanged => Called on the JavaFX Application Thread with the artists changed by a batch
+     * @param onPartialSync => Called on the JavaFX Application Thread when the watch limit is reached, some
+     *                         folders are then polled every unwatchedPollMillis
+     */
+    public LibraryWatcher(MusicLibrary musicLibrary, TableViewLibrary tableViewLibrary, ListViewLibrary listViewLibrary,
+                          UserSettings userSettings, Consumer<Set<String>> onLibraryChanged, Runnable onPartialSync) {
+        this.musicLibrary = musicLibrary;
+        this.tableViewLibrary = tableViewLibrary;
+        this.listViewLibrary = listViewLibrary;
+        this.userSettings = userSettings;
+        this.onLibraryChanged = onLibraryChanged;
+        this.onPartialSync = onPartialSync;
+        watchKeyMap = new HashMap<>();
+        watchedDirectories = new HashSet<>();
+        unwatchedDirectories = new LinkedHashSet<>();
+        pendingPaths = new LinkedHashSet<>();
+    }
+
+    @Override
+    public void run() {
+        running = true;
+
+        while (running) {
+            try {
+                // Re-register when the root directory is changed in Settings
+                if (!Objects.equals(rootMusicDirectoryString, userSettings.getRootMusicDirectoryString())) {
+                    registerRoot();
+                }
+
+                if (watchService == null) {
+                    Thread.sleep(debounceMillis);
+                    continue;
+                }
+
+                WatchKey watchKey = watchService.poll(pollMillis, TimeUnit.MILLISECONDS);
+
+                if (watchKey != null) {
+                    collectEvents(watchKey);
+                }
+
+                final long now = System.currentTimeMillis();
+
+                if (!pendingPaths.isEmpty() &&
+                        (now - lastEventMillis >= debounceMillis || now - firstEventMillis >= maxBatchMillis)) {
+                    processPendingPaths();
+                }
+
+                if (!unwatchedDirectories.isEmpty() && now - lastUnwatchedPollMillis >= unwatchedPollMillis) {
+                    pollUnwatchedDirectories(now);
+                }
+
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                running = false;
+
+            } catch (IOException | ExecutionException e) {
+                e.printStackTrace();
+                System.out.println(e.getMessage());
+            }
+        }
+
+        closeWatchService();
+    }
+
+    // Stops the watcher thread, safe to call from any thread
+    public void stop() {
+        running = false;
+        WatchService currentWatchService = watchService;
+
+        if (currentWatchService != null) {
+            try {
+                currentWatchService.close();
+
+            } catch (IOException e) {
+                e.printStackTrace();
+                System.out.println(e.getMessage());
+            }
+        }
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          REGISTRATION
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    private void registerRoot() throws IOException {
+        closeWatchService();
+        pendingPaths.clear();
+        watchLimitReached = false;
+        rootMusicDirectoryString = userSettings.getRootMusicDirectoryString();
+        lastUnwatchedPollMillis = System.currentTimeMillis();
+
+        if (rootMusicDirectoryString == null || !Files.isDirectory(Paths.get(rootMusicDirectoryString))) {
+            return;
+        }
+
+        rootPath = Paths.get(rootMusicDirectoryString).toAbsolutePath();
+        watchService = FileSystems.getDefault().newWatchService();
+        registerTree(rootPath);
+
+        System.out.printf("Watching %d folders in %s%n", watchKeyMap.size(), rootPath);
+
+        if (!unwatchedDirectories.isEmpty()) {
+            System.out.printf("%d folders past the watch limit are checked for changes every %d seconds%n",
+                    unwatchedDirectories.size(), TimeUnit.MILLISECONDS.toSeconds(unwatchedPollMillis));
+            Platform.runLater(onPartialSync);
+        }
+    }
+
+    // Registers directory and its sub-folders up to the watch depth and limit, folders past the limit are
+    // polled along with everything below them
+    private void registerTree(Path directory) throws IOException {
+        // Folders at the walk's max depth are passed to visitFile(), so walk one level past the watch depth
+        final int maxDepth = watchDepth() == Integer.MAX_VALUE ? Integer.MAX_VALUE : watchDepth() - depthOf(directory) + 1;
+
+        Files.walkFileTree(directory, EnumSet.noneOf(FileVisitOption.class), maxDepth,
+                new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                        // Folders excluded by the scan rules are not scanned, so not watched either
+                        if (!dir.equals(rootPath) && musicLibrary.isExcludedDirectory(dir)) {
+                            return FileVisitResult.SKIP_SUBTREE;
+                        }
+
+                        if (register(dir)) {
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        unwatchedDirectories.add(dir);
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException e) {
+                        System.out.println(e.getMessage());
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+    }
+
+    private boolean register(Path directory) throws IOException {
+        if (watchedDirectories.contains(directory)) {
+            return true;
+        }
+
+        if (watchKeyMap.size() >= maxWatchedDirectories) {
+            if (!watchLimitReached) {
+                watchLimitReached = true;
+                System.out.printf("Watch limit of %d folders reached%n", maxWatchedDirectories);
+            }
+
+            return false;
+        }
+
+        watchKeyMap.put(directory.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), directory);
+        watchedDirectories.add(directory);
+
+        // A watched folder was removed since, the slot is used by a folder that was polled
+        unwatchedDirectories.remove(directory);
+
+        return true;
+    }
+
+    private int watchDepth() {
+        return Objects.equals(userSettings.getInitalizationString(), "recursive") ? Integer.MAX_VALUE : standardWatchDepth;
+    }
+
+    private int depthOf(Path path) {
+        return rootPath.relativize(path).toString().isEmpty() ? 0 : rootPath.relativize(path).getNameCount();
+    }
+
+    private void closeWatchService() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+
+            } catch (IOException e) {
+                e.printStackTrace();
+                System.out.println(e.getMessage());
+            }
+        }
+
+        watchService = null;
+        watchKeyMap.clear();
+        watchedDirectories.clear();
+        unwatchedDirectories.clear();
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          EVENTS
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    private void collectEvents(WatchKey watchKey) {
+        Path directory = watchKeyMap.get(watchKey);
+
+        if (directory != null) {
+            for (WatchEvent<?> watchEvent : watchKey.pollEvents()) {
+                if (watchEvent.kind() == OVERFLOW) {
+                    // Events were lost, reconcile the whole folder
+                    System.out.printf("Watch events overflowed in %s%n", directory);
+                    pendingPaths.add(directory);
+
+                } else {
+                    pendingPaths.add(directory.resolve((Path) watchEvent.context()));
+                }
+            }
+
+            if (!pendingPaths.isEmpty()) {
+                final long now = System.currentTimeMillis();
+
+                if (firstEventMillis == 0) {
+                    firstEventMillis = now;
+                }
+
+                lastEventMillis = now;
+            }
+        }
+
+        // Key is no longer valid when its folder was deleted
+        if (!watchKey.reset()) {
+            watchedDirectories.remove(watchKeyMap.remove(watchKey));
+        }
+    }
+
+    /**
+     * processPendingPaths() - Parses and publishes one batch of changed paths.
+     *
+     *      Existing files are parsed (new or modified), existing folders are registered and reconciled
+     *      against the library, and paths that no longer exist remove every track at or below them.
+     *
+     * @throws InterruptedException
+     * @throws ExecutionException
+     * @throws IOException
+     */
+    private void processPendingPaths() throws InterruptedException, ExecutionException, IOException {
+        List<Path> changedPaths = new ArrayList<>(pendingPaths);
+        pendingPaths.clear();
+        firstEventMillis = 0;
+
+        processPaths(changedPaths, Long.MAX_VALUE);
+    }
+
+    /**
+     * pollUnwatchedDirectories() - reconciles the folders past the watch limit, their files modified since
+     *                              the last poll are parsed again
+     *
+     * @param now => Time of this poll
+     * @throws InterruptedException
+     * @throws ExecutionException
+     * @throws IOException
+     */
+    private void pollUnwatchedDirectories(long now) throws InterruptedException, ExecutionException, IOException {
+        final long modifiedAfterMillis = lastUnwatchedPollMillis;
+        lastUnwatchedPollMillis = now;
+
+        processPaths(new ArrayList<>(unwatchedDirectories), modifiedAfterMillis);
+
+        // Deleted folders have had their tracks removed
+        unwatchedDirectories.removeIf(directory -> !Files.isDirectory(directory));
+    }
+
+    /**
+     * processPaths() - see processPendingPaths()
+     *
+     * @param changedPaths => Changed files and folders
+     * @param modifiedAfterMillis => Known tracks below a changed folder modified after this are parsed again,
+     *                               Long.MAX_VALUE when their changes are reported by watch events
+     * @throws InterruptedException
+     * @throws ExecutionException
+     * @throws IOException
+     */
+    private void processPaths(List<Path> changedPaths, long modifiedAfterMillis)
+            throws InterruptedException, ExecutionException, IOException {
+        // Tracks at or below the changed folders and the paths that are gone, looked up on the JavaFX
+        // Application Thread. Changed files are parsed whether or not they are tracks, they need no lookup.
+        List<Path> lookupPaths = changedPaths.stream().filter(changedPath -> !Files.isRegularFile(changedPath)).toList();
+        Map<Path, List<String>> knownTrackPaths = new HashMap<>();
+
+        if (!lookupPaths.isEmpty()) {
+            FutureTask<Void> trackPathTask = new FutureTask<>(() -> {
+                for (Path lookupPath : lookupPaths) {
+                    knownTrackPaths.put(lookupPath, tableViewLibrary.getTrackPathsUnder(lookupPath.toAbsolutePath().toString()));
+                }
+            }, null);
+            Platform.runLater(trackPathTask);
+            trackPathTask.get();
+        }
+
+        Set<Path> changedFiles = new LinkedHashSet<>();
+        Set<String> removedTrackPaths = new HashSet<>();
+
+        for (Path changedPath : changedPaths) {
+            final List<String> trackPathsUnder = knownTrackPaths.getOrDefault(changedPath, List.of());
+
+            if (Files.isDirectory(changedPath)) {
+                if (depthOf(changedPath) <= watchDepth()) {
+                    registerTree(changedPath);
+                }
+
+                reconcileDirectory(changedPath, new HashSet<>(trackPathsUnder), modifiedAfterMillis, changedFiles,
+                        removedTrackPaths);
+
+            } else if (Files.isRegularFile(changedPath)) {
+                changedFiles.add(changedPath);
+
+            } else {
+                removedTrackPaths.addAll(trackPathsUnder);
+            }
+        }
+
+        List<TrackMetadata> updatedTracks = new ArrayList<>();
+
+        for (Path changedFile : changedFiles) {
+            if (!running) {
+                return;
+            }
+
+            // Extensionless and partially written files are passed over
+            try {
+                TrackMetadata trackMetadata = musicLibrary.parseWatchedFile(changedFile.toAbsolutePath());
+
+                if (trackMetadata != null) {
+                    updatedTracks.add(trackMetadata);
+                }
+
+            } catch (Exception e) {
+                System.out.printf("%s could not be read: %s%n", changedFile, e.getMessage());
+            }
+        }
+
+        if (!updatedTracks.isEmpty() || !removedTrackPaths.isEmpty()) {
+            System.out.printf("Library sync: %d updated, %d removed%n", updatedTracks.size(), removedTrackPaths.size());
+            Platform.runLater(() -> publish(updatedTracks, removedTrackPaths));
+        }
+    }
+
+    // Queues files under directory that are not in the library or were modified after modifiedAfterMillis,
+    // and removes tracks whose files are gone
+    // knownTrackPaths => Tracks below directory, see TableViewLibrary.getTrackPathsUnder()
+    private void reconcileDirectory(Path directory, Set<String> knownTrackPaths, long modifiedAfterMillis,
+                                    Set<Path> changedFiles, Set<String> removedTrackPaths) throws IOException {
+        Set<String> foundTrackPaths = new HashSet<>();
+
+        Files.walkFileTree(directory, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                final String trackPathStr = file.toAbsolutePath().toString();
+                foundTrackPaths.add(trackPathStr);
+
+                if (attrs.isRegularFile() && (!knownTrackPaths.contains(trackPathStr)
+                        || attrs.lastModifiedTime().toMillis() > modifiedAfterMillis)) {
+                    changedFiles.add(file);
+                }
+
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                System.out.println(e.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        for (String trackPathStr : knownTrackPaths) {
+            if (!foundTrackPaths.contains(trackPathStr)) {
+                removedTrackPaths.add(trackPathStr);
+            }
+        }
+    }
+
+    // JavaFX Application Thread
+    private void publish(List<TrackMetadata> updatedTracks, Set<String> removedTrackPaths) {
+        Set<String> changedArtists = new HashSet<>();
+        List<TrackMetadata> removedTracks = tableViewLibrary.applyLibraryChanges(updatedTracks, removedTrackPaths);
+
+        for (TrackMetadata trackMetadata : updatedTracks) {
+            final String artistName = trackMetadata.getArtistNameStr();
+            changedArtists.add(artistName);
+
+            if (!listViewLibrary.getArtistObservableList().contains(artistName)) {
+                listViewLibrary.addArtist(artistName);
+            }
+        }
+
+        Set<String> removedArtists = new HashSet<>();
+        removedTracks.forEach(trackMetadata -> removedArtists.add(trackMetadata.getArtistNameStr()));
+
+        // Remove an artist only once their last track is gone
+        for (String artistName : removedArtists) {
+            changedArtists.add(artistName);
+
+            if (!tableViewLibrary.containsArtist(artistName)) {
+                listViewLibrary.removeArtist(artistName);
+            }
+        }
+
+        onLibraryChanged.accept(changedArtists);
+    }
+
+}
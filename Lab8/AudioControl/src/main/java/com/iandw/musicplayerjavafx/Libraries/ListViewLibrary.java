@@ -4,26 +4,36 @@
  *      Class: ListViewLibrary.java
  *      Notes: This object holds all the necessary data for ArtistListView and PlaylistListView
  *              to function as lists of Strings, used to search the Table View Object when selected.
+ *
+ *              Names added or removed one at a time are appended to the library journal (see LibraryJournal).
+ *
+ *              The tracks of each playlist are held by playlistLibrary and saved to playlists.bin, the
+ *              playlist names here and in library.bin are kept in step with it.
  */
 
 package com.iandw.musicplayerjavafx.Libraries;
 
-import com.iandw.musicplayerjavafx.FileIO.ArtistListFileIO;
-import com.iandw.musicplayerjavafx.FileIO.PlaylistFileIO;
-import com.iandw.musicplayerjavafx.ResourceURLs;
+import com.iandw.musicplayerjavafx.FileIO.AutosaveService;
+import com.iandw.musicplayerjavafx.FileIO.AutosaveService.Store;
+import com.iandw.musicplayerjavafx.FileIO.LibraryJournal;
+import com.iandw.musicplayerjavafx.FileIO.LibraryJournal.Mutation;
+import com.iandw.musicplayerjavafx.FileIO.LibraryJournal.Operation;
+import com.iandw.musicplayerjavafx.FileIO.LibraryStore;
+import com.iandw.musicplayerjavafx.FileIO.PlaylistFileIO.PlaylistData;
+import com.iandw.musicplayerjavafx.TrackMetadata;
+import com.iandw.musicplayerjavafx.Utilities.TrackField;
+import com.iandw.musicplayerjavafx.Utilities.TrackFieldPredicate;
 
-import java.io.*;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.util.*;
 
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 
 
-public class ListViewLibrary implements Runnable {
+public class ListViewLibrary {
     private ObservableList<String> artistObservableList;
     private ObservableList<String> playlistObservableList;
+    private final PlaylistLibrary playlistLibrary = new PlaylistLibrary();
     private final String noArtists = "* artists *";
     private final String noPlaylists = "* playlists *";
     private boolean outputArtistOnClose;
@@ -31,38 +41,33 @@ public class ListViewLibrary implements Runnable {
 
     public ListViewLibrary() {}
 
-    @Override
-    public void run() {
-        // Input artist data if file is not empty
-        try {
-            if (Files.size(Path.of(ResourceURLs.getArtistListURL())) > 0) {
-                artistObservableList = FXCollections.observableArrayList(ArtistListFileIO.inputArtistNameObservableList());
-
-            } else {
-                artistObservableList = FXCollections.observableArrayList();
-                artistObservableList.add(noArtists);
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-            System.out.println(e.getMessage());
-            throw new RuntimeException(e);
+    /**
+     * load() - sets both lists from library.bin, called once on start up
+     *
+     * @param libraryStore => Store read from library.bin, null if the Music Library has not been initialized
+     */
+    public synchronized void load(LibraryStore libraryStore) {
+        artistObservableList = libraryStore == null
+                ? FXCollections.observableArrayList() : FXCollections.observableArrayList(libraryStore.getArtistNames());
+        playlistObservableList = libraryStore == null
+                ? FXCollections.observableArrayList() : FXCollections.observableArrayList(libraryStore.getPlaylistNames());
+
+        // Names applied from the journal when library.bin was rewritten may sit next to a placeholder
+        if (artistObservableList.size() > 1) {
+            artistObservableList.remove(noArtists);
         }
 
-        // Input playlist data if file is not empty
-        try {
-            if (Files.size(Path.of(ResourceURLs.getPlaylistsURL())) > 0) {
-                playlistObservableList = FXCollections.observableArrayList(PlaylistFileIO.inputPlaylistObservableList());
+        if (playlistObservableList.size() > 1) {
+            playlistObservableList.remove(noPlaylists);
+        }
 
-            } else {
-                playlistObservableList = FXCollections.observableArrayList();
-                playlistObservableList.add(noPlaylists);
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-            System.out.println(e.getMessage());
-            throw new RuntimeException(e);
+        if (artistObservableList.isEmpty()) {
+            artistObservableList.add(noArtists);
         }
 
+        if (playlistObservableList.isEmpty()) {
+            playlistObservableList.add(noPlaylists);
+        }
     }
 
     /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
@@ -72,8 +77,6 @@ public class ListViewLibrary implements Runnable {
      * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
 
     public void addArtist(String artistName) {
-        outputArtistOnClose = true;
-
         // If empty remove empty message
         if (artistObservableList.contains(noArtists)) {
             artistObservableList.remove(0);
@@ -84,21 +87,37 @@ public class ListViewLibrary implements Runnable {
             artistObservableList.add(artistName);
 
             Collections.sort(artistObservableList);
+            LibraryJournal.append(Mutation.listName(Operation.ADD_ARTIST, artistName));
+        }
+    }
+
+    // Adds artist names not already listed with a single sort, used while a scan streams in tracks
+    public void addArtists(Collection<String> artistNames) {
+        setOutputListsOnClose();
+
+        // If empty remove empty message
+        artistObservableList.remove(noArtists);
+
+        Set<String> newArtistNames = new LinkedHashSet<>(artistNames);
+        newArtistNames.removeAll(artistObservableList);
+
+        if (!newArtistNames.isEmpty()) {
+            artistObservableList.addAll(newArtistNames);
+            Collections.sort(artistObservableList);
         }
     }
 
     public void removeArtist(String artistName) {
-        outputArtistOnClose = true;
         artistObservableList.remove(artistName);
 
         if (artistObservableList.isEmpty()) {
             artistObservableList.add(noArtists);
         }
+
+        LibraryJournal.append(Mutation.listName(Operation.REMOVE_ARTIST, artistName));
     }
 
     public void addPlaylist(String playlist) {
-        outputPlaylistOnClose = true;
-
         // Remove placeholder if currently empty
         if (playlistObservableList.contains(noPlaylists)) {
             playlistObservableList.remove(0);
@@ -107,40 +126,127 @@ public class ListViewLibrary implements Runnable {
         // Update observable list, sort, and write to file
         playlistObservableList.add(playlist);
         Collections.sort(playlistObservableList);
+        playlistLibrary.createPlaylist(playlist);
+        LibraryJournal.append(Mutation.listName(Operation.ADD_PLAYLIST, playlist));
     }
     public void removePlaylist(String playlist) {
-        outputPlaylistOnClose = true;
         playlistObservableList.remove(playlist);
+        playlistLibrary.removePlaylist(playlist);
 
         if (playlistObservableList.isEmpty()) {
             playlistObservableList.add(noPlaylists);
         }
 
+        LibraryJournal.append(Mutation.listName(Operation.REMOVE_PLAYLIST, playlist));
+    }
+
+    /**
+     * renamePlaylist() - renames a playlist keeping its tracks, merged into newPlaylist if it exists
+     *
+     * @param playlist => Current title
+     * @param newPlaylist => New title
+     */
+    public void renamePlaylist(String playlist, String newPlaylist) {
+        playlistLibrary.renamePlaylist(playlist, newPlaylist);
+        playlistObservableList.remove(playlist);
+        LibraryJournal.append(Mutation.listName(Operation.REMOVE_PLAYLIST, playlist));
+
+        if (!playlistObservableList.contains(newPlaylist)) {
+            addPlaylist(newPlaylist);
+        }
+    }
+
+    /**
+     * loadPlaylists() - sets playlistLibrary from playlists.bin, called once on start up after
+     *                   replayJournal(). Only if playlists.bin has never been written are the entries
+     *                   taken from the playlist field of the tracks, which could only hold one playlist.
+     *                   A damaged playlists.bin loads empty playlists instead.
+     *
+     * @param playlistData => From PlaylistFileIO.inputPlaylists(), null if playlists.bin has never been written
+     * @param tableViewLibrary => Tracks to take the entries from when playlistData is null
+     */
+    public synchronized void loadPlaylists(PlaylistData playlistData, TableViewLibrary tableViewLibrary) {
+        if (playlistData != null) {
+            playlistLibrary.load(playlistData);
+
+        } else {
+            for (String playlist : playlistObservableList) {
+                if (!playlist.equals(noPlaylists)) {
+                    playlistLibrary.createPlaylist(playlist);
+
+                    for (TrackMetadata trackMetadata : tableViewLibrary.selectTracks(
+                            TrackFieldPredicate.equalTo(TrackField.PLAYLIST, playlist))) {
+                        playlistLibrary.addTrack(playlist, trackMetadata.getTrackPathStr());
+                    }
+                }
+            }
+        }
+
+        // Names journaled after playlists.bin was last written
+        for (String playlist : playlistObservableList) {
+            if (!playlist.equals(noPlaylists)) {
+                playlistLibrary.createPlaylist(playlist);
+            }
+        }
+
+        for (String playlist : playlistLibrary.getPlaylistTitles()) {
+            if (!playlistObservableList.contains(playlist)) {
+                replayAdd(playlistObservableList, noPlaylists, playlist);
+                setOutputListsOnClose();
+            }
+        }
+    }
+
+    /**
+     * replayJournal() - applies the artist and playlist edits of the last session on top of library.bin,
+     *                   called once on start up after load()
+     *
+     * @param mutations => Journal records from LibraryJournal.open(), track records are ignored
+     */
+    public synchronized void replayJournal(List<Mutation> mutations) {
+        for (Mutation mutation : mutations) {
+            final String name = mutation.values().get(0);
+
+            switch (mutation.operation()) {
+                case ADD_ARTIST -> replayAdd(artistObservableList, noArtists, name);
+                case REMOVE_ARTIST -> replayRemove(artistObservableList, noArtists, name);
+                case ADD_PLAYLIST -> replayAdd(playlistObservableList, noPlaylists, name);
+                case REMOVE_PLAYLIST -> replayRemove(playlistObservableList, noPlaylists, name);
+            }
+        }
+    }
+
+    // A replayed name may already be in library.bin
+    private static void replayAdd(ObservableList<String> list, String placeholder, String name) {
+        list.remove(placeholder);
+
+        if (!list.contains(name)) {
+            list.add(name);
+            Collections.sort(list);
+        }
+    }
+
+    private static void replayRemove(ObservableList<String> list, String placeholder, String name) {
+        list.remove(name);
+
+        if (list.isEmpty()) {
+            list.add(placeholder);
+        }
     }
 
     // Clears both List View objects of String data and applies
     // the "empty List" notification
     public void clearObservableLists() {
-        outputArtistOnClose = true;
-        outputPlaylistOnClose = true;
+        setOutputListsOnClose();
 
         artistObservableList.clear();
         playlistObservableList.clear();
+        playlistLibrary.clear();
 
         artistObservableList.add(noArtists);
         playlistObservableList.add(noPlaylists);
     }
 
-    public void onClose() {
-        if (outputArtistOnClose) {
-            ArtistListFileIO.outputArtistNameObservableList(artistObservableList);
-        }
-
-        if (outputPlaylistOnClose) {
-            PlaylistFileIO.outputPlaylistObservableList(playlistObservableList);
-        }
-    }
-
     /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
      *
      *                          GETTERS / SETTERS
@@ -149,6 +255,7 @@ public class ListViewLibrary implements Runnable {
 
     public synchronized ObservableList<String> getArtistObservableList() { return artistObservableList; }
     public synchronized ObservableList<String> getPlaylistObservableList() { return playlistObservableList; }
+    public PlaylistLibrary getPlaylistLibrary() { return playlistLibrary; }
 
     public synchronized void setArtistObservableList(ObservableList<String> artistObservableList) {
         this.artistObservableList = artistObservableList;
@@ -157,6 +264,12 @@ public class ListViewLibrary implements Runnable {
     public void setOutputListsOnClose() {
         outputArtistOnClose = true;
         outputPlaylistOnClose = true;
+        AutosaveService.markDirty(Store.LIBRARY);
+    }
+    public void clearOutputListsOnClose() {
+        outputArtistOnClose = false;
+        outputPlaylistOnClose = false;
     }
+    public boolean getOutputListsOnClose() { return outputArtistOnClose || outputPlaylistOnClose; }
 
 }
@@ -10,7 +10,27 @@
  *             stored by the Application for Media Player playback and to propagate the TableView):
  *                  1. Standard - Strict file hierarchy, uses Directory names for Artist and
  *                      Album names.
- *                  2. Recursive - Recursively processes each file within root directory.
+ *                  2. Recursive - Recursively processes each file within root directory, symbolic link
+ *                      loops and hard-linked duplicates are passed over (see RecursiveScanVisitor).
+ *
+ *             Both walk the directory tree on the calling thread and hand each audio file to a
+ *             ScanPipeline, which parses tags on scanParallelism worker threads and adds the tracks
+ *             to the observable lists in batches on the JavaFX Application Thread.
+ *             Audio files are identified by their first bytes (see AudioFormatRegistry), not their extension.
+ *             Tags are read by FastTagReader, jaudiotagger is only used for files it can't read (see TagFields).
+ *
+ *             Folders and files excluded by the scan rules in settings.json (see ScanRules) are
+ *             passed over during the walk, excluded folders are never listed.
+ *
+ *             Full initializations write scancheckpoint.ser as they go (see CheckpointTracker) so a
+ *             cancelled or crashed scan can be resumed.
+ *
+ *              __Incremental Rescan__
+ *
+ *              Re-runs the user's initialization type over the current library without clearing it.
+ *              Tracks whose file size, last modified time and file key match fingerprints.ser are
+ *              kept as-is (along with any user edits), new or modified files are parsed, and files
+ *              that no longer exist are dropped.
  *
  *              __Importing__
  *
@@ -30,9 +50,13 @@
 
 package com.iandw.musicplayerjavafx.Libraries;
 
+import com.iandw.musicplayerjavafx.FileIO.FingerprintFileIO;
 import com.iandw.musicplayerjavafx.Utilities.ProgressBarData;
+import com.iandw.musicplayerjavafx.ScanCheckpoint;
+import com.iandw.musicplayerjavafx.TrackFingerprint;
 import com.iandw.musicplayerjavafx.TrackMetadata;
 import com.iandw.musicplayerjavafx.Utilities.UserSettings;
+import com.iandw.musicplayerjavafx.Utilities.ConsoleLog;
 import com.iandw.musicplayerjavafx.Utilities.ID3v1Genres;
 import com.iandw.musicplayerjavafx.Utilities.ImportCategory;
 import com.iandw.musicplayerjavafx.Utilities.Utils;
@@ -43,16 +67,13 @@ import javafx.collections.ObservableList;
 import java.io.*;
 import java.nio.file.*;
 import java.util.*;
-
-import org.jaudiotagger.audio.AudioFile;
-import org.jaudiotagger.audio.AudioFileIO;
-import org.jaudiotagger.tag.Tag;
-import org.jaudiotagger.tag.FieldKey;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 public class MusicLibrary {
+    private final UserSettings userSettings;
     private final ObservableList<TrackMetadata> trackMetadataObservableList;
     private final ObservableList<String> artistNameObservableList;
-    private final List<String> supportedFileTypes;
     private String artistNameStr;
     private String albumDirectoryStr;
     private String trackPathStr;
@@ -61,18 +82,26 @@ public class MusicLibrary {
     private int index;
     private ImportCategory importCategory;
     private String rootMusicDirectoryString;
-    private Boolean continueInitializing;
+    private final AtomicBoolean scanning;
+    private volatile ScanRules scanRules;
+    private Consumer<List<TrackMetadata>> onTracksPublished;
+
+    // Only set during an incremental rescan, read-only while scanning
+    private Map<String, TrackMetadata> previousTrackMap;
+    private Map<String, TrackFingerprint> previousFingerprintMap;
 
     /**
      * MusicLibrary() - initialize arrays for track metadata objects
      * @param userSettings => initialize rootMusicDirectoryString from user settings JSON file
      */
     public MusicLibrary(UserSettings userSettings) {
+        this.userSettings = userSettings;
         rootMusicDirectoryString = userSettings.getRootMusicDirectoryString();
         trackMetadataObservableList = FXCollections.observableArrayList();
         artistNameObservableList = FXCollections.observableArrayList();
-        supportedFileTypes = Arrays.asList(".aif", ".aiff", ".mp3", "mp4", ".m4a", ".wav");
-        continueInitializing = true;
+        scanning = new AtomicBoolean(false);
+        scanRules = ScanRules.compile(userSettings);
+        onTracksPublished = trackBatch -> {};
     }
 
     public void clearMusicLibrary() {
@@ -99,16 +128,26 @@ public class MusicLibrary {
      */
     public void standardInitialization(ProgressBarData progressBarData) throws IOException {
         System.out.println("Initializing observable list");
-        ArrayList<String> tempArtistArray = new ArrayList<>();
         Utils.clearSerializedFiles();
 
+        runScanPipeline(progressBarData, onTracksPublished,
+                new CheckpointTracker(rootMusicDirectoryString, userSettings.getInitalizationString(), null));
+    }
+
+    // Walks root -> artist -> album -> track, returns artist folder names
+    private ArrayList<String> standardScan(ScanPipeline scanPipeline, ScanSummary scanSummary) throws IOException {
+        ArrayList<String> tempArtistArray = new ArrayList<>();
+
         Path rootPath = Paths.get(rootMusicDirectoryString);
+        final Path basePath = rootPath.toAbsolutePath();
 
         if (Files.exists(rootPath)) {
             if (Files.isDirectory(rootPath)) {
                 DirectoryStream<Path> musicDir = Files.newDirectoryStream(rootPath);
 
                 // MUSIC DIRECTORY => LOOP THROUGH ARTIST FOLDERS
+                // The walk stops as soon as submit() returns false, the scan was cancelled
+                walk:
                 for (Path artistFolder : musicDir) {
 
                     // Break on Cancel Button Clicked
@@ -119,7 +158,14 @@ public class MusicLibrary {
 
                     Path artistDirectoryPath = artistFolder.toAbsolutePath();
 
-                    artistNameStr = artistDirectoryPath.toString().substring(artistDirectoryPath.toString().lastIndexOf(File.separator) + 1);
+                    final String artistNameStr = artistDirectoryPath.toString().substring(artistDirectoryPath.toString().lastIndexOf(File.separator) + 1);
+
+                    // Excluded by scan rules, the folder is never listed
+                    if (Files.isDirectory(artistDirectoryPath) && scanRules.isExcludedDirectory(basePath, artistDirectoryPath)) {
+                        scanSummary.skipped(ScanSummary.SkipReason.EXCLUDED, artistDirectoryPath);
+                        scanPipeline.rootEntryWalked();
+                        continue;
+                    }
 
                     if (Files.isDirectory(artistDirectoryPath)) {
                         tempArtistArray.add(artistNameStr);
@@ -128,8 +174,15 @@ public class MusicLibrary {
                         System.out.printf("%s is not a directory%n", artistDirectoryPath);
                     }
 
+                    // Resumed scan, every track of this artist was published from the checkpoint
+                    if (scanPipeline.isCompletedDirectory(artistDirectoryPath.toString())) {
+                        scanPipeline.rootEntryWalked();
+                        continue;
+                    }
+
                     if (Files.isDirectory(artistFolder)) {
                         DirectoryStream<Path> artistDir = Files.newDirectoryStream(artistDirectoryPath);
+                        scanPipeline.enterDirectory(artistDirectoryPath.toString());
 
                         // ARTIST DIRECTORY => LOOP THROUGH ALBUM FOLDERS
                         for (Path albumFolder : artistDir) {
@@ -141,26 +194,32 @@ public class MusicLibrary {
                             }
 
                             Path albumDirectoryPath = albumFolder.toAbsolutePath();
-                            albumDirectoryStr = albumDirectoryPath.toString().substring(albumDirectoryPath.toString().lastIndexOf(File.separator) + 1);
+                            final String albumDirectoryStr = albumDirectoryPath.toString().substring(albumDirectoryPath.toString().lastIndexOf(File.separator) + 1);
 
                             if (Files.isDirectory(albumFolder)) {
+                                if (scanRules.isExcludedDirectory(basePath, albumDirectoryPath)) {
+                                    scanSummary.skipped(ScanSummary.SkipReason.EXCLUDED, albumDirectoryPath);
+                                    continue;
+                                }
+
+                                if (scanPipeline.isCompletedDirectory(albumDirectoryPath.toString())) {
+                                    continue;
+                                }
+
                                 DirectoryStream<Path> albumDirPath = Files.newDirectoryStream(albumDirectoryPath);
+                                scanPipeline.enterDirectory(albumDirectoryPath.toString());
 
                                 // ALBUM DIRECTORY => LOOP THROUGH TRACK FILES
                                 for (Path trackPath : albumDirPath) {
-                                    if (Files.isRegularFile(trackPath) && Files.exists(trackPath) ) {
-                                        trackPathStr = trackPath.toAbsolutePath().toString();
-                                        trackFileName = trackPath.getFileName().toString();
-                                        trackContainerType = trackPathStr.substring(trackPathStr.lastIndexOf('.'));
-
-                                        // Check for playable file container
-                                        if (supportedFileTypes.contains(trackContainerType.toLowerCase())) {
-                                            standardParse();
-                                            progressBarData.increaseProgress(trackPathStr);
-
-                                        } else {
-                                            System.out.printf("%s is not a compatible file type.%n", trackFileName);
+                                    if (scanRules.isExcludedFile(basePath, trackPath)) {
+                                        scanSummary.skipped(ScanSummary.SkipReason.EXCLUDED, trackPath);
+                                        continue;
+                                    }
 
+                                    if (Files.isRegularFile(trackPath) && Files.exists(trackPath) ) {
+                                        // File type is checked by the parse workers
+                                        if (!scanPipeline.submit(new ParseContext(trackPath.toFile(), artistNameStr, albumDirectoryStr))) {
+                                            break walk;
                                         }
 
                                     } else {
@@ -168,22 +227,19 @@ public class MusicLibrary {
                                     }
                                 }
 
+                                scanPipeline.exitDirectory(albumDirectoryPath.toString());
+
+                            } else if (scanRules.isExcludedFile(basePath, albumDirectoryPath)) {
+                                scanSummary.skipped(ScanSummary.SkipReason.EXCLUDED, albumDirectoryPath);
+
                             } else {
                                 // ARTIST DIRECTORY => LOOP THROUGH TRACK FILES
                                 // Used when no album folder exists
                                 // albumDirectoryPath is equal to trackPath when there is no album directory for audio Files
                                 if (Files.exists(albumDirectoryPath)) {
-                                    trackPathStr = albumDirectoryPath.toAbsolutePath().toString();
-                                    trackFileName = albumDirectoryPath.getFileName().toString();
-                                    trackContainerType = trackPathStr.substring(trackPathStr.lastIndexOf('.'));
-
-                                    // Check for playable file container
-                                    if (supportedFileTypes.contains(trackContainerType.toLowerCase())) {
-                                        standardParse();
-                                        progressBarData.increaseProgress(trackPathStr);
-
-                                    } else {
-                                        System.out.printf("%s is not a compatible file type.", trackFileName);
+                                    // File type is checked by the parse workers
+                                    if (!scanPipeline.submit(new ParseContext(albumDirectoryPath.toFile(), artistNameStr, albumDirectoryStr))) {
+                                        break walk;
                                     }
 
                                 } else {
@@ -192,9 +248,13 @@ public class MusicLibrary {
                             }
                         }
 
+                        scanPipeline.exitDirectory(artistDirectoryPath.toString());
+
                     } else {
                         System.out.printf("%s is not an artist directory%n", artistDirectoryPath);
                     }
+
+                    scanPipeline.rootEntryWalked();
                 }
 
             } else {
@@ -205,8 +265,7 @@ public class MusicLibrary {
             System.out.printf("%s does not exist%n", rootPath);
         }
 
-        // Add artist names to observable array after parsing is finished and thread safe
-        Platform.runLater(() -> artistNameObservableList.addAll(tempArtistArray));
+        return tempArtistArray;
     }
 
 
@@ -228,17 +287,20 @@ public class MusicLibrary {
      */
     public void recursiveInitialization(ProgressBarData progressBarData) throws IOException {
         System.out.println("Initializing observable list");
-        ArrayList<String> tempArtistArray = new ArrayList<>();
-
         Utils.clearSerializedFiles();
 
+        runScanPipeline(progressBarData, onTracksPublished,
+                new CheckpointTracker(rootMusicDirectoryString, userSettings.getInitalizationString(), null));
+    }
+
+    // Walks every folder within root, artist names come from track metadata
+    private ArrayList<String> recursiveScan(ScanPipeline scanPipeline, ScanSummary scanSummary) throws IOException {
         Path rootPath = Paths.get(rootMusicDirectoryString);
 
         if (Files.exists(rootPath)) {
             if (Files.isDirectory(rootPath)) {
-                File rootDirectory = new File(rootMusicDirectoryString);
-
-                trackMetadataObservableList.addAll(listFileTree(rootDirectory, progressBarData, tempArtistArray));
+                RecursiveScanVisitor.walk(scanRules, scanPipeline, scanSummary, rootPath.toAbsolutePath(),
+                        userSettings.getScanFollowSymlinks());
 
             } else {
                 System.out.printf("%s is not a directory%n", rootPath);
@@ -248,51 +310,250 @@ public class MusicLibrary {
             System.out.printf("%s does not exist%n", rootPath);
         }
 
-        // Add artist names to observable array after parsing is finished and thread safe
-        Platform.runLater(() -> artistNameObservableList.addAll(tempArtistArray));
+        return new ArrayList<>();
     }
 
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          RESUMED INITIALIZATION
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    /**
+     * resumeInitialization() - continues a cancelled or interrupted Standard or Recursive Initialization.
+     *
+     *      Tracks of directories the checkpoint recorded as completed are published straight from the
+     *      checkpoint and those directories are not walked. Every other directory is walked again,
+     *      checkpointed tracks of files not modified since the checkpoint are not re-parsed.
+     *      The root directory and initialization type must already be set to the checkpoint's.
+     *
+     * @param progressBarData => Passes progress data to ProgressBarController
+     * @param scanCheckpoint => Read from scancheckpoint.ser before the serialized files were cleared
+     * @throws IOException
+     */
+    public void resumeInitialization(ProgressBarData progressBarData, ScanCheckpoint scanCheckpoint) throws IOException {
+        System.out.printf("Resuming initialization with %d checkpointed tracks%n", scanCheckpoint.getTrackCount());
+        Utils.clearSerializedFiles();
 
+        runScanPipeline(progressBarData, onTracksPublished,
+                new CheckpointTracker(rootMusicDirectoryString, userSettings.getInitalizationString(), scanCheckpoint));
+    }
 
-    private Collection<TrackMetadata> listFileTree(File dir, ProgressBarData progressBarData, ArrayList<String> tempArtistArray) {
-        Set<TrackMetadata> fileTree = new HashSet<>();
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          SCAN PIPELINE
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
 
-        if (dir == null || dir.listFiles() == null) {
-            return fileTree;
+    /**
+     * runScanPipeline() - Walks the root directory with the user's initialization type on the calling thread
+     *                     while ScanPipeline parses tags on scanParallelism worker threads.
+     *
+     *      Tracks and artist names are only added to the observable lists on the JavaFX Application Thread,
+     *      in batches, as they are parsed. Everything published before this method returns has been passed
+     *      to Platform.runLater(), so a caller's runLater() afterwards sees the whole library.
+     *
+     * @param progressBarData => Passes progress data to ProgressBarController
+     * @param onBatchPublished => Also called with each batch on the JavaFX Application Thread
+     * @param checkpointTracker => Writes scancheckpoint.ser while scanning, null for an incremental rescan
+     * @throws IOException
+     */
+    private void runScanPipeline(ProgressBarData progressBarData, Consumer<List<TrackMetadata>> onBatchPublished,
+                                 CheckpointTracker checkpointTracker) throws IOException {
+        if (!scanning.compareAndSet(false, true)) {
+            throw new IllegalStateException("Music Library scan already running");
         }
 
-        // Return on Cancel Button Clicked
-        if (Thread.currentThread().isInterrupted()) {
-            System.out.println("Cancelling gracefully...");
-            return fileTree;
-        }
+        try {
+            // Rules may have been edited since the last scan
+            scanRules = ScanRules.compile(userSettings);
 
-        for (File entry : Objects.requireNonNull(dir.listFiles())) {
-            if (entry.isFile()) {
-                trackPathStr = entry.getAbsolutePath();
-                trackFileName = entry.getName();
-                trackContainerType = trackPathStr.substring(trackPathStr.lastIndexOf('.'));
+            final int parallelism = userSettings.getScanParallelism();
+            System.out.printf("Scanning with %d threads%n", parallelism);
 
-                // Break on Cancel Button Clicked
-                if (Thread.currentThread().isInterrupted()) {
-                    System.out.println("Cancelling gracefully...");
-                    break;
-                }
+            ScanSummary scanSummary = new ScanSummary();
+            ScanPipeline scanPipeline = new ScanPipeline(this, parallelism, progressBarData, scanSummary, trackBatch -> {
+                trackMetadataObservableList.addAll(trackBatch);
+                trackBatch.forEach(trackMetadata -> insertArtistName(trackMetadata.getArtistNameStr()));
+                onBatchPublished.accept(trackBatch);
+            }, checkpointTracker);
 
-                if (supportedFileTypes.contains(trackContainerType.toLowerCase())) {
-                    recursiveParse(tempArtistArray);
-                    progressBarData.increaseProgress(trackPathStr);
+            ArrayList<String> tempArtistArray;
 
+            try {
+                if (Objects.equals(userSettings.getInitalizationString(), "recursive")) {
+                    tempArtistArray = recursiveScan(scanPipeline, scanSummary);
                 } else {
-                    System.out.println(trackFileName + " is not a compatible file type.");
+                    tempArtistArray = standardScan(scanPipeline, scanSummary);
                 }
 
-            } else {
-                fileTree.addAll(listFileTree(entry, progressBarData, tempArtistArray));
+            } catch (IOException | RuntimeException e) {
+                // Stop the workers, a full initialization keeps its checkpoint
+                scanPipeline.cancel();
+                throw e;
+            }
+
+            List<TrackMetadata> scannedTracks = scanPipeline.finish();
+            scanSummary.print();
+
+            // Artist folders without any tracks are still listed with Standard Initialization
+            Platform.runLater(() -> tempArtistArray.forEach(this::insertArtistName));
+
+            // Record file attributes of every scanned track unless the scan was cancelled
+            if (!Thread.currentThread().isInterrupted()) {
+                FingerprintFileIO.outputFingerprintMap(scannedTracks);
+
+                if (checkpointTracker != null) {
+                    checkpointTracker.finish();
+                }
             }
+
+        } finally {
+            scanning.set(false);
+        }
+    }
+
+    // Parse stage of ScanPipeline, thread safe. The walker submits every file, unsupported ones are counted here.
+    TrackMetadata scanTrack(ParseContext parseContext, ScanSummary scanSummary) {
+        TrackMetadata unchangedTrack = findUnchangedTrack(parseContext.getTrackPathStr());
+
+        if (unchangedTrack != null) {
+            return unchangedTrack;
+        }
+
+        // Reads the file's first bytes
+        if (!isSupportedFileType(parseContext)) {
+            scanSummary.skipped(ScanSummary.SkipReason.UNSUPPORTED, Path.of(parseContext.getTrackPathStr()));
+            return null;
+        }
+
+        if (parseContext.getArtistNameStr() != null) {
+            return standardParse(parseContext, parseContext.getArtistNameStr(), parseContext.getAlbumDirectoryStr());
         }
 
-        return fileTree;
+        return recursiveParse(parseContext);
+    }
+
+    // JavaFX Application Thread, keeps artistNameObservableList sorted without duplicates
+    private void insertArtistName(String artistName) {
+        final int index = Collections.binarySearch(artistNameObservableList, artistName);
+
+        if (index < 0) {
+            artistNameObservableList.add(-index - 1, artistName);
+        }
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          INCREMENTAL RESCAN
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    /**
+     * incrementalRescan() - rescans the root directory using the user's initialization type,
+     *                       only parsing audio files that are new or changed since the last scan.
+     *
+     *      Batches are only added to the MusicLibrary observable lists, the current library stays
+     *      on screen until the rescan is finished.
+     *
+     * @param progressBarData => Passes progress data to ProgressBarController
+     * @param currentTrackList => Copy of the current Table View tracks, unchanged files keep these objects
+     * @throws IOException
+     */
+    public void incrementalRescan(ProgressBarData progressBarData, List<TrackMetadata> currentTrackList) throws IOException {
+        System.out.println("Rescanning music library");
+
+        previousTrackMap = new HashMap<>();
+        currentTrackList.forEach(trackMetadata -> previousTrackMap.put(trackMetadata.getTrackPathStr(), trackMetadata));
+        previousFingerprintMap = FingerprintFileIO.inputFingerprintMap();
+
+        try {
+            runScanPipeline(progressBarData, trackBatch -> {}, null);
+
+        } finally {
+            previousTrackMap = null;
+            previousFingerprintMap = null;
+        }
+    }
+
+    // Returns the previously scanned track if its file has not changed, otherwise null
+    private TrackMetadata findUnchangedTrack(String trackPathStr) {
+        if (previousTrackMap == null) {
+            return null;
+        }
+
+        TrackMetadata previousTrack = previousTrackMap.get(trackPathStr);
+
+        if (previousTrack != null && Objects.equals(previousFingerprintMap.get(trackPathStr),
+                TrackFingerprint.of(Path.of(trackPathStr)))) {
+            return previousTrack;
+        }
+
+        return null;
+    }
+
+    // Keeps the playlist of a modified track, new tracks have no playlist
+    private String previousPlaylist(String trackPathStr) {
+        if (previousTrackMap != null && previousTrackMap.containsKey(trackPathStr)) {
+            return previousTrackMap.get(trackPathStr).getPlaylistStr();
+        }
+
+        return "*";
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          LIVE SYNC
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    /**
+     * parseWatchedFile() - Parses a single file reported by LibraryWatcher using the user's initialization type.
+     *                      Thread safe, does not touch the observable lists.
+     *
+     *      Standard Initialization takes the Artist name from the first folder under root and the Album
+     *      name from the track's parent folder. Like standardScan(), it only reads Root -> Artist -> Album ->
+     *      TrackFile and Root -> Artist -> TrackFile, files in the root directory or deeper folders are passed over.
+     *
+     * @param trackPath => Audio file within the root music directory
+     * @return => Parsed track or null if the file is excluded, not supported or could not be parsed
+     */
+    public TrackMetadata parseWatchedFile(Path trackPath) {
+        if (scanRules.isExcludedPath(Paths.get(userSettings.getRootMusicDirectoryString()).toAbsolutePath(), trackPath)) {
+            return null;
+        }
+
+        ParseContext parseContext = new ParseContext(trackPath.toFile());
+
+        if (!isSupportedFileType(parseContext)) {
+            return null;
+        }
+
+        if (Objects.equals(userSettings.getInitalizationString(), "recursive")) {
+            return recursiveParse(parseContext);
+        }
+
+        Path relativePath = Paths.get(userSettings.getRootMusicDirectoryString()).relativize(trackPath);
+        final int nameCount = relativePath.getNameCount();
+
+        if (nameCount < 2 || nameCount > 3) {
+            return null;
+        }
+
+        // Root -> Artist -> TrackFile.mp3 uses the file name as the album directory, same as standardScan()
+        return standardParse(parseContext, relativePath.getName(0).toString(),
+                relativePath.getName(nameCount - 2 > 0 ? nameCount - 2 : 1).toString());
+    }
+
+    /**
+     * isExcludedDirectory() - LibraryWatcher does not watch folders the scan rules pass over
+     *
+     * @param directoryPath => Folder within the root music directory
+     * @return => True if the folder is excluded by the scan rules
+     */
+    public boolean isExcludedDirectory(Path directoryPath) {
+        return scanRules.isExcludedDirectory(Paths.get(userSettings.getRootMusicDirectoryString()).toAbsolutePath(),
+                directoryPath);
     }
 
     /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
@@ -315,7 +576,8 @@ public class MusicLibrary {
 
         // Import Artist metadata into Music Library
         if (file != null) {
-            Path artistPath = file.toPath();
+            Path artistPath = file.toPath().toAbsolutePath();
+            scanRules = ScanRules.compile(userSettings);
             artistNameStr = artistPath.toString().substring(artistPath.toString().lastIndexOf(File.separator) + 1);
 
             if (Files.isDirectory(artistPath)) {
@@ -326,13 +588,17 @@ public class MusicLibrary {
                 // Album Folder
                 for (Path albumPath : artistDirectory) {
                     if (Files.isDirectory(albumPath)) {
+                        if (scanRules.isExcludedDirectory(artistPath, albumPath)) {
+                            continue;
+                        }
+
                         DirectoryStream<Path> albumDirectory = Files.newDirectoryStream(albumPath);
                         albumDirectoryStr = albumPath.toString().substring(albumPath.toString().lastIndexOf(File.separator) + 1);
 
                         // Tracks in Album
                         for (Path trackPath : albumDirectory) {
                             if (Files.isRegularFile(trackPath)) {
-                                if (Files.exists(trackPath)) {
+                                if (Files.exists(trackPath) && !scanRules.isExcludedFile(artistPath, trackPath)) {
                                     importTrackLogic(trackPath, rootMusicDirectoryString);
                                 }
 
@@ -343,16 +609,19 @@ public class MusicLibrary {
 
                     } else {
                         // No album folder, Tracks in Artist
-                        if (Files.exists(albumPath)) {
-                            trackPathStr = albumPath.toAbsolutePath().toString();
-                            trackFileName = albumPath.getFileName().toString();
-                            trackContainerType = trackPathStr.substring(trackPathStr.lastIndexOf('.'));
+                        if (Files.exists(albumPath) && !scanRules.isExcludedFile(artistPath, albumPath)) {
+                            ParseContext parseContext = new ParseContext(albumPath.toFile());
+                            trackFileName = parseContext.getTrackFileName();
 
                             // Check for playable file container
-                            if (supportedFileTypes.contains(trackContainerType.toLowerCase())) {
+                            if (isSupportedFileType(parseContext)) {
 
                                 // Standard Parse ok here
-                                standardParse();
+                                TrackMetadata trackMetadata = standardParse(parseContext, artistNameStr, albumDirectoryStr);
+
+                                if (trackMetadata != null) {
+                                    trackMetadataObservableList.add(trackMetadata);
+                                }
 
                             } else {
                                 System.out.printf("%s is not a compatible file type.", trackFileName);
@@ -382,7 +651,8 @@ public class MusicLibrary {
 
         // Import Album metadata into Music Library
         if (file != null) {
-            Path albumPath = file.toPath();
+            Path albumPath = file.toPath().toAbsolutePath();
+            scanRules = ScanRules.compile(userSettings);
             albumDirectoryStr = albumPath.toString().substring(albumPath.toString().lastIndexOf(File.separator) + 1);
 
             if (Files.isDirectory(albumPath)) {
@@ -392,7 +662,7 @@ public class MusicLibrary {
 
                 for (Path trackPath : albumDirectory) {
                     if (Files.isRegularFile(trackPath)) {
-                        if (Files.exists(trackPath)) {
+                        if (Files.exists(trackPath) && !scanRules.isExcludedFile(albumPath, trackPath)) {
                             importTrackLogic(trackPath, rootMusicDirectoryString);
                         }
 
@@ -425,10 +695,14 @@ public class MusicLibrary {
 
         // Import Track metadata into Music Library
         if (file != null) {
-            Path trackPath = file.toPath();
+            Path trackPath = file.toPath().toAbsolutePath();
+            scanRules = ScanRules.compile(userSettings);
 
             if (Files.isRegularFile(trackPath)) {
-                if (Files.exists(trackPath)) {
+                if (scanRules.isExcludedFile(trackPath.getParent(), trackPath)) {
+                    System.out.printf("%s is excluded by the scan rules%n", trackPath);
+
+                } else if (Files.exists(trackPath)) {
 
                     index = 0;
 
@@ -449,14 +723,15 @@ public class MusicLibrary {
     }
 
     private void importTrackLogic(Path trackPath, String rootDirectory) throws IOException {
-        trackPathStr = trackPath.toAbsolutePath().toString();
-        trackFileName = trackPath.getFileName().toString();
-        trackContainerType = trackPathStr.substring(trackPathStr.lastIndexOf('.'));
+        ParseContext parseContext = new ParseContext(trackPath.toFile());
+        trackPathStr = parseContext.getTrackPathStr();
+        trackFileName = parseContext.getTrackFileName();
+        trackContainerType = parseContext.getTrackContainerType();
 
         // Check for playable file container
-        if (supportedFileTypes.contains(trackContainerType.toLowerCase())) {
+        if (isSupportedFileType(parseContext)) {
 
-            importParse();
+            importParse(parseContext.getAudioFormat());
 
             try {
                 // Check for slashes which could interfere with file creation
@@ -511,26 +786,30 @@ public class MusicLibrary {
      * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
 
     // For Standard Initialization
-    private void standardParse() {
+    // Thread safe, artist and album directory names are passed in. Returns null if the file could not be parsed.
+    private TrackMetadata standardParse(ParseContext parseContext, String artistNameStr, String albumDirectoryStr) {
+        final String trackPathStr = parseContext.getTrackPathStr();
+        final String trackFileName = parseContext.getTrackFileName();
+        final String trackContainerType = parseContext.getTrackContainerType();
+
         try {
-            AudioFile audioFile = AudioFileIO.read(new File(trackPathStr));
-            Tag tag = audioFile.getTag();
+            TagFields tagFields = TagFields.read(new File(trackPathStr), parseContext.getAudioFormat());
             String trackTitle = trackFileName;
             String trackAlbum;
             String trackGenre;
-            final String duration = Utils.formatSeconds(audioFile.getAudioHeader().getTrackLength());
-            final String playlist = "*";
+            final String duration = Utils.formatSeconds(tagFields.getTrackLength());
+            final String playlist = previousPlaylist(trackPathStr);
 
             // Check title metadata for null value, if true replace with file name substring
-            if (tag.getFirst(FieldKey.TITLE) == null || Objects.equals(tag.getFirst(FieldKey.TITLE), "")) {
-                trackTitle = trackFileName.substring(0, trackTitle.indexOf('.'));
+            if (tagFields.getTitle() == null || Objects.equals(tagFields.getTitle(), "")) {
+                trackTitle = removeExtension(trackFileName);
 
                 if (Character.isDigit(trackTitle.charAt(0))) {
                     trackTitle = filterDigitsFromTitle(trackTitle);
                 }
 
             } else {
-                trackTitle = tag.getFirst(FieldKey.TITLE);
+                trackTitle = tagFields.getTitle();
             }
 
             // If still null replace with trackFileName (Redundancy)
@@ -539,19 +818,19 @@ public class MusicLibrary {
             }
 
             // Check album metadata for null value, if true replace with directory name
-            if (tag.getFirst(FieldKey.ALBUM) == null || Objects.equals(tag.getFirst(FieldKey.ALBUM), "")) {
+            if (tagFields.getAlbum() == null || Objects.equals(tagFields.getAlbum(), "")) {
                 trackAlbum = albumDirectoryStr;
 
             } else {
-                trackAlbum = tag.getFirst(FieldKey.ALBUM);
+                trackAlbum = tagFields.getAlbum();
             }
 
             // Check genre metadata for null value, if true leave blank
-            if (tag.getFirst(FieldKey.GENRE) == null) {
+            if (tagFields.getGenre() == null) {
                 trackGenre = null;
 
             } else {
-                trackGenre = tag.getFirst(FieldKey.GENRE);
+                trackGenre = tagFields.getGenre();
             }
 
             assert trackGenre != null;
@@ -572,58 +851,64 @@ public class MusicLibrary {
                     trackPathStr,
                     playlist
             );
+            trackMetadata.setAudioProperties(tagFields.getAudioProperties().withFileSize(parseContext.getFileSize()));
 
-            trackMetadataObservableList.add(trackMetadata);
-
-            System.out.println("Importing: " + trackFileName);
-            System.out.println(tag);
+            // Per file detail, only with "logLevel": "debug"
+            ConsoleLog.debug("Importing: %s%n%s", trackFileName, tagFields);
 
+            return trackMetadata;
 
         } catch (Exception e) {
             System.out.println(e);
         }
+
+        return null;
     }
 
     // For Recursive Initialization
-    private void recursiveParse(ArrayList<String> tempArtistArray) {
+    // Thread safe, only reads from parseContext. Returns null if the file could not be parsed.
+    TrackMetadata recursiveParse(ParseContext parseContext) {
+        final String trackPathStr = parseContext.getTrackPathStr();
+        final String trackFileName = parseContext.getTrackFileName();
+        final String trackContainerType = parseContext.getTrackContainerType();
+
         try {
-            AudioFile audioFile = AudioFileIO.read(new File(trackPathStr));
-            Tag tag = audioFile.getTag();
+            TagFields tagFields = TagFields.read(new File(trackPathStr), parseContext.getAudioFormat());
             String trackArtist;
             String trackAlbum;
             String trackTitle = trackFileName;
             String trackGenre;
-            final String duration = Utils.formatSeconds(audioFile.getAudioHeader().getTrackLength());
-            final String playlist = "*";
+            final String duration = Utils.formatSeconds(tagFields.getTrackLength());
+            final String playlist = previousPlaylist(trackPathStr);
 
             // Get Track Artist Name
-            if (tag.getFirst(FieldKey.ALBUM_ARTIST) == null || Objects.equals(tag.getFirst(FieldKey.ALBUM_ARTIST), "")){
-                if (tag.getFirst(FieldKey.ARTIST) == null || Objects.equals(tag.getFirst(FieldKey.ARTIST), "")) {
+            if (tagFields.getAlbumArtist() == null || Objects.equals(tagFields.getAlbumArtist(), "")){
+                if (tagFields.getArtist() == null || Objects.equals(tagFields.getArtist(), "")) {
                     trackArtist = "Unknown";
                 } else {
-                    trackArtist = tag.getFirst(FieldKey.ARTIST);
+                    trackArtist = tagFields.getArtist();
                 }
             } else {
-                trackArtist = tag.getFirst(FieldKey.ALBUM_ARTIST);
+                trackArtist = tagFields.getAlbumArtist();
             }
 
             // Check album metadata for null value, if true replace with directory name
-            if (tag.getFirst(FieldKey.ALBUM) == null || Objects.equals(tag.getFirst(FieldKey.ALBUM), "")) {
+            if (tagFields.getAlbum() == null || Objects.equals(tagFields.getAlbum(), "")) {
                 trackAlbum = "Unknown";
             } else {
-                trackAlbum = tag.getFirst(FieldKey.ALBUM);
+                trackAlbum = tagFields.getAlbum();
             }
 
             // Get Track Title
             // Check title metadata for null value, if true replace with file name substring
-            if (tag.getFirst(FieldKey.TITLE) == null || Objects.equals(tag.getFirst(FieldKey.TITLE), "")) {
-                trackTitle = trackFileName.substring(0, trackTitle.indexOf('.'));
+            if (tagFields.getTitle() == null || Objects.equals(tagFields.getTitle(), "")) {
+                trackTitle = removeExtension(trackFileName);
 
                 if (Character.isDigit(trackTitle.charAt(0))) {
                     trackTitle = filterDigitsFromTitle(trackTitle);
                 }
             } else {
-                trackTitle = tag.getFirst(FieldKey.TITLE);
+                trackTitle = tagFields.getTitle();
             }
 
             // If still null replace with trackFileName (Redundancy)
@@ -632,11 +917,11 @@ public class MusicLibrary {
             }
 
             // Check genre metadata for null value, if true leave blank
-            if (tag.getFirst(FieldKey.GENRE) == null) {
+            if (tagFields.getGenre() == null) {
                 trackGenre = null;
 
             } else {
-                trackGenre = tag.getFirst(FieldKey.GENRE);
+                trackGenre = tagFields.getGenre();
             }
 
             assert trackGenre != null;
@@ -658,45 +943,43 @@ public class MusicLibrary {
                     trackPathStr,
                     playlist
             );
+            trackMetadata.setAudioProperties(tagFields.getAudioProperties().withFileSize(parseContext.getFileSize()));
 
-            trackMetadataObservableList.add(trackMetadata);
-
-            if (!tempArtistArray.contains(trackArtist)) {
-                tempArtistArray.add(trackArtist);
-            }
+            // Per file detail, only with "logLevel": "debug"
+            ConsoleLog.debug("Importing: %s%n%s", trackFileName, tagFields);
 
-            System.out.println("Importing: " + trackFileName);
-            System.out.println(tag);
+            return trackMetadata;
 
         } catch (Exception e) {
             e.printStackTrace();
             System.out.println(e.getMessage());
         }
+
+        return null;
     }
 
     // For Track/Album/Artist Importing
-    private void importParse() {
+    private void importParse(AudioFormat audioFormat) {
         try {
-            AudioFile audioFile = AudioFileIO.read(new File(trackPathStr));
-            Tag tag = audioFile.getTag();
+            TagFields tagFields = TagFields.read(new File(trackPathStr), audioFormat);
             String trackTitle = trackFileName;
             String trackGenre;
-            final String duration = Utils.formatSeconds(audioFile.getAudioHeader().getTrackLength());
+            final String duration = Utils.formatSeconds(tagFields.getTrackLength());
             final String playlist = "*";
             final String unknown = "Unknown";
             String trackArtist = unknown;
             String trackAlbum = unknown;
 
             // Check title metadata for null value, if true replace with file name substring
-            if (tag.getFirst(FieldKey.TITLE) == null || Objects.equals(tag.getFirst(FieldKey.TITLE), "")) {
-                trackTitle = trackFileName.substring(0, trackTitle.indexOf('.'));
+            if (tagFields.getTitle() == null || Objects.equals(tagFields.getTitle(), "")) {
+                trackTitle = removeExtension(trackFileName);
 
                 if (Character.isDigit(trackTitle.charAt(0))) {
                     trackTitle = filterDigitsFromTitle(trackTitle);
                 }
 
             } else {
-                trackTitle = tag.getFirst(FieldKey.TITLE);
+                trackTitle = tagFields.getTitle();
             }
 
             // If still null replace with trackFileName (Redundancy)
@@ -711,14 +994,14 @@ public class MusicLibrary {
                 }
 
                 case ALBUM -> {
-                    if (tag.getFirst(FieldKey.ALBUM_ARTIST) == null || Objects.equals(tag.getFirst(FieldKey.ALBUM_ARTIST), "")){
-                        if (tag.getFirst(FieldKey.ARTIST) == null || Objects.equals(tag.getFirst(FieldKey.ARTIST), "")) {
+                    if (tagFields.getAlbumArtist() == null || Objects.equals(tagFields.getAlbumArtist(), "")){
+                        if (tagFields.getArtist() == null || Objects.equals(tagFields.getArtist(), "")) {
                             trackArtist = unknown;
                         } else {
-                            trackArtist = tag.getFirst(FieldKey.ARTIST);
+                            trackArtist = tagFields.getArtist();
                         }
                     } else {
-                        trackArtist = tag.getFirst(FieldKey.ALBUM_ARTIST);
+                        trackArtist = tagFields.getAlbumArtist();
                     }
 
                     trackAlbum = albumDirectoryStr;
@@ -726,29 +1009,29 @@ public class MusicLibrary {
                 }
 
                 case TRACK -> {
-                    if (tag.getFirst(FieldKey.ARTIST) == null || Objects.equals(tag.getFirst(FieldKey.ARTIST), "")){
-                        if (tag.getFirst(FieldKey.ALBUM_ARTIST) == null || Objects.equals(tag.getFirst(FieldKey.ALBUM_ARTIST), "")) {
+                    if (tagFields.getArtist() == null || Objects.equals(tagFields.getArtist(), "")){
+                        if (tagFields.getAlbumArtist() == null || Objects.equals(tagFields.getAlbumArtist(), "")) {
                             trackArtist = unknown;
                         } else {
-                            trackArtist = tag.getFirst(FieldKey.ALBUM_ARTIST);
+                            trackArtist = tagFields.getAlbumArtist();
                         }
                     } else {
-                        trackArtist = tag.getFirst(FieldKey.ARTIST);
+                        trackArtist = tagFields.getArtist();
                     }
 
                     // Check Album metadata for null value, if true replace with Unknown
-                    if (tag.getFirst(FieldKey.ALBUM) != null || !Objects.equals(tag.getFirst(FieldKey.ALBUM), "")) {
-                        trackAlbum = tag.getFirst(FieldKey.ALBUM);
+                    if (tagFields.getAlbum() != null || !Objects.equals(tagFields.getAlbum(), "")) {
+                        trackAlbum = tagFields.getAlbum();
                     }
                 }
             }
 
             // Check genre metadata for null value, if true leave blank
-            if (tag.getFirst(FieldKey.GENRE) == null) {
+            if (tagFields.getGenre() == null) {
                 trackGenre = null;
 
             } else {
-                trackGenre = tag.getFirst(FieldKey.GENRE);
+                trackGenre = tagFields.getGenre();
             }
 
             assert trackGenre != null;
@@ -770,11 +1053,12 @@ public class MusicLibrary {
                     trackPathStr,
                     playlist
             );
+            trackMetadata.setAudioProperties(tagFields.getAudioProperties().withFileSize(new File(trackPathStr).length()));
 
             trackMetadataObservableList.add(trackMetadata);
 
-            System.out.println("Importing: " + trackFileName);
-            System.out.println(tag);
+            // Per file detail, only with "logLevel": "debug"
+            ConsoleLog.debug("Importing: %s%n%s", trackFileName, tagFields);
 
         } catch (Exception e) {
             e.printStackTrace();
@@ -789,6 +1073,18 @@ public class MusicLibrary {
      *
      * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
 
+    // Identified by the file's first bytes, recognised formats the Media Player can't play are passed over
+    boolean isSupportedFileType(ParseContext parseContext) {
+        return parseContext.getAudioFormat() != null && parseContext.getAudioFormat().isPlayable();
+    }
+
+    // File name up to the first dot, the whole name for files without an extension
+    private String removeExtension(String trackFileName) {
+        final int dotIndex = trackFileName.indexOf('.');
+
+        return dotIndex > 0 ? trackFileName.substring(0, dotIndex) : trackFileName;
+    }
+
     private String filterDigitsFromTitle(String trackTitle) {
         if (trackTitle.contains(".")) {
             if (trackTitle.contains(" - ")) {
@@ -835,6 +1131,13 @@ public class MusicLibrary {
         this.rootMusicDirectoryString = rootMusicDirectoryString;
     }
 
+    // Called on the JavaFX Application Thread with each batch of tracks during Standard or Recursive Initialization
+    public void setOnTracksPublished(Consumer<List<TrackMetadata>> onTracksPublished) {
+        this.onTracksPublished = onTracksPublished;
+    }
+
+    public boolean isScanning() { return scanning.get(); }
+
     public ObservableList<TrackMetadata> getTrackObservableList() {
         return trackMetadataObservableList;
     }
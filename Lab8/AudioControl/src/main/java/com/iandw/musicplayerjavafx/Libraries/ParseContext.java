@@ -0,0 +1,78 @@
+/**
+ *      Author: Ian Wallace, copyright 2022 all rights reserved.
+ *      Application: MusicPlayer
+ *      Class: ParseContext.java
+ *      Notes: Immutable per-file data handed to the MusicLibrary parse methods.
+ *              Each audio file gets its own ParseContext so that files can be parsed
+ *              on several threads at once without sharing MusicLibrary member variables.
+ *              Standard Initialization also carries the Artist and Album folder names,
+ *              these are null for Recursive Initialization.
+ *
+ *              The file's format is identified from its first bytes (see AudioFormatRegistry) the first
+ *              time it is asked for, so scanned files are read by the parse workers and not the walker.
+ *              Files with a wrong or missing extension get the format's container type. A ParseContext is
+ *              only used by one thread at a time.
+ */
+
+package com.iandw.musicplayerjavafx.Libraries;
+
+import java.io.File;
+import java.nio.file.Path;
+
+final class ParseContext {
+    private final String trackPathStr;
+    private final String trackFileName;
+    private final String extension;
+    private String trackContainerType;
+    private AudioFormat audioFormat;
+    private boolean identified;
+    private final String artistNameStr;
+    private final String albumDirectoryStr;
+    private final long fileSize;
+
+    /**
+     * ParseContext - constructor
+     * @param trackFile => Audio file to be parsed, path and extension are resolved once here
+     */
+    ParseContext(File trackFile) {
+        this(trackFile, null, null);
+    }
+
+    /**
+     * ParseContext - constructor for Standard Initialization
+     * @param trackFile => Audio file to be parsed
+     * @param artistNameStr => Artist folder name
+     * @param albumDirectoryStr => Album folder name
+     */
+    ParseContext(File trackFile, String artistNameStr, String albumDirectoryStr) {
+        trackPathStr = trackFile.getAbsolutePath();
+        trackFileName = trackFile.getName();
+
+        final int extensionIndex = trackFileName.lastIndexOf('.');
+        extension = extensionIndex > 0 ? trackFileName.substring(extensionIndex) : "";
+
+        this.artistNameStr = artistNameStr;
+        this.albumDirectoryStr = albumDirectoryStr;
+        fileSize = trackFile.length();
+    }
+
+    String getTrackPathStr() { return trackPathStr; }
+    String getTrackFileName() { return trackFileName; }
+    String getTrackContainerType() { identify(); return trackContainerType; }
+    AudioFormat getAudioFormat() { identify(); return audioFormat; }
+    String getArtistNameStr() { return artistNameStr; }
+    String getAlbumDirectoryStr() { return albumDirectoryStr; }
+    long getFileSize() { return fileSize; }
+
+    // Reads the file's first bytes once, null audioFormat if it is not a recognised audio file
+    private void identify() {
+        if (identified) {
+            return;
+        }
+
+        audioFormat = AudioFormatRegistry.sniff(Path.of(trackPathStr));
+        trackContainerType = audioFormat != null && !audioFormat.hasExtension(extension) ?
+                audioFormat.getContainerType() : extension;
+        identified = true;
+    }
+}
@@ -0,0 +1,345 @@
+/**
+ *      Author: Ian Wallace, copyright 2022 all rights reserved.
+ *      Application: MusicPlayer
+ *      Class: PlaylistLibrary.java
+ *      Notes: Entries of every playlist, held by ListViewLibrary and saved to playlists.bin apart from
+ *              the track list (see PlaylistFileIO).
+ *
+ *              A playlist is an ordered array of compact track ids, a track path gets its id the first
+ *              time it is added to any playlist. trackPlaylists is the reverse index, the playlists
+ *              holding each track id. A track can be in any number of playlists, once per playlist, and
+ *              opening a playlist only reads its own entries.
+ *
+ *              Entries are kept by track path, so they outlive a rescan of the Music Library. Entries
+ *              whose file is no longer in the library are skipped by TableViewLibrary.filterTrackPaths().
+ */
+
+package com.iandw.musicplayerjavafx.Libraries;
+
+import com.iandw.musicplayerjavafx.FileIO.AutosaveService;
+import com.iandw.musicplayerjavafx.FileIO.AutosaveService.Store;
+import com.iandw.musicplayerjavafx.FileIO.PlaylistFileIO.PlaylistData;
+
+import java.util.*;
+
+public class PlaylistLibrary {
+    private final List<String> trackPaths = new ArrayList<>();
+    private final Map<String, Integer> trackIds = new HashMap<>();
+    private final List<Set<String>> trackPlaylists = new ArrayList<>();
+    private final Map<String, Playlist> playlists = new HashMap<>();
+    private boolean outputPlaylistsOnClose;
+
+    public PlaylistLibrary() {}
+
+    /**
+     * load() - sets every playlist from playlists.bin, called once on start up
+     *
+     * @param playlistData => From PlaylistFileIO.inputPlaylists()
+     */
+    public synchronized void load(PlaylistData playlistData) {
+        clearEntries();
+        outputPlaylistsOnClose = false;
+
+        for (String trackPathStr : playlistData.trackPaths()) {
+            trackId(trackPathStr);
+        }
+
+        playlistData.playlistEntries().forEach((title, entries) -> {
+            Playlist playlist = new Playlist(entries.length);
+
+            for (int trackId : entries) {
+                if (trackPlaylists.get(trackId).add(title)) {
+                    playlist.add(playlist.size, trackId);
+                }
+            }
+
+            playlists.put(title, playlist);
+        });
+    }
+
+    /**
+     * snapshot() - copy of every playlist for playlists.bin, track ids are renumbered so paths no longer
+     *              in any playlist are left out
+     *
+     * @return => PlaylistData for PlaylistFileIO.outputPlaylists()
+     */
+    public synchronized PlaylistData snapshot() {
+        List<String> snapshotTrackPaths = new ArrayList<>();
+        int[] snapshotTrackIds = new int[trackPaths.size()];
+        Arrays.fill(snapshotTrackIds, -1);
+        Map<String, int[]> playlistEntries = new LinkedHashMap<>();
+
+        for (String title : getPlaylistTitles()) {
+            Playlist playlist = playlists.get(title);
+            int[] entries = new int[playlist.size];
+
+            for (int i = 0; i < playlist.size; i++) {
+                final int trackId = playlist.entries[i];
+
+                if (snapshotTrackIds[trackId] < 0) {
+                    snapshotTrackIds[trackId] = snapshotTrackPaths.size();
+                    snapshotTrackPaths.add(trackPaths.get(trackId));
+                }
+
+                entries[i] = snapshotTrackIds[trackId];
+            }
+
+            playlistEntries.put(title, entries);
+        }
+
+        outputPlaylistsOnClose = false;
+
+        return new PlaylistData(snapshotTrackPaths, playlistEntries);
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          PLAYLISTS
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    // An existing playlist is kept as it is
+    public synchronized void createPlaylist(String title) {
+        if (playlists.putIfAbsent(title, new Playlist(0)) == null) {
+            setOutputPlaylistsOnClose();
+        }
+    }
+
+    public synchronized void removePlaylist(String title) {
+        Playlist playlist = playlists.remove(title);
+
+        if (playlist != null) {
+            for (int i = 0; i < playlist.size; i++) {
+                trackPlaylists.get(playlist.entries[i]).remove(title);
+            }
+
+            setOutputPlaylistsOnClose();
+        }
+    }
+
+    /**
+     * renamePlaylist() - gives a playlist a new title, entries are appended to newTitle if it exists
+     *
+     * @param title => Current title
+     * @param newTitle => New title
+     */
+    public synchronized void renamePlaylist(String title, String newTitle) {
+        Playlist playlist = playlists.get(title);
+
+        if (playlist == null || title.equals(newTitle)) {
+            return;
+        }
+
+        createPlaylist(newTitle);
+
+        for (int i = 0; i < playlist.size; i++) {
+            addTrack(newTitle, trackPaths.get(playlist.entries[i]));
+        }
+
+        removePlaylist(title);
+    }
+
+    /**
+     * moveDirectory() - rewrites the paths below a directory, see TableViewLibrary.moveDirectory()
+     *
+     * @param directoryStr => Current directory including its trailing separator
+     * @param newDirectoryStr => New directory including its trailing separator
+     */
+    public synchronized void moveDirectory(String directoryStr, String newDirectoryStr) {
+        for (int trackId = 0; trackId < trackPaths.size(); trackId++) {
+            final String trackPathStr = trackPaths.get(trackId);
+
+            if (trackPathStr.startsWith(directoryStr)) {
+                final String newTrackPathStr = newDirectoryStr + trackPathStr.substring(directoryStr.length());
+
+                // An entry already at the new path keeps its own id
+                if (trackIds.putIfAbsent(newTrackPathStr, trackId) == null) {
+                    trackIds.remove(trackPathStr);
+                    trackPaths.set(trackId, newTrackPathStr);
+                    setOutputPlaylistsOnClose();
+                }
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        clearEntries();
+        setOutputPlaylistsOnClose();
+    }
+
+    private void clearEntries() {
+        trackPaths.clear();
+        trackIds.clear();
+        trackPlaylists.clear();
+        playlists.clear();
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          ENTRIES
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    /**
+     * addTrack() - appends a track to the end of a playlist
+     *
+     * @param title => Playlist title
+     * @param trackPathStr => Track path
+     * @return => False if the playlist does not exist or already holds the track
+     */
+    public synchronized boolean addTrack(String title, String trackPathStr) {
+        Playlist playlist = playlists.get(title);
+
+        if (playlist == null) {
+            return false;
+        }
+
+        final int trackId = trackId(trackPathStr);
+
+        if (!trackPlaylists.get(trackId).add(title)) {
+            return false;
+        }
+
+        playlist.add(playlist.size, trackId);
+        setOutputPlaylistsOnClose();
+
+        return true;
+    }
+
+    public synchronized boolean removeTrack(String title, String trackPathStr) {
+        Playlist playlist = playlists.get(title);
+        Integer trackId = trackIds.get(trackPathStr);
+
+        if (playlist == null || trackId == null || !trackPlaylists.get(trackId).remove(title)) {
+            return false;
+        }
+
+        playlist.remove(playlist.indexOf(trackId));
+        setOutputPlaylistsOnClose();
+
+        return true;
+    }
+
+    /**
+     * moveTrack() - moves an entry to another position of its playlist
+     *
+     * @param title => Playlist title
+     * @param fromPosition => Current position of the entry
+     * @param toPosition => Position of the entry afterwards
+     */
+    public synchronized void moveTrack(String title, int fromPosition, int toPosition) {
+        Playlist playlist = playlists.get(title);
+
+        if (playlist != null && fromPosition != toPosition) {
+            Objects.checkIndex(fromPosition, playlist.size);
+            Objects.checkIndex(toPosition, playlist.size);
+
+            final int trackId = playlist.entries[fromPosition];
+            playlist.remove(fromPosition);
+            playlist.add(toPosition, trackId);
+            setOutputPlaylistsOnClose();
+        }
+    }
+
+    // Path of each entry in playlist order, empty if the playlist does not exist
+    public synchronized List<String> getTrackPaths(String title) {
+        Playlist playlist = playlists.get(title);
+
+        if (playlist == null) {
+            return List.of();
+        }
+
+        List<String> playlistTrackPaths = new ArrayList<>(playlist.size);
+
+        for (int i = 0; i < playlist.size; i++) {
+            playlistTrackPaths.add(trackPaths.get(playlist.entries[i]));
+        }
+
+        return playlistTrackPaths;
+    }
+
+    // Titles of the playlists holding a track, from the reverse index
+    public synchronized List<String> getPlaylistTitles(String trackPathStr) {
+        Integer trackId = trackIds.get(trackPathStr);
+
+        if (trackId == null) {
+            return List.of();
+        }
+
+        List<String> titles = new ArrayList<>(trackPlaylists.get(trackId));
+        Collections.sort(titles);
+
+        return titles;
+    }
+
+    private int trackId(String trackPathStr) {
+        Integer trackId = trackIds.get(trackPathStr);
+
+        if (trackId == null) {
+            trackId = trackPaths.size();
+            trackPaths.add(trackPathStr);
+            trackIds.put(trackPathStr, trackId);
+            trackPlaylists.add(new HashSet<>(2));
+        }
+
+        return trackId;
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          GETTERS
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    public synchronized List<String> getPlaylistTitles() {
+        List<String> titles = new ArrayList<>(playlists.keySet());
+        Collections.sort(titles);
+
+        return titles;
+    }
+    public synchronized boolean containsPlaylist(String title) { return playlists.containsKey(title); }
+    public synchronized int getTrackCount(String title) {
+        Playlist playlist = playlists.get(title);
+        return playlist == null ? 0 : playlist.size;
+    }
+    public synchronized boolean getOutputPlaylistsOnClose() { return outputPlaylistsOnClose; }
+
+    // Saved by AutosaveService once the edits stop
+    private void setOutputPlaylistsOnClose() {
+        outputPlaylistsOnClose = true;
+        AutosaveService.markDirty(Store.PLAYLISTS);
+    }
+
+    // Track ids of one playlist in order, grown like an ArrayList
+    private static final class Playlist {
+        private int[] entries;
+        private int size;
+
+        private Playlist(int capacity) { entries = new int[Math.max(capacity, 4)]; }
+
+        private void add(int position, int trackId) {
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, size + (size >> 1));
+            }
+
+            System.arraycopy(entries, position, entries, position + 1, size - position);
+            entries[position] = trackId;
+            size++;
+        }
+
+        private void remove(int position) {
+            System.arraycopy(entries, position + 1, entries, position, size - position - 1);
+            size--;
+        }
+
+        private int indexOf(int trackId) {
+            for (int i = 0; i < size; i++) {
+                if (entries[i] == trackId) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+    }
+}
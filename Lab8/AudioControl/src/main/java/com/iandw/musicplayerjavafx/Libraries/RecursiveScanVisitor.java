@@ -0,0 +1,183 @@
+/**
+ *      Author: Ian Wallace, copyright 2022 all rights reserved.
+ *      Application: MusicPlayer
+ *      Class: RecursiveScanVisitor.java
+ *      Notes: Directory walk of Recursive Initialization, submits every regular file within the root
+ *              music directory to the ScanPipeline. Files are only listed here, the parse workers read
+ *              their first bytes and pass over files that are not audio.
+ *
+ *              Folders and files are told apart by their file key (device and inode on Linux and macOS):
+ *                  - A symbolic link back to one of its own parent folders is a loop, walkFileTree reports
+ *                    it as a FileSystemLoopException and the link is passed over.
+ *                  - A folder or file whose file key was already walked (hard links, symbolic links to
+ *                    a folder walked elsewhere) is passed over so its tracks are not listed twice.
+ *              File systems without file keys (Windows) are only protected against loops.
+ *
+ *              Symbolic links are followed unless scanFollowSymlinks is false in settings.json.
+ *              Passed over entries are counted in the ScanSummary rather than printed one by one.
+ */
+
+package com.iandw.musicplayerjavafx.Libraries;
+
+import com.iandw.musicplayerjavafx.Libraries.ScanSummary.SkipReason;
+
+import java.io.IOException;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+
+final class RecursiveScanVisitor extends SimpleFileVisitor<Path> {
+    private final ScanRules scanRules;
+    private final ScanPipeline scanPipeline;
+    private final ScanSummary scanSummary;
+    private final Path rootPath;
+    private final boolean followSymlinks;
+    private final Set<Object> walkedDirectoryKeys;
+    private final Set<Object> walkedFileKeys;
+
+    private RecursiveScanVisitor(ScanRules scanRules, ScanPipeline scanPipeline, ScanSummary scanSummary,
+                                 Path rootPath, boolean followSymlinks) {
+        this.scanRules = scanRules;
+        this.scanPipeline = scanPipeline;
+        this.scanSummary = scanSummary;
+        this.rootPath = rootPath;
+        this.followSymlinks = followSymlinks;
+        walkedDirectoryKeys = new HashSet<>();
+        walkedFileKeys = new HashSet<>();
+    }
+
+    /**
+     * walk() - walks rootPath on the calling thread, returns early if the thread is interrupted
+     *
+     * @param scanRules => Include/exclude rules relative to rootPath
+     * @param scanPipeline => Receives each audio file
+     * @param scanSummary => Counts the entries passed over
+     * @param rootPath => Absolute root music directory
+     * @param followSymlinks => Walk into symbolic links to folders and read symbolic links to files
+     * @throws IOException
+     */
+    static void walk(ScanRules scanRules, ScanPipeline scanPipeline, ScanSummary scanSummary,
+                     Path rootPath, boolean followSymlinks) throws IOException {
+        Set<FileVisitOption> fileVisitOptions = followSymlinks
+                ? EnumSet.of(FileVisitOption.FOLLOW_LINKS) : EnumSet.noneOf(FileVisitOption.class);
+
+        Files.walkFileTree(rootPath, fileVisitOptions, Integer.MAX_VALUE,
+                new RecursiveScanVisitor(scanRules, scanPipeline, scanSummary, rootPath, followSymlinks));
+    }
+
+    @Override
+    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+        // Return on Cancel Button Clicked
+        if (Thread.currentThread().isInterrupted()) {
+            System.out.println("Cancelling gracefully...");
+            return FileVisitResult.TERMINATE;
+        }
+
+        if (dir.equals(rootPath)) {
+            addFileKey(walkedDirectoryKeys, attrs);
+            return FileVisitResult.CONTINUE;
+        }
+
+        // Excluded folders are never listed
+        if (scanRules.isExcludedDirectory(rootPath, dir)) {
+            scanSummary.skipped(SkipReason.EXCLUDED, dir);
+            rootEntryWalked(dir);
+            return FileVisitResult.SKIP_SUBTREE;
+        }
+
+        if (!addFileKey(walkedDirectoryKeys, attrs)) {
+            scanSummary.skipped(SkipReason.DUPLICATE_LINK, dir);
+            rootEntryWalked(dir);
+            return FileVisitResult.SKIP_SUBTREE;
+        }
+
+        // Resumed scan, every track within dir was published from the checkpoint
+        if (scanPipeline.isCompletedDirectory(dir.toString())) {
+            rootEntryWalked(dir);
+            return FileVisitResult.SKIP_SUBTREE;
+        }
+
+        scanPipeline.enterDirectory(dir.toString());
+
+        return FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+        // Break on Cancel Button Clicked
+        if (Thread.currentThread().isInterrupted()) {
+            System.out.println("Cancelling gracefully...");
+            return FileVisitResult.TERMINATE;
+        }
+
+        if (attrs.isSymbolicLink()) {
+            // Only a broken link is reported as a link when links are followed
+            scanSummary.skipped(followSymlinks ? SkipReason.UNREADABLE : SkipReason.SYMLINK_NOT_FOLLOWED, file);
+
+        } else if (!attrs.isRegularFile()) {
+            scanSummary.skipped(SkipReason.UNSUPPORTED, file);
+
+        } else if (scanRules.isExcludedFile(rootPath, file)) {
+            scanSummary.skipped(SkipReason.EXCLUDED, file);
+
+        } else if (!addFileKey(walkedFileKeys, attrs)) {
+            scanSummary.skipped(SkipReason.DUPLICATE_LINK, file);
+
+        } else if (!scanPipeline.submit(new ParseContext(file.toFile()))) {
+            // File type is checked by the parse workers
+            return FileVisitResult.TERMINATE;
+        }
+
+        rootEntryWalked(file);
+
+        return FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult visitFileFailed(Path file, IOException e) {
+        scanSummary.skipped(e instanceof FileSystemLoopException ? SkipReason.SYMLINK_LOOP : SkipReason.UNREADABLE, file);
+        rootEntryWalked(file);
+
+        return FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+        if (dir.equals(rootPath)) {
+            return FileVisitResult.CONTINUE;
+        }
+
+        // Listing failed part way, the folder is not recorded as completed
+        if (e != null) {
+            scanSummary.skipped(SkipReason.UNREADABLE, dir);
+
+        } else {
+            scanPipeline.exitDirectory(dir.toString());
+        }
+
+        rootEntryWalked(dir);
+
+        return FileVisitResult.CONTINUE;
+    }
+
+    // False if the key was already walked, entries without a file key are always walked
+    private static boolean addFileKey(Set<Object> walkedKeys, BasicFileAttributes attrs) {
+        final Object fileKey = attrs.fileKey();
+
+        return fileKey == null || walkedKeys.add(fileKey);
+    }
+
+    // Each entry directly within root moves the progress estimate
+    private void rootEntryWalked(Path path) {
+        if (rootPath.equals(path.getParent())) {
+            scanPipeline.rootEntryWalked();
+        }
+    }
+}
@@ -0,0 +1,362 @@
+/**
+ *      Author: Ian Wallace, copyright 2022 all rights reserved.
+ *      Application: MusicPlayer
+ *      Class: ScanPipeline.java
+ *      Notes: Staged Music Library scan used by initialization and incremental rescan.
+ *
+ *              directory walker -> parse queue -> tag parsing workers -> publisher -> JavaFX Application Thread
+ *
+ *              The walker runs on the calling Task thread and blocks while the bounded parse queue is full,
+ *              so a fast directory walk never gets far ahead of tag parsing. The publisher hands tracks to
+ *              the JavaFX Application Thread in batches of batchSize or every publishMillis, whichever comes
+ *              first, so the Table View fills in while the rest of the library is still being read.
+ *
+ *              Each submitted file is numbered in walk order. Workers finish in any order, so the publisher
+ *              holds their results in a reorder buffer and publishes them in walk order. The same directory
+ *              gives the same track order whatever the number of workers.
+ *
+ *              Full initializations also pass a CheckpointTracker, the publisher then hands it a checkpoint
+ *              every checkpointMillis and compacts the checkpoint if the scan is cancelled.
+ */
+
+package com.iandw.musicplayerjavafx.Libraries;
+
+import com.iandw.musicplayerjavafx.TrackMetadata;
+import com.iandw.musicplayerjavafx.Utilities.ProgressBarData;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import javafx.application.Platform;
+
+final class ScanPipeline {
+    private static final int queueCapacity = 512;
+    private static final int batchSize = 200;
+    private static final long publishMillis = 250;
+    private static final long pollMillis = 50;
+
+    private final MusicLibrary musicLibrary;
+    private final ProgressBarData progressBarData;
+    private final ScanSummary scanSummary;
+    private final Consumer<List<TrackMetadata>> onBatchPublished;
+    private final CheckpointTracker checkpointTracker;
+    private final BlockingQueue<ParseRequest> parseQueue;
+    private final BlockingQueue<ScanResult> publishQueue;
+    private final TreeMap<Long, ScanResult> reorderBuffer;
+    private final List<TrackMetadata> scannedTracks;
+    private final List<Thread> workerThreads;
+    private final Thread publisherThread;
+    private final AtomicBoolean cancelled;
+    private final AtomicInteger activeWorkers;
+    private volatile boolean walkFinished;
+    private long submittedCount;
+    private long nextPublishSequence;
+
+    /**
+     * ScanPipeline - constructor, starts the parse workers and publisher
+     *
+     * @param musicLibrary => Parses each queued file via MusicLibrary.scanTrack()
+     * @param workerCount => Number of tag parsing threads
+     * @param progressBarData => Passes progress data to ProgressBarController
+     * @param scanSummary => Counts the unsupported files found by the parse workers
+     * @param onBatchPublished => Called on the JavaFX Application Thread with each batch of tracks
+     * @param checkpointTracker => Records completed directories and writes checkpoints, null if not checkpointed
+     */
+    ScanPipeline(MusicLibrary musicLibrary, int workerCount, ProgressBarData progressBarData, ScanSummary scanSummary,
+                 Consumer<List<TrackMetadata>> onBatchPublished, CheckpointTracker checkpointTracker) {
+        this.musicLibrary = musicLibrary;
+        this.progressBarData = progressBarData;
+        this.scanSummary = scanSummary;
+        this.onBatchPublished = onBatchPublished;
+        this.checkpointTracker = checkpointTracker;
+        parseQueue = new ArrayBlockingQueue<>(queueCapacity);
+        publishQueue = new LinkedBlockingQueue<>();
+        reorderBuffer = new TreeMap<>();
+        scannedTracks = new ArrayList<>();
+        workerThreads = new ArrayList<>();
+        cancelled = new AtomicBoolean(false);
+        activeWorkers = new AtomicInteger(Math.max(1, workerCount));
+
+        // Resumed scan, completed directories are published before anything else is walked
+        if (checkpointTracker != null && !checkpointTracker.getResumedCompletedTracks().isEmpty()) {
+            List<TrackMetadata> resumedTracks = checkpointTracker.getResumedCompletedTracks();
+
+            for (TrackMetadata trackMetadata : resumedTracks) {
+                progressBarData.fileDiscovered(0);
+                progressBarData.increaseProgress(trackMetadata.getTrackPathStr(), 0);
+            }
+
+            for (int i = 0; i < resumedTracks.size(); i += batchSize) {
+                publishTracks(new ArrayList<>(resumedTracks.subList(i, Math.min(i + batchSize, resumedTracks.size()))));
+            }
+
+            checkpointTracker.checkpoint(scannedTracks);
+        }
+
+        for (int i = 0; i < activeWorkers.get(); i++) {
+            Thread workerThread = new Thread(this::parseLoop, "scan-worker-" + i);
+            workerThread.setDaemon(true);
+            workerThreads.add(workerThread);
+            workerThread.start();
+        }
+
+        publisherThread = new Thread(this::publishLoop, "scan-publisher");
+        publisherThread.setDaemon(true);
+        publisherThread.start();
+    }
+
+    /**
+     * submit() - Walker stage, queues a file for parsing, the workers pass over files that are not audio.
+     *            Blocks while the parse queue is full.
+     *
+     * @param parseContext => File to be parsed
+     * @return => false once the scan has been cancelled, the walker should stop
+     */
+    boolean submit(ParseContext parseContext) {
+        if (checkpointTracker != null) {
+            checkpointTracker.fileSubmitted(parseContext.getTrackPathStr());
+        }
+
+        // Only the walker submits, the sequence numbers are the walk order
+        final ParseRequest parseRequest = new ParseRequest(submittedCount++, parseContext);
+
+        try {
+            while (!cancelled.get()) {
+                if (parseQueue.offer(parseRequest, pollMillis, TimeUnit.MILLISECONDS)) {
+                    progressBarData.fileDiscovered(parseContext.getFileSize());
+                    return true;
+                }
+            }
+
+        } catch (InterruptedException e) {
+            System.out.println("Cancelling gracefully...");
+            cancelled.set(true);
+            Thread.currentThread().interrupt();
+        }
+
+        return false;
+    }
+
+    // Walker stage, one entry of the root directory has been fully walked
+    void rootEntryWalked() { progressBarData.rootEntryWalked(); }
+
+    // Walker stage, true if a resumed scan already published every track within directoryStr
+    boolean isCompletedDirectory(String directoryStr) {
+        return checkpointTracker != null && checkpointTracker.isCompleted(directoryStr);
+    }
+
+    // Walker stage, called before the entries of directoryStr are walked
+    void enterDirectory(String directoryStr) {
+        if (checkpointTracker != null) {
+            checkpointTracker.enterDirectory(directoryStr);
+        }
+    }
+
+    // Walker stage, not called for a cancelled walk so the directory is never recorded as completed
+    void exitDirectory(String directoryStr) {
+        if (checkpointTracker != null && !cancelled.get() && !Thread.currentThread().isInterrupted()) {
+            checkpointTracker.exitDirectory(directoryStr);
+        }
+    }
+
+    // Stops the workers and publisher when the walk fails
+    void cancel() { cancelled.set(true); }
+
+    /**
+     * finish() - Called by the walker once every file is submitted, waits for the queued files to be
+     *            parsed and published. All batches have been passed to Platform.runLater() on return.
+     *
+     *      When the calling thread is interrupted by the Cancel Button the workers are stopped and the
+     *      interrupt is restored so the caller handles the cancel as before.
+     *
+     * @return => Every track published by this scan
+     */
+    List<TrackMetadata> finish() {
+        walkFinished = true;
+
+        if (!cancelled.get()) {
+            progressBarData.walkFinished();
+        }
+
+        try {
+            for (Thread workerThread : workerThreads) {
+                workerThread.join();
+            }
+
+            publisherThread.join();
+
+        } catch (InterruptedException e) {
+            System.out.println("Cancelling gracefully...");
+            cancelled.set(true);
+            Thread.currentThread().interrupt();
+
+            return new ArrayList<>();
+        }
+
+        return scannedTracks;
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          WORKER / PUBLISHER THREADS
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    private void parseLoop() {
+        try {
+            while (!cancelled.get()) {
+                // Read before polling, an empty queue after the walk finished means no more files
+                final boolean finished = walkFinished;
+                ParseRequest parseRequest = parseQueue.poll(pollMillis, TimeUnit.MILLISECONDS);
+
+                if (parseRequest == null) {
+                    if (finished) {
+                        break;
+                    }
+
+                    continue;
+                }
+
+                final ParseContext parseContext = parseRequest.parseContext();
+
+                TrackMetadata trackMetadata = null;
+
+                if (checkpointTracker != null) {
+                    trackMetadata = checkpointTracker.resumedTrack(parseContext.getTrackPathStr());
+                }
+
+                if (trackMetadata == null) {
+                    trackMetadata = musicLibrary.scanTrack(parseContext, scanSummary);
+                }
+
+                // Files that are unsupported or could not be parsed are still published so their directory can complete
+                publishQueue.add(new ScanResult(parseRequest.sequence(), parseContext.getTrackPathStr(), trackMetadata));
+
+                progressBarData.increaseProgress(parseContext.getTrackPathStr(), parseContext.getFileSize());
+            }
+
+        } catch (InterruptedException e) {
+            cancelled.set(true);
+
+        } finally {
+            activeWorkers.decrementAndGet();
+        }
+    }
+
+    private void publishLoop() {
+        List<ScanResult> received = new ArrayList<>(batchSize);
+        List<ScanResult> batch = new ArrayList<>(batchSize);
+        long lastPublishMillis = System.currentTimeMillis();
+        long lastCheckpointMillis = lastPublishMillis;
+
+        try {
+            while (!cancelled.get()) {
+                // Read before polling, same as parseLoop()
+                final boolean workersFinished = activeWorkers.get() == 0;
+                ScanResult scanResult = publishQueue.poll(pollMillis, TimeUnit.MILLISECONDS);
+
+                if (scanResult != null) {
+                    received.add(scanResult);
+                    publishQueue.drainTo(received, batchSize - 1);
+                    receive(received, batch);
+                    received.clear();
+                }
+
+                final boolean lastBatch = scanResult == null && workersFinished;
+
+                // Only left over if a worker failed on the file before them, published rather than lost
+                if (lastBatch) {
+                    batch.addAll(reorderBuffer.values());
+                    reorderBuffer.clear();
+                }
+                final long now = System.currentTimeMillis();
+
+                if (batch.size() >= batchSize || now - lastPublishMillis >= publishMillis || lastBatch) {
+                    publish(batch);
+                    batch = new ArrayList<>(batchSize);
+                    lastPublishMillis = now;
+                }
+
+                if (checkpointTracker != null && now - lastCheckpointMillis >= CheckpointTracker.checkpointMillis) {
+                    checkpointTracker.checkpoint(scannedTracks);
+                    lastCheckpointMillis = now;
+                }
+
+                if (lastBatch) {
+                    break;
+                }
+            }
+
+        } catch (InterruptedException e) {
+            cancelled.set(true);
+        }
+
+        // Cancelled, keep everything parsed so far for a resumed scan
+        if (cancelled.get() && checkpointTracker != null) {
+            publishQueue.drainTo(received);
+            receive(received, batch);
+            batch.addAll(reorderBuffer.values());
+            reorderBuffer.clear();
+            publish(batch);
+            checkpointTracker.shutdown(scannedTracks);
+        }
+    }
+
+    // Publisher thread, buffers the received results and moves those next in walk order to batch
+    private void receive(List<ScanResult> received, List<ScanResult> batch) {
+        for (ScanResult scanResult : received) {
+            reorderBuffer.put(scanResult.sequence(), scanResult);
+        }
+
+        while (!reorderBuffer.isEmpty() && reorderBuffer.firstKey() == nextPublishSequence) {
+            batch.add(reorderBuffer.pollFirstEntry().getValue());
+            nextPublishSequence++;
+        }
+    }
+
+    private void publish(List<ScanResult> batch) {
+        List<TrackMetadata> trackBatch = new ArrayList<>(batch.size());
+
+        for (ScanResult scanResult : batch) {
+            if (scanResult.trackMetadata() != null) {
+                trackBatch.add(scanResult.trackMetadata());
+            }
+        }
+
+        publishTracks(trackBatch);
+
+        // Tracks are added to scannedTracks first, completed directories are always covered by a checkpoint
+        if (checkpointTracker != null) {
+            batch.forEach(scanResult -> checkpointTracker.filePublished(scanResult.trackPathStr()));
+        }
+    }
+
+    private void publishTracks(List<TrackMetadata> trackBatch) {
+        if (trackBatch.isEmpty()) {
+            return;
+        }
+
+        scannedTracks.addAll(trackBatch);
+
+        Platform.runLater(() -> {
+            if (!cancelled.get()) {
+                onBatchPublished.accept(trackBatch);
+            }
+        });
+    }
+
+    // sequence is the walk order of the file
+    private record ParseRequest(long sequence, ParseContext parseContext) {}
+
+    // trackMetadata is null when the file could not be parsed
+    private record ScanResult(long sequence, String trackPathStr, TrackMetadata trackMetadata) {}
+
+}
@@ -0,0 +1,198 @@
+/**
+ *      Author: Ian Wallace, copyright 2022 all rights reserved.
+ *      Application: MusicPlayer
+ *      Class: ScanRules.java
+ *      Notes: Include/exclude rules from settings.json, compiled once per scan into PathMatchers and
+ *              checked by the directory walks before a folder is listed or a file is opened.
+ *
+ *              Glob patterns without a '/' match a file or folder name at any depth (i.e. "Stems",
+ *              "*.cue"), patterns with a '/' match the path relative to the walked folder
+ *              (i.e. "Artist/Samples/**"). Include patterns only apply to files, an empty include
+ *              list includes every file.
+ *                  - scanExclude - folders and files passed over, excluded folders are never listed
+ *                  - scanInclude - files considered at all
+ *                  - scanSkipHidden - pass over hidden folders and files (".AppleDouble", "._track.mp3")
+ *                  - scanMaxDepth - deepest folder level below the walked folder, 0 for no limit
+ *                  - scanMinFileSize - smallest file in bytes, 0 for no limit
+ */
+
+package com.iandw.musicplayerjavafx.Libraries;
+
+import com.iandw.musicplayerjavafx.Utilities.UserSettings;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.List;
+
+final class ScanRules {
+    private final List<PathMatcher> excludeNameMatchers;
+    private final List<PathMatcher> excludePathMatchers;
+    private final List<PathMatcher> includeNameMatchers;
+    private final List<PathMatcher> includePathMatchers;
+    private final boolean skipHidden;
+    private final int maxDepth;
+    private final long minFileSize;
+
+    private ScanRules(UserSettings userSettings) {
+        excludeNameMatchers = new ArrayList<>();
+        excludePathMatchers = new ArrayList<>();
+        includeNameMatchers = new ArrayList<>();
+        includePathMatchers = new ArrayList<>();
+        skipHidden = userSettings.getScanSkipHidden();
+        maxDepth = userSettings.getScanMaxDepth();
+        minFileSize = userSettings.getScanMinFileSize();
+
+        compileGlobs(userSettings.getScanExcludeGlobs(), excludeNameMatchers, excludePathMatchers);
+        compileGlobs(userSettings.getScanIncludeGlobs(), includeNameMatchers, includePathMatchers);
+    }
+
+    /**
+     * compile() - builds the rules from the current user settings, invalid patterns are printed and left out
+     *
+     * @param userSettings => Rules persisted in settings.json
+     * @return => Compiled rules
+     */
+    static ScanRules compile(UserSettings userSettings) {
+        return new ScanRules(userSettings);
+    }
+
+    private static void compileGlobs(List<String> globs, List<PathMatcher> nameMatchers, List<PathMatcher> pathMatchers) {
+        FileSystem fileSystem = FileSystems.getDefault();
+
+        for (String glob : globs) {
+            try {
+                if (glob.contains("/")) {
+                    pathMatchers.add(fileSystem.getPathMatcher("glob:" + glob));
+                } else {
+                    nameMatchers.add(fileSystem.getPathMatcher("glob:" + glob));
+                }
+
+            } catch (IllegalArgumentException e) {
+                System.out.printf("Invalid scan rule \"%s\": %s%n", glob, e.getMessage());
+            }
+        }
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          RULES
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    /**
+     * isExcludedDirectory() - checked before a folder is listed, an excluded folder's subtree is passed over
+     *
+     * @param basePath => Folder being walked, the root music directory or an imported folder
+     * @param directoryPath => Folder within basePath
+     * @return => True if the folder should not be walked
+     */
+    boolean isExcludedDirectory(Path basePath, Path directoryPath) {
+        Path relativePath = basePath.relativize(directoryPath);
+
+        if (relativePath.toString().isEmpty()) {
+            return false;
+        }
+
+        if (maxDepth > 0 && relativePath.getNameCount() > maxDepth) {
+            return true;
+        }
+
+        if (skipHidden && isHiddenDirectory(directoryPath)) {
+            return true;
+        }
+
+        return matchesAny(excludeNameMatchers, excludePathMatchers, relativePath);
+    }
+
+    /**
+     * isExcludedFile() - checked before a file is opened
+     *
+     * @param basePath => Folder being walked, the root music directory or an imported folder
+     * @param filePath => File within basePath
+     * @return => True if the file should be passed over
+     */
+    boolean isExcludedFile(Path basePath, Path filePath) {
+        Path relativePath = basePath.relativize(filePath);
+
+        if (skipHidden && filePath.getFileName().toString().startsWith(".")) {
+            return true;
+        }
+
+        if (matchesAny(excludeNameMatchers, excludePathMatchers, relativePath)) {
+            return true;
+        }
+
+        if ((!includeNameMatchers.isEmpty() || !includePathMatchers.isEmpty())
+                && !matchesAny(includeNameMatchers, includePathMatchers, relativePath)) {
+            return true;
+        }
+
+        return minFileSize > 0 && fileSize(filePath) < minFileSize;
+    }
+
+    /**
+     * isExcludedPath() - isExcludedFile() plus every folder between basePath and the file,
+     *                    for single files that were not reached through a walk
+     *
+     * @param basePath => Root music directory
+     * @param filePath => File within basePath
+     * @return => True if the file or any folder above it is excluded
+     */
+    boolean isExcludedPath(Path basePath, Path filePath) {
+        for (Path directoryPath = filePath.getParent();
+             directoryPath != null && directoryPath.startsWith(basePath) && !directoryPath.equals(basePath);
+             directoryPath = directoryPath.getParent()) {
+            if (isExcludedDirectory(basePath, directoryPath)) {
+                return true;
+            }
+        }
+
+        return isExcludedFile(basePath, filePath);
+    }
+
+    private static boolean matchesAny(List<PathMatcher> nameMatchers, List<PathMatcher> pathMatchers, Path relativePath) {
+        Path namePath = relativePath.getFileName();
+
+        for (PathMatcher nameMatcher : nameMatchers) {
+            if (namePath != null && nameMatcher.matches(namePath)) {
+                return true;
+            }
+        }
+
+        for (PathMatcher pathMatcher : pathMatchers) {
+            if (pathMatcher.matches(relativePath)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    // Dot folders, plus folders with the hidden attribute on Windows
+    private static boolean isHiddenDirectory(Path directoryPath) {
+        if (directoryPath.getFileName().toString().startsWith(".")) {
+            return true;
+        }
+
+        try {
+            return Files.isHidden(directoryPath);
+
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static long fileSize(Path filePath) {
+        try {
+            return Files.size(filePath);
+
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
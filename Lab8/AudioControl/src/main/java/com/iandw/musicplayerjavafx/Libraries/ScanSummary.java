@@ -0,0 +1,91 @@
+/**
+ *      Author: Ian Wallace, copyright 2022 all rights reserved.
+ *      Application: MusicPlayer
+ *      Class: ScanSummary.java
+ *      Notes: Entries the directory walk passed over, counted per reason and printed once when the
+ *              scan ends instead of one console line per entry. Only the first few paths of each
+ *              reason are kept as examples.
+ *
+ *              Written by the walker thread and by the parse workers for unsupported files, printed once
+ *              the workers have finished.
+ */
+
+package com.iandw.musicplayerjavafx.Libraries;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+final class ScanSummary {
+    private static final int examplesPerReason = 3;
+
+    enum SkipReason {
+        SYMLINK_LOOP("symbolic link loops"),
+        DUPLICATE_LINK("hard or symbolic links to entries already scanned"),
+        SYMLINK_NOT_FOLLOWED("symbolic links not followed"),
+        EXCLUDED("excluded by scan rules"),
+        UNSUPPORTED("unsupported files"),
+        UNREADABLE("unreadable entries");
+
+        private final String description;
+
+        SkipReason(String description) { this.description = description; }
+    }
+
+    private final Map<SkipReason, Integer> skippedCounts;
+    private final Map<SkipReason, List<Path>> skippedExamples;
+
+    ScanSummary() {
+        skippedCounts = new EnumMap<>(SkipReason.class);
+        skippedExamples = new EnumMap<>(SkipReason.class);
+    }
+
+    /**
+     * skipped() - records an entry the walk passed over
+     *
+     * @param skipReason => Why the entry was passed over
+     * @param path => File or folder passed over
+     */
+    synchronized void skipped(SkipReason skipReason, Path path) {
+        skippedCounts.merge(skipReason, 1, Integer::sum);
+
+        List<Path> examples = skippedExamples.computeIfAbsent(skipReason, reason -> new ArrayList<>());
+
+        if (examples.size() < examplesPerReason) {
+            examples.add(path);
+        }
+    }
+
+    synchronized int getSkippedCount(SkipReason skipReason) { return skippedCounts.getOrDefault(skipReason, 0); }
+
+    // Console output once the walk is over, nothing if no entry was passed over
+    synchronized void print() {
+        if (skippedCounts.isEmpty()) {
+            return;
+        }
+
+        StringBuilder summary = new StringBuilder("Scan summary, passed over:");
+
+        for (SkipReason skipReason : SkipReason.values()) {
+            final int count = getSkippedCount(skipReason);
+
+            if (count == 0) {
+                continue;
+            }
+
+            summary.append(String.format("%n    %d %s", count, skipReason.description));
+
+            for (Path example : skippedExamples.get(skipReason)) {
+                summary.append(String.format("%n        %s", example));
+            }
+
+            if (count > examplesPerReason) {
+                summary.append(String.format("%n        ..."));
+            }
+        }
+
+        System.out.println(summary);
+    }
+}
@@ -0,0 +1,647 @@
+/**
+ *      Author: Ian Wallace, copyright 2022 all rights reserved.
+ *      Application: MusicPlayer
+ *      Class: SearchIndex.java
+ *      Notes: Inverted index of the search field text of LazyTrackList, so a search does not lowercase every
+ *              field of every track.
+ *
+ *              The SearchTableView.searchFields of each track are lowercased and split at whitespace into
+ *              tokens. Each token has the track ids holding it, and each trigram of a token has the tokens
+ *              holding it. A search term of three or more characters intersects the trigram lists of its
+ *              trigrams to find the tokens containing it, shorter terms test every token. The tracks of a
+ *              search are the intersection of the tracks of each term's tokens.
+ *
+ *              A term inside a field is inside one of the field's tokens, and a term next to whitespace in
+ *              the search starts or ends one, so the tracks found are every track matching the search. For a search without whitespace they are exactly those tracks,
+ *              other searches are checked against the row by LazyTrackList.
+ *
+ *              Postings are only appended. A track edited or removed after it was indexed is marked dirty
+ *              and always checked against its row, LazyTrackList replaces the index once too many are.
+ *              Tracks are indexed by track id, which does not change as rows move.
+ *
+ *              The index is built from a snapshot of the rows on the first search, off the JavaFX
+ *              Application Thread. Edits made while it is built are added as they happen.
+ *
+ *              Fuzzy searches (see fuzzyMatches()) look in a second vocabulary of the tokens folded to
+ *              lowercase without accents, "Rós" => "ros". Each folded token is padded at both ends and its
+ *              trigrams are indexed, so the folded tokens sharing enough trigrams with a term are the only
+ *              ones checked for their edit distance to it. An edit changes at most four trigrams (a swap of
+ *              neighbouring characters), a token within maxEdits(term) edits of the term shares all but
+ *              4 * maxEdits of the term's trigrams. Tokens sharing no trigram with a term are never checked.
+ */
+
+package com.iandw.musicplayerjavafx.Libraries;
+
+import com.iandw.musicplayerjavafx.TrackMetadata;
+import com.iandw.musicplayerjavafx.Utilities.SearchTableView;
+import com.iandw.musicplayerjavafx.Utilities.TrackField;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+final class SearchIndex {
+    private final Map<String, Integer> tokenIds = new HashMap<>();
+    private final List<String> tokens = new ArrayList<>();
+
+    // Track ids by token id, and token ids by trigram, each list prefixed with its count
+    private int[][] tokenPostings = new int[1024][];
+    private final Map<Long, int[]> trigramTokens = new HashMap<>();
+
+    // Folded tokens (see fold()), the token ids folding to each and folded token ids by padded trigram
+    private final Map<String, Integer> foldedIds = new HashMap<>();
+    private final List<String> foldedTokens = new ArrayList<>();
+    private int[][] foldedTokenIds = new int[1024][];
+    private final Map<Long, int[]> foldedTrigramTokens = new HashMap<>();
+    private int[] sharedTrigramCounts = new int[1024];
+
+    private final BitSet indexedTrackIds = new BitSet();
+    private final BitSet dirtyTrackIds = new BitSet();
+    private int version;
+
+    // Tracks of the last search, a search containing it only looks within them
+    private String previousSearchText;
+    private BitSet previousMatches;
+    private int previousVersion;
+
+    private final Object buildLock = new Object();
+    private List<TrackMetadata> buildRows;
+
+    /**
+     * SearchIndex - constructor, the rows are indexed by build()
+     *
+     * @param buildRows => Snapshot of the rows, see LazyTrackList.snapshot()
+     */
+    SearchIndex(List<TrackMetadata> buildRows) {
+        this.buildRows = buildRows;
+    }
+
+    // Indexes the snapshot once, other threads calling it wait until it is done. Edits are not held up
+    // for longer than one track.
+    void build() {
+        synchronized (buildLock) {
+            if (buildRows == null) {
+                return;
+            }
+
+            for (TrackMetadata trackMetadata : buildRows) {
+                synchronized (this) {
+                    indexTrack(trackMetadata);
+                }
+            }
+
+            buildRows = null;
+        }
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          CHANGES
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    // A track added to the list, or the new value of an edited track
+    synchronized void addTrack(TrackMetadata trackMetadata) {
+        version++;
+        indexTrack(trackMetadata);
+    }
+
+    // The track's postings may no longer match its row
+    synchronized void markDirty(int trackId) {
+        version++;
+        dirtyTrackIds.set(trackId);
+    }
+
+    synchronized int getDirtyCount() { return dirtyTrackIds.cardinality(); }
+
+    synchronized boolean isDirty(int trackId) { return dirtyTrackIds.get(trackId); }
+
+    synchronized int getVersion() { return version; }
+
+    private void indexTrack(TrackMetadata trackMetadata) {
+        final int trackId = trackMetadata.getTrackId();
+
+        if (indexedTrackIds.get(trackId)) {
+            dirtyTrackIds.set(trackId);
+        }
+
+        indexedTrackIds.set(trackId);
+
+        Set<String> trackTokens = new HashSet<>();
+
+        for (TrackField trackField : SearchTableView.searchFields) {
+            final String value = trackField.get(trackMetadata);
+
+            if (value != null) {
+                trackTokens.addAll(tokenize(value.toLowerCase()));
+            }
+        }
+
+        for (String token : trackTokens) {
+            final int tokenId = tokenId(token);
+            tokenPostings[tokenId] = append(tokenPostings[tokenId], trackId);
+        }
+    }
+
+    private int tokenId(String token) {
+        final Integer knownTokenId = tokenIds.get(token);
+
+        if (knownTokenId != null) {
+            return knownTokenId;
+        }
+
+        final int tokenId = tokens.size();
+        tokens.add(token);
+        tokenIds.put(token, tokenId);
+
+        if (tokenId == tokenPostings.length) {
+            tokenPostings = Arrays.copyOf(tokenPostings, tokenId + (tokenId >> 1));
+        }
+
+        for (int i = 0; i + 3 <= token.length(); i++) {
+            trigramTokens.merge(trigram(token, i), new int[] { 1, tokenId }, (list, added) -> append(list, added[1]));
+        }
+
+        final int foldedId = foldedId(fold(token));
+        foldedTokenIds[foldedId] = append(foldedTokenIds[foldedId], tokenId);
+
+        return tokenId;
+    }
+
+    private int foldedId(String foldedToken) {
+        final Integer knownFoldedId = foldedIds.get(foldedToken);
+
+        if (knownFoldedId != null) {
+            return knownFoldedId;
+        }
+
+        final int foldedId = foldedTokens.size();
+        foldedTokens.add(foldedToken);
+        foldedIds.put(foldedToken, foldedId);
+
+        if (foldedId == foldedTokenIds.length) {
+            foldedTokenIds = Arrays.copyOf(foldedTokenIds, foldedId + (foldedId >> 1));
+        }
+
+        for (long paddedTrigram : paddedTrigrams(foldedToken, true)) {
+            foldedTrigramTokens.merge(paddedTrigram, new int[] { 1, foldedId }, (list, added) -> append(list, added[1]));
+        }
+
+        return foldedId;
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          QUERIES
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    /**
+     * candidates() - track ids which may match a search, every matching track is among them
+     *
+     * @param lowerCaseSearchText => Search field text, lowercased
+     * @param cancelled => True once a newer search has started
+     * @return => Track ids, null if cancelled
+     */
+    synchronized BitSet candidates(String lowerCaseSearchText, BooleanSupplier cancelled) {
+        BitSet candidates = (BitSet) indexedTrackIds.clone();
+
+        // Typing on, the new search can only match tracks the last one did
+        if (previousSearchText != null && previousVersion == version && lowerCaseSearchText.contains(previousSearchText)) {
+            candidates = (BitSet) previousMatches.clone();
+        }
+
+        final List<String> terms = tokenize(lowerCaseSearchText);
+        final boolean leadingWhitespace = !lowerCaseSearchText.isEmpty() && Character.isWhitespace(lowerCaseSearchText.charAt(0));
+        final boolean trailingWhitespace = !lowerCaseSearchText.isEmpty()
+                && Character.isWhitespace(lowerCaseSearchText.charAt(lowerCaseSearchText.length() - 1));
+
+        for (int term = 0; term < terms.size(); term++) {
+            if (cancelled.getAsBoolean()) {
+                return null;
+            }
+
+            final boolean tokenStart = term > 0 || leadingWhitespace;
+            final boolean tokenEnd = term < terms.size() - 1 || trailingWhitespace;
+            BitSet termTracks = new BitSet();
+
+            for (int tokenId : tokensContaining(terms.get(term), tokenStart, tokenEnd)) {
+                final int[] postings = tokenPostings[tokenId];
+
+                for (int i = 1; i <= postings[0]; i++) {
+                    termTracks.set(postings[i]);
+                }
+            }
+
+            candidates.and(termTracks);
+        }
+
+        return candidates;
+    }
+
+    // Edit count of each track id a fuzzy search matched, see fuzzyMatches()
+    record FuzzyMatches(BitSet trackIds, int[] edits) {}
+
+    /**
+     * fuzzyMatches() - track ids where each term of a search is within maxEdits() of a token, accents and case
+     *                  ignored. The last term may be within them of the start of a token, it is still being typed.
+     *                  None for a search without a term of three or more letters.
+     *
+     * @param searchText => Search field text
+     * @param cancelled => True once a newer search has started
+     * @return => Track ids and the edits of each, the sum of each term's fewest, null if cancelled
+     */
+    synchronized FuzzyMatches fuzzyMatches(String searchText, BooleanSupplier cancelled) {
+        final String foldedSearchText = fold(searchText);
+        final List<String> terms = tokenize(foldedSearchText);
+        final boolean trailingWhitespace = !foldedSearchText.isEmpty()
+                && Character.isWhitespace(foldedSearchText.charAt(foldedSearchText.length() - 1));
+
+        if (!isFuzzySearch(terms)) {
+            return new FuzzyMatches(new BitSet(), new int[0]);
+        }
+
+        BitSet matches = (BitSet) indexedTrackIds.clone();
+        int[] edits = new int[indexedTrackIds.length()];
+
+        for (int term = 0; term < terms.size(); term++) {
+            if (cancelled.getAsBoolean()) {
+                return null;
+            }
+
+            final int[][] foldedIdsByEdits = foldedTokensNear(terms.get(term),
+                    term == terms.size() - 1 && !trailingWhitespace);
+            BitSet termTracks = new BitSet();
+
+            // Fewest edits first, a track keeps the edits of the first token of it found
+            for (int termEdits = 0; termEdits < foldedIdsByEdits.length; termEdits++) {
+                final int[] foldedIdList = foldedIdsByEdits[termEdits];
+
+                for (int i = 1; foldedIdList != null && i <= foldedIdList[0]; i++) {
+                    final int[] tokenIdList = foldedTokenIds[foldedIdList[i]];
+
+                    for (int j = 1; j <= tokenIdList[0]; j++) {
+                        final int[] postings = tokenPostings[tokenIdList[j]];
+
+                        for (int k = 1; k <= postings[0]; k++) {
+                            if (!termTracks.get(postings[k])) {
+                                termTracks.set(postings[k]);
+                                edits[postings[k]] += termEdits;
+                            }
+                        }
+                    }
+                }
+            }
+
+            matches.and(termTracks);
+        }
+
+        return new FuzzyMatches(matches, edits);
+    }
+
+    /**
+     * fuzzyEdits() - fuzzyMatches() of a single track, for tracks whose postings are out of date
+     *
+     * @param trackMetadata => Track
+     * @param searchText => Search field text
+     * @return => Edits, -1 if a term is not near any token of the track
+     */
+    static int fuzzyEdits(TrackMetadata trackMetadata, String searchText) {
+        final String foldedSearchText = fold(searchText);
+        final List<String> terms = tokenize(foldedSearchText);
+        final boolean trailingWhitespace = !foldedSearchText.isEmpty()
+                && Character.isWhitespace(foldedSearchText.charAt(foldedSearchText.length() - 1));
+
+        if (!isFuzzySearch(terms)) {
+            return -1;
+        }
+
+        Set<String> trackTokens = new HashSet<>();
+
+        for (TrackField trackField : SearchTableView.searchFields) {
+            final String value = trackField.get(trackMetadata);
+
+            if (value != null) {
+                trackTokens.addAll(tokenize(fold(value)));
+            }
+        }
+
+        int edits = 0;
+
+        for (int term = 0; term < terms.size(); term++) {
+            final String termText = terms.get(term);
+            final int maxEdits = maxEdits(termText);
+            final boolean prefix = term == terms.size() - 1 && !trailingWhitespace;
+            int termEdits = maxEdits + 1;
+
+            final Set<Long> termTrigrams = paddedTrigrams(termText, !prefix);
+
+            for (String token : trackTokens) {
+                if (token.contains(termText)) {
+                    termEdits = 0;
+
+                } else if (maxEdits > 0 && !Collections.disjoint(termTrigrams, paddedTrigrams(token, true))) {
+                    termEdits = Math.min(termEdits, editDistance(termText, token, maxEdits, prefix));
+                }
+            }
+
+            if (termEdits > maxEdits) {
+                return -1;
+            }
+
+            edits += termEdits;
+        }
+
+        return edits;
+    }
+
+    // Tracks a search matched, as of version
+    synchronized void setPreviousMatches(String lowerCaseSearchText, BitSet matches, int matchesVersion) {
+        previousSearchText = lowerCaseSearchText;
+        previousMatches = matches;
+        previousVersion = matchesVersion;
+    }
+
+    /**
+     * tokensContaining() - tokens a search term can be part of
+     *
+     * @param term => Term of the search text, without whitespace
+     * @param tokenStart => Whitespace comes before the term in the search, it starts the token
+     * @param tokenEnd => Whitespace comes after the term in the search, it ends the token
+     * @return => Token ids
+     */
+    private int[] tokensContaining(String term, boolean tokenStart, boolean tokenEnd) {
+        final IntPredicate matchesTerm = tokenId -> {
+            final String token = tokens.get(tokenId);
+
+            return tokenStart && tokenEnd ? token.equals(term)
+                    : tokenStart ? token.startsWith(term)
+                    : tokenEnd ? token.endsWith(term)
+                    : token.contains(term);
+        };
+
+        if (term.length() < 3) {
+            return IntStream.range(0, tokens.size()).filter(matchesTerm).toArray();
+        }
+
+        // Shortest trigram list first, each token found is then checked for the whole term
+        int[] shortestList = null;
+
+        for (int i = 0; i + 3 <= term.length(); i++) {
+            final int[] trigramList = trigramTokens.get(trigram(term, i));
+
+            if (trigramList == null) {
+                return new int[0];
+            }
+
+            if (shortestList == null || trigramList[0] < shortestList[0]) {
+                shortestList = trigramList;
+            }
+        }
+
+        return Arrays.stream(shortestList, 1, shortestList[0] + 1).filter(matchesTerm).toArray();
+    }
+
+    /**
+     * foldedTokensNear() - folded tokens containing a term or within maxEdits() of it
+     *
+     * @param term => Folded term of the search text
+     * @param prefix => The term may be near the start of a token instead of the whole token
+     * @return => Folded token ids by edit count, count prefixed lists, null where none
+     */
+    private int[][] foldedTokensNear(String term, boolean prefix) {
+        final int maxEdits = maxEdits(term);
+        int[][] foldedIdsByEdits = new int[maxEdits + 1][];
+
+        // Without edits the term is looked for as in tokensContaining()
+        if (maxEdits == 0) {
+            int[] shortestList = null;
+
+            for (int i = 0; i + 3 <= term.length(); i++) {
+                final int[] trigramList = foldedTrigramTokens.get(trigram(term, i));
+
+                if (trigramList == null) {
+                    return foldedIdsByEdits;
+                }
+
+                if (shortestList == null || trigramList[0] < shortestList[0]) {
+                    shortestList = trigramList;
+                }
+            }
+
+            final int foldedCount = shortestList == null ? foldedTokens.size() : shortestList[0];
+
+            for (int i = 0; i < foldedCount; i++) {
+                final int foldedId = shortestList == null ? i : shortestList[i + 1];
+
+                if (foldedTokens.get(foldedId).contains(term)) {
+                    foldedIdsByEdits[0] = append(foldedIdsByEdits[0], foldedId);
+                }
+            }
+
+            return foldedIdsByEdits;
+        }
+
+        // Count the term's trigrams each folded token shares, a prefix is not padded at its end
+        final Set<Long> termTrigrams = paddedTrigrams(term, !prefix);
+        final int minSharedTrigrams = termTrigrams.size() - 4 * maxEdits;
+
+        if (sharedTrigramCounts.length < foldedTokens.size()) {
+            sharedTrigramCounts = new int[foldedTokens.size() + (foldedTokens.size() >> 1)];
+        }
+
+        int[] sharingIds = null;
+
+        for (long termTrigram : termTrigrams) {
+            final int[] trigramList = foldedTrigramTokens.get(termTrigram);
+
+            for (int i = 1; trigramList != null && i <= trigramList[0]; i++) {
+                if (sharedTrigramCounts[trigramList[i]]++ == 0) {
+                    sharingIds = append(sharingIds, trigramList[i]);
+                }
+            }
+        }
+
+        for (int i = 1; sharingIds != null && i <= sharingIds[0]; i++) {
+            final int foldedId = sharingIds[i];
+            final String foldedToken = foldedTokens.get(foldedId);
+
+            if (sharedTrigramCounts[foldedId] < minSharedTrigrams
+                    || foldedToken.length() < term.length() - maxEdits
+                    || !prefix && foldedToken.length() > term.length() + maxEdits && !foldedToken.contains(term)) {
+                continue;
+            }
+
+            final int edits = foldedToken.contains(term) ? 0 : editDistance(term, foldedToken, maxEdits, prefix);
+
+            if (edits <= maxEdits) {
+                foldedIdsByEdits[edits] = append(foldedIdsByEdits[edits], foldedId);
+            }
+        }
+
+        for (int i = 1; sharingIds != null && i <= sharingIds[0]; i++) {
+            sharedTrigramCounts[sharingIds[i]] = 0;
+        }
+
+        return foldedIdsByEdits;
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          UTILITIES
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    // Runs of non-whitespace characters
+    static List<String> tokenize(String text) {
+        List<String> textTokens = new ArrayList<>();
+        int start = -1;
+
+        for (int i = 0; i <= text.length(); i++) {
+            final boolean whitespace = i == text.length() || Character.isWhitespace(text.charAt(i));
+
+            if (whitespace && start >= 0) {
+                textTokens.add(text.substring(start, i));
+                start = -1;
+
+            } else if (!whitespace && start < 0) {
+                start = i;
+            }
+        }
+
+        return textTokens;
+    }
+
+    // Lowercase, accents removed and letters such as "ø" and "ß" spelled without them
+    static String fold(String text) {
+        final String lowerCaseText = text.toLowerCase(Locale.ROOT);
+
+        if (lowerCaseText.chars().allMatch(c -> c < 0x80)) {
+            return lowerCaseText;
+        }
+
+        final String decomposedText = Normalizer.normalize(lowerCaseText, Normalizer.Form.NFD);
+        StringBuilder foldedText = new StringBuilder(decomposedText.length());
+
+        for (int i = 0; i < decomposedText.length(); i++) {
+            final char c = decomposedText.charAt(i);
+
+            switch (c) {
+                case '\u00f8' -> foldedText.append('o');
+                case '\u0142' -> foldedText.append('l');
+                case '\u0111' -> foldedText.append('d');
+                case '\u00df' -> foldedText.append("ss");
+                case '\u00e6' -> foldedText.append("ae");
+                case '\u0153' -> foldedText.append("oe");
+                default -> {
+                    if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                        foldedText.append(c);
+                    }
+                }
+            }
+        }
+
+        return foldedText.toString();
+    }
+
+    // A search of only one or two letter terms already matches most of a large library, it is not fuzzy
+    private static boolean isFuzzySearch(List<String> terms) {
+        return terms.stream().anyMatch(term -> term.length() >= 3);
+    }
+
+    // Edits a fuzzy search allows a term, none for short terms which would be near too many tokens
+    static int maxEdits(String term) {
+        return term.length() >= 9 ? 2 : term.length() >= 5 ? 1 : 0;
+    }
+
+    /**
+     * editDistance() - insertions, deletions, substitutions and swaps of neighbouring characters turning term
+     *                  into token (optimal string alignment distance)
+     *
+     * @param term => Folded search term
+     * @param token => Folded token
+     * @param maxEdits => Distances over it are not worked out
+     * @param prefix => Distance to the nearest start of token instead
+     * @return => Distance, maxEdits + 1 if over maxEdits
+     */
+    static int editDistance(String term, String token, int maxEdits, boolean prefix) {
+        int[] twoRowsAbove = new int[token.length() + 1];
+        int[] rowAbove = new int[token.length() + 1];
+        int[] row = new int[token.length() + 1];
+
+        for (int j = 0; j <= token.length(); j++) {
+            rowAbove[j] = j;
+        }
+
+        for (int i = 1; i <= term.length(); i++) {
+            row[0] = i;
+            int rowMinimum = i;
+
+            for (int j = 1; j <= token.length(); j++) {
+                final boolean same = term.charAt(i - 1) == token.charAt(j - 1);
+                int distance = Math.min(Math.min(rowAbove[j], row[j - 1]) + 1, rowAbove[j - 1] + (same ? 0 : 1));
+
+                if (i > 1 && j > 1 && term.charAt(i - 1) == token.charAt(j - 2) && term.charAt(i - 2) == token.charAt(j - 1)) {
+                    distance = Math.min(distance, twoRowsAbove[j - 2] + 1);
+                }
+
+                row[j] = distance;
+                rowMinimum = Math.min(rowMinimum, distance);
+            }
+
+            if (rowMinimum > maxEdits) {
+                return maxEdits + 1;
+            }
+
+            final int[] reused = twoRowsAbove;
+            twoRowsAbove = rowAbove;
+            rowAbove = row;
+            row = reused;
+        }
+
+        final int distance = prefix ? Arrays.stream(rowAbove).min().getAsInt() : rowAbove[token.length()];
+
+        return Math.min(distance, maxEdits + 1);
+    }
+
+    // Trigrams of token with a \0 before it, and after it if padEnd
+    private static Set<Long> paddedTrigrams(String token, boolean padEnd) {
+        final String paddedToken = '\0' + token + (padEnd ? "\0" : "");
+        Set<Long> paddedTokenTrigrams = new HashSet<>();
+
+        for (int i = 0; i + 3 <= paddedToken.length(); i++) {
+            paddedTokenTrigrams.add(trigram(paddedToken, i));
+        }
+
+        return paddedTokenTrigrams;
+    }
+
+    private static long trigram(String token, int index) {
+        return (long) token.charAt(index) << 32 | (long) token.charAt(index + 1) << 16 | token.charAt(index + 2);
+    }
+
+    // Count prefixed list, grown by half when full
+    private static int[] append(int[] list, int value) {
+        if (list == null) {
+            list = new int[3];
+
+        } else if (list[0] + 1 == list.length) {
+            list = Arrays.copyOf(list, list.length + (list.length >> 1) + 1);
+        }
+
+        list[++list[0]] = value;
+
+        return list;
+    }
+}
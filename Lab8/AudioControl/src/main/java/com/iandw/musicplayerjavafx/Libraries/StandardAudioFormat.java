@@ -0,0 +1,124 @@
+/**
+ *      Author: Ian Wallace, copyright 2022 all rights reserved.
+ *      Application: MusicPlayer
+ *      Class: StandardAudioFormat.java
+ *      Notes: Audio formats registered with AudioFormatRegistry by default.
+ *                  - MP3 - "ID3" tag header or an MPEG Layer III frame header.
+ *                  - WAV - "RIFF" .... "WAVE".
+ *                  - AIFF - "FORM" .... "AIFF" / "AIFC".
+ *                  - M4A - ISO base media "ftyp" box.
+ *                  - FLAC - "fLaC", recognised so it is passed over without a tag read, the Media Player
+ *                    can't play it.
+ */
+
+package com.iandw.musicplayerjavafx.Libraries;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Set;
+
+enum StandardAudioFormat implements AudioFormat {
+    MP3("MP3", ".mp3", Set.of(".mp3"), true) {
+        @Override
+        public boolean matches(ByteBuffer header) {
+            if (startsWith(header, 0, "ID3")) {
+                return true;
+            }
+
+            if (header.remaining() < 4) {
+                return false;
+            }
+
+            // Frame sync, not reserved version, Layer III, valid bitrate and sample rate
+            final int b1 = header.get(1) & 0xFF;
+            final int b2 = header.get(2) & 0xFF;
+
+            return (header.get(0) & 0xFF) == 0xFF && (b1 & 0xE0) == 0xE0
+                    && ((b1 >> 3) & 0x03) != 1 && ((b1 >> 1) & 0x03) == 1
+                    && (b2 >> 4) != 0x0F && ((b2 >> 2) & 0x03) != 3;
+        }
+
+        @Override
+        public TagFields readTags(FileChannel channel) throws IOException { return FastTagReader.readMp3(channel); }
+    },
+
+    WAV("WAV", ".wav", Set.of(".wav", ".wave"), true) {
+        @Override
+        public boolean matches(ByteBuffer header) {
+            return startsWith(header, 0, "RIFF") && startsWith(header, 8, "WAVE");
+        }
+
+        @Override
+        public TagFields readTags(FileChannel channel) throws IOException { return FastTagReader.readWav(channel); }
+    },
+
+    AIFF("AIFF", ".aiff", Set.of(".aif", ".aiff", ".aifc"), true) {
+        @Override
+        public boolean matches(ByteBuffer header) {
+            return startsWith(header, 0, "FORM") && (startsWith(header, 8, "AIFF") || startsWith(header, 8, "AIFC"));
+        }
+
+        @Override
+        public TagFields readTags(FileChannel channel) throws IOException { return FastTagReader.readAiff(channel); }
+    },
+
+    M4A("M4A", ".m4a", Set.of(".m4a", ".mp4", ".m4b"), true) {
+        @Override
+        public boolean matches(ByteBuffer header) {
+            return startsWith(header, 4, "ftyp");
+        }
+
+        @Override
+        public TagFields readTags(FileChannel channel) throws IOException { return FastTagReader.readMp4(channel); }
+    },
+
+    FLAC("FLAC", ".flac", Set.of(".flac"), false) {
+        @Override
+        public boolean matches(ByteBuffer header) {
+            return startsWith(header, 0, "fLaC");
+        }
+
+        @Override
+        public TagFields readTags(FileChannel channel) { return null; }
+    };
+
+    private final String name;
+    private final String containerType;
+    private final Set<String> extensions;
+    private final boolean playable;
+
+    StandardAudioFormat(String name, String containerType, Set<String> extensions, boolean playable) {
+        this.name = name;
+        this.containerType = containerType;
+        this.extensions = extensions;
+        this.playable = playable;
+    }
+
+    @Override
+    public String getName() { return name; }
+
+    @Override
+    public String getContainerType() { return containerType; }
+
+    @Override
+    public boolean hasExtension(String containerType) { return extensions.contains(containerType.toLowerCase()); }
+
+    @Override
+    public boolean isPlayable() { return playable; }
+
+    // ASCII compare at an absolute position of header
+    private static boolean startsWith(ByteBuffer header, int offset, String magic) {
+        if (header.remaining() < offset + magic.length()) {
+            return false;
+        }
+
+        for (int i = 0; i < magic.length(); i++) {
+            if (header.get(offset + i) != (byte) magic.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
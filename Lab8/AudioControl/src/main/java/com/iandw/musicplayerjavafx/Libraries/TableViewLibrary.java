@@ -9,25 +9,40 @@
  *                  1. trackMetadataObservableList - main array to hold all user audio file data.
  *                  2. filteredList - secondary data structure to hold tracks which meet search
  *                      parameters.
+ *
+ *              trackMetadataObservableList is a LazyTrackList, tracks are held as columns (the LibraryStore
+ *              read from library.bin, then a TrackStore) and a TrackMetadata is only made for the rows shown
+ *              or selected. filterTracks() and findTrack() ask the store, edits go through setTrackField()
+ *              which updates the row and the TrackMetadata shown. Tracks are found by their track id (see
+ *              TrackStore) in constant time, totals are summed from the AudioProperties columns.
+ *
+ *              Edits of single tracks are appended to the library journal (see LibraryJournal) as they
+ *              are made. Bulk changes (initialization, rescans) set outputTrackListOnClose instead and
+ *              are written as a whole library.bin.
  */
 
 package com.iandw.musicplayerjavafx.Libraries;
 
-import com.iandw.musicplayerjavafx.FileIO.TrackListFileIO;
-import com.iandw.musicplayerjavafx.ResourceURLs;
+import com.iandw.musicplayerjavafx.FileIO.AutosaveService;
+import com.iandw.musicplayerjavafx.FileIO.AutosaveService.Store;
+import com.iandw.musicplayerjavafx.FileIO.LibraryJournal;
+import com.iandw.musicplayerjavafx.FileIO.LibraryJournal.Mutation;
+import com.iandw.musicplayerjavafx.FileIO.LibraryStore;
 import com.iandw.musicplayerjavafx.TrackMetadata;
+import com.iandw.musicplayerjavafx.Utilities.TrackField;
+import com.iandw.musicplayerjavafx.Utilities.TrackFieldPredicate;
+import com.iandw.musicplayerjavafx.Utilities.TrackPathTable;
 
-import java.io.*;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.util.*;
+import java.util.function.BooleanSupplier;
 
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.collections.transformation.FilteredList;
 
-public class TableViewLibrary implements Runnable {
+public class TableViewLibrary {
     // Main list to hold all Track objects for TableView
-    private ObservableList<TrackMetadata> trackMetadataObservableList;
+    private LazyTrackList trackMetadataObservableList;
 
     // Filtered from trackObservableList from Search Bar or either List View
     private FilteredList<TrackMetadata> filteredList;
@@ -35,47 +50,321 @@ public class TableViewLibrary implements Runnable {
 
     public TableViewLibrary() {}
 
-    @Override
-    public void run() {
-        // Load trackTableView
-        try {
-            if (Files.size(Path.of(ResourceURLs.getTrackListURL())) > 0) {
-                trackMetadataObservableList = FXCollections.observableArrayList(TrackListFileIO.inputTrackObservableList());
+    /**
+     * load() - sets the tracks from library.bin, called once on start up
+     *
+     * @param libraryStore => Store read from library.bin, null if the Music Library has not been initialized
+     */
+    public synchronized void load(LibraryStore libraryStore) {
+        trackMetadataObservableList = libraryStore == null ? new LazyTrackList(List.of()) : new LazyTrackList(libraryStore);
+    }
+
+    // Every track, over trackMetadataObservableList itself so only the rows shown are made
+    public void createFilteredList() {
+        filteredList = new FilteredList<>(trackMetadataObservableList);
+    }
+
+    /**
+     * filterTracks() - replaces filteredList with the tracks matching trackFieldPredicate
+     *
+     * @param trackFieldPredicate => Artist, playlist or search predicate from SearchTableView
+     */
+    public synchronized void filterTracks(TrackFieldPredicate trackFieldPredicate) {
+        // An empty search, every track
+        if (trackFieldPredicate.matchesAll()) {
+            createFilteredList();
+            return;
+        }
+
+        filteredList = new FilteredList<>(FXCollections.observableArrayList(trackMetadataObservableList.select(trackFieldPredicate)));
+    }
+
+    /**
+     * filterTrackPaths() - replaces filteredList with the tracks of a playlist, in playlist order
+     *
+     * @param trackPaths => Paths from PlaylistLibrary, paths no longer in the library are skipped
+     */
+    public synchronized void filterTrackPaths(List<String> trackPaths) {
+        List<TrackMetadata> tracks = new ArrayList<>(trackPaths.size());
 
-            } else {
-                trackMetadataObservableList = FXCollections.observableArrayList();
+        for (String trackPathStr : trackPaths) {
+            TrackMetadata trackMetadata = findTrack(trackPathStr);
 
+            if (trackMetadata != null) {
+                tracks.add(trackMetadata);
             }
-        } catch (IOException e) {
-            e.printStackTrace();
-            System.out.println(e.getMessage());
-            throw new RuntimeException(e);
         }
+
+        filteredList = new FilteredList<>(FXCollections.observableArrayList(tracks));
     }
 
-    public void createFilteredList() {
-        //TODO => see if these filtered lists object lifetime is limited or not
-        filteredList = new FilteredList<>(FXCollections.observableArrayList(trackMetadataObservableList));
+    /**
+     * searchTracks() - tracks matching the search field, from the search index (see SearchIndex). Called on
+     *                  the Search thread, the library is not locked while the index is built.
+     *
+     * @param searchText => Search field text, not empty
+     * @param searchPredicate => SearchTableView.createSearchPredicate() of searchText
+     * @param fuzzy => Follow the matching tracks with the tracks near searchText, ranked
+     * @param cancelled => True once a newer search has started
+     * @return => Matching tracks in library order, then any fuzzy matches, null if cancelled
+     */
+    public List<TrackMetadata> searchTracks(String searchText, TrackFieldPredicate searchPredicate, boolean fuzzy,
+                                            BooleanSupplier cancelled) {
+        final LazyTrackList tracks;
+
+        synchronized (this) {
+            tracks = trackMetadataObservableList;
+        }
+
+        return tracks.search(searchText, searchPredicate, fuzzy, cancelled);
+    }
+
+    // Replaces filteredList with search results
+    public synchronized void showTracks(List<TrackMetadata> tracks) {
+        filteredList = new FilteredList<>(FXCollections.observableArrayList(tracks));
+    }
+
+    // Tracks matching trackFieldPredicate, only the matching tracks are made
+    public synchronized List<TrackMetadata> selectTracks(TrackFieldPredicate trackFieldPredicate) {
+        return trackMetadataObservableList.select(trackFieldPredicate);
+    }
+
+    /**
+     * findTrack() - track with a path, from the store's path index
+     *
+     * @param trackPathStr => Track path
+     * @return => TrackMetadata, null if no track has the path
+     */
+    public synchronized TrackMetadata findTrack(String trackPathStr) {
+        final int index = trackMetadataObservableList.indexOfTrackPath(trackPathStr);
+
+        return index < 0 ? null : trackMetadataObservableList.get(index);
+    }
+
+    // Track with an id, null if no track has it
+    public synchronized TrackMetadata findTrack(int trackId) {
+        final int index = trackMetadataObservableList.indexOfTrackId(trackId);
+
+        return index < 0 ? null : trackMetadataObservableList.get(index);
+    }
+
+    /**
+     * getFilteredDurationMillis() - total length of the tracks shown, summed from the duration column when
+     *                               every track is shown
+     *
+     * @return => Milliseconds
+     */
+    public synchronized long getFilteredDurationMillis() {
+        if (isLibraryShown()) {
+            return trackMetadataObservableList.totalDurationMillis();
+        }
+
+        long durationMillis = 0;
+
+        for (TrackMetadata trackMetadata : filteredList) {
+            durationMillis += trackMetadata.getDurationMillis();
+        }
+
+        return durationMillis;
+    }
+
+    /**
+     * exportTracks() - every track in list order for NDJSONFileIO, read one at a time so tracks not decoded
+     *                  yet are decoded and dropped again. Tracks changed during the export may be missed.
+     *
+     * @return => Tracks, iterated on the export thread
+     */
+    public Iterable<TrackMetadata> exportTracks() {
+        return () -> new Iterator<>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                synchronized (TableViewLibrary.this) {
+                    return index < trackMetadataObservableList.size();
+                }
+            }
+
+            @Override
+            public TrackMetadata next() {
+                synchronized (TableViewLibrary.this) {
+                    if (index >= trackMetadataObservableList.size()) {
+                        throw new NoSuchElementException();
+                    }
+
+                    return trackMetadataObservableList.peek(index++);
+                }
+            }
+        };
     }
 
     public synchronized void addTrack(TrackMetadata trackMetadata) {
-        outputTrackListOnClose = true;
         trackMetadataObservableList.add(trackMetadata);
+        LibraryJournal.append(Mutation.addTrack(trackMetadata));
+    }
+
+    // Batches streamed in while initializing, written as a whole once the scan is finished
+    public synchronized void addTracks(List<TrackMetadata> trackMetadataList) {
+        setOutputTrackListOnClose();
+        trackMetadataObservableList.addAll(trackMetadataList);
     }
 
     public synchronized void removeTrack(TrackMetadata trackMetadata) {
-        outputTrackListOnClose = true;
-        trackMetadataObservableList.remove(trackMetadata);
+        final int index = trackMetadataObservableList.indexOfTrackId(trackMetadata.getTrackId());
+
+        if (index >= 0) {
+            trackMetadataObservableList.remove(index);
+
+        } else {
+            trackMetadataObservableList.remove(trackMetadata);
+        }
+
+        LibraryJournal.append(Mutation.removeTrack(trackMetadata.getTrackPathStr()));
+    }
+
+    /**
+     * setTrackField() - edits one field of a track, in its row and its TrackMetadata, and journals the edit
+     *
+     * @param trackMetadata => Track in trackMetadataObservableList
+     * @param trackField => ARTIST, TITLE, ALBUM, GENRE or PLAYLIST
+     * @param value => New value
+     */
+    public synchronized void setTrackField(TrackMetadata trackMetadata, TrackField trackField, String value) {
+        final int index = trackMetadataObservableList.indexOf(trackMetadata);
+
+        if (index >= 0) {
+            trackMetadataObservableList.setField(index, trackField, value);
+
+        } else {
+            trackField.set(trackMetadata, value);
+        }
+
+        LibraryJournal.append(Mutation.setField(trackMetadata.getTrackPathStr(), trackField, value));
     }
 
     public synchronized void clearObservableList() { trackMetadataObservableList.clear(); }
 
-    public void onClose() throws FileNotFoundException {
-        if (outputTrackListOnClose) {
-            TrackListFileIO.outputTrackObservableList(trackMetadataObservableList);
+    /**
+     * applyLibraryChanges() - Applies one batch of LibraryWatcher changes with a single list update.
+     *                         Call on the JavaFX Application Thread.
+     *
+     *      Tracks with an existing path replace the old track and keep its playlist and track id, other
+     *      tracks are added.
+     *
+     * @param updatedTracks => New or modified tracks
+     * @param removedTrackPaths => Paths of tracks whose files no longer exist
+     * @return => Removed tracks
+     */
+    public synchronized List<TrackMetadata> applyLibraryChanges(List<TrackMetadata> updatedTracks, Set<String> removedTrackPaths) {
+        List<TrackMetadata> removedTracks = new ArrayList<>();
+
+        trackMetadataObservableList.applyChanges(() -> {
+            List<TrackMetadata> addedTracks = new ArrayList<>();
+
+            // Rows keep their place until the removals, which go last
+            for (TrackMetadata updatedTrack : updatedTracks) {
+                final String trackPathStr = updatedTrack.getTrackPathStr();
+                final int index = trackMetadataObservableList.indexOfTrackPath(trackPathStr);
+
+                if (index < 0) {
+                    addedTracks.add(updatedTrack);
+
+                } else if (!removedTrackPaths.contains(trackPathStr)) {
+                    final TrackMetadata replacedTrack = trackMetadataObservableList.peek(index);
+                    updatedTrack.setPlaylistStr(replacedTrack.getPlaylistStr());
+                    updatedTrack.setTrackId(replacedTrack.getTrackId());
+                    trackMetadataObservableList.set(index, updatedTrack);
+                    LibraryJournal.append(Mutation.addTrack(updatedTrack));
+                }
+            }
+
+            // Highest index first so the indexes found stay valid
+            final int[] removedIndexes = removedTrackPaths.stream()
+                    .mapToInt(trackMetadataObservableList::indexOfTrackPath)
+                    .filter(index -> index >= 0)
+                    .sorted()
+                    .toArray();
+
+            for (int i = removedIndexes.length - 1; i >= 0; i--) {
+                TrackMetadata removedTrack = trackMetadataObservableList.remove(removedIndexes[i]);
+                removedTracks.add(removedTrack);
+                LibraryJournal.append(Mutation.removeTrack(removedTrack.getTrackPathStr()));
+            }
+
+            trackMetadataObservableList.addAll(addedTracks);
+            addedTracks.forEach(trackMetadata -> LibraryJournal.append(Mutation.addTrack(trackMetadata)));
+        });
+
+        return removedTracks;
+    }
+
+    /**
+     * replayJournal() - applies the track edits of the last session on top of library.bin, called once on
+     *                   start up after load()
+     *
+     * @param mutations => Journal records from LibraryJournal.open(), list name records are ignored
+     */
+    public synchronized void replayJournal(List<Mutation> mutations) {
+        // Path index lookups, edits of tracks removed since are skipped
+        for (Mutation mutation : mutations) {
+            switch (mutation.operation()) {
+                case SET_FIELD -> {
+                    final int index = trackMetadataObservableList.indexOfTrackPath(mutation.getTrackPathStr());
+
+                    if (index >= 0) {
+                        trackMetadataObservableList.setField(index, mutation.trackField(), mutation.values().get(1));
+                    }
+                }
+
+                case ADD_TRACK -> {
+                    TrackMetadata trackMetadata = mutation.toTrackMetadata();
+                    final int index = trackMetadataObservableList.indexOfTrackPath(trackMetadata.getTrackPathStr());
+
+                    if (index >= 0) {
+                        trackMetadataObservableList.set(index, trackMetadata);
+
+                    } else {
+                        trackMetadataObservableList.add(trackMetadata);
+                    }
+                }
+
+                case REMOVE_TRACK -> {
+                    final int index = trackMetadataObservableList.indexOfTrackPath(mutation.getTrackPathStr());
+
+                    if (index >= 0) {
+                        trackMetadataObservableList.remove(index);
+                    }
+                }
+            }
         }
     }
 
+    /**
+     * moveDirectory() - moves the path of every track below a directory, i.e. after the Music Library
+     *                   folder has been moved. Only the directory's TrackPathTable entry is changed, the
+     *                   tracks are written to library.bin when the journal is next compacted.
+     *
+     * @param directoryStr => Current directory including its trailing separator
+     * @param newDirectoryStr => New directory including its trailing separator
+     * @return => False if no track is below directoryStr or newDirectoryStr is already in use
+     */
+    public synchronized boolean moveDirectory(String directoryStr, String newDirectoryStr) {
+        // Rows still in the LibraryStore would keep the library.bin path
+        trackMetadataObservableList.unmap();
+
+        if (!TrackPathTable.moveDirectory(directoryStr, newDirectoryStr)) {
+            return false;
+        }
+
+        setOutputTrackListOnClose();
+
+        return true;
+    }
+
+    public synchronized boolean containsArtist(String artistName) {
+        return trackMetadataObservableList.containsValue(TrackField.ARTIST, artistName);
+    }
+
     /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
      *
      *                          SETTERS / GETTERS
@@ -83,12 +372,42 @@ public class TableViewLibrary implements Runnable {
      * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
 
     public synchronized void setTrackObservableList(ObservableList<TrackMetadata> trackMetadataObservableList) {
-        ObservableList<TrackMetadata> tempList = FXCollections.observableArrayList(this.trackMetadataObservableList);
-        tempList.addAll(trackMetadataObservableList);
-        this.trackMetadataObservableList = tempList;
+        this.trackMetadataObservableList.addAll(trackMetadataObservableList);
+
+        // Imported tracks
+        trackMetadataObservableList.forEach(trackMetadata -> LibraryJournal.append(Mutation.addTrack(trackMetadata)));
+    }
+    // Replaces all tracks, used after an incremental rescan
+    public synchronized void replaceTrackObservableList(ObservableList<TrackMetadata> trackMetadataObservableList) {
+        setOutputTrackListOnClose();
+        this.trackMetadataObservableList = new LazyTrackList(trackMetadataObservableList);
     }
     public synchronized ObservableList<TrackMetadata> getTrackObservableList() { return trackMetadataObservableList; }
+    public synchronized Set<String> getTrackPathSet() {
+        return trackMetadataObservableList.getTrackPathSet();
+    }
+
+    /**
+     * getTrackPathsUnder() - paths of the tracks at a file or folder path, or below the folder
+     *
+     * @param pathStr => Absolute path, without a trailing separator
+     * @return => Track paths
+     */
+    public synchronized List<String> getTrackPathsUnder(String pathStr) {
+        return trackMetadataObservableList.getTrackPathsUnder(pathStr);
+    }
+    // Tracks as they are now, for LibraryJournal compaction on its own thread
+    public synchronized List<TrackMetadata> snapshotTracks() { return trackMetadataObservableList.snapshot(); }
     public FilteredList<TrackMetadata> getFilteredList() { return filteredList; }
-    public void setOutputTrackListOnClose() { outputTrackListOnClose = true; }
+    // True if filteredList is every track, in library order, rather than a copy of the matching tracks
+    public synchronized boolean isLibraryShown() {
+        return filteredList.getSource() == trackMetadataObservableList && filteredList.getPredicate() == null;
+    }
+    public void setOutputTrackListOnClose() {
+        outputTrackListOnClose = true;
+        AutosaveService.markDirty(Store.LIBRARY);
+    }
+    public void clearOutputTrackListOnClose() { outputTrackListOnClose = false; }
+    public boolean getOutputTrackListOnClose() { return outputTrackListOnClose; }
 
 }
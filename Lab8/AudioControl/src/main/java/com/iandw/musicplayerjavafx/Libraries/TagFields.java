@@ -0,0 +1,132 @@
+/**
+ *      Author: Ian Wallace, copyright 2022 all rights reserved.
+ *      Application: MusicPlayer
+ *      Class: TagFields.java
+ *      Notes: The tag fields MusicLibrary needs from an audio file: title, artist, album artist, album,
+ *              genre and track length. Read by FastTagReader, or from a jaudiotagger AudioFile when the
+ *              fast path can't decide. Missing fields are empty Strings, same as Tag.getFirst().
+ *
+ *              The numeric fields (duration in milliseconds, bitrate, sample rate, track and disc number,
+ *              year) are read at the same time as AudioProperties, 0 where the file has none. The file
+ *              size is added by MusicLibrary, which already has it.
+ */
+
+package com.iandw.musicplayerjavafx.Libraries;
+
+import com.iandw.musicplayerjavafx.AudioProperties;
+
+import java.io.File;
+
+import org.jaudiotagger.audio.AudioFile;
+import org.jaudiotagger.audio.AudioHeader;
+import org.jaudiotagger.audio.AudioFileIO;
+import org.jaudiotagger.tag.FieldKey;
+import org.jaudiotagger.tag.Tag;
+
+final class TagFields {
+    private final String title;
+    private final String artist;
+    private final String albumArtist;
+    private final String album;
+    private final String genre;
+    private final int trackLength;
+    private final AudioProperties audioProperties;
+
+    TagFields(String title, String artist, String albumArtist, String album, String genre, int trackLength,
+              AudioProperties audioProperties) {
+        this.title = title;
+        this.artist = artist;
+        this.albumArtist = albumArtist;
+        this.album = album;
+        this.genre = genre;
+        this.trackLength = trackLength;
+        this.audioProperties = audioProperties;
+    }
+
+    /**
+     * read() - FastTagReader first, jaudiotagger when the fast path can't decide
+     *
+     * @param trackFile => Audio file
+     * @param audioFormat => Format identified by AudioFormatRegistry, jaudiotagger reads the file as this
+     *                    format whatever its extension. null to leave it to jaudiotagger.
+     * @return => Tag fields of trackFile
+     * @throws Exception => jaudiotagger read exceptions
+     */
+    static TagFields read(File trackFile, AudioFormat audioFormat) throws Exception {
+        if (audioFormat == null) {
+            return of(AudioFileIO.read(trackFile));
+        }
+
+        TagFields tagFields = FastTagReader.read(trackFile.toPath(), audioFormat);
+
+        if (tagFields == null) {
+            tagFields = of(AudioFileIO.readAs(trackFile, audioFormat.getContainerType().substring(1)));
+        }
+
+        return tagFields;
+    }
+
+    static TagFields of(AudioFile audioFile) {
+        Tag tag = audioFile.getTag();
+        AudioHeader audioHeader = audioFile.getAudioHeader();
+        final double preciseTrackLength = audioHeader.getPreciseTrackLength() > 0
+                ? audioHeader.getPreciseTrackLength() : audioHeader.getTrackLength();
+
+        return new TagFields(
+                getFirst(tag, FieldKey.TITLE),
+                getFirst(tag, FieldKey.ARTIST),
+                getFirst(tag, FieldKey.ALBUM_ARTIST),
+                getFirst(tag, FieldKey.ALBUM),
+                getFirst(tag, FieldKey.GENRE),
+                audioHeader.getTrackLength(),
+                new AudioProperties(
+                        (int) Math.round(preciseTrackLength * 1000),
+                        (int) audioHeader.getBitRateAsNumber(),
+                        audioHeader.getSampleRateAsNumber(),
+                        0,
+                        getNumber(tag, FieldKey.TRACK),
+                        getNumber(tag, FieldKey.DISC_NO),
+                        getNumber(tag, FieldKey.YEAR))
+        );
+    }
+
+    // Untagged files and fields a tag format does not support read as empty
+    private static String getFirst(Tag tag, FieldKey fieldKey) {
+        if (tag == null) {
+            return "";
+        }
+
+        try {
+            return tag.getFirst(fieldKey);
+
+        } catch (RuntimeException e) {
+            return "";
+        }
+    }
+
+    // Leading number of a field, 0 if missing
+    private static int getNumber(Tag tag, FieldKey fieldKey) {
+        return Math.max(0, AudioProperties.parseLeadingInt(getFirst(tag, fieldKey)));
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          GETTERS
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    String getTitle() { return title; }
+    String getArtist() { return artist; }
+    String getAlbumArtist() { return albumArtist; }
+    String getAlbum() { return album; }
+    String getGenre() { return genre; }
+    int getTrackLength() { return trackLength; }
+    AudioProperties getAudioProperties() { return audioProperties; }
+
+    @Override
+    public String toString() {
+        return String.format("Title=\"%s\"; Artist=\"%s\"; Album Artist=\"%s\"; Album=\"%s\"; Genre=\"%s\"; Length=%d; %s",
+                title, artist, albumArtist, album, genre, trackLength, audioProperties);
+    }
+
+}
@@ -0,0 +1,667 @@
+/**
+ *      Author: Ian Wallace, copyright 2022 all rights reserved.
+ *      Application: MusicPlayer
+ *      Class: TrackStore.java
+ *      Notes: Column oriented track storage behind LazyTrackList, one array per field with a row per
+ *              track in list order, rather than a TrackMetadata object per track.
+ *
+ *              Fields shared by many tracks (artist, container type, album, genre, duration, playlist)
+ *              are dictionary ids into one String table, id 0 being null. Title and file name are
+ *              mostly distinct per track and kept as String columns, the track path is the TrackPathTable
+ *              directory id plus the file name (the same String as the file name when they match).
+ *
+ *              Searches test each dictionary value once rather than every row, and track paths are found
+ *              through an open addressing hash table of row + 1, rebuilt on the next lookup after rows
+ *              have moved. Artist and album values have postings, the track ids of the rows holding each
+ *              dictionary id, kept up to date on every change. Track ids do not move with the rows, so
+ *              finding the tracks of an artist is proportional to the artist's tracks only. The playlist
+ *              column is only read by the one time playlists.bin migration, playlist entries are found
+ *              through PlaylistLibrary's reverse index.
+ *
+ *              AudioProperties are int columns (the file size a long column), so totals and numeric sorts
+ *              read them without parsing. Every row has a track id, unique for the session, given on insert
+ *              to a track without one (or whose id another row has) and looked up through idRows. Ids saved
+ *              in library.bin are reserved as its rows are copied in, before any new id is given out.
+ *
+ *              Dictionary Strings no longer used by any row are kept until the store is replaced.
+ *              Not thread safe, LazyTrackList synchronizes.
+ */
+
+package com.iandw.musicplayerjavafx.Libraries;
+
+import com.iandw.musicplayerjavafx.AudioProperties;
+import com.iandw.musicplayerjavafx.TrackMetadata;
+import com.iandw.musicplayerjavafx.Utilities.TrackField;
+import com.iandw.musicplayerjavafx.Utilities.TrackFieldPredicate;
+import com.iandw.musicplayerjavafx.Utilities.TrackPathTable;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+final class TrackStore {
+    private static final int initialCapacity = 1024;
+
+    // Dictionary encoded fields, then the String fields
+    private static final TrackField[] idFields = { TrackField.ARTIST, TrackField.CONTAINER_TYPE, TrackField.ALBUM,
+            TrackField.GENRE, TrackField.DURATION, TrackField.PLAYLIST };
+    private static final TrackField[] stringFields = { TrackField.FILE_NAME, TrackField.TITLE };
+    private static final TrackField[] postingFields = { TrackField.ARTIST, TrackField.ALBUM };
+
+    // AudioProperties int columns, the file size is its own long column
+    private static final int durationColumn = 0;
+    private static final int bitrateColumn = 1;
+    private static final int sampleRateColumn = 2;
+    private static final int trackNumberColumn = 3;
+    private static final int discNumberColumn = 4;
+    private static final int yearColumn = 5;
+    private static final int numberColumnCount = 6;
+
+    // Last track id given out by any store, ids of a loaded library.bin are reserved first
+    private static final AtomicInteger lastTrackId = new AtomicInteger();
+
+    // Column of each TrackField by ordinal, id columns as is, String columns as -(column + 1)
+    private static final int[] fieldColumns = new int[TrackField.values().length];
+
+    static {
+        for (int column = 0; column < idFields.length; column++) {
+            fieldColumns[idFields[column].ordinal()] = column;
+        }
+
+        for (int column = 0; column < stringFields.length; column++) {
+            fieldColumns[stringFields[column].ordinal()] = -(column + 1);
+        }
+    }
+
+    private int[][] idColumns = new int[idFields.length][];
+    private String[][] stringColumns = new String[stringFields.length][];
+    private int[] directoryIds;
+    private String[] pathNames;
+    private int[][] numberColumns = new int[numberColumnCount][];
+    private long[] fileSizes;
+    private int[] trackIds;
+    private int size;
+
+    private final List<String> dictionary;
+    private final Map<String, Integer> dictionaryIds;
+
+    private int[] pathSlots;
+
+    // Row + 1 by track id, 0 for ids not in the store
+    private int[] idRows;
+
+    // By id column, null for fields without postings and in a copy
+    private TrackIdPostings[] postings;
+
+    TrackStore() {
+        this(initialCapacity);
+    }
+
+    TrackStore(int capacity) {
+        capacity = Math.max(capacity, initialCapacity);
+
+        for (int column = 0; column < idColumns.length; column++) {
+            idColumns[column] = new int[capacity];
+        }
+
+        for (int column = 0; column < stringColumns.length; column++) {
+            stringColumns[column] = new String[capacity];
+        }
+
+        for (int column = 0; column < numberColumns.length; column++) {
+            numberColumns[column] = new int[capacity];
+        }
+
+        directoryIds = new int[capacity];
+        pathNames = new String[capacity];
+        fileSizes = new long[capacity];
+        trackIds = new int[capacity];
+        idRows = new int[capacity];
+        dictionary = new ArrayList<>();
+        dictionaryIds = new HashMap<>();
+        postings = new TrackIdPostings[idFields.length];
+
+        for (TrackField postingField : postingFields) {
+            postings[fieldColumns[postingField.ordinal()]] = new TrackIdPostings();
+        }
+    }
+
+    // Copy sharing the dictionary Strings, for a library snapshot written on another thread
+    private TrackStore(TrackStore trackStore) {
+        for (int column = 0; column < idColumns.length; column++) {
+            idColumns[column] = Arrays.copyOf(trackStore.idColumns[column], trackStore.size);
+        }
+
+        for (int column = 0; column < stringColumns.length; column++) {
+            stringColumns[column] = Arrays.copyOf(trackStore.stringColumns[column], trackStore.size);
+        }
+
+        directoryIds = Arrays.copyOf(trackStore.directoryIds, trackStore.size);
+        pathNames = Arrays.copyOf(trackStore.pathNames, trackStore.size);
+
+        for (int column = 0; column < numberColumns.length; column++) {
+            numberColumns[column] = Arrays.copyOf(trackStore.numberColumns[column], trackStore.size);
+        }
+
+        fileSizes = Arrays.copyOf(trackStore.fileSizes, trackStore.size);
+        trackIds = Arrays.copyOf(trackStore.trackIds, trackStore.size);
+        idRows = trackStore.idRows.clone();
+        size = trackStore.size;
+        dictionary = new ArrayList<>(trackStore.dictionary);
+        dictionaryIds = Map.of();
+    }
+
+    TrackStore copy() { return new TrackStore(this); }
+
+    int size() { return size; }
+
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          ROWS
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    // Track of a row, a new TrackMetadata on every call
+    TrackMetadata decode(int row) {
+        final TrackMetadata trackMetadata = new TrackMetadata(get(row, TrackField.ARTIST), get(row, TrackField.FILE_NAME),
+                get(row, TrackField.CONTAINER_TYPE), get(row, TrackField.TITLE), get(row, TrackField.ALBUM),
+                get(row, TrackField.GENRE), get(row, TrackField.DURATION), getTrackPathStr(row),
+                get(row, TrackField.PLAYLIST));
+        trackMetadata.setTrackId(trackIds[row]);
+        trackMetadata.setAudioProperties(getAudioProperties(row));
+
+        return trackMetadata;
+    }
+
+    AudioProperties getAudioProperties(int row) {
+        final AudioProperties audioProperties = new AudioProperties(numberColumns[durationColumn][row],
+                numberColumns[bitrateColumn][row], numberColumns[sampleRateColumn][row], fileSizes[row],
+                numberColumns[trackNumberColumn][row], numberColumns[discNumberColumn][row],
+                numberColumns[yearColumn][row]);
+
+        return audioProperties.equals(AudioProperties.UNKNOWN) ? AudioProperties.UNKNOWN : audioProperties;
+    }
+
+    int getDurationMillis(int row) { return numberColumns[durationColumn][row]; }
+
+    int getTrackId(int row) { return trackIds[row]; }
+
+    String get(int row, TrackField trackField) {
+        final int column = fieldColumns[trackField.ordinal()];
+
+        return column >= 0 ? dictionaryString(idColumns[column][row]) : stringColumns[-column - 1][row];
+    }
+
+    String getTrackPathStr(int row) {
+        return pathNames[row] == null ? null : TrackPathTable.getDirectory(directoryIds[row]) + pathNames[row];
+    }
+
+    void insert(int row, TrackMetadata trackMetadata) {
+        ensureCapacity(size + 1);
+
+        if (row < size) {
+            shift(row, row + 1, size - row);
+            pathSlots = null;
+        }
+
+        size++;
+        trackIds[row] = 0;
+        updateIdRows(row + 1);
+        encode(row, trackMetadata);
+        addPostings(row);
+
+        if (pathSlots != null) {
+            addPathSlot(row);
+        }
+    }
+
+    // The path index is kept if the track keeps its path, i.e. a rescanned track
+    void set(int row, TrackMetadata trackMetadata) {
+        final boolean samePath = directoryIds[row] == trackMetadata.getTrackDirectoryId()
+                && Objects.equals(pathNames[row], trackMetadata.getTrackPathNameStr());
+
+        removePostings(row);
+
+        if (trackIds[row] != trackMetadata.getTrackId()) {
+            idRows[trackIds[row]] = 0;
+            trackIds[row] = 0;
+        }
+
+        encode(row, trackMetadata);
+        addPostings(row);
+
+        if (!samePath) {
+            pathSlots = null;
+        }
+    }
+
+    void remove(int row) {
+        removePostings(row);
+        idRows[trackIds[row]] = 0;
+        shift(row + 1, row, size - row - 1);
+        size--;
+        updateIdRows(row);
+
+        for (String[] stringColumn : stringColumns) {
+            stringColumn[size] = null;
+        }
+
+        pathNames[size] = null;
+        pathSlots = null;
+    }
+
+    // One of the fields TrackField.isEditable(), none of them is part of the path
+    void setField(int row, TrackField trackField, String value) {
+        final int column = fieldColumns[trackField.ordinal()];
+
+        if (column >= 0) {
+            final int id = dictionaryId(value);
+
+            if (postings[column] != null) {
+                postings[column].remove(idColumns[column][row], trackIds[row]);
+                postings[column].add(id, trackIds[row]);
+            }
+
+            idColumns[column][row] = id;
+
+        } else {
+            stringColumns[-column - 1][row] = value;
+        }
+    }
+
+    private void encode(int row, TrackMetadata trackMetadata) {
+        for (int column = 0; column < idFields.length; column++) {
+            idColumns[column][row] = dictionaryId(idFields[column].get(trackMetadata));
+        }
+
+        for (int column = 0; column < stringFields.length; column++) {
+            stringColumns[column][row] = stringFields[column].get(trackMetadata);
+        }
+
+        directoryIds[row] = trackMetadata.getTrackDirectoryId();
+        pathNames[row] = trackMetadata.getTrackPathNameStr();
+
+        final AudioProperties audioProperties = trackMetadata.getAudioProperties();
+        numberColumns[durationColumn][row] = audioProperties.durationMillis();
+        numberColumns[bitrateColumn][row] = audioProperties.bitrate();
+        numberColumns[sampleRateColumn][row] = audioProperties.sampleRate();
+        numberColumns[trackNumberColumn][row] = audioProperties.trackNumber();
+        numberColumns[discNumberColumn][row] = audioProperties.discNumber();
+        numberColumns[yearColumn][row] = audioProperties.year();
+        fileSizes[row] = audioProperties.fileSize();
+
+        encodeTrackId(row, trackMetadata);
+    }
+
+    // Keeps the track's id unless another row has it, a new id is also set on trackMetadata
+    private void encodeTrackId(int row, TrackMetadata trackMetadata) {
+        int trackId = trackMetadata.getTrackId();
+
+        if (trackId <= 0 || trackId < idRows.length && idRows[trackId] != 0 && idRows[trackId] != row + 1) {
+            trackId = lastTrackId.incrementAndGet();
+            trackMetadata.setTrackId(trackId);
+
+        } else {
+            lastTrackId.accumulateAndGet(trackId, Math::max);
+        }
+
+        if (trackId >= idRows.length) {
+            idRows = Arrays.copyOf(idRows, Math.max(trackId + 1, idRows.length + (idRows.length >> 1)));
+        }
+
+        trackIds[row] = trackId;
+        idRows[trackId] = row + 1;
+    }
+
+    private void addPostings(int row) {
+        for (int column = 0; column < postings.length; column++) {
+            if (postings[column] != null) {
+                postings[column].add(idColumns[column][row], trackIds[row]);
+            }
+        }
+    }
+
+    private void removePostings(int row) {
+        for (int column = 0; column < postings.length; column++) {
+            if (postings[column] != null) {
+                postings[column].remove(idColumns[column][row], trackIds[row]);
+            }
+        }
+    }
+
+    // Rows from fromRow on have moved
+    private void updateIdRows(int fromRow) {
+        for (int row = fromRow; row < size; row++) {
+            idRows[trackIds[row]] = row + 1;
+        }
+    }
+
+    private void shift(int fromRow, int toRow, int rowCount) {
+        for (int[] idColumn : idColumns) {
+            System.arraycopy(idColumn, fromRow, idColumn, toRow, rowCount);
+        }
+
+        for (String[] stringColumn : stringColumns) {
+            System.arraycopy(stringColumn, fromRow, stringColumn, toRow, rowCount);
+        }
+
+        System.arraycopy(directoryIds, fromRow, directoryIds, toRow, rowCount);
+        System.arraycopy(pathNames, fromRow, pathNames, toRow, rowCount);
+
+        for (int[] numberColumn : numberColumns) {
+            System.arraycopy(numberColumn, fromRow, numberColumn, toRow, rowCount);
+        }
+
+        System.arraycopy(fileSizes, fromRow, fileSizes, toRow, rowCount);
+        System.arraycopy(trackIds, fromRow, trackIds, toRow, rowCount);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= directoryIds.length) {
+            return;
+        }
+
+        final int newCapacity = Math.max(capacity, directoryIds.length + (directoryIds.length >> 1));
+
+        for (int column = 0; column < idColumns.length; column++) {
+            idColumns[column] = Arrays.copyOf(idColumns[column], newCapacity);
+        }
+
+        for (int column = 0; column < stringColumns.length; column++) {
+            stringColumns[column] = Arrays.copyOf(stringColumns[column], newCapacity);
+        }
+
+        directoryIds = Arrays.copyOf(directoryIds, newCapacity);
+        pathNames = Arrays.copyOf(pathNames, newCapacity);
+
+        for (int column = 0; column < numberColumns.length; column++) {
+            numberColumns[column] = Arrays.copyOf(numberColumns[column], newCapacity);
+        }
+
+        fileSizes = Arrays.copyOf(fileSizes, newCapacity);
+        trackIds = Arrays.copyOf(trackIds, newCapacity);
+    }
+
+    private int dictionaryId(String str) {
+        if (str == null) {
+            return 0;
+        }
+
+        Integer id = dictionaryIds.get(str);
+
+        if (id == null) {
+            dictionary.add(str);
+            id = dictionary.size();
+            dictionaryIds.put(str, id);
+        }
+
+        return id;
+    }
+
+    private String dictionaryString(int id) { return id == 0 ? null : dictionary.get(id - 1); }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          QUERIES
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    /**
+     * select() - rows matching trackFieldPredicate, each dictionary value is tested once
+     *
+     * @param trackFieldPredicate => Artist, playlist or search text predicate
+     * @return => Rows in ascending order
+     */
+    int[] select(TrackFieldPredicate trackFieldPredicate) {
+        if (trackFieldPredicate.matchesAll()) {
+            return IntStream.range(0, size).toArray();
+        }
+
+        if (trackFieldPredicate.getExactValue() != null) {
+            return find(trackFieldPredicate.getTrackFields()[0], trackFieldPredicate.getExactValue());
+        }
+
+        // 0 not tested yet, 1 matches, 2 does not
+        final byte[] idMatches = new byte[dictionary.size() + 1];
+        final TrackField[] trackFields = trackFieldPredicate.getTrackFields();
+
+        return IntStream.range(0, size).filter(row -> {
+            for (TrackField trackField : trackFields) {
+                final int column = fieldColumns[trackField.ordinal()];
+
+                if (column < 0) {
+                    if (trackFieldPredicate.testValue(stringColumns[-column - 1][row])) {
+                        return true;
+                    }
+                    continue;
+                }
+
+                final int id = idColumns[column][row];
+
+                if (id != 0 && idMatches[id] == 0) {
+                    idMatches[id] = trackFieldPredicate.testValue(dictionaryString(id)) ? (byte) 1 : (byte) 2;
+                }
+
+                if (idMatches[id] == 1) {
+                    return true;
+                }
+            }
+
+            return false;
+        }).toArray();
+    }
+
+    // Rows whose field equals value, dictionary fields compare ids
+    int[] find(TrackField trackField, String value) {
+        final int column = fieldColumns[trackField.ordinal()];
+
+        if (column < 0) {
+            final String[] stringColumn = stringColumns[-column - 1];
+            return IntStream.range(0, size).filter(row -> Objects.equals(stringColumn[row], value)).toArray();
+        }
+
+        final Integer id = value == null ? Integer.valueOf(0) : dictionaryIds.get(value);
+
+        if (id == null) {
+            return new int[0];
+        }
+
+        // Rows of the posted track ids, in list order
+        if (id != 0 && postings != null && postings[column] != null) {
+            final int[] postedTrackIds = postings[column].get(id);
+            final int[] rows = new int[postedTrackIds.length];
+
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = idRows[postedTrackIds[i]] - 1;
+            }
+
+            Arrays.sort(rows);
+            return rows;
+        }
+
+        final int[] idColumn = idColumns[column];
+        return IntStream.range(0, size).filter(row -> idColumn[row] == id).toArray();
+    }
+
+    // Row of a track id, -1 if no row has it
+    int indexOfTrackId(int trackId) { return trackId > 0 && trackId < idRows.length ? idRows[trackId] - 1 : -1; }
+
+    long sumDurationMillis() {
+        final int[] durations = numberColumns[durationColumn];
+        long durationMillis = 0;
+
+        for (int row = 0; row < size; row++) {
+            durationMillis += durations[row];
+        }
+
+        return durationMillis;
+    }
+
+    /**
+     * indexOfTrackPath() - first row with a track path
+     *
+     * @param trackPathStr => Track path
+     * @return => Row, -1 if no row has the path
+     */
+    int indexOfTrackPath(String trackPathStr) {
+        if (trackPathStr == null) {
+            return -1;
+        }
+
+        if (pathSlots == null) {
+            buildPathSlots();
+        }
+
+        final int nameIndex = TrackPathTable.nameIndex(trackPathStr);
+        final int directoryId = TrackPathTable.findDirectory(trackPathStr.substring(0, nameIndex));
+        final String pathNameStr = trackPathStr.substring(nameIndex);
+
+        // No track is in a directory the table has never held
+        if (directoryId < 0) {
+            return -1;
+        }
+
+        int firstRow = -1;
+
+        for (int slot = pathSlot(directoryId, pathNameStr); pathSlots[slot] != 0; slot = (slot + 1) & (pathSlots.length - 1)) {
+            final int row = pathSlots[slot] - 1;
+
+            if (directoryIds[row] == directoryId && pathNameStr.equals(pathNames[row]) && (firstRow < 0 || row < firstRow)) {
+                firstRow = row;
+            }
+        }
+
+        return firstRow;
+    }
+
+    /**
+     * indexesUnder() - rows of the tracks at a path or in the directories below it, found by directory id
+     *                  without putting any track path together
+     *
+     * @param pathStr => File or directory, without a trailing separator
+     * @return => Rows in ascending order
+     */
+    int[] indexesUnder(String pathStr) {
+        final int fileRow = indexOfTrackPath(pathStr);
+        final int directoryId = TrackPathTable.findDirectory(pathStr + File.separator);
+
+        if (directoryId < 0) {
+            return fileRow < 0 ? new int[0] : new int[] { fileRow };
+        }
+
+        final BitSet directoriesWithin = TrackPathTable.directoriesWithin(directoryId);
+
+        return IntStream.range(0, size)
+                .filter(row -> row == fileRow || pathNames[row] != null && directoriesWithin.get(directoryIds[row]))
+                .toArray();
+    }
+
+    private void buildPathSlots() {
+        pathSlots = new int[pathCapacity(size)];
+
+        for (int row = 0; row < size; row++) {
+            addPathSlot(row);
+        }
+    }
+
+    private void addPathSlot(int row) {
+        if (pathNames[row] == null) {
+            return;
+        }
+
+        // At most half full
+        if (size * 2L > pathSlots.length) {
+            buildPathSlots();
+            return;
+        }
+
+        int slot = pathSlot(directoryIds[row], pathNames[row]);
+
+        while (pathSlots[slot] != 0) {
+            slot = (slot + 1) & (pathSlots.length - 1);
+        }
+
+        pathSlots[slot] = row + 1;
+    }
+
+    private int pathSlot(int directoryId, String pathNameStr) {
+        final int hash = directoryId * 31 + pathNameStr.hashCode();
+
+        return (hash ^ (hash >>> 16)) & (pathSlots.length - 1);
+    }
+
+    private static int pathCapacity(int rowCount) {
+        int capacity = 16;
+
+        while (capacity < rowCount * 2L) {
+            capacity <<= 1;
+        }
+
+        return capacity;
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          POSTINGS
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    // Track ids of one field by dictionary id, in no order. Id 0 (null) has no postings.
+    private static final class TrackIdPostings {
+        private int[][] trackIds = new int[64][];
+        private int[] counts = new int[64];
+
+        void add(int id, int trackId) {
+            if (id == 0) {
+                return;
+            }
+
+            if (id >= counts.length) {
+                final int capacity = Math.max(id + 1, counts.length + (counts.length >> 1));
+                trackIds = Arrays.copyOf(trackIds, capacity);
+                counts = Arrays.copyOf(counts, capacity);
+            }
+
+            if (trackIds[id] == null) {
+                trackIds[id] = new int[4];
+
+            } else if (counts[id] == trackIds[id].length) {
+                trackIds[id] = Arrays.copyOf(trackIds[id], counts[id] * 2);
+            }
+
+            trackIds[id][counts[id]++] = trackId;
+        }
+
+        // The last track id takes the place of the removed one
+        void remove(int id, int trackId) {
+            if (id == 0 || id >= counts.length) {
+                return;
+            }
+
+            final int[] postedTrackIds = trackIds[id];
+
+            for (int i = counts[id] - 1; i >= 0; i--) {
+                if (postedTrackIds[i] == trackId) {
+                    postedTrackIds[i] = postedTrackIds[--counts[id]];
+                    break;
+                }
+            }
+
+            if (counts[id] == 0) {
+                trackIds[id] = null;
+            }
+        }
+
+        int[] get(int id) {
+            return id < counts.length && trackIds[id] != null ? Arrays.copyOf(trackIds[id], counts[id]) : new int[0];
+        }
+    }
+}
@@ -9,6 +9,7 @@ package com.iandw.musicplayerjavafx;
 
 import com.iandw.musicplayerjavafx.Libraries.ListViewLibrary;
 import com.iandw.musicplayerjavafx.Libraries.TableViewLibrary;
+import com.iandw.musicplayerjavafx.Utilities.TrackField;
 import com.iandw.musicplayerjavafx.Utilities.TrackIndex;
 
 import java.io.IOException;
@@ -250,16 +251,10 @@ public class ListViewController {
                     // Edit Playlist
                     if (listViewLibrary.getPlaylistObservableList().contains(menuSelection)) {
                         System.out.printf("Editing playlist %s to %s.", menuSelection, userInput);
-                        listViewLibrary.removePlaylist(menuSelection);
-
-                        if (!listViewLibrary.getPlaylistObservableList().contains(userInput)) {
-                            listViewLibrary.addPlaylist(userInput);
-                        }
+                        listViewLibrary.renamePlaylist(menuSelection, userInput);
 
                         playlistListView.setItems(listViewLibrary.getPlaylistObservableList());
 
-                        editPlaylist();
-
                         playlistListView.getSelectionModel().select(userInput);
                     }
 
@@ -286,26 +281,9 @@ public class ListViewController {
 
     /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
      *
-     *                          EDIT PLAYLIST / ARTIST
+     *                          EDIT ARTIST
      *
      * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
-    private void editPlaylist() {
-        int tableSize = trackIndex.getTableSize();
-
-        if (tableSize > 0) {
-            // Edit every track metadata object visible in trackTableView
-            for (int trackIndex = 0; trackIndex < tableSize; trackIndex++) {
-                System.out.printf("Editing %s playlist to %s%n",
-                        trackTableView.getItems().get(trackIndex).getTrackTitleStr(), userInput);
-                trackTableView.getItems().get(trackIndex).setPlaylistStr(userInput);
-                trackTableView.refresh();
-            }
-
-            // Write on close flag
-            tableViewLibrary.setOutputTrackListOnClose();
-        }
-    }
-
     private void editArtist() {
         int tableSize = trackIndex.getTableSize();
 
@@ -314,12 +292,9 @@ public class ListViewController {
             for (int trackIndex = 0; trackIndex < tableSize; trackIndex++) {
                 System.out.printf("Editing %s artist to %s%n",
                         trackTableView.getItems().get(trackIndex).getTrackTitleStr(), userInput);
-                trackTableView.getItems().get(trackIndex).setArtistNameStr(userInput);
+                tableViewLibrary.setTrackField(trackTableView.getItems().get(trackIndex), TrackField.ARTIST, userInput);
                 trackTableView.refresh();
             }
-
-            // Write on close flag
-            tableViewLibrary.setOutputTrackListOnClose();
         }
     }
 }
@@ -11,22 +11,32 @@ package com.iandw.musicplayerjavafx;
 import com.iandw.musicplayerjavafx.ContextMenus.ArtistListContextMenu;
 import com.iandw.musicplayerjavafx.ContextMenus.PlaylistContextMenu;
 import com.iandw.musicplayerjavafx.ContextMenus.TableViewContextMenu;
-import com.iandw.musicplayerjavafx.FileIO.ConsoleLogFileIO;
-import com.iandw.musicplayerjavafx.FileIO.SettingsFileIO;
+import com.iandw.musicplayerjavafx.FileIO.AutosaveService;
+import com.iandw.musicplayerjavafx.FileIO.LibraryFileIO;
+import com.iandw.musicplayerjavafx.FileIO.LibraryJournal;
+import com.iandw.musicplayerjavafx.FileIO.M3UFileIO;
+import com.iandw.musicplayerjavafx.FileIO.NDJSONFileIO;
+import com.iandw.musicplayerjavafx.Libraries.LibraryWatcher;
 import com.iandw.musicplayerjavafx.Libraries.ListViewLibrary;
 import com.iandw.musicplayerjavafx.Libraries.MusicLibrary;
+import com.iandw.musicplayerjavafx.Libraries.PlaylistLibrary;
 import com.iandw.musicplayerjavafx.Libraries.TableViewLibrary;
 import com.iandw.musicplayerjavafx.Utilities.*;
 
 import java.io.*;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
 
 import io.github.cdimascio.dotenv.Dotenv;
 import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.beans.value.ObservableValue;
+import javafx.collections.transformation.FilteredList;
+import javafx.collections.transformation.SortedList;
 import javafx.concurrent.Task;
 import javafx.stage.DirectoryChooser;
 import javafx.stage.FileChooser;
@@ -38,13 +48,14 @@ import javafx.scene.control.*;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.TextField;
-import javafx.scene.control.cell.PropertyValueFactory;
+import javafx.scene.control.TableColumn.CellDataFeatures;
 import javafx.scene.image.Image;
 import javafx.scene.input.*;
 import javafx.scene.layout.AnchorPane;
 import javafx.scene.media.Media;
 import javafx.scene.media.MediaPlayer;
 import javafx.stage.Stage;
+import javafx.util.Callback;
 import javafx.scene.image.ImageView;
 
 public class MusicPlayerController {
@@ -61,7 +72,7 @@ public class MusicPlayerController {
     @FXML
     public TableColumn<TrackMetadata, String> colAlbumTitle;
     @FXML
-    public TableColumn<TrackMetadata, String> colTrackLength;
+    public TableColumn<TrackMetadata, TrackMetadata> colTrackLength;
     @FXML
     public TableColumn<TrackMetadata, String> colTrackGenre;
     @FXML
@@ -151,6 +162,7 @@ public class MusicPlayerController {
     private ImageFileLogic imageFileLogic;
     private MediaPlayer mediaPlayer;
     private MusicLibrary musicLibrary;
+    private LibraryWatcher libraryWatcher;
     private final TableViewLibrary tableViewLibrary;
     private final ListViewLibrary listViewLibrary;
     private SearchTableView searchTableView;
@@ -158,7 +170,6 @@ public class MusicPlayerController {
     private TrackIndex trackIndex;
     private final UserSettings userSettings;
     private final ExecutorService executorService;
-    private final ByteArrayOutputStream consoleOutput;
     private final Stage stage;
     private String artistNameString;
     private String playlistTitleString;
@@ -169,23 +180,22 @@ public class MusicPlayerController {
     private boolean stopped;
     private boolean artistsListSelected;
     private int albumImageWidth;
+    private Label trackLengthHeader;
 
     /**
      * MusicPlayerController.java => constructor
      *
      * @param stage => Close the Application from the File Menu
      * @param executorService => Call AwaitTermination() to wait for file input threads to end
-     * @param consoleOutput => Pass ByteArrayOS object to update buffer from System.out... statements
      * @param userSettings => Allows changes to UserSettings Object after initialization
      * @param listViewLibrary => Initialize App with Artist and Playlist data
      * @param tableViewLibrary => Initialize App with Track Metadata
      */
-    public MusicPlayerController(Stage stage, ExecutorService executorService, ByteArrayOutputStream consoleOutput,
-                                 UserSettings userSettings, ListViewLibrary listViewLibrary, TableViewLibrary tableViewLibrary)
+    public MusicPlayerController(Stage stage, ExecutorService executorService, UserSettings userSettings,
+                                 ListViewLibrary listViewLibrary, TableViewLibrary tableViewLibrary)
     {
         this.stage = stage;
         this.executorService = executorService;
-        this.consoleOutput = consoleOutput;
         this.userSettings = userSettings;
         this.listViewLibrary = listViewLibrary;
         this.tableViewLibrary = tableViewLibrary;
@@ -203,6 +213,7 @@ public class MusicPlayerController {
         stopped = true;
         artistsListSelected = true;
         searchTableView = new SearchTableView();
+        searchTableView.setSearchMode(userSettings.getSearchModeString());
         currentTheme = userSettings.getThemeFileNameString();
         imageFileLogic = new ImageFileLogic(currentTheme);
         playPauseButton.setGraphic(playIcon);
@@ -222,6 +233,31 @@ public class MusicPlayerController {
         colTrackLength.setMaxWidth( 1f * Integer.MAX_VALUE * 6 );
         colTrackGenre.setMaxWidth( 1f * Integer.MAX_VALUE * 14 );
 
+        // Populate trackTableView with track object data, only the rows shown are read
+        colArtistNameInvisible.setCellValueFactory(trackFieldValue(TrackField.ARTIST));
+        colTrackFileNameInvisible.setCellValueFactory(trackFieldValue(TrackField.FILE_NAME));
+        colTrackTitle.setCellValueFactory(trackFieldValue(TrackField.TITLE));
+        colAlbumTitle.setCellValueFactory(trackFieldValue(TrackField.ALBUM));
+        colTrackLength.setCellValueFactory(cellData -> new ReadOnlyObjectWrapper<>(cellData.getValue()).getReadOnlyProperty());
+        colTrackLength.setCellFactory(column -> new TableCell<>() {
+            @Override
+            protected void updateItem(TrackMetadata trackMetadata, boolean empty) {
+                super.updateItem(trackMetadata, empty);
+                setText(empty || trackMetadata == null ? null : trackMetadata.getTrackDurationStr());
+            }
+        });
+
+        // Length sorts by milliseconds, "HH:MM:SS" Strings would sort after shorter tracks' "MM:SS" wrongly
+        colTrackLength.setComparator(Comparator.comparingInt(TrackMetadata::getDurationMillis));
+
+        // Total length of the tracks shown, as the column header's tooltip
+        trackLengthHeader = new Label(colTrackLength.getText());
+        trackLengthHeader.setTooltip(new Tooltip());
+        colTrackLength.setText(null);
+        colTrackLength.setGraphic(trackLengthHeader);
+        colTrackGenre.setCellValueFactory(trackFieldValue(TrackField.GENRE));
+        colPlaylistInvisible.setCellValueFactory(trackFieldValue(TrackField.PLAYLIST));
+
         // Autoplay Icon (all other icons are from bootstrapicons -> musiclibrary.fxml)
         ImageView autoPlayIcon = new ImageView(ResourceURLs.getAutoplayiconURL());
 
@@ -244,8 +280,8 @@ public class MusicPlayerController {
         // Initialize main app objects for Music Library, ListView, and TableView
         musicLibrary = new MusicLibrary(userSettings);
 
-        // Send user to Settings to initialize Music Library if tracklist.ser is empty
-        if (Files.size(Paths.get(ResourceURLs.getTrackListURL())) == 0) {
+        // Send user to Settings to initialize Music Library if library.bin is empty
+        if (!LibraryFileIO.hasLibrary()) {
             // Choose Root Directory for Music Library
             String directoryLabel = "Welcome, press 'Music Folder' to initialize.";
 
@@ -274,6 +310,13 @@ public class MusicPlayerController {
             }
         }
 
+        // Keep Music Library in sync with changes made to the root music directory while the App is open
+        libraryWatcher = new LibraryWatcher(musicLibrary, tableViewLibrary, listViewLibrary, userSettings,
+                this::libraryChanged, this::libraryPartiallyWatched);
+        Thread libraryWatcherThread = new Thread(libraryWatcher);
+        libraryWatcherThread.setDaemon(true);
+        libraryWatcherThread.start();
+
         /* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
          *
          *                        KEY BINDINGS
@@ -545,12 +588,25 @@ public class MusicPlayerController {
         );
 
         // SearchField Listener
+        // Searched off the Application Thread once typing pauses, an empty search shows every track at once
         searchField.textProperty().addListener(
                 ((observableValue, oldValue, newValue) -> {
-                    tableViewLibrary.getFilteredList().setPredicate(searchTableView.createSearchPredicate(newValue));
-                    trackIndex.setTableSize(tableViewLibrary.getFilteredList().size());
-                    trackIndex.clearShuffleArray();
-                    trackIndex.clearPreviousIndexStack();
+                    if (newValue == null || newValue.isEmpty()) {
+                        searchTableView.cancelSearch();
+                        tableViewLibrary.createFilteredList();
+                        showSearchResults();
+
+                    } else {
+                        searchTableView.scheduleSearch(newValue, tableViewLibrary, tracks -> {
+                            // Fuzzy results are ranked, a column sort would hide the closest tracks
+                            if (searchTableView.isFuzzySearch()) {
+                                trackTableView.getSortOrder().clear();
+                            }
+
+                            tableViewLibrary.showTracks(tracks);
+                            showSearchResults();
+                        });
+                    }
                 })
         );
 
@@ -613,37 +669,93 @@ public class MusicPlayerController {
     }
 
     private void listViewSelected() {
+        // A search still running would replace the selection
+        searchTableView.cancelSearch();
+
         // Get selected artist name (from directory name)
         previousArtistNameString = artistNameString;
 
         // Create a filtered list for trackTableView
-        tableViewLibrary.createFilteredList();
-
         // Check artistsObservableList for artist name, call artist list predicate if true.
         // Else call the playlistListView predicate
         if (artistsListSelected && artistNameString != null) {
-            tableViewLibrary.getFilteredList().setPredicate(searchTableView.createArtistListPredicate(artistNameString));
+            tableViewLibrary.filterTracks(searchTableView.createArtistListPredicate(artistNameString));
 
         } else if (playlistTitleString != null) {
-            // Remove null pointer exceptions from predicate search
-            tableViewLibrary.getFilteredList().setPredicate(searchTableView.createPlaylistListPredicate(playlistTitleString));
+            // Playlist entries in playlist order
+            tableViewLibrary.filterTrackPaths(listViewLibrary.getPlaylistLibrary().getTrackPaths(playlistTitleString));
+
+        } else {
+            tableViewLibrary.createFilteredList();
         }
 
-        trackTableView.setItems(tableViewLibrary.getFilteredList());
+        showFilteredList();
         trackTableView.setVisible(true);
-        trackIndex.setTableSize(tableViewLibrary.getFilteredList().size());
-
-        // Sort Table
-        trackTableView.getSortOrder().add(colTrackFileNameInvisible);
-
-        // Populate trackTableView with track object data
-        colArtistNameInvisible.setCellValueFactory(new PropertyValueFactory<>("artistNameStr"));
-        colTrackFileNameInvisible.setCellValueFactory(new PropertyValueFactory<>("trackFileNameStr"));
-        colTrackTitle.setCellValueFactory(new PropertyValueFactory<>("trackTitleStr"));
-        colAlbumTitle.setCellValueFactory(new PropertyValueFactory<>("albumTitleStr"));
-        colTrackLength.setCellValueFactory(new PropertyValueFactory<>("trackDurationStr"));
-        colTrackGenre.setCellValueFactory(new PropertyValueFactory<>("trackGenreStr"));
-        colPlaylistInvisible.setCellValueFactory(new PropertyValueFactory<>("playlistStr"));
+
+        // Sort Table, playlists keep their own order
+        if (artistsListSelected || playlistTitleString == null) {
+            trackTableView.getSortOrder().add(colTrackFileNameInvisible);
+
+        } else {
+            trackTableView.getSortOrder().clear();
+        }
+    }
+
+    /**
+     * showFilteredList() - sets trackTableView to the filtered tracks and the total length in the Time header.
+     *                      Artist, playlist and search results are sorted by the column sort order, the whole
+     *                      library stays in library order as sorting it would read every row.
+     */
+    private void showFilteredList() {
+        final FilteredList<TrackMetadata> filteredList = tableViewLibrary.getFilteredList();
+
+        if (tableViewLibrary.isLibraryShown()) {
+            trackTableView.setItems(filteredList);
+
+        } else {
+            SortedList<TrackMetadata> sortedList = new SortedList<>(filteredList);
+            sortedList.comparatorProperty().bind(trackTableView.comparatorProperty());
+            trackTableView.setItems(sortedList);
+        }
+
+        trackIndex.setTableSize(filteredList.size());
+        trackLengthHeader.getTooltip().setText(String.format("%d tracks, %s total", filteredList.size(),
+                Utils.formatSeconds((int) Math.min(Integer.MAX_VALUE, tableViewLibrary.getFilteredDurationMillis() / 1000))));
+    }
+
+    private void showSearchResults() {
+        showFilteredList();
+        trackIndex.clearShuffleArray();
+        trackIndex.clearPreviousIndexStack();
+    }
+
+    // Value of a cell, read straight from the TrackMetadata of the row rather than by reflection
+    private static Callback<CellDataFeatures<TrackMetadata, String>, ObservableValue<String>> trackFieldValue(TrackField trackField) {
+        return cellData -> new ReadOnlyStringWrapper(trackField.get(cellData.getValue())).getReadOnlyProperty();
+    }
+
+    // Called by LibraryWatcher after a batch of file changes, reloads the Table View if it shows a changed artist
+    // or a playlist. Search results are left as they are until the next selection.
+    private void libraryChanged(Set<String> changedArtists) {
+        if (!searchField.getText().isEmpty()) {
+            trackTableView.refresh();
+
+        } else if (!artistsListSelected || changedArtists.contains(artistNameString)) {
+            listViewSelected();
+
+        } else {
+            trackTableView.refresh();
+        }
+    }
+
+    // LibraryWatcher, the root music directory has more folders than can be watched
+    private void libraryPartiallyWatched() {
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle("Library Sync");
+        alert.setHeaderText("Live sync is partial");
+        alert.setContentText("The music folder has too many folders to watch them all.\n" +
+                "Changes in some folders show up within a minute instead of right away.");
+        alert.show();
     }
 
     /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
@@ -1018,8 +1130,7 @@ public class MusicPlayerController {
             trackIndex.pushToPreviousIndexArray(trackIndex.getCurrentTrackIndex());
         }
 
-        trackIndex.setCurrentTrackIndex(trackTableView.getItems().indexOf(
-                trackTableView.getSelectionModel().getSelectedItem()));
+        trackIndex.setCurrentTrackIndex(trackTableView.getSelectionModel().getSelectedIndex());
 
         // If last track set next track to beginning (0).
         if (trackIndex.getCurrentTrackIndex() == trackIndex.getTableSize() - 1) {
@@ -1152,9 +1263,6 @@ public class MusicPlayerController {
         // Start initializeMusicLibrary() thread
         Thread thread = new Thread(task);
         thread.start();
-
-        // Write to File on close
-        Platform.runLater(tableViewLibrary::setOutputTrackListOnClose);
     }
 
     @FXML
@@ -1211,9 +1319,6 @@ public class MusicPlayerController {
         // Start initializeMusicLibrary() thread
         Thread thread = new Thread(task);
         thread.start();
-
-        // Write to File on close
-        Platform.runLater(tableViewLibrary::setOutputTrackListOnClose);
     }
 
     @FXML
@@ -1272,10 +1377,6 @@ public class MusicPlayerController {
         // Start initializeMusicLibrary() thread
         Thread thread = new Thread(task);
         thread.start();
-
-        // Write to File on close
-        Platform.runLater(tableViewLibrary::setOutputTrackListOnClose);
-
     }
 
     // Add artist name to list view and save to file if not available
@@ -1301,6 +1402,210 @@ public class MusicPlayerController {
         }
     }
 
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                         IMPORT / EXPORT LIBRARY
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    @FXML
+    private void importLibraryClicked() {
+        // Select NDJSON file written by Export > Library
+        FileChooser libraryChooser = new FileChooser();
+        libraryChooser.setTitle("Select Library File");
+        libraryChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("NDJSON", "*.ndjson", "*.jsonl"));
+        libraryChooser.setInitialDirectory((new File(".")));
+
+        File file = libraryChooser.showOpenDialog(new Stage());
+
+        if (file == null) {
+            return;
+        }
+
+        Task<Void> task = new Task<>() {
+            @Override
+            protected Void call() throws Exception {
+                // Tracks already in the Music Library are skipped, by path
+                Set<String> trackPathSet = tableViewLibrary.getTrackPathSet();
+                int[] addedCount = new int[1];
+
+                final int trackCount = NDJSONFileIO.inputTracks(file.toPath(), trackBatch -> {
+                    List<TrackMetadata> newTracks = trackBatch.stream()
+                            .filter(trackMetadata -> trackPathSet.add(trackMetadata.getTrackPathStr()))
+                            .toList();
+
+                    if (!newTracks.isEmpty()) {
+                        addedCount[0] += newTracks.size();
+
+                        // Waits for each batch so parsed tracks do not pile up ahead of the Table View
+                        runAndWait(() -> {
+                            tableViewLibrary.addTracks(newTracks);
+                            listViewLibrary.addArtists(newTracks.stream().map(TrackMetadata::getArtistNameStr).toList());
+                        });
+                    }
+                });
+
+                System.out.printf("Imported %d of %d tracks from %s.%n", addedCount[0], trackCount, file);
+
+                return null;
+            }
+        };
+
+        task.setOnFailed(evt -> showTransferFailed("Import Failed", task.getException()));
+
+        Thread thread = new Thread(task);
+        thread.start();
+    }
+
+    @FXML
+    private void importPlaylistsClicked() {
+        // Select one or more playlist files
+        FileChooser playlistChooser = new FileChooser();
+        playlistChooser.setTitle("Select Playlist Files");
+        playlistChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("M3U Playlist", "*.m3u8", "*.m3u"));
+        playlistChooser.setInitialDirectory((new File(".")));
+
+        List<File> files = playlistChooser.showOpenMultipleDialog(new Stage());
+
+        if (files == null) {
+            return;
+        }
+
+        Task<Void> task = new Task<>() {
+            @Override
+            protected Void call() throws Exception {
+                for (File file : files) {
+                    // Entries are looked up by path, those not in the Music Library are left out
+                    List<String> trackPaths = new ArrayList<>();
+                    int[] missingCount = new int[1];
+
+                    final String title = M3UFileIO.inputPlaylist(file.toPath(), trackPathStr -> {
+                        TrackMetadata trackMetadata = tableViewLibrary.findTrack(trackPathStr);
+
+                        if (trackMetadata == null) {
+                            missingCount[0]++;
+                        } else {
+                            trackPaths.add(trackMetadata.getTrackPathStr());
+                        }
+                    });
+
+                    // Appended to a playlist with the same title
+                    runAndWait(() -> {
+                        if (!listViewLibrary.getPlaylistLibrary().containsPlaylist(title)) {
+                            listViewLibrary.addPlaylist(title);
+                        }
+
+                        trackPaths.forEach(trackPathStr -> listViewLibrary.getPlaylistLibrary().addTrack(title, trackPathStr));
+                    });
+
+                    System.out.printf("Imported playlist %s, %d tracks, %d not in the Music Library.%n",
+                            title, trackPaths.size(), missingCount[0]);
+                }
+
+                return null;
+            }
+        };
+
+        task.setOnFailed(evt -> showTransferFailed("Import Failed", task.getException()));
+
+        Thread thread = new Thread(task);
+        thread.start();
+    }
+
+    @FXML
+    private void exportLibraryClicked() {
+        FileChooser libraryChooser = new FileChooser();
+        libraryChooser.setTitle("Export Library");
+        libraryChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("NDJSON", "*.ndjson"));
+        libraryChooser.setInitialFileName("library.ndjson");
+        libraryChooser.setInitialDirectory((new File(".")));
+
+        File file = libraryChooser.showSaveDialog(new Stage());
+
+        if (file == null) {
+            return;
+        }
+
+        Task<Void> task = new Task<>() {
+            @Override
+            protected Void call() throws Exception {
+                NDJSONFileIO.outputTracks(file.toPath(), tableViewLibrary.exportTracks());
+                return null;
+            }
+        };
+
+        task.setOnFailed(evt -> showTransferFailed("Export Failed", task.getException()));
+
+        Thread thread = new Thread(task);
+        thread.start();
+    }
+
+    @FXML
+    private void exportPlaylistsClicked() {
+        // One .m3u8 file per playlist is written to the chosen folder
+        DirectoryChooser folderChooser = new DirectoryChooser();
+        folderChooser.setTitle("Export Playlists");
+        folderChooser.setInitialDirectory((new File(".")));
+
+        File folder = folderChooser.showDialog(new Stage());
+
+        if (folder == null) {
+            return;
+        }
+
+        Task<Void> task = new Task<>() {
+            @Override
+            protected Void call() throws Exception {
+                PlaylistLibrary playlistLibrary = listViewLibrary.getPlaylistLibrary();
+
+                for (String title : playlistLibrary.getPlaylistTitles()) {
+                    M3UFileIO.outputPlaylist(folder.toPath().resolve(M3UFileIO.fileName(title)), title,
+                            playlistLibrary.getTrackPaths(title), tableViewLibrary::findTrack);
+                }
+
+                System.out.printf("Exported %d playlists to %s.%n", playlistLibrary.getPlaylistTitles().size(), folder);
+
+                return null;
+            }
+        };
+
+        task.setOnFailed(evt -> showTransferFailed("Export Failed", task.getException()));
+
+        Thread thread = new Thread(task);
+        thread.start();
+    }
+
+    // Blocks the calling thread until runnable has run on the JavaFX Application Thread
+    private static void runAndWait(Runnable runnable) {
+        FutureTask<Void> futureTask = new FutureTask<>(runnable, null);
+        Platform.runLater(futureTask);
+
+        try {
+            futureTask.get();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private void showTransferFailed(String headerText, Throwable exception) {
+        System.out.println(headerText + ".");
+
+        if (exception != null) {
+            exception.printStackTrace();
+            System.out.println(exception.getMessage());
+        }
+
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle("Error");
+        alert.setHeaderText(headerText);
+        alert.setContentText("Could not read or write the file.\nCheck console log for details.");
+        alert.showAndWait();
+    }
+
     @FXML
     private void settingsClicked() throws IOException {
         String directoryLabel = userSettings.getRootMusicDirectoryString();
@@ -1337,7 +1642,7 @@ public class MusicPlayerController {
         final String about = "About";
 
         ViewTextController viewTextController = new ViewTextController();
-        viewTextController.showViewTextWindow(about, consoleOutput);
+        viewTextController.showViewTextWindow(about);
 
     }
 
@@ -1354,27 +1659,15 @@ public class MusicPlayerController {
     private void consoleLogClicked() throws IOException {
         final String consoleLog = "Console Log";
 
+        // Shows the tail kept by ConsoleLog, small enough for the TextArea
         ViewTextController viewTextController = new ViewTextController();
-
-        // Check the size to keep TextArea object from locking up Application
-        if (consoleOutput.size() < Utils.maxTextAreaSize()) {
-            viewTextController.showViewTextWindow(consoleLog, consoleOutput);
-
-        } else {
-            System.out.println("File size too large");
-
-            Alert alert = new Alert(Alert.AlertType.INFORMATION);
-            alert.setTitle("Console Log");
-            alert.setHeaderText("Console Log size > 1MB.");
-            alert.setContentText("Check the consolelog.txt file after closing application\n to check the console log report.");
-            alert.showAndWait();
-        }
+        viewTextController.showViewTextWindow(consoleLog);
     }
 
     @FXML
     private void reportBugClicked() throws IOException {
         BugReportController bugReportController = new BugReportController();
-        bugReportController.showBugReportWindow(consoleOutput);
+        bugReportController.showBugReportWindow();
     }
 
 
@@ -1385,20 +1678,30 @@ public class MusicPlayerController {
      * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
 
     @FXML
-    private void exitClicked() throws FileNotFoundException {
-        // Output to file on close if files data has been altered
-        if (userSettings.getWriteOnClose()) {
-            SettingsFileIO.jsonFileOutput(userSettings);
+    private void exitClicked() {
+        saveAndExit();
+    }
+
+    /**
+     * saveAndExit() - Shut down for both exit paths, the Exit menu item and closing the window
+     */
+    public void saveAndExit() {
+        // No more library changes are made by the watcher while the stores below are shut down
+        if (libraryWatcher != null) {
+            libraryWatcher.stop();
         }
 
-        listViewLibrary.onClose();
-        tableViewLibrary.onClose();
+        // Settings, playlists and bulk library changes not autosaved yet are written now, only
+        // the writes still in progress are waited for
+        AutosaveService.shutdown();
 
-        // Write console log to file
-        ConsoleLogFileIO.outputConsoleLog(consoleOutput.toString());
+        // Edits are already in library.journal, replayed on the next start up
+        LibraryJournal.close();
+
+        // Write the console log lines still queued
+        ConsoleLog.close();
 
         stage.close();
     }
 
 }
-
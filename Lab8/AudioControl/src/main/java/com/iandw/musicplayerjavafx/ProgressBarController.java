@@ -3,17 +3,21 @@
  *      Application: MusicPlayer
  *      Class: ProgressBarController.java
  *      Notes: Handles progress bar GUI window
+ *              Scan threads only count, the labels are refreshed from a ProgressBarData snapshot
+ *              at most refreshRate times a second regardless of how fast files are parsed.
  */
 
 package com.iandw.musicplayerjavafx;
 
 import com.iandw.musicplayerjavafx.Utilities.ProgressBarData;
+import com.iandw.musicplayerjavafx.Utilities.Utils;
 
 import java.io.*;
 import java.net.URL;
 import java.util.ResourceBundle;
 
-import javafx.application.Platform;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
@@ -24,6 +28,8 @@ import javafx.scene.control.ProgressBar;
 import javafx.scene.layout.AnchorPane;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
+import javafx.stage.WindowEvent;
+import javafx.util.Duration;
 
 public class ProgressBarController implements Initializable {
     @FXML
@@ -35,10 +41,16 @@ public class ProgressBarController implements Initializable {
     @FXML
     private Label systemTextLabel;
     @FXML
+    private Label statsLabel;
+    @FXML
     private Button cancelButton;
 
+    private static final double refreshRate = 30.0;
+
     private Stage stage;
     private final ProgressBarData progressBarData;
+    private Timeline refreshTimeline;
+    private ProgressBarData.Snapshot lastSnapshot;
 
     /**
      * ProgressBarController - constructor
@@ -55,28 +67,69 @@ public class ProgressBarController implements Initializable {
         percentLabel.setText("0%");
         systemTextLabel.setText("Analyzing Directory...");
 
-        // Listener for updated double value from ProgressBarData
-        // Where each file read increments the progress bar.
-        progressBarData.addPropertyChangeListener(evt -> {
-            if (evt.getPropertyName().equals("progressDouble")) {
-                double progressDouble = (double) evt.getNewValue();
-                Platform.runLater(() -> {
-                    progressBar.setProgress(progressDouble);
-                    percentLabel.setText((int) Math.round(progressDouble * 100) + "%");
-                });
-            }
-        });
+        statsLabel.setText("");
 
-        // Listener to populate systemTextLabel with processed file path
-        progressBarData.addPropertyChangeListener(evt -> {
-            if (evt.getPropertyName().equals("trackPathStr")) {
-                String trackPathStr = (String) evt.getNewValue();
-                Platform.runLater(() -> {
-                    systemTextLabel.setText(trackPathStr);
+        refreshTimeline = new Timeline(new KeyFrame(Duration.millis(1000 / refreshRate), event -> refresh()));
+        refreshTimeline.setCycleCount(Timeline.INDEFINITE);
+        refreshTimeline.play();
+
+        // Stop refreshing once the window closes, on Cancel or when the scan completes
+        anchorPane.sceneProperty().addListener((sceneObservable, oldScene, scene) -> {
+            if (scene != null) {
+                scene.windowProperty().addListener((windowObservable, oldWindow, window) -> {
+                    if (window != null) {
+                        window.addEventHandler(WindowEvent.WINDOW_HIDDEN, hidden -> refreshTimeline.stop());
+                    }
                 });
             }
         });
+    }
+
+    // Runs on the JavaFX Application Thread, skips the update when no file has been processed since the last one
+    private void refresh() {
+        ProgressBarData.Snapshot snapshot = progressBarData.snapshot();
+
+        if (lastSnapshot != null && lastSnapshot.processedFiles() == snapshot.processedFiles()
+                && lastSnapshot.estimatedTotalFiles() == snapshot.estimatedTotalFiles()) {
+            return;
+        }
+
+        lastSnapshot = snapshot;
+        final double progress = snapshot.progress();
+
+        if (progress < 0) {
+            progressBar.setProgress(ProgressBar.INDETERMINATE_PROGRESS);
+            percentLabel.setText("");
+
+        } else {
+            progressBar.setProgress(progress);
+            percentLabel.setText((int) Math.round(progress * 100) + "%");
+        }
+
+        systemTextLabel.setText(snapshot.trackPathStr());
+        statsLabel.setText(formatStats(snapshot));
+    }
+
+    // ex: 1,204 of ~5,800 files · 210 files/s · 38.2 MB/s · 00:27 left
+    private static String formatStats(ProgressBarData.Snapshot snapshot) {
+        StringBuilder stats = new StringBuilder(String.format("%,d", snapshot.processedFiles()));
+
+        if (snapshot.estimatedTotalFiles() >= 0) {
+            stats.append(snapshot.walkFinished() ? " of " : " of ~")
+                    .append(String.format("%,d", snapshot.estimatedTotalFiles()));
+        }
+
+        stats.append(" files \u00B7 ")
+                .append(String.format("%,.0f files/s \u00B7 %.1f MB/s", snapshot.filesPerSecond(),
+                        snapshot.bytesPerSecond() / (1024 * 1024)));
+
+        final int etaSeconds = snapshot.etaSeconds();
+
+        if (etaSeconds >= 0) {
+            stats.append(" \u00B7 ").append(Utils.formatSeconds(etaSeconds)).append(" left");
+        }
 
+        return stats.toString();
     }
 
     /**
@@ -95,7 +148,8 @@ public class ProgressBarController implements Initializable {
         stage.setAlwaysOnTop(true);
         stage.setTitle("Initialize Library");
         stage.setResizable(false);
-        stage.initModality(Modality.APPLICATION_MODAL);
+        // Not modal, the Artist List and Table View can be browsed while tracks stream in
+        stage.initModality(Modality.NONE);
         stage.show();
 
         stage.setOnCloseRequest(event -> {
@@ -27,6 +27,21 @@ public class ResourceURLs {
     private static final String playlistsURL = Objects.requireNonNull(App.class.getResource(
                     "playlists.ser")).toString().substring(6);
 
+    private static final String playlistentriesURL = Objects.requireNonNull(App.class.getResource(
+                    "playlists.bin")).toString().substring(6);
+
+    private static final String libraryURL = Objects.requireNonNull(App.class.getResource(
+                    "library.bin")).toString().substring(6);
+
+    private static final String libraryjournalURL = Objects.requireNonNull(App.class.getResource(
+                    "library.journal")).toString().substring(6);
+
+    private static final String fingerprintsURL = Objects.requireNonNull(App.class.getResource(
+                    "fingerprints.ser")).toString().substring(6);
+
+    private static final String scancheckpointURL = Objects.requireNonNull(App.class.getResource(
+                    "scancheckpoint.ser")).toString().substring(6);
+
     private static final String consolelogURL = Objects.requireNonNull(App.class.getResource(
                     "consolelog.txt")).toString().substring(6);
 
@@ -70,6 +85,11 @@ public class ResourceURLs {
     public static String getArtistListURL() { return artistlistURL; }
     public static String getTrackListURL() { return tracklistURL; }
     public static String getPlaylistsURL() { return playlistsURL; }
+    public static String getPlaylistEntriesURL() { return playlistentriesURL; }
+    public static String getLibraryURL() { return libraryURL; }
+    public static String getLibraryJournalURL() { return libraryjournalURL; }
+    public static String getFingerprintsURL() { return fingerprintsURL; }
+    public static String getScanCheckpointURL() { return scancheckpointURL; }
     public static String getConsolelogURL() { return consolelogURL; }
     // Image urls
     public static String getAutoplayiconURL() { return autoplayiconURL; }
@@ -0,0 +1,113 @@
+/**
+ *      Author: Ian Wallace copyright 2022 all rights reserved.
+ *      Application: MusicPlayer
+ *      Class: ScanCheckpoint.java
+ *      Notes: Progress of an unfinished Music Library initialization, written to scancheckpoint.ser
+ *              while the scan runs. Holds every track parsed so far and the directories whose whole
+ *              subtree has been parsed, so that a cancelled or crashed scan can be resumed without
+ *              re-reading those files.
+ *
+ *              scancheckpoint.ser is a log of ScanCheckpoint records, each holding only the tracks and
+ *              directories completed since the record before. Reading it appends the records in order.
+ */
+
+package com.iandw.musicplayerjavafx;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+
+public class ScanCheckpoint implements Serializable {
+    private final String rootDirectoryStr;
+    private final String initializationStr;
+    private long createdMillis;
+    private final HashSet<String> completedDirectories;
+    private final ArrayList<TrackSerializable> trackArrayList;
+    private final ArrayList<AudioProperties> audioPropertiesList;
+
+    /**
+     * ScanCheckpoint - constructor, copies track data so the checkpoint can be written off the scan threads
+     *
+     * @param rootDirectoryStr => Root music directory being scanned
+     * @param initializationStr => "standard" or "recursive"
+     * @param completedDirectories => Directories whose every audio file is in trackList
+     * @param trackList => Tracks parsed so far
+     */
+    public ScanCheckpoint(String rootDirectoryStr, String initializationStr,
+                          Collection<String> completedDirectories, List<TrackMetadata> trackList)
+    {
+        this.rootDirectoryStr = rootDirectoryStr;
+        this.initializationStr = initializationStr;
+        this.createdMillis = System.currentTimeMillis();
+        this.completedDirectories = new HashSet<>(completedDirectories);
+        this.trackArrayList = new ArrayList<>(trackList.size());
+        this.audioPropertiesList = new ArrayList<>(trackList.size());
+
+        // SimpleStringProperty -> String, same as TrackListFileIO
+        for (TrackMetadata trackMetadata : trackList) {
+            trackArrayList.add(new TrackSerializable(
+                    trackMetadata.getArtistNameStr(),
+                    trackMetadata.getTrackFileNameStr(),
+                    trackMetadata.getTrackContainerTypeStr(),
+                    trackMetadata.getTrackTitleStr(),
+                    trackMetadata.getAlbumTitleStr(),
+                    trackMetadata.getTrackGenreStr(),
+                    trackMetadata.getTrackDurationStr(),
+                    trackMetadata.getTrackPathStr(),
+                    trackMetadata.getPlaylistStr()
+            ));
+            audioPropertiesList.add(trackMetadata.getAudioProperties());
+        }
+    }
+
+    /**
+     * append() - adds the directories and tracks of a later record of the same scan
+     *
+     * @param laterCheckpoint => Next record of the checkpoint log
+     */
+    public void append(ScanCheckpoint laterCheckpoint) {
+        createdMillis = laterCheckpoint.createdMillis;
+        completedDirectories.addAll(laterCheckpoint.completedDirectories);
+        trackArrayList.addAll(laterCheckpoint.trackArrayList);
+        audioPropertiesList.addAll(laterCheckpoint.audioPropertiesList);
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          GETTERS
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    public String getRootDirectoryStr() { return rootDirectoryStr; }
+    public String getInitializationStr() { return initializationStr; }
+    public long getCreatedMillis() { return createdMillis; }
+    public HashSet<String> getCompletedDirectories() { return completedDirectories; }
+    public int getTrackCount() { return trackArrayList.size(); }
+
+    // String -> SimpleStringProperty, new TrackMetadata objects on every call
+    public List<TrackMetadata> getTrackList() {
+        List<TrackMetadata> trackList = new ArrayList<>(trackArrayList.size());
+
+        for (int i = 0; i < trackArrayList.size(); i++) {
+            TrackSerializable trackSerializable = trackArrayList.get(i);
+            TrackMetadata trackMetadata = new TrackMetadata(
+                    trackSerializable.getArtistNameStr(),
+                    trackSerializable.getTrackFileNameStr(),
+                    trackSerializable.getTrackContainerTypeStr(),
+                    trackSerializable.getTrackTitleStr(),
+                    trackSerializable.getAlbumTitleStr(),
+                    trackSerializable.getTrackGenreStr(),
+                    trackSerializable.getTrackDurationStr(),
+                    trackSerializable.getTrackPathStr(),
+                    trackSerializable.getPlaylistStr()
+            );
+            trackMetadata.setAudioProperties(audioPropertiesList.get(i));
+            trackList.add(trackMetadata);
+        }
+
+        return trackList;
+    }
+
+}
@@ -7,6 +7,9 @@
 
 package com.iandw.musicplayerjavafx;
 
+import com.iandw.musicplayerjavafx.FileIO.FingerprintFileIO;
+import com.iandw.musicplayerjavafx.FileIO.LibraryJournal;
+import com.iandw.musicplayerjavafx.FileIO.ScanCheckpointFileIO;
 import com.iandw.musicplayerjavafx.Libraries.ListViewLibrary;
 import com.iandw.musicplayerjavafx.Libraries.MusicLibrary;
 import com.iandw.musicplayerjavafx.Libraries.TableViewLibrary;
@@ -14,8 +17,13 @@ import com.iandw.musicplayerjavafx.Utilities.ProgressBarData;
 import com.iandw.musicplayerjavafx.Utilities.UserSettings;
 import com.iandw.musicplayerjavafx.Utilities.Utils;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
@@ -28,6 +36,7 @@ import javafx.scene.control.*;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.input.MouseEvent;
+import javafx.stage.DirectoryChooser;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 import javafx.scene.layout.AnchorPane;
@@ -40,8 +49,14 @@ public class SettingsController extends AnchorPane {
     @FXML
     private Button resetLibrary;
     @FXML
+    private Button rescanLibrary;
+    @FXML
     private Button clearLibrary;
     @FXML
+    private Button resumeScan;
+    @FXML
+    private Button relocateLibrary;
+    @FXML
     private ComboBox<String> themesComboBox;
     @FXML
     private Label rootDirectoryLabel;
@@ -89,6 +104,7 @@ public class SettingsController extends AnchorPane {
     {
         rootDirectoryLabel.setText(directoryLabel);
         themesLabel.setText("Music Player Appearance.");
+        resumeScan.setDisable(!ScanCheckpointFileIO.hasCheckpoint());
 
         // Initialize ComboBox
         String currentTheme = userSettings.getThemeFileNameString();
@@ -164,6 +180,8 @@ public class SettingsController extends AnchorPane {
      *                          MUSIC LIBRARY INITIALIZATION =>
      *                              'Music Folder' BUTTON
      *                              'Reset Library' BUTTON
+     *                              'Rescan' BUTTON
+ *                              'Resume Scan' BUTTON
      *
      * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
 
@@ -185,6 +203,11 @@ public class SettingsController extends AnchorPane {
 
     @FXML
     public void resetLibraryClicked(MouseEvent mouseClick) throws IOException {
+        if (musicLibrary.isScanning()) {
+            System.out.println("Music Library scan already running.");
+            return;
+        }
+
         Stage stage = (Stage) anchorPane.getScene().getWindow();
         stage.setAlwaysOnTop(false);
 
@@ -204,6 +227,9 @@ public class SettingsController extends AnchorPane {
             // Re-initialize with new metadata from new root directory
             musicLibrary.clearMusicLibrary();
 
+            // Stream tracks into the Artist List and Table View as they are parsed
+            musicLibrary.setOnTracksPublished(this::streamTracks);
+
             // Holds data for progressbar to update to
             ProgressBarData progressBarData = new ProgressBarData(userSettings.getRootMusicDirectoryString());
 
@@ -279,15 +305,297 @@ public class SettingsController extends AnchorPane {
         }
     }
 
+    @FXML
+    public void rescanLibraryClicked(MouseEvent mouseClick) throws IOException {
+        if (musicLibrary.isScanning()) {
+            System.out.println("Music Library scan already running.");
+            return;
+        }
+
+        Stage stage = (Stage) anchorPane.getScene().getWindow();
+        System.out.println("Rescanning Music Library.");
+
+        // Unchanged files keep their current TrackMetadata objects and user edits
+        final ObservableList<TrackMetadata> currentTrackList =
+                FXCollections.observableArrayList(tableViewLibrary.getTrackObservableList());
+
+        // Detach the views from MusicLibrary lists before they are cleared for the rescan
+        listViewLibrary.setArtistObservableList(FXCollections.observableArrayList(listViewLibrary.getArtistObservableList()));
+        artistListView.setItems(listViewLibrary.getArtistObservableList());
+        trackTableView.setItems(tableViewLibrary.getTrackObservableList());
+
+        musicLibrary.clearMusicLibrary();
+
+        // Holds data for progressbar to update to
+        ProgressBarData progressBarData = new ProgressBarData(userSettings.getRootMusicDirectoryString());
+
+        // Run incrementalRescan on separate thread to free up Application Thread
+        // for ProgressBarController
+        Task<Void> task = new Task<>() {
+            @Override
+            protected Void call() throws Exception {
+                try {
+                    musicLibrary.incrementalRescan(progressBarData, currentTrackList);
+
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new InterruptedIOException();
+                    }
+
+                    Platform.runLater(() -> reloadLibraries());
+                    System.out.println("Finished rescanning.");
+
+                } catch (InterruptedIOException consumed) {
+                    System.out.println("Cancelled Library Rescan.");
+                }
+
+                return null;
+            }
+        };
+
+        // Open progress bar window
+        ProgressBarController progressBarController = new ProgressBarController(progressBarData);
+        progressBarController.showProgressBarWindow();
+        stage.setAlwaysOnTop(false);
+
+        // Cancel task thread on Cancel Button clicked, current library is left untouched
+        progressBarData.addPropertyChangeListener(evt -> {
+            if (evt.getPropertyName().equals("continueInitialization")) {
+                boolean continueInitialization = (boolean) evt.getNewValue();
+                Platform.runLater(() -> {
+                    if (!continueInitialization) {
+                        task.cancel();
+                        task.setOnCancelled(null);
+                        stage.setAlwaysOnTop(true);
+                    }
+                });
+            }
+        });
+
+        task.setOnSucceeded(evt -> {
+            progressBarController.close();
+            stage.setAlwaysOnTop(true);
+        });
+
+        task.setOnFailed(evt -> {
+            System.out.println("Rescan Failed.");
+            progressBarController.close();
+            stage.setAlwaysOnTop(true);
+
+            Alert errorAlert = new Alert(Alert.AlertType.ERROR);
+            errorAlert.initOwner(stage);
+            errorAlert.setTitle("Error");
+            errorAlert.setHeaderText("Rescan Failed");
+            errorAlert.setContentText("Invalid file type or folder hierarchy.\nCheck console log for details.");
+            errorAlert.showAndWait();
+        });
+
+        // Start incrementalRescan() thread
+        Thread thread = new Thread(task);
+        thread.start();
+    }
+
+    @FXML
+    public void resumeScanClicked(MouseEvent mouseClick) throws IOException {
+        if (musicLibrary.isScanning()) {
+            System.out.println("Music Library scan already running.");
+            return;
+        }
+
+        // Read before the serialized files are cleared
+        final ScanCheckpoint scanCheckpoint = ScanCheckpointFileIO.inputCheckpoint();
+
+        if (scanCheckpoint == null || !Files.isDirectory(Paths.get(scanCheckpoint.getRootDirectoryStr()))) {
+            System.out.println("No scan to resume.");
+            resumeScan.setDisable(true);
+            return;
+        }
+
+        Stage stage = (Stage) anchorPane.getScene().getWindow();
+        stage.setAlwaysOnTop(false);
+
+        Alert resumeAlert = new Alert(Alert.AlertType.CONFIRMATION);
+        resumeAlert.setTitle("Resume Scan");
+        resumeAlert.setHeaderText(String.format("Resume %s initialization of\n%s\n(%d tracks already read)?",
+                scanCheckpoint.getInitializationStr(), scanCheckpoint.getRootDirectoryStr(), scanCheckpoint.getTrackCount()));
+        resumeAlert.setContentText("The current library will be replaced.");
+
+        if (resumeAlert.showAndWait().get() != ButtonType.OK) {
+            stage.setAlwaysOnTop(true);
+            return;
+        }
+
+        System.out.println("Resuming Music Library initialization.");
+
+        userSettings.setRootMusicDirectoryString(scanCheckpoint.getRootDirectoryStr());
+        userSettings.setInitializationString(scanCheckpoint.getInitializationStr());
+        rootDirectoryLabel.setText(scanCheckpoint.getRootDirectoryStr());
+
+        // Clear current observable lists, resumeInitialization() clears the list files
+        tableViewLibrary.clearObservableList();
+        listViewLibrary.clearObservableLists();
+        musicLibrary.clearMusicLibrary();
+        musicLibrary.setRootMusicDirectoryString(scanCheckpoint.getRootDirectoryStr());
+
+        // Stream tracks into the Artist List and Table View as they are parsed
+        musicLibrary.setOnTracksPublished(this::streamTracks);
+
+        // Holds data for progressbar to update to
+        ProgressBarData progressBarData = new ProgressBarData(userSettings.getRootMusicDirectoryString());
+
+        // Run resumeInitialization on separate thread to free up Application Thread
+        // for ProgressBarController
+        Task<Void> task = new Task<>() {
+            @Override
+            protected Void call() throws Exception {
+                try {
+                    musicLibrary.resumeInitialization(progressBarData, scanCheckpoint);
+
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new InterruptedIOException();
+                    }
+
+                    Platform.runLater(() -> loadLibraries());
+                    System.out.println("Finished initializing.");
+
+                } catch (InterruptedIOException consumed) {
+                    System.out.println("Cancelled Library Initialization.");
+                }
+
+                return null;
+            }
+        };
+
+        // Open progress bar window
+        ProgressBarController progressBarController = new ProgressBarController(progressBarData);
+        progressBarController.showProgressBarWindow();
+
+        // Cancel task thread on Cancel Button clicked, the scan can be resumed again
+        progressBarData.addPropertyChangeListener(evt -> {
+            if (evt.getPropertyName().equals("continueInitialization")) {
+                boolean continueInitialization = (boolean) evt.getNewValue();
+                Platform.runLater(() -> {
+                    if (!continueInitialization) {
+                        task.cancel();
+                        task.setOnCancelled(null);
+                        stage.setAlwaysOnTop(true);
+                    }
+                });
+            }
+        });
+
+        task.setOnSucceeded(evt -> {
+            progressBarController.close();
+            resumeScan.setDisable(true);
+            stage.setAlwaysOnTop(true);
+        });
+
+        task.setOnFailed(evt -> {
+            System.out.println("Initialization Failed.");
+            progressBarController.close();
+            stage.setAlwaysOnTop(true);
+
+            Alert errorAlert = new Alert(Alert.AlertType.ERROR);
+            errorAlert.initOwner(stage);
+            errorAlert.setTitle("Error");
+            errorAlert.setHeaderText("Initialization Failed");
+            errorAlert.setContentText("Invalid file type or folder hierarchy.\nCheck console log for details.");
+            errorAlert.showAndWait();
+        });
+
+        // Start resumeInitialization() thread
+        Thread thread = new Thread(task);
+        thread.start();
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          RELOCATE LIBRARY BUTTON
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    // The Music Folder was moved or renamed, tracks and playlists are pointed at the new folder without a rescan
+    @FXML
+    public void relocateLibraryClicked(MouseEvent mouseClick) {
+        if (musicLibrary.isScanning()) {
+            System.out.println("Music Library scan already running.");
+            return;
+        }
+
+        Stage stage = (Stage) anchorPane.getScene().getWindow();
+        stage.setAlwaysOnTop(false);
+
+        DirectoryChooser rootMusicDirectoryChooser = new DirectoryChooser();
+        rootMusicDirectoryChooser.setTitle("Select moved Music Folder");
+        File file = rootMusicDirectoryChooser.showDialog(stage);
+
+        if (file != null && userSettings.getRootMusicDirectoryString() != null) {
+            final String directoryStr = withSeparator(userSettings.getRootMusicDirectoryString());
+            final String newDirectoryStr = withSeparator(file.toPath().toString());
+
+            if (tableViewLibrary.moveDirectory(directoryStr, newDirectoryStr)) {
+                System.out.printf("Relocating Music Library from %s to %s%n", directoryStr, newDirectoryStr);
+                listViewLibrary.getPlaylistLibrary().moveDirectory(directoryStr, newDirectoryStr);
+
+                userSettings.setRootMusicDirectoryString(file.toPath().toString());
+                musicLibrary.setRootMusicDirectoryString(file.toPath().toString());
+                rootDirectoryLabel.setText(file.toPath().toString());
+
+                // Fingerprints are keyed by path, rewritten so the next rescan still finds unchanged files
+                final List<TrackMetadata> trackList = tableViewLibrary.snapshotTracks();
+                Thread thread = new Thread(() -> FingerprintFileIO.outputFingerprintMap(trackList));
+                thread.setDaemon(true);
+                thread.start();
+
+                trackTableView.refresh();
+                LibraryJournal.compact();
+
+            } else {
+                System.out.printf("Music Library not relocated, %s is not the Music Folder of any track or %s is already in use%n",
+                        directoryStr, newDirectoryStr);
+            }
+        }
+
+        stage.setAlwaysOnTop(true);
+    }
+
+    private static String withSeparator(String directoryStr) {
+        return directoryStr.endsWith("/") || directoryStr.endsWith("\\") ? directoryStr : directoryStr + File.separator;
+    }
+
+    // Replaces current library data with incremental rescan results, playlists are kept
+    private void reloadLibraries() {
+        listViewLibrary.setArtistObservableList(FXCollections.observableArrayList(musicLibrary.getArtistNameObservableList()));
+        tableViewLibrary.replaceTrackObservableList(musicLibrary.getTrackObservableList());
+
+        artistListView.setItems(listViewLibrary.getArtistObservableList());
+        trackTableView.setItems(tableViewLibrary.getTrackObservableList());
+
+        trackTableView.refresh();
+        artistListView.refresh();
+
+        // Write files on close
+        listViewLibrary.setOutputListsOnClose();
+
+        // Write the rescanned library now rather than on close
+        LibraryJournal.compact();
+    }
+
+    // JavaFX Application Thread, called with each batch of tracks while initializing
+    private void streamTracks(List<TrackMetadata> trackBatch) {
+        tableViewLibrary.addTracks(trackBatch);
+        listViewLibrary.addArtists(trackBatch.stream().map(TrackMetadata::getArtistNameStr).toList());
+    }
+
     private void loadLibraries() {
-        // Set Library object ObservableList Arrays from Music Library TrackMetadata objects arrays
-        listViewLibrary.setArtistObservableList(musicLibrary.getArtistNameObservableList());
-        tableViewLibrary.setTrackObservableList(musicLibrary.getTrackObservableList());
+        // Set Library object ObservableList Arrays from copies of the Music Library arrays,
+        // replaces the tracks streamed in during initialization
+        listViewLibrary.setArtistObservableList(FXCollections.observableArrayList(musicLibrary.getArtistNameObservableList()));
+        tableViewLibrary.replaceTrackObservableList(musicLibrary.getTrackObservableList());
 
         // Set Listview and Tableview
         artistListView.setItems(listViewLibrary.getArtistObservableList());
         playlistListView.setItems(listViewLibrary.getPlaylistObservableList());
-        trackTableView.setItems(musicLibrary.getTrackObservableList());
+        trackTableView.setItems(tableViewLibrary.getTrackObservableList());
 
         trackTableView.refresh();
         artistListView.refresh();
@@ -296,6 +604,9 @@ public class SettingsController extends AnchorPane {
         // Write files on close
         listViewLibrary.setOutputListsOnClose();
         tableViewLibrary.setOutputTrackListOnClose();
+
+        // Write the new library now rather than on close
+        LibraryJournal.compact();
     }
 
     /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
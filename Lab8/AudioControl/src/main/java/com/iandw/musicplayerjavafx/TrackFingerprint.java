@@ -0,0 +1,83 @@
+/**
+ *      Author: Ian Wallace copyright 2022 all rights reserved.
+ *      Application: MusicPlayer
+ *      Class: TrackFingerprint.java
+ *      Notes: Holds the file system attributes of an audio file at the time it was parsed.
+ *              Written to fingerprints.ser after every Music Library scan so that an incremental
+ *              rescan only re-reads tags for audio files that are new or have changed.
+ */
+
+package com.iandw.musicplayerjavafx;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+
+public class TrackFingerprint implements Serializable {
+    private final String trackPathStr;
+    private final long fileSize;
+    private final long lastModified;
+    private final String fileKey;
+
+    /**
+     * TrackFingerprint - constructor
+     *
+     * @param trackPathStr => File path of audio file
+     * @param fileSize => File size in bytes
+     * @param lastModified => Last modified time in milliseconds
+     * @param fileKey => inode/file key String from BasicFileAttributes, null if not supported by the file system
+     */
+    public TrackFingerprint(String trackPathStr, long fileSize, long lastModified, String fileKey) {
+        this.trackPathStr = trackPathStr;
+        this.fileSize = fileSize;
+        this.lastModified = lastModified;
+        this.fileKey = fileKey;
+    }
+
+    /**
+     * of() - reads the current attributes of an audio file
+     * @param trackPath => Audio file path
+     * @return => TrackFingerprint, or null if the file can no longer be read
+     */
+    public static TrackFingerprint of(Path trackPath) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(trackPath, BasicFileAttributes.class);
+            String fileKey = attributes.fileKey() == null ? null : attributes.fileKey().toString();
+
+            return new TrackFingerprint(trackPath.toAbsolutePath().toString(), attributes.size(),
+                    attributes.lastModifiedTime().toMillis(), fileKey);
+
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) { return true; }
+        if (!(object instanceof TrackFingerprint other)) { return false; }
+
+        return fileSize == other.fileSize && lastModified == other.lastModified &&
+                Objects.equals(trackPathStr, other.trackPathStr) && Objects.equals(fileKey, other.fileKey);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(trackPathStr, fileSize, lastModified, fileKey);
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          GETTERS
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    public String getTrackPathStr() { return trackPathStr; }
+    public long getFileSize() { return fileSize; }
+    public long getLastModified() { return lastModified; }
+    public String getFileKey() { return fileKey; }
+}
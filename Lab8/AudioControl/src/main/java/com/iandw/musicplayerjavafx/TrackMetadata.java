@@ -4,22 +4,36 @@
  *      Class: TrackMetadata.java
  *      Notes: Holds individual audio file Metadata for Application to access.
  *          Used in Observable List Arrays.
+ *
+ *          The track path is held as a TrackPathTable directory id plus the file name, which is the
+ *          same String as trackFileNameStr when they match. getTrackPathStr() puts it back together.
+ *
+ *          Fields are plain Strings, the Table View columns read them through cell value callbacks
+ *          (see MusicPlayerController) so properties are only made for the cells shown. Tracks of the
+ *          library are rows of TrackStore, a TrackMetadata is made for a row as it is asked for
+ *          (see LazyTrackList).
+ *
+ *          trackId is given by TrackStore when the track is first added to the library and is kept in
+ *          library.bin, 0 until then. Numeric fields (duration, bitrate...) are held as AudioProperties.
  */
 
 package com.iandw.musicplayerjavafx;
 
-import javafx.beans.property.SimpleStringProperty;
+import com.iandw.musicplayerjavafx.Utilities.TrackPathTable;
 
 public class TrackMetadata {
-    private SimpleStringProperty artistNameStr;
-    private final SimpleStringProperty trackFileNameStr;
-    private final SimpleStringProperty trackContainerTypeStr;
-    private SimpleStringProperty trackTitleStr;
-    private SimpleStringProperty albumTitleStr;
-    private final SimpleStringProperty trackDurationStr;
-    private SimpleStringProperty trackGenreStr;
-    private SimpleStringProperty trackPathStr;
-    private SimpleStringProperty playlistStr;
+    private String artistNameStr;
+    private final String trackFileNameStr;
+    private final String trackContainerTypeStr;
+    private String trackTitleStr;
+    private String albumTitleStr;
+    private final String trackDurationStr;
+    private String trackGenreStr;
+    private int trackDirectoryId;
+    private String trackPathNameStr;
+    private String playlistStr;
+    private int trackId;
+    private AudioProperties audioProperties = AudioProperties.UNKNOWN;
 
     /**
      * TrackMetadata - constructor, a new object is made after every audio file is processed in
@@ -44,15 +58,15 @@ public class TrackMetadata {
                          String trackTitleStr,    String albumTitleStr,    String trackGenreStr,
                          String trackDurationStr, String trackPathStr,     String playlistStr)
     {
-        this.artistNameStr = new SimpleStringProperty(artistNameStr);
-        this.trackFileNameStr = new SimpleStringProperty(trackFileNameStr);
-        this.trackContainerTypeStr = new SimpleStringProperty(trackContainerTypeStr);
-        this.trackTitleStr = new SimpleStringProperty(trackTitleStr);
-        this.albumTitleStr = new SimpleStringProperty(albumTitleStr);
-        this.trackGenreStr = new SimpleStringProperty(trackGenreStr);
-        this.trackDurationStr = new SimpleStringProperty(trackDurationStr);
-        this.trackPathStr = new SimpleStringProperty(trackPathStr);
-        this.playlistStr = new SimpleStringProperty(playlistStr);
+        this.artistNameStr = artistNameStr;
+        this.trackFileNameStr = trackFileNameStr;
+        this.trackContainerTypeStr = trackContainerTypeStr;
+        this.trackTitleStr = trackTitleStr;
+        this.albumTitleStr = albumTitleStr;
+        this.trackGenreStr = trackGenreStr;
+        this.trackDurationStr = trackDurationStr;
+        setTrackPath(trackPathStr);
+        this.playlistStr = playlistStr;
     }
 
     /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
@@ -61,20 +75,46 @@ public class TrackMetadata {
      *
      * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
 
-    public String getArtistNameStr() { return artistNameStr.get(); }
-    public String getTrackFileNameStr() { return trackFileNameStr.get(); }
-    public String getTrackContainerTypeStr() { return trackContainerTypeStr.get(); }
-    public String getTrackTitleStr() { return trackTitleStr.get(); }
-    public String getAlbumTitleStr() { return albumTitleStr.get(); }
-    public String getTrackDurationStr() {return trackDurationStr.get(); }
-    public String getTrackGenreStr() { return trackGenreStr.get(); }
-    public String getTrackPathStr() { return trackPathStr.get(); }
-    public String getPlaylistStr() { return playlistStr.get(); }
+    public String getArtistNameStr() { return artistNameStr; }
+    public String getTrackFileNameStr() { return trackFileNameStr; }
+    public String getTrackContainerTypeStr() { return trackContainerTypeStr; }
+    public String getTrackTitleStr() { return trackTitleStr; }
+    public String getAlbumTitleStr() { return albumTitleStr; }
+    public String getTrackDurationStr() {return trackDurationStr; }
+    public String getTrackGenreStr() { return trackGenreStr; }
+    public String getTrackPathStr() {
+        return trackPathNameStr == null ? null : TrackPathTable.getDirectory(trackDirectoryId) + trackPathNameStr;
+    }
+    public int getTrackDirectoryId() { return trackDirectoryId; }
+    public String getTrackPathNameStr() { return trackPathNameStr; }
+    public String getPlaylistStr() { return playlistStr; }
+    public int getTrackId() { return trackId; }
+    public AudioProperties getAudioProperties() { return audioProperties; }
+    public int getDurationMillis() { return audioProperties.durationMillis(); }
+
+    public void setArtistNameStr(String artistNameStr) { this.artistNameStr = artistNameStr; }
+    public void setTrackTitleStr(String trackTitleStr) { this.trackTitleStr = trackTitleStr; }
+    public void setAlbumTitleStr(String albumTitleStr) { this.albumTitleStr = albumTitleStr; }
+    public void setTrackGenreStr(String trackGenreStr) { this.trackGenreStr = trackGenreStr; }
+    public void setPlaylistStr(String playlistStr) { this.playlistStr = playlistStr; }
+    public void setTrackId(int trackId) { this.trackId = trackId; }
+    public void setAudioProperties(AudioProperties audioProperties) {
+        this.audioProperties = audioProperties == null ? AudioProperties.UNKNOWN : audioProperties;
+    }
+    public void setTrackPathStr(String trackPathStr) { setTrackPath(trackPathStr); }
 
-    public void setArtistNameStr(String artistNameStr) { this.artistNameStr = new SimpleStringProperty(artistNameStr); }
-    public void setTrackTitleStr(String trackTitleStr) { this.trackTitleStr = new SimpleStringProperty(trackTitleStr); }
-    public void setAlbumTitleStr(String albumTitleStr) { this.albumTitleStr = new SimpleStringProperty(albumTitleStr); }
-    public void setTrackGenreStr(String trackGenreStr) { this.trackGenreStr = new SimpleStringProperty(trackGenreStr); }
-    public void setPlaylistStr(String playlistStr) { this.playlistStr = new SimpleStringProperty(playlistStr); }
-    public void setTrackPathStr(String trackPathStr) { this.trackPathStr = new SimpleStringProperty(trackPathStr); }
+    // Not overridable, the constructor calls it. The file name is shared when it is also the path name.
+    private void setTrackPath(String trackPathStr) {
+        if (trackPathStr == null) {
+            trackDirectoryId = 0;
+            trackPathNameStr = null;
+            return;
+        }
+
+        final int nameIndex = TrackPathTable.nameIndex(trackPathStr);
+        final String nameStr = trackPathStr.substring(nameIndex);
+
+        trackDirectoryId = TrackPathTable.internDirectory(trackPathStr.substring(0, nameIndex));
+        trackPathNameStr = nameStr.equals(trackFileNameStr) ? trackFileNameStr : nameStr;
+    }
 }
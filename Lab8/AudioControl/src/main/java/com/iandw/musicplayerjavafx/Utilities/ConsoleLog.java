@@ -0,0 +1,166 @@
+/**
+ *      Author: Ian Wallace, copyright 2022 all rights reserved.
+ *      Application: MusicPlayer
+ *      Class: ConsoleLog.java
+ *      Notes: Console log of the App, shown by Help > Console Log and the bug report.
+ *
+ *              start() redirects System.out here, each line printed is logged at INFO. Lines below the
+ *              level in settings.json ("logLevel") are dropped before they are formatted, per file detail
+ *              of a scan (tag dumps) is logged at DEBUG.
+ *
+ *              Only the last tailChars characters are kept in memory, older lines are dropped from the
+ *              tail as new ones come in. Every line logged is also queued for consolelog.txt, written on
+ *              the ConsoleLogFileIO thread.
+ */
+
+package com.iandw.musicplayerjavafx.Utilities;
+
+import com.iandw.musicplayerjavafx.FileIO.ConsoleLogFileIO;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.Locale;
+
+public final class ConsoleLog {
+    private static final int tailChars = 256 * 1024;
+    private static final int maxLineBytes = 64 * 1024;
+    private static final DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm:ss.SSS");
+
+    public enum Level { DEBUG, INFO, WARN, ERROR }
+    private static final String[] levelLabels = { "DEBUG", "INFO ", "WARN ", "ERROR" };
+
+    private static final ArrayDeque<String> tail = new ArrayDeque<>();
+    private static int tailLength;
+    private static volatile Level level = Level.INFO;
+
+    private ConsoleLog() {}
+
+    /**
+     * start() - opens consolelog.txt and sends System.out to the log, called once on start up
+     */
+    public static void start() {
+        ConsoleLogFileIO.open();
+        System.setOut(new PrintStream(new LineOutputStream(), true, StandardCharsets.UTF_8));
+    }
+
+    // Writes the lines not in consolelog.txt yet, called on exit
+    public static void close() {
+        ConsoleLogFileIO.close();
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          LOGGING
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    // Arguments are only formatted if the level is logged, i.e. a TagFields dump at DEBUG
+    public static void debug(String format, Object... args) { log(Level.DEBUG, format, args); }
+    public static void info(String format, Object... args) { log(Level.INFO, format, args); }
+    public static void warn(String format, Object... args) { log(Level.WARN, format, args); }
+    public static void error(String format, Object... args) { log(Level.ERROR, format, args); }
+
+    public static void log(Level lineLevel, String format, Object... args) {
+        if (isEnabled(lineLevel)) {
+            append(lineLevel, args.length == 0 ? format : String.format(format, args));
+        }
+    }
+
+    public static boolean isEnabled(Level lineLevel) { return lineLevel.compareTo(level) >= 0; }
+
+    // One entry per line so a message spanning lines keeps its prefix on each
+    private static void append(Level lineLevel, String message) {
+        final String prefix = LocalTime.now().format(timeFormatter) + " " + levelLabels[lineLevel.ordinal()] + " ";
+
+        for (String line : message.split("\\R")) {
+            final String logLine = prefix + line;
+
+            appendTail(logLine);
+            ConsoleLogFileIO.append(logLine);
+        }
+    }
+
+    private static synchronized void appendTail(String logLine) {
+        tail.addLast(logLine);
+        tailLength += logLine.length() + 1;
+
+        while (tailLength > tailChars && tail.size() > 1) {
+            tailLength -= tail.removeFirst().length() + 1;
+        }
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          GETTERS / SETTERS
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    // Last lines logged, at most tailChars characters
+    public static synchronized String getTail() {
+        StringBuilder tailBuilder = new StringBuilder(tailLength);
+
+        for (String logLine : tail) {
+            tailBuilder.append(logLine).append('\n');
+        }
+
+        return tailBuilder.toString();
+    }
+
+    /**
+     * setLevel() - lowest level logged from now on
+     *
+     * @param levelString => "debug", "info", "warn" or "error" from settings.json, INFO if not one of them
+     */
+    public static void setLevel(String levelString) {
+        try {
+            level = Level.valueOf(levelString.toUpperCase(Locale.ROOT));
+
+        } catch (IllegalArgumentException | NullPointerException e) {
+            level = Level.INFO;
+        }
+    }
+
+    public static Level getLevel() { return level; }
+
+    // System.out, complete lines are logged at INFO
+    private static final class LineOutputStream extends OutputStream {
+        private final ByteArrayOutputStream lineBytes = new ByteArrayOutputStream();
+
+        @Override
+        public synchronized void write(int b) {
+            if (b == '\n') {
+                flushLine();
+                return;
+            }
+
+            lineBytes.write(b);
+
+            if (lineBytes.size() >= maxLineBytes) {
+                flushLine();
+            }
+        }
+
+        @Override
+        public synchronized void write(byte[] bytes, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                write(bytes[i]);
+            }
+        }
+
+        private void flushLine() {
+            String line = lineBytes.toString(StandardCharsets.UTF_8);
+            lineBytes.reset();
+
+            if (line.endsWith("\r")) {
+                line = line.substring(0, line.length() - 1);
+            }
+
+            log(Level.INFO, line);
+        }
+    }
+}
@@ -205,4 +205,5 @@ public class ID3v1Genres {
     };
 
     public static String getGenre(int index) { return genres[index]; }
+    public static int getGenreCount() { return genres.length; }
 }
@@ -3,9 +3,14 @@
  *      Application: MusicPlayer
  *      Class: ProgressBarData.java
  *      Notes: Holds variable data for ProgressBarController. Provides the user with a
- *          percentage of audio files initialized and the file paths being processed.
- *          Also bridges the ProgressBarController with the MusicLibrary via a
- *          PropertyChangeListener.
+ *          percentage of audio files initialized, throughput, time remaining and the file
+ *          paths being processed. Also bridges the ProgressBarController with the MusicLibrary
+ *          via a PropertyChangeListener for the Cancel Button.
+ *
+ *          Files are counted during the scan walk itself, there is no separate counting pass.
+ *          Until the walk is finished the total is estimated from how many of the root folder's
+ *          entries have been walked. Scan threads only update counters, ProgressBarController
+ *          reads a Snapshot on its own refresh timer.
  */
 
 package com.iandw.musicplayerjavafx.Utilities;
@@ -14,53 +19,142 @@ import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
 public class ProgressBarData implements java.io.Serializable {
-    private double progressDouble;
-    private String trackPathStr;
-    private boolean continueInitialization;
     private final PropertyChangeSupport propertySupport;
-    private final double fileAmount;
-    private double fileIndex;
+    private final AtomicLong discoveredFiles;
+    private final AtomicLong discoveredBytes;
+    private final AtomicLong processedFiles;
+    private final AtomicLong processedBytes;
+    private final AtomicLong walkedRootEntries;
+    private final long rootEntryCount;
+    private final long startNanos;
+    private volatile String trackPathStr;
+    private volatile boolean walkFinished;
+    private boolean continueInitialization;
 
-    public ProgressBarData(String rootDirectory) throws IOException {
+    public ProgressBarData(String rootDirectory) {
         propertySupport = new PropertyChangeSupport(this);
+        discoveredFiles = new AtomicLong();
+        discoveredBytes = new AtomicLong();
+        processedFiles = new AtomicLong();
+        processedBytes = new AtomicLong();
+        walkedRootEntries = new AtomicLong();
+        rootEntryCount = countRootEntries(rootDirectory);
+        startNanos = System.nanoTime();
+        trackPathStr = "";
+        continueInitialization = true;
+    }
 
-        // Get size of directory
-        fileAmount = (double) Files.find(Paths.get(rootDirectory),
-                3, (path, attributes) -> attributes.isRegularFile()).count() - 1;
+    // Single directory listing, not a walk of the library
+    private static long countRootEntries(String rootDirectory) {
+        try (Stream<Path> rootEntries = Files.list(Paths.get(rootDirectory))) {
+            return rootEntries.count();
 
-        System.out.println("Total Files: " + fileAmount);
-        fileIndex = 0.0;
-        progressDouble = 0.0;
-        continueInitialization = true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.out.println(e.getMessage());
+        }
+
+        return 0;
     }
 
-    // Increments every time a file is processed in the innermost folder
-    public void increaseProgress(String trackPathStr) {
-        fileIndex++;
-        double percent = fileIndex / fileAmount;
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          SCAN THREADS
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
 
-        if (percent < 0.0) { percent = 0.0; }
-        if (percent > 1.0) { percent = 1.0; }
+    // Walker, called once per supported audio file found
+    public void fileDiscovered(long fileBytes) {
+        discoveredFiles.incrementAndGet();
+        discoveredBytes.addAndGet(fileBytes);
+    }
+
+    // Walker, called after each entry of the root directory has been walked
+    public void rootEntryWalked() { walkedRootEntries.incrementAndGet(); }
+
+    // Walker, called once every file has been discovered
+    public void walkFinished() { walkFinished = true; }
 
-        setProgressDouble(percent);
-        setTrackPathStr(trackPathStr);
+    // Called by every scan worker thread once a file is processed
+    public void increaseProgress(String trackPathStr, long fileBytes) {
+        processedFiles.incrementAndGet();
+        processedBytes.addAndGet(fileBytes);
+        this.trackPathStr = trackPathStr;
     }
 
-    public void setTrackPathStr(String newValue) {
-        String oldValue = trackPathStr;
-        trackPathStr = newValue;
-        propertySupport.firePropertyChange("trackPathStr", oldValue, newValue);
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          SNAPSHOT
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    public Snapshot snapshot() {
+        final long discovered = discoveredFiles.get();
+        final long walked = walkedRootEntries.get();
+        long estimatedTotalFiles = -1;
+
+        if (walkFinished) {
+            estimatedTotalFiles = discovered;
+
+        } else if (walked > 0 && rootEntryCount > 0) {
+            estimatedTotalFiles = Math.max(discovered, discovered * rootEntryCount / walked);
+        }
+
+        return new Snapshot(processedFiles.get(), processedBytes.get(), discovered, estimatedTotalFiles,
+                walkFinished, (System.nanoTime() - startNanos) / 1e9, trackPathStr);
     }
 
-    public void setProgressDouble(double newValue) {
-        double oldValue = progressDouble;
-        progressDouble = newValue;
-        propertySupport.firePropertyChange("progressDouble", oldValue, newValue);
+    /**
+     * Snapshot - progress at one point in time, read on the JavaFX Application Thread
+     *
+     * @param processedFiles => Files processed by the scan workers
+     * @param processedBytes => Size of processed files
+     * @param discoveredFiles => Files found by the walker so far
+     * @param estimatedTotalFiles => Files in the library, estimated until the walk is finished, -1 if unknown
+     * @param walkFinished => True once estimatedTotalFiles is exact
+     * @param elapsedSeconds => Time since the scan started
+     * @param trackPathStr => Last file processed
+     */
+    public record Snapshot(long processedFiles, long processedBytes, long discoveredFiles, long estimatedTotalFiles,
+                           boolean walkFinished, double elapsedSeconds, String trackPathStr) {
+
+        // 0.0 to 1.0, or -1 while the total is unknown
+        public double progress() {
+            if (estimatedTotalFiles <= 0) {
+                return walkFinished ? 1.0 : -1.0;
+            }
+
+            return Math.min(1.0, (double) processedFiles / estimatedTotalFiles);
+        }
+
+        public double filesPerSecond() { return elapsedSeconds > 0 ? processedFiles / elapsedSeconds : 0; }
+
+        public double bytesPerSecond() { return elapsedSeconds > 0 ? processedBytes / elapsedSeconds : 0; }
+
+        // Seconds remaining at the current rate, -1 while unknown
+        public int etaSeconds() {
+            final double filesPerSecond = filesPerSecond();
+
+            if (estimatedTotalFiles < 0 || filesPerSecond <= 0) {
+                return -1;
+            }
+
+            return (int) Math.ceil(Math.max(0, estimatedTotalFiles - processedFiles) / filesPerSecond);
+        }
     }
 
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          CANCEL
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
     public void setContinueInitialization(boolean newValue) {
         boolean oldValue = continueInitialization;
         continueInitialization = newValue;
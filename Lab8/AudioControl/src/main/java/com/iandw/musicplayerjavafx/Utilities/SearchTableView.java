@@ -3,75 +3,123 @@
  *      Application: MusicPlayer
  *      Class: SearchTableView.java
  *      Notes: Contains search logic for List View and Text Field objects.
+ *
+ *              Search field text is looked up on the single "Search" thread once no key has been typed for
+ *              debounceMillis (see TableViewLibrary.searchTracks()). Each keystroke starts a new search
+ *              generation, a search of an older generation stops and its result is dropped.
+ *
+ *              In the "fuzzy" search mode (settings.json "searchMode") the matching tracks are followed by
+ *              the tracks whose words are a few typos or accents away from the search text, fewest first.
+ *              The "exact" search mode only finds the search text itself.
  */
 
 package com.iandw.musicplayerjavafx.Utilities;
 
+import com.iandw.musicplayerjavafx.Libraries.TableViewLibrary;
 import com.iandw.musicplayerjavafx.TrackMetadata;
 
-import java.util.function.Predicate;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import javafx.application.Platform;
 
 public class SearchTableView {
-    private String artistNameString;
-    private String playlistTitleString;
+    // Fields the search field text is looked for in. Playlists are not one of them, a track's playlists
+    // are held by PlaylistLibrary and selected in the PlaylistListView.
+    public static final TrackField[] searchFields = { TrackField.TITLE, TrackField.ALBUM, TrackField.ARTIST,
+            TrackField.GENRE };
+
+    private static final long debounceMillis = 150;
+
+    private final ScheduledThreadPoolExecutor searchExecutor;
+    private ScheduledFuture<?> scheduledSearch;
+    private int searchGeneration;
+    private boolean fuzzySearch = true;
+
+    public SearchTableView() {
+        searchExecutor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "Search");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
 
-    public SearchTableView() {}
+    // "fuzzy" or "exact", see UserSettings
+    public synchronized void setSearchMode(String searchModeString) {
+        fuzzySearch = !"exact".equalsIgnoreCase(searchModeString);
+    }
+
+    public synchronized boolean isFuzzySearch() { return fuzzySearch; }
 
     /**
      * createArtistsListPredicate() - handles trackTableView search for ArtistListView
      * @param artistNameString => Search parameter
      * @return => Boolean, if search parameter is in the Table View Observable List
      */
-    public Predicate<TrackMetadata> createArtistListPredicate(String artistNameString) {
-        this.artistNameString = artistNameString;
-
-        return this::artistsListTrackSearch;
+    public TrackFieldPredicate createArtistListPredicate(String artistNameString) {
+        return TrackFieldPredicate.equalTo(TrackField.ARTIST, artistNameString);
     }
 
-    /**
-     * createPlaylistsListPredicate() - handles trackTableView search for PlaylistListView
-     * @param playlistTitleString => Search parameter
-     * @return => Boolean, if search parameter is in the Table View Observable List
-     */
-    public Predicate<TrackMetadata> createPlaylistListPredicate(String playlistTitleString) {
-        this.playlistTitleString = playlistTitleString;
+    // Check track title, album, artist and genre for searchText matches, any case
+    // PlaylistListView selections are looked up in PlaylistLibrary rather than searched
+    public TrackFieldPredicate createSearchPredicate(String searchText) {
+        if (searchText == null || searchText.isEmpty()) {
+            return new TrackFieldPredicate(value -> true);
+        }
 
-        return this::playlistsListTrackSearch;
+        final String lowerCaseSearchText = searchText.toLowerCase();
+
+        return new TrackFieldPredicate(value -> value.toLowerCase().contains(lowerCaseSearchText), searchFields);
     }
 
-    public Predicate<TrackMetadata> createSearchPredicate(String searchText) {
-        return track -> {
-            if (searchText == null || searchText.isEmpty()) {
-                return true;
+    /**
+     * scheduleSearch() - searches the Music Library once typing pauses, replacing any search not finished
+     *
+     * @param searchText => Search field text, not empty
+     * @param tableViewLibrary => Library searched
+     * @param resultConsumer => Called on the JavaFX Application Thread with the matching tracks, ranked in the fuzzy
+     *                          search mode, unless a newer search or cancelSearch() came first
+     */
+    public synchronized void scheduleSearch(String searchText, TableViewLibrary tableViewLibrary,
+                                            Consumer<List<TrackMetadata>> resultConsumer) {
+        cancelSearch();
+
+        final int generation = searchGeneration;
+        final TrackFieldPredicate searchPredicate = createSearchPredicate(searchText);
+        final boolean fuzzy = fuzzySearch;
+
+        scheduledSearch = searchExecutor.schedule(() -> {
+            try {
+                List<TrackMetadata> tracks = tableViewLibrary.searchTracks(searchText, searchPredicate, fuzzy,
+                        () -> !isCurrentSearch(generation));
+
+                if (tracks != null) {
+                    Platform.runLater(() -> {
+                        if (isCurrentSearch(generation)) {
+                            resultConsumer.accept(tracks);
+                        }
+                    });
+                }
+
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                System.out.println(e.getMessage());
             }
-
-            return searchMetadata(track, searchText);
-        };
+        }, debounceMillis, TimeUnit.MILLISECONDS);
     }
 
-    private boolean artistsListTrackSearch(TrackMetadata trackMetadata) {
-        if (trackMetadata.getArtistNameStr().contains(artistNameString)) {
-            return trackMetadata.getArtistNameStr().contains(artistNameString);
-        }
+    // Drops the search in progress, i.e. the search field was cleared or an artist was selected
+    public synchronized void cancelSearch() {
+        searchGeneration++;
 
-        return false;
-    }
-
-    private boolean playlistsListTrackSearch(TrackMetadata trackMetadata) {
-        if (trackMetadata.getPlaylistStr().contains(playlistTitleString)) {
-            return trackMetadata.getPlaylistStr().contains(playlistTitleString);
+        if (scheduledSearch != null) {
+            scheduledSearch.cancel(false);
+            scheduledSearch = null;
         }
-
-        return false;
     }
 
-    // Check trackMetadata objects for searchText matches
-    private boolean searchMetadata(TrackMetadata trackMetadata, String searchText) {
-        return (trackMetadata.getTrackTitleStr().toLowerCase().contains(searchText.toLowerCase()) ||
-                trackMetadata.getAlbumTitleStr().toLowerCase().contains(searchText.toLowerCase()) ||
-                trackMetadata.getArtistNameStr().toLowerCase().contains(searchText.toLowerCase()) ||
-                trackMetadata.getTrackGenreStr().toLowerCase().contains(searchText.toLowerCase()) ||
-                trackMetadata.getPlaylistStr().toLowerCase().contains(searchText.toLowerCase())
-        );
-    }
+    private synchronized boolean isCurrentSearch(int generation) { return generation == searchGeneration; }
 }
@@ -0,0 +1,51 @@
+/**
+ *      Author: Ian Wallace, copyright 2022 all rights reserved.
+ *      Application: MusicPlayer
+ *      Class: TrackField.java
+ *      Notes: String fields of TrackMetadata that can be searched, along with each field's position
+ *              in a library.bin track record (see LibraryFileIO). The track path is stored as two
+ *              record fields, folder and file name, and is not searchable.
+ *
+ *              Artist, title, album, genre and playlist can be edited by the user, set() is used for
+ *              edits that are written to the library journal (see LibraryJournal).
+ */
+
+package com.iandw.musicplayerjavafx.Utilities;
+
+import com.iandw.musicplayerjavafx.TrackMetadata;
+
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+public enum TrackField {
+    ARTIST(0, TrackMetadata::getArtistNameStr, TrackMetadata::setArtistNameStr),
+    FILE_NAME(1, TrackMetadata::getTrackFileNameStr, null),
+    CONTAINER_TYPE(2, TrackMetadata::getTrackContainerTypeStr, null),
+    TITLE(3, TrackMetadata::getTrackTitleStr, TrackMetadata::setTrackTitleStr),
+    ALBUM(4, TrackMetadata::getAlbumTitleStr, TrackMetadata::setAlbumTitleStr),
+    GENRE(5, TrackMetadata::getTrackGenreStr, TrackMetadata::setTrackGenreStr),
+    DURATION(6, TrackMetadata::getTrackDurationStr, null),
+    PLAYLIST(9, TrackMetadata::getPlaylistStr, TrackMetadata::setPlaylistStr);
+
+    private final int recordField;
+    private final Function<TrackMetadata, String> getter;
+    private final BiConsumer<TrackMetadata, String> setter;
+
+    TrackField(int recordField, Function<TrackMetadata, String> getter, BiConsumer<TrackMetadata, String> setter) {
+        this.recordField = recordField;
+        this.getter = getter;
+        this.setter = setter;
+    }
+
+    public int getRecordField() { return recordField; }
+    public String get(TrackMetadata trackMetadata) { return getter.apply(trackMetadata); }
+    public boolean isEditable() { return setter != null; }
+
+    public void set(TrackMetadata trackMetadata, String value) {
+        if (setter == null) {
+            throw new UnsupportedOperationException(String.format("%s is not editable", this));
+        }
+
+        setter.accept(trackMetadata, value);
+    }
+}
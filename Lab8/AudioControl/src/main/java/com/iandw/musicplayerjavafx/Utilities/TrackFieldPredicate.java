@@ -0,0 +1,70 @@
+/**
+ *      Author: Ian Wallace, copyright 2022 all rights reserved.
+ *      Application: MusicPlayer
+ *      Class: TrackFieldPredicate.java
+ *      Notes: Track View search predicate made of a String test and the fields it is applied to.
+ *              A track matches if any of the fields is non-null and passes the test. Keeping the two
+ *              apart lets a library that has not decoded its tracks yet test each distinct field
+ *              value once instead of every track (see TableViewLibrary.filterTracks()).
+ *
+ *              A predicate without fields matches every track. An equalTo() predicate is an exact match
+ *              on one field, which a LibraryStore can answer from its index.
+ */
+
+package com.iandw.musicplayerjavafx.Utilities;
+
+import com.iandw.musicplayerjavafx.TrackMetadata;
+
+import java.util.function.Predicate;
+
+public class TrackFieldPredicate implements Predicate<TrackMetadata> {
+    private final Predicate<String> valuePredicate;
+    private final TrackField[] trackFields;
+    private String exactValue;
+
+    /**
+     * TrackFieldPredicate - constructor
+     *
+     * @param valuePredicate => Test applied to each non-null field value
+     * @param trackFields => Fields tested, none to match every track
+     */
+    public TrackFieldPredicate(Predicate<String> valuePredicate, TrackField... trackFields) {
+        this.valuePredicate = valuePredicate;
+        this.trackFields = trackFields;
+    }
+
+    /**
+     * equalTo() - exact match on one field, i.e. the tracks of one artist or playlist
+     *
+     * @param trackField => Field tested
+     * @param value => Value the field must equal
+     * @return => TrackFieldPredicate
+     */
+    public static TrackFieldPredicate equalTo(TrackField trackField, String value) {
+        TrackFieldPredicate trackFieldPredicate = new TrackFieldPredicate(fieldValue -> fieldValue.equals(value), trackField);
+        trackFieldPredicate.exactValue = value;
+
+        return trackFieldPredicate;
+    }
+
+    @Override
+    public boolean test(TrackMetadata trackMetadata) {
+        if (matchesAll()) {
+            return true;
+        }
+
+        for (TrackField trackField : trackFields) {
+            if (testValue(trackField.get(trackMetadata))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    public boolean testValue(String value) { return value != null && valuePredicate.test(value); }
+    public boolean matchesAll() { return trackFields.length == 0; }
+    public TrackField[] getTrackFields() { return trackFields; }
+    // Value of an equalTo() predicate, null for other predicates
+    public String getExactValue() { return exactValue; }
+}
@@ -0,0 +1,206 @@
+/**
+ *      Author: Ian Wallace, copyright 2022 all rights reserved.
+ *      Application: MusicPlayer
+ *      Class: TrackPathTable.java
+ *      Notes: Directory table shared by every TrackMetadata, so a track holds a directory id and its
+ *              file name instead of the whole path.
+ *
+ *              Directories form a trie, each entry is one folder name (with its trailing separator)
+ *              below a parent entry, entry 0 being the empty root. A folder holding many tracks, and
+ *              the folders above it, are stored once however many tracks are in them. Paths are only
+ *              put back together when asked for (Media, Open in Explorer, library.bin...), the full
+ *              directory Strings built are cached.
+ *
+ *              moveDirectory() moves one entry, which moves the path of every track below it, used to
+ *              relocate the Music Library after its folder has been moved.
+ */
+
+package com.iandw.musicplayerjavafx.Utilities;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+public final class TrackPathTable {
+    private static final Map<Entry, Integer> entryIds = new HashMap<>();
+    private static int[] parentIds = new int[1024];
+    private static String[] folderNames = new String[1024];
+    private static String[] directories = new String[1024];
+    private static int entryCount = 1;
+
+    // Tracks are mostly created folder by folder
+    private static String lastDirectoryStr = "";
+    private static int lastDirectoryId = 0;
+
+    private record Entry(int parentId, String folderName) {}
+
+    static {
+        folderNames[0] = "";
+        directories[0] = "";
+    }
+
+    private TrackPathTable() {}
+
+    /**
+     * nameIndex() - start of the file name in a path, after the last '/' or '\'
+     *
+     * @param trackPathStr => Track path
+     * @return => Index of the file name, 0 if the path has no directory
+     */
+    public static int nameIndex(String trackPathStr) {
+        return Math.max(trackPathStr.lastIndexOf('/'), trackPathStr.lastIndexOf('\\')) + 1;
+    }
+
+    /**
+     * internDirectory() - id of a directory, adding the folders not in the table yet
+     *
+     * @param directoryStr => Directory including its trailing separator i.e. "C:/User/Music/", "" for none
+     * @return => Directory id
+     */
+    public static synchronized int internDirectory(String directoryStr) {
+        if (directoryStr.equals(lastDirectoryStr)) {
+            return lastDirectoryId;
+        }
+
+        int directoryId = 0;
+        int start = 0;
+
+        for (int i = 0; i < directoryStr.length(); i++) {
+            final char c = directoryStr.charAt(i);
+
+            if (c == '/' || c == '\\' || i == directoryStr.length() - 1) {
+                directoryId = childId(directoryId, directoryStr.substring(start, i + 1), true);
+                start = i + 1;
+            }
+        }
+
+        lastDirectoryStr = directoryStr;
+        lastDirectoryId = directoryId;
+
+        return directoryId;
+    }
+
+    // Directory of an id including its trailing separator
+    public static synchronized String getDirectory(int directoryId) {
+        String directoryStr = directories[directoryId];
+
+        if (directoryStr == null) {
+            directoryStr = getDirectory(parentIds[directoryId]) + folderNames[directoryId];
+            directories[directoryId] = directoryStr;
+        }
+
+        return directoryStr;
+    }
+
+    /**
+     * moveDirectory() - moves a directory and everything below it, only its own table entry is changed
+     *
+     * @param directoryStr => Current directory including its trailing separator
+     * @param newDirectoryStr => New directory including its trailing separator
+     * @return => False if directoryStr is not in the table, newDirectoryStr already is, or is inside directoryStr
+     */
+    public static synchronized boolean moveDirectory(String directoryStr, String newDirectoryStr) {
+        final int directoryId = findDirectory(directoryStr);
+        final int nameIndex = nameIndex(newDirectoryStr.substring(0, Math.max(0, newDirectoryStr.length() - 1)));
+
+        if (directoryId <= 0 || newDirectoryStr.isEmpty() || findDirectory(newDirectoryStr) >= 0) {
+            return false;
+        }
+
+        final int newParentId = internDirectory(newDirectoryStr.substring(0, nameIndex));
+
+        // Not into itself
+        for (int id = newParentId; id != 0; id = parentIds[id]) {
+            if (id == directoryId) {
+                return false;
+            }
+        }
+
+        entryIds.remove(new Entry(parentIds[directoryId], folderNames[directoryId]));
+        parentIds[directoryId] = newParentId;
+        folderNames[directoryId] = newDirectoryStr.substring(nameIndex);
+        entryIds.put(new Entry(newParentId, folderNames[directoryId]), directoryId);
+
+        // Every cached directory below it has changed
+        Arrays.fill(directories, 1, entryCount, null);
+        lastDirectoryStr = "";
+        lastDirectoryId = 0;
+
+        return true;
+    }
+
+    /**
+     * findDirectory() - id of a directory already in the table, nothing is added. Used for lookups of paths
+     *                   which may not belong to any track.
+     *
+     * @param directoryStr => Directory including its trailing separator, "" for none
+     * @return => Directory id, -1 if the directory is not in the table
+     */
+    public static synchronized int findDirectory(String directoryStr) {
+        int directoryId = 0;
+        int start = 0;
+
+        for (int i = 0; i < directoryStr.length() && directoryId >= 0; i++) {
+            final char c = directoryStr.charAt(i);
+
+            if (c == '/' || c == '\\' || i == directoryStr.length() - 1) {
+                directoryId = childId(directoryId, directoryStr.substring(start, i + 1), false);
+                start = i + 1;
+            }
+        }
+
+        return directoryId;
+    }
+
+    /**
+     * directoriesWithin() - a directory and every directory below it
+     *
+     * @param directoryId => Directory id
+     * @return => Directory ids
+     */
+    public static synchronized BitSet directoriesWithin(int directoryId) {
+        BitSet within = new BitSet(entryCount);
+        BitSet outside = new BitSet(entryCount);
+        within.set(directoryId);
+
+        for (int id = 1; id < entryCount; id++) {
+            int ancestorId = id;
+
+            while (ancestorId != 0 && !within.get(ancestorId) && !outside.get(ancestorId)) {
+                ancestorId = parentIds[ancestorId];
+            }
+
+            // Every entry walked through is on the same side as the one the walk stopped at
+            final BitSet side = within.get(ancestorId) ? within : outside;
+
+            for (int walkedId = id; walkedId != ancestorId; walkedId = parentIds[walkedId]) {
+                side.set(walkedId);
+            }
+        }
+
+        return within;
+    }
+
+    private static int childId(int parentId, String folderName, boolean create) {
+        Integer childId = entryIds.get(new Entry(parentId, folderName));
+
+        if (childId != null || !create) {
+            return childId == null ? -1 : childId;
+        }
+
+        if (entryCount == parentIds.length) {
+            parentIds = Arrays.copyOf(parentIds, entryCount * 2);
+            folderNames = Arrays.copyOf(folderNames, entryCount * 2);
+            directories = Arrays.copyOf(directories, entryCount * 2);
+        }
+
+        parentIds[entryCount] = parentId;
+        folderNames[entryCount] = folderName;
+        entryIds.put(new Entry(parentId, folderName), entryCount);
+
+        return entryCount++;
+    }
+
+    public static synchronized int getDirectoryCount() { return entryCount; }
+}
@@ -6,26 +6,49 @@
  *              - user's root directory path
  *              - currently selected App Theme
  *              - Music Library initialization choice (when resetting the library)
+ *              - Amount of worker threads used when scanning the Music Library
+ *              - Music Library scan include/exclude rules (see ScanRules)
+ *              - Whether Recursive Initialization follows symbolic links
+ *              - Lowest console log level written (see ConsoleLog)
+ *              - Compression of library.bin (see CompressedLibraryFile)
+ *              - Search mode, "fuzzy" or "exact" (see SearchTableView)
  */
 
 package com.iandw.musicplayerjavafx.Utilities;
 
+import com.iandw.musicplayerjavafx.FileIO.AutosaveService;
+import com.iandw.musicplayerjavafx.FileIO.AutosaveService.Store;
 import com.iandw.musicplayerjavafx.FileIO.SettingsFileIO;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class UserSettings implements Runnable {
     private String rootMusicDirectoryString;
     private String themeFileNameString;
     private String initializationString;
-    private boolean writeOnClose;
+    private int scanParallelism;
+    private List<String> scanIncludeGlobs = new ArrayList<>();
+    private List<String> scanExcludeGlobs = new ArrayList<>();
+    private boolean scanSkipHidden = true;
+    private int scanMaxDepth;
+    private long scanMinFileSize;
+    private boolean scanFollowSymlinks = true;
+    private String libraryStoreString = "indexed";
+    private String logLevelString = "info";
+    private String libraryCodecString = "none";
+    private String searchModeString = "fuzzy";
 
     public UserSettings() {}
 
     @Override
     public void run() {
         JSONArray jsonArray = SettingsFileIO.jsonFileInput();
-        jsonArray.forEach( settings -> parseSettingsObject( (JSONObject) settings));
+        for (Object settings : jsonArray) {
+            parseSettingsObject((JSONObject) settings);
+        }
 
         System.out.println("Root Directory: " + rootMusicDirectoryString);
         System.out.println("Theme File: " + themeFileNameString);
@@ -42,25 +65,147 @@ public class UserSettings implements Runnable {
 
         // Get user initialization preference
         initializationString = (String) settingObject.get("initialization");
+
+        // Get scan worker thread count, 1 uses the single threaded scan
+        // JSON numbers are parsed as Long objects
+        if (settingObject.get("scanParallelism") == null) {
+            scanParallelism = Runtime.getRuntime().availableProcessors();
+        } else {
+            scanParallelism = Math.max(1, ((Long) settingObject.get("scanParallelism")).intValue());
+        }
+
+        // Get scan include/exclude rules, missing rules keep their defaults
+        scanIncludeGlobs = parseGlobs((JSONArray) settingObject.get("scanInclude"));
+        scanExcludeGlobs = parseGlobs((JSONArray) settingObject.get("scanExclude"));
+
+        if (settingObject.get("scanSkipHidden") != null) {
+            scanSkipHidden = (Boolean) settingObject.get("scanSkipHidden");
+        }
+
+        if (settingObject.get("scanMaxDepth") != null) {
+            scanMaxDepth = Math.max(0, ((Long) settingObject.get("scanMaxDepth")).intValue());
+        }
+
+        if (settingObject.get("scanMinFileSize") != null) {
+            scanMinFileSize = Math.max(0, (Long) settingObject.get("scanMinFileSize"));
+        }
+
+        if (settingObject.get("scanFollowSymlinks") != null) {
+            scanFollowSymlinks = (Boolean) settingObject.get("scanFollowSymlinks");
+        }
+
+        if (settingObject.get("libraryStore") != null) {
+            libraryStoreString = (String) settingObject.get("libraryStore");
+        }
+
+        if (settingObject.get("logLevel") != null) {
+            logLevelString = (String) settingObject.get("logLevel");
+        }
+
+        if (settingObject.get("libraryCodec") != null) {
+            libraryCodecString = (String) settingObject.get("libraryCodec");
+        }
+
+        if (settingObject.get("searchMode") != null) {
+            searchModeString = (String) settingObject.get("searchMode");
+        }
+    }
+
+    private static List<String> parseGlobs(JSONArray jsonArray) {
+        List<String> globs = new ArrayList<>();
+
+        if (jsonArray != null) {
+            for (Object glob : jsonArray) {
+                globs.add((String) glob);
+            }
+        }
+
+        return globs;
     }
 
     public void setRootMusicDirectoryString(String rootMusicDirectoryString) {
         this.rootMusicDirectoryString = rootMusicDirectoryString;
-        writeOnClose = true;
+        AutosaveService.markDirty(Store.SETTINGS);
     }
     public void setThemeFileNameString(String themeFileNameString) {
         this.themeFileNameString = themeFileNameString;
-        writeOnClose = true;
+        AutosaveService.markDirty(Store.SETTINGS);
     }
 
     public void setInitializationString(String initializationString) {
         this.initializationString = initializationString;
-        writeOnClose = true;
+        AutosaveService.markDirty(Store.SETTINGS);
+    }
+
+    public void setScanParallelism(int scanParallelism) {
+        this.scanParallelism = Math.max(1, scanParallelism);
+        AutosaveService.markDirty(Store.SETTINGS);
+    }
+
+
+    public void setScanIncludeGlobs(List<String> scanIncludeGlobs) {
+        this.scanIncludeGlobs = new ArrayList<>(scanIncludeGlobs);
+        AutosaveService.markDirty(Store.SETTINGS);
+    }
+
+    public void setScanExcludeGlobs(List<String> scanExcludeGlobs) {
+        this.scanExcludeGlobs = new ArrayList<>(scanExcludeGlobs);
+        AutosaveService.markDirty(Store.SETTINGS);
+    }
+
+    public void setScanSkipHidden(boolean scanSkipHidden) {
+        this.scanSkipHidden = scanSkipHidden;
+        AutosaveService.markDirty(Store.SETTINGS);
+    }
+
+    public void setScanMaxDepth(int scanMaxDepth) {
+        this.scanMaxDepth = Math.max(0, scanMaxDepth);
+        AutosaveService.markDirty(Store.SETTINGS);
+    }
+
+    public void setScanMinFileSize(long scanMinFileSize) {
+        this.scanMinFileSize = Math.max(0, scanMinFileSize);
+        AutosaveService.markDirty(Store.SETTINGS);
+    }
+
+    public void setScanFollowSymlinks(boolean scanFollowSymlinks) {
+        this.scanFollowSymlinks = scanFollowSymlinks;
+        AutosaveService.markDirty(Store.SETTINGS);
+    }
+
+    public void setLibraryStoreString(String libraryStoreString) {
+        this.libraryStoreString = libraryStoreString;
+        AutosaveService.markDirty(Store.SETTINGS);
+    }
+
+    public void setLogLevelString(String logLevelString) {
+        this.logLevelString = logLevelString;
+        AutosaveService.markDirty(Store.SETTINGS);
+    }
+
+    public void setLibraryCodecString(String libraryCodecString) {
+        this.libraryCodecString = libraryCodecString;
+        AutosaveService.markDirty(Store.SETTINGS);
+    }
+
+    public void setSearchModeString(String searchModeString) {
+        this.searchModeString = searchModeString;
+        AutosaveService.markDirty(Store.SETTINGS);
     }
 
 
     public String getRootMusicDirectoryString() { return rootMusicDirectoryString; }
     public String getThemeFileNameString() { return themeFileNameString; }
     public String getInitalizationString() { return initializationString; }
-    public boolean getWriteOnClose() { return writeOnClose; }
+    public int getScanParallelism() { return scanParallelism; }
+    public List<String> getScanIncludeGlobs() { return scanIncludeGlobs; }
+    public List<String> getScanExcludeGlobs() { return scanExcludeGlobs; }
+    public boolean getScanSkipHidden() { return scanSkipHidden; }
+    public int getScanMaxDepth() { return scanMaxDepth; }
+    public long getScanMinFileSize() { return scanMinFileSize; }
+    public boolean getScanFollowSymlinks() { return scanFollowSymlinks; }
+    public String getLibraryStoreString() { return libraryStoreString; }
+    public String getLogLevelString() { return logLevelString; }
+    public String getLibraryCodecString() { return libraryCodecString; }
+    public String getSearchModeString() { return searchModeString; }
 }
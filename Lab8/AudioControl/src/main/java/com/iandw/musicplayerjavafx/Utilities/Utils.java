@@ -8,6 +8,7 @@
 package com.iandw.musicplayerjavafx.Utilities;
 
 import com.iandw.musicplayerjavafx.*;
+import com.iandw.musicplayerjavafx.FileIO.LibraryJournal;
 import com.iandw.musicplayerjavafx.Libraries.ListViewLibrary;
 import com.iandw.musicplayerjavafx.Libraries.TableViewLibrary;
 import com.iandw.musicplayerjavafx.TrackMetadata;
@@ -25,11 +26,6 @@ import javafx.scene.control.TableView;
 
 public class Utils {
 
-    public static int maxTextAreaSize() {
-        // Return in bytes max amount of text (1MB) from buffer to keep the App from locking up
-        return 1000000;
-    }
-
     public static String formatSeconds(int seconds) {
         if (seconds >= 3600) {
             return String.format("%02d:%02d:%02d", seconds / 3600, (seconds / 60) % 60, seconds % 60);
@@ -53,6 +49,14 @@ public class Utils {
 
         PrintWriter clearPlaylists = new PrintWriter(ResourceURLs.getPlaylistsURL());
         clearPlaylists.close();
+
+        LibraryJournal.clearLibrary();
+
+        PrintWriter clearFingerprints = new PrintWriter(ResourceURLs.getFingerprintsURL());
+        clearFingerprints.close();
+
+        PrintWriter clearScanCheckpoint = new PrintWriter(ResourceURLs.getScanCheckpointURL());
+        clearScanCheckpoint.close();
     }
 
     /*
@@ -101,8 +105,6 @@ public class Utils {
                 tableViewLibrary.removeTrack(trackTableView.getItems().get(i));
                 trackTableView.refresh();
             }
-
-            tableViewLibrary.setOutputTrackListOnClose();
         }
 
         artistListView.setItems(listViewLibrary.getArtistObservableList());
@@ -113,22 +115,10 @@ public class Utils {
                                 TableView<TrackMetadata> trackTableView, ListView<String> artistListView,
                                 ListView<String> playlistListView)
     {
+        // Entries go with the playlist, tracks are not changed
+        System.out.printf("Removing playlist %s%n", removePlaylistStr);
         listViewLibrary.removePlaylist(removePlaylistStr);
 
-        int tableSize = trackIndex.getTableSize();
-
-        if (tableSize > 0) {
-            // Alter all playlist tracks playlist to "*"
-            for (int i = 0; i < tableSize; i++) {
-                System.out.printf("Removing %s from %s%n", trackTableView.getItems().get(i).getTrackTitleStr(),
-                        artistListView.getSelectionModel().getSelectedItem());
-                trackTableView.getItems().get(i).setPlaylistStr("*");
-                trackTableView.refresh();
-            }
-
-            tableViewLibrary.setOutputTrackListOnClose();
-        }
-
         playlistListView.setItems(listViewLibrary.getPlaylistObservableList());
     }
 
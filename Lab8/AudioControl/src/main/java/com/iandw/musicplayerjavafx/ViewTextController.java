@@ -7,10 +7,11 @@
 
 package com.iandw.musicplayerjavafx;
 
+import com.iandw.musicplayerjavafx.Utilities.ConsoleLog;
+
 import java.awt.*;
 import java.awt.datatransfer.Clipboard;
 import java.awt.datatransfer.StringSelection;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.ConnectException;
 import java.net.SocketTimeoutException;
@@ -33,15 +34,13 @@ import javafx.stage.Stage;
 public class ViewTextController {
     @FXML private TextArea textArea;
     @FXML private Button copyToClipboard;
-    private ByteArrayOutputStream consoleOutput;
     private String menuChoice;
     private Stage stage;
 
     public void initialize() {}
 
-    public void initializeData(String menuChoice, ByteArrayOutputStream consoleOutput, Stage stage) throws IOException {
+    public void initializeData(String menuChoice, Stage stage) throws IOException {
         this.menuChoice = menuChoice;
-        this.consoleOutput = consoleOutput;
         this.stage = stage;
 
         fillTextArea();
@@ -58,16 +57,15 @@ public class ViewTextController {
      * showViewTextWindow() - entry point for GUI to hold plain text
      *
      * @param menuChoice => User selected Menu Item from Menu Bar
-     * @param consoleOutput => Access object to output all System.out... to Text Area
      * @throws IOException
      */
-    public void showViewTextWindow(String menuChoice, ByteArrayOutputStream consoleOutput) throws IOException {
+    public void showViewTextWindow(String menuChoice) throws IOException {
         FXMLLoader loader = new FXMLLoader(getClass().getResource("viewtext.fxml"));
         Stage stage = new Stage();
         stage.setScene(new Scene(loader.load()));
 
         ViewTextController controller = loader.getController();
-        controller.initializeData(menuChoice, consoleOutput, stage);
+        controller.initializeData(menuChoice, stage);
 
         stage.setTitle(menuChoice);
         stage.setAlwaysOnTop(false);
@@ -86,8 +84,9 @@ public class ViewTextController {
         }
     }
 
+    // Only the tail kept by ConsoleLog, the whole session is in consolelog.txt
     private void viewConsoleLog() {
-        textArea.setText(consoleOutput.toString());
+        textArea.setText(ConsoleLog.getTail());
         textArea.setFocusTraversable(false);
     }
 
@@ -0,0 +1,113 @@
+/**
+ *      Author: Ian Wallace, copyright 2022 all rights reserved.
+ *      Application: MusicPlayer
+ *      Class: LibraryCodecBenchmark.java
+ *      Notes: library.bin size, write time and load time with each libraryCodec ("none", "fast" and
+ *              "compact"), for the synthetic library of LibraryFileBenchmark. Load is timed to open the
+ *              file (decompressing a compressed one) and to decode every track as well. A byte flipped
+ *              in each compressed file has to be caught by the block checksums. Not run by the test
+ *              phase, run it with
+ *
+ *                  mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/classpath.txt
+ *                  java -cp target/test-classes:target/classes:$(cat target/classpath.txt) \
+ *                      com.iandw.musicplayerjavafx.FileIO.LibraryCodecBenchmark [track count...]
+ *
+ *              Block decompression runs in parallel, the load times depend on the CPU count.
+ */
+
+package com.iandw.musicplayerjavafx.FileIO;
+
+import com.iandw.musicplayerjavafx.FileIO.CompressedLibraryFile.Codec;
+import com.iandw.musicplayerjavafx.TrackMetadata;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+public class LibraryCodecBenchmark {
+    private static final int[] defaultTrackCounts = { 10_000, 100_000, 1_000_000 };
+    private static final int rounds = 3;
+
+    public static void main(String[] args) throws Exception {
+        int[] trackCounts = defaultTrackCounts;
+
+        if (args.length > 0) {
+            trackCounts = new int[args.length];
+
+            for (int i = 0; i < args.length; i++) {
+                trackCounts[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        final Path directory = Files.createTempDirectory("codec");
+
+        System.out.printf("%d CPUs%n", Runtime.getRuntime().availableProcessors());
+
+        try {
+            for (int trackCount : trackCounts) {
+                final List<TrackMetadata> tracks = LibraryFileBenchmark.sampleTracks(trackCount);
+                final List<String> artistNames = LibraryFileBenchmark.artistNames(trackCount);
+
+                for (Codec codec : Codec.values()) {
+                    final String codecString = codec.name().toLowerCase(Locale.ROOT);
+                    final Path libraryPath = directory.resolve("library." + codecString + ".bin");
+
+                    LibraryFileIO.setCodec(codecString);
+                    long start = System.nanoTime();
+                    LibraryFileIO.writeLibrary(libraryPath, tracks, artistNames, List.of("Favourites"));
+                    final long writeNanos = System.nanoTime() - start;
+
+                    // The first rounds warm the JIT and the page cache, the last one is reported
+                    long openNanos = 0;
+                    long decodeNanos = 0;
+
+                    for (int round = 0; round < rounds; round++) {
+                        start = System.nanoTime();
+                        MappedLibraryFile libraryFile = MappedLibraryFile.map(libraryPath);
+                        openNanos = System.nanoTime() - start;
+
+                        MemoryLibraryStore libraryStore = MemoryLibraryStore.decode(libraryFile);
+                        decodeNanos = System.nanoTime() - start;
+
+                        final TrackMetadata lastTrack = libraryStore.decodeTrack(trackCount - 1);
+
+                        if (!lastTrack.getTrackPathStr().equals(tracks.get(trackCount - 1).getTrackPathStr())) {
+                            throw new AssertionError(codecString + " library does not read back");
+                        }
+                    }
+
+                    System.out.printf("%8d tracks %-8s %9.1f KB  write %6d ms  open %6d ms  open + decode %6d ms%s%n",
+                            trackCount, codecString, Files.size(libraryPath) / 1024.0, writeNanos / 1_000_000,
+                            openNanos / 1_000_000, decodeNanos / 1_000_000,
+                            codec == Codec.NONE ? "" : "  " + corruptionCheck(libraryPath));
+                }
+            }
+
+        } finally {
+            LibraryFileIO.setCodec("none");
+        }
+    }
+
+    // Flips a byte half way through a compressed library file
+    private static String corruptionCheck(Path libraryPath) throws IOException {
+        byte[] libraryBytes = Files.readAllBytes(libraryPath);
+        libraryBytes[libraryBytes.length / 2] ^= 0x5A;
+
+        final Path corruptPath = libraryPath.resolveSibling("corrupt.bin");
+        Files.write(corruptPath, libraryBytes);
+
+        if (CompressedLibraryFile.hasValidBlocks(corruptPath)) {
+            throw new AssertionError("Flipped byte not caught by the block checksums");
+        }
+
+        try {
+            MappedLibraryFile.map(corruptPath);
+            throw new AssertionError("Flipped byte not caught on load");
+
+        } catch (IOException e) {
+            return "flipped byte caught";
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/**
+ *      Author: Ian Wallace, copyright 2022 all rights reserved.
+ *      Application: MusicPlayer
+ *      Class: LibraryFileBenchmark.java
+ *      Notes: Start up load of library.bin against the old tracklist.ser, file size, load time and the
+ *              heap used while loading and afterwards. Both files hold the same synthetic library, the
+ *              default of 180000 tracks is a large music folder. Not run by the test phase, run it with
+ *
+ *                  mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/classpath.txt
+ *                  java -cp target/test-classes:target/classes:$(cat target/classpath.txt) \
+ *                      com.iandw.musicplayerjavafx.FileIO.LibraryFileBenchmark [track count]
+ *
+ *              Peak heap depends on the heap size, add a fixed -Xmx, i.e. -Xmx2g, to compare runs.
+ */
+
+package com.iandw.musicplayerjavafx.FileIO;
+
+import com.iandw.musicplayerjavafx.TrackMetadata;
+import com.iandw.musicplayerjavafx.TrackSerializable;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+public class LibraryFileBenchmark {
+    private static final int defaultTrackCount = 180_000;
+    private static final int rounds = 5;
+    private static final String[] genres = { "Rock", "Pop", "Jazz", "(32)", "Electronic", null };
+
+    public static void main(String[] args) throws Exception {
+        final int trackCount = args.length > 0 ? Integer.parseInt(args[0]) : defaultTrackCount;
+        final Path directory = Files.createTempDirectory("library");
+        final Path serializedPath = directory.resolve("tracklist.ser");
+        final Path libraryPath = directory.resolve("library.bin");
+
+        List<TrackMetadata> tracks = sampleTracks(trackCount);
+        writeSerialized(serializedPath, tracks);
+        LibraryFileIO.writeLibrary(libraryPath, tracks, artistNames(trackCount), List.of("Favourites"));
+        checkRoundTrip(tracks, MemoryLibraryStore.decode(MappedLibraryFile.map(libraryPath)));
+        tracks = null;
+
+        System.out.printf("%d tracks, tracklist.ser %.1f MB, library.bin %.1f MB%n", trackCount,
+                Files.size(serializedPath) / 1e6, Files.size(libraryPath) / 1e6);
+
+        // The first round warms the JIT and the page cache
+        for (int round = 0; round < rounds; round++) {
+            measure("tracklist.ser", round, () -> readSerialized(serializedPath));
+            measure("library.bin memory", round, () -> MemoryLibraryStore.decode(MappedLibraryFile.map(libraryPath)));
+            measure("library.bin mapped", round, () -> MappedLibraryFile.map(libraryPath));
+        }
+    }
+
+    /**
+     * sampleTracks() - synthetic library, 12 tracks per album and 10 albums per artist. The same
+     *                  library is built for every call with the same trackCount.
+     *
+     * @param trackCount => Number of tracks
+     * @return => Tracks in Table View order
+     */
+    static List<TrackMetadata> sampleTracks(int trackCount) {
+        List<TrackMetadata> tracks = new ArrayList<>(trackCount);
+
+        for (int i = 0; i < trackCount; i++) {
+            final int artist = i / 120;
+            final String artistNameStr = "Artist Name " + artist;
+            final String albumTitleStr = "Album Title " + (i / 12);
+            final String trackFileNameStr = String.format("%02d - Some Track Title %d.mp3", i % 12 + 1, i);
+
+            tracks.add(new TrackMetadata(artistNameStr, trackFileNameStr, ".mp3", "Some Track Title " + i,
+                    albumTitleStr, genres[artist % genres.length], String.format("00:0%d:%02d", i % 10, i % 60),
+                    "/home/user/Music/" + artistNameStr + "/" + albumTitleStr + "/" + trackFileNameStr,
+                    i % 50 == 0 ? "Favourites" : null));
+        }
+
+        return tracks;
+    }
+
+    static List<String> artistNames(int trackCount) {
+        List<String> artistNames = new ArrayList<>();
+
+        for (int artist = 0; artist <= (trackCount - 1) / 120; artist++) {
+            artistNames.add("Artist Name " + artist);
+        }
+
+        return artistNames;
+    }
+
+    // tracklist.ser as TrackListFileIO wrote it before library.bin
+    static void writeSerialized(Path serializedPath, List<TrackMetadata> tracks) throws IOException {
+        ArrayList<TrackSerializable> serializedTracks = new ArrayList<>(tracks.size());
+
+        for (TrackMetadata trackMetadata : tracks) {
+            serializedTracks.add(new TrackSerializable(trackMetadata.getArtistNameStr(),
+                    trackMetadata.getTrackFileNameStr(), trackMetadata.getTrackContainerTypeStr(),
+                    trackMetadata.getTrackTitleStr(), trackMetadata.getAlbumTitleStr(),
+                    trackMetadata.getTrackGenreStr(), trackMetadata.getTrackDurationStr(),
+                    trackMetadata.getTrackPathStr(), trackMetadata.getPlaylistStr()));
+        }
+
+        try (ObjectOutputStream out = new ObjectOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(serializedPath)))) {
+            out.writeObject(serializedTracks);
+        }
+    }
+
+    // tracklist.ser load as TrackListFileIO did it, every TrackSerializable copied into a TrackMetadata
+    @SuppressWarnings("unchecked")
+    static List<TrackMetadata> readSerialized(Path serializedPath) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(
+                new BufferedInputStream(Files.newInputStream(serializedPath)))) {
+            ArrayList<TrackSerializable> serializedTracks = (ArrayList<TrackSerializable>) in.readObject();
+            List<TrackMetadata> tracks = new ArrayList<>(serializedTracks.size());
+
+            for (TrackSerializable track : serializedTracks) {
+                tracks.add(new TrackMetadata(track.getArtistNameStr(), track.getTrackFileNameStr(),
+                        track.getTrackContainerTypeStr(), track.getTrackTitleStr(), track.getAlbumTitleStr(),
+                        track.getTrackGenreStr(), track.getTrackDurationStr(), track.getTrackPathStr(),
+                        track.getPlaylistStr()));
+            }
+
+            return tracks;
+        }
+    }
+
+    private static void checkRoundTrip(List<TrackMetadata> tracks, LibraryStore libraryStore) {
+        if (libraryStore.getTrackCount() != tracks.size()) {
+            throw new AssertionError("library.bin holds " + libraryStore.getTrackCount() + " tracks");
+        }
+
+        for (int i = 0; i < tracks.size(); i++) {
+            final TrackMetadata written = tracks.get(i);
+            final TrackMetadata read = libraryStore.decodeTrack(i);
+
+            if (!Objects.equals(written.getTrackPathStr(), read.getTrackPathStr())
+                    || !Objects.equals(written.getTrackTitleStr(), read.getTrackTitleStr())
+                    || !Objects.equals(written.getTrackGenreStr(), read.getTrackGenreStr())
+                    || !Objects.equals(written.getPlaylistStr(), read.getPlaylistStr())) {
+                throw new AssertionError("Track " + i + " does not read back");
+            }
+        }
+    }
+
+    private static void measure(String label, int round, Load load) throws Exception {
+        System.gc();
+        ManagementFactory.getMemoryPoolMXBeans().forEach(MemoryPoolMXBean::resetPeakUsage);
+        final long baseline = usedHeap();
+
+        final long start = System.nanoTime();
+        Object loaded = load.load();
+        final long loadNanos = System.nanoTime() - start;
+        final long peak = peakHeap() - baseline;
+
+        System.gc();
+        final long retained = usedHeap() - baseline;
+        Objects.requireNonNull(loaded);
+
+        System.out.printf("Round %d: %-18s load %5d ms, peak heap +%4d MB, retained +%4d MB%n", round + 1, label,
+                loadNanos / 1_000_000, peak >> 20, retained >> 20);
+    }
+
+    private static long usedHeap() { return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed(); }
+
+    private static long peakHeap() {
+        long peak = 0;
+
+        for (MemoryPoolMXBean memoryPool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (memoryPool.getType() == MemoryType.HEAP) {
+                peak += memoryPool.getPeakUsage().getUsed();
+            }
+        }
+
+        return peak;
+    }
+
+    private interface Load {
+        Object load() throws Exception;
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ *      Author: Ian Wallace, copyright 2022 all rights reserved.
+ *      Application: MusicPlayer
+ *      Class: FastTagReaderBenchmark.java
+ *      Notes: Tag read throughput of FastTagReader against jaudiotagger's AudioFileIO.read(), files per
+ *              second with a warm page cache. Reads the audio files of a music folder, or the sample
+ *              files of SampleAudioFiles without one. Not run by the test phase, run it with
+ *
+ *                  mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/classpath.txt
+ *                  java -cp target/test-classes:target/classes:$(cat target/classpath.txt) \
+ *                      com.iandw.musicplayerjavafx.Libraries.FastTagReaderBenchmark [music folder]
+ */
+
+package com.iandw.musicplayerjavafx.Libraries;
+
+import org.jaudiotagger.audio.AudioFileIO;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class FastTagReaderBenchmark {
+    private static final int minimumReads = 4000;
+    private static final int rounds = 3;
+
+    public static void main(String[] args) throws Exception {
+        SampleAudioFiles.quietJaudiotagger();
+
+        List<Path> trackPaths = new ArrayList<>();
+        List<AudioFormat> audioFormats = new ArrayList<>();
+
+        for (Path trackPath : args.length > 0 ? audioFiles(Path.of(args[0]))
+                : SampleAudioFiles.everyKind(Files.createTempDirectory("tags"))) {
+            final AudioFormat audioFormat = AudioFormatRegistry.sniff(trackPath);
+
+            if (audioFormat != null && audioFormat.isPlayable()) {
+                trackPaths.add(trackPath);
+                audioFormats.add(audioFormat);
+            }
+        }
+
+        if (trackPaths.isEmpty()) {
+            System.out.println("No audio files found");
+            return;
+        }
+
+        final int reads = Math.max(minimumReads, trackPaths.size());
+        System.out.printf("%d audio files, %d reads per round%n", trackPaths.size(), reads);
+
+        // The first round warms the JIT and the page cache
+        for (int round = 0; round < rounds; round++) {
+            int fallbacks = 0;
+            long start = System.nanoTime();
+
+            for (int i = 0; i < reads; i++) {
+                final int file = i % trackPaths.size();
+
+                if (FastTagReader.read(trackPaths.get(file), audioFormats.get(file)) == null) {
+                    fallbacks++;
+                }
+            }
+
+            final long fastNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+
+            for (int i = 0; i < reads; i++) {
+                TagFields.of(AudioFileIO.read(trackPaths.get(i % trackPaths.size()).toFile()));
+            }
+
+            final long jaudiotaggerNanos = System.nanoTime() - start;
+
+            System.out.printf("Round %d: fast path %.0f files/s (%d left to jaudiotagger), jaudiotagger %.0f files/s%n",
+                    round + 1, reads / (fastNanos / 1e9), fallbacks, reads / (jaudiotaggerNanos / 1e9));
+        }
+    }
+
+    private static List<Path> audioFiles(Path musicDirectory) throws Exception {
+        try (Stream<Path> paths = Files.walk(musicDirectory)) {
+            return paths.filter(Files::isRegularFile).toList();
+        }
+    }
+}
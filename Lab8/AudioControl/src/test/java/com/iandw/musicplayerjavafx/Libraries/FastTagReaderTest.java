@@ -0,0 +1,142 @@
+/**
+ *      Author: Ian Wallace, copyright 2022 all rights reserved.
+ *      Application: MusicPlayer
+ *      Class: FastTagReaderTest.java
+ *      Notes: Cross-checks FastTagReader against jaudiotagger's AudioFileIO.read(), which it replaces
+ *              on the scan path, on files tagged by jaudiotagger. Every TagFields field must match with
+ *              two known differences:
+ *                  - Numeric genres are returned as "(n)", MusicLibrary maps them with ID3v1Genres
+ *                  - Without a Xing/Info/VBRI header both estimate MP3 durations from the file size,
+ *                    differently. They agree to within durationTolerance, the fast path is also checked
+ *                    against the frame count of the sample files.
+ */
+
+package com.iandw.musicplayerjavafx.Libraries;
+
+import com.iandw.musicplayerjavafx.AudioProperties;
+import com.iandw.musicplayerjavafx.Libraries.SampleAudioFiles.Id3Version;
+import com.iandw.musicplayerjavafx.Libraries.SampleAudioFiles.PcmTag;
+import com.iandw.musicplayerjavafx.Utilities.ID3v1Genres;
+import org.jaudiotagger.audio.AudioFileIO;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FastTagReaderTest {
+    private static final double durationTolerance = 0.005;
+    // 2000 frames of 1152 samples at 44.1 kHz
+    private static final int sampleMp3DurationMillis = 52245;
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    static void quietJaudiotagger() {
+        SampleAudioFiles.quietJaudiotagger();
+    }
+
+    @Test
+    void id3v1MatchesJaudiotagger() throws Exception {
+        assertSameMp3Tags(SampleAudioFiles.mp3(directory.resolve("v1.mp3"), Id3Version.V1));
+    }
+
+    @Test
+    void id3v23MatchesJaudiotagger() throws Exception {
+        assertSameMp3Tags(SampleAudioFiles.mp3(directory.resolve("v23.mp3"), Id3Version.V23));
+    }
+
+    @Test
+    void id3v24MatchesJaudiotagger() throws Exception {
+        assertSameMp3Tags(SampleAudioFiles.mp3(directory.resolve("v24.mp3"), Id3Version.V24));
+    }
+
+    @Test
+    void wavMatchesJaudiotagger() throws Exception {
+        assertSameTags(SampleAudioFiles.pcm(directory.resolve("untagged.wav"), PcmTag.NONE));
+        assertSameTags(SampleAudioFiles.pcm(directory.resolve("id3.wav"), PcmTag.ID3_CHUNK));
+        assertSameTags(SampleAudioFiles.pcm(directory.resolve("info.wav"), PcmTag.INFO_CHUNK));
+    }
+
+    @Test
+    void aiffMatchesJaudiotagger() throws Exception {
+        assertSameTags(SampleAudioFiles.pcm(directory.resolve("untagged.aiff"), PcmTag.NONE));
+        assertSameTags(SampleAudioFiles.pcm(directory.resolve("tagged.aiff"), PcmTag.ID3_CHUNK));
+    }
+
+    // moov/udta/meta/ilst items, gnre holds the ID3v1 genre plus one
+    @Test
+    void m4aMatchesJaudiotagger() throws Exception {
+        assertSameTags(SampleAudioFiles.m4a(directory.resolve("tagged.m4a")));
+    }
+
+    // Which chunk wins depends on jaudiotagger's WavOptions, the fast path leaves it to jaudiotagger
+    @Test
+    void wavWithBothChunksFallsBack() throws Exception {
+        Path trackPath = SampleAudioFiles.pcm(directory.resolve("both.wav"), PcmTag.BOTH_CHUNKS);
+
+        assertNull(FastTagReader.read(trackPath, AudioFormatRegistry.sniff(trackPath)));
+    }
+
+    @Test
+    void misnamedFileIsReadAsItsFormat() throws Exception {
+        Path trackPath = SampleAudioFiles.mp3(directory.resolve("v24.mp3"), Id3Version.V24);
+        Path misnamedPath = trackPath.resolveSibling("v24.wav");
+        Files.move(trackPath, misnamedPath);
+
+        assertEquals(StandardAudioFormat.MP3, AudioFormatRegistry.sniff(misnamedPath));
+        assertEquals("Tïtle ✓", FastTagReader.read(misnamedPath, AudioFormatRegistry.sniff(misnamedPath)).getTitle());
+    }
+
+    private static void assertSameMp3Tags(Path trackPath) throws Exception {
+        assertSameTags(trackPath);
+        assertEquals(sampleMp3DurationMillis,
+                FastTagReader.read(trackPath, StandardAudioFormat.MP3).getAudioProperties().durationMillis());
+    }
+
+    // The fast path must decide these files itself, a null would silently fall back to jaudiotagger
+    private static void assertSameTags(Path trackPath) throws Exception {
+        final AudioFormat audioFormat = AudioFormatRegistry.sniff(trackPath);
+        assertNotNull(audioFormat, trackPath + " not identified");
+
+        final TagFields fast = FastTagReader.read(trackPath, audioFormat);
+        final TagFields expected = TagFields.of(AudioFileIO.read(trackPath.toFile()));
+        final String message = trackPath.getFileName().toString();
+
+        assertNotNull(fast, message + " fell back to jaudiotagger");
+        assertEquals(expected.getTitle(), fast.getTitle(), message);
+        assertEquals(expected.getArtist(), fast.getArtist(), message);
+        assertEquals(expected.getAlbumArtist(), fast.getAlbumArtist(), message);
+        assertEquals(expected.getAlbum(), fast.getAlbum(), message);
+        assertEquals(expected.getGenre(), genreName(fast.getGenre()), message);
+        assertEquals(expected.getTrackLength(), fast.getTrackLength(), message);
+
+        final AudioProperties expectedProperties = expected.getAudioProperties();
+        final AudioProperties fastProperties = fast.getAudioProperties();
+
+        assertTrue(Math.abs(expectedProperties.durationMillis() - fastProperties.durationMillis())
+                        <= expectedProperties.durationMillis() * durationTolerance,
+                message + " duration " + fastProperties.durationMillis() + " expected " + expectedProperties.durationMillis());
+        assertEquals(expectedProperties.bitrate(), fastProperties.bitrate(), message);
+        assertEquals(expectedProperties.sampleRate(), fastProperties.sampleRate(), message);
+        assertEquals(expectedProperties.trackNumber(), fastProperties.trackNumber(), message);
+        assertEquals(expectedProperties.discNumber(), fastProperties.discNumber(), message);
+        assertEquals(expectedProperties.year(), fastProperties.year(), message);
+    }
+
+    // Same mapping as MusicLibrary's parse methods
+    private static String genreName(String genre) {
+        if (genre.startsWith("(") && genre.indexOf(')') > 1) {
+            return ID3v1Genres.getGenre(Integer.parseInt(genre.substring(1, genre.indexOf(')'))));
+        }
+
+        return genre;
+    }
+}
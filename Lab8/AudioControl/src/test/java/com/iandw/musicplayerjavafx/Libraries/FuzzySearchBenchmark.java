@@ -0,0 +1,123 @@
+/**
+ *      Author: Ian Wallace, copyright 2022 all rights reserved.
+ *      Application: MusicPlayer
+ *      Class: FuzzySearchBenchmark.java
+ *      Notes: Search latency of the "fuzzy" and "exact" search modes over the tracks of SampleSearchTracks,
+ *              1000000 by default. 40 search texts with a typo are typed one key at a time and every prefix is
+ *              searched in both modes, as the search field does once typing pauses. Prints p50, p99 and max
+ *              over every prefix and over the prefixes of 3 or more letters, 1 and 2 letter prefixes
+ *              match most of the library. Not run by the test phase, run it with
+ *
+ *                  mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/classpath.txt
+ *                  java -Xmx4g -cp target/test-classes:target/classes:$(cat target/classpath.txt) \
+ *                      com.iandw.musicplayerjavafx.Libraries.FuzzySearchBenchmark [track count]
+ */
+
+package com.iandw.musicplayerjavafx.Libraries;
+
+import com.iandw.musicplayerjavafx.Utilities.SearchTableView;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class FuzzySearchBenchmark {
+    private static final int defaultTrackCount = 1_000_000;
+    private static final int searchTextCount = 40;
+    private static final int warmUpSearches = 50;
+    private static final String[] typedSearchTexts = { "beatels", "sigur ros", "radiohaed", "motley crue",
+            "the yesterdy children", "bjork", "chidlren of blue", "strase" };
+
+    public static void main(String[] args) {
+        final int trackCount = args.length > 0 ? Integer.parseInt(args[0]) : defaultTrackCount;
+        final Random random = new Random(2);
+        final SearchTableView searchTableView = new SearchTableView();
+
+        LazyTrackList tracks = new LazyTrackList(SampleSearchTracks.tracks(random, trackCount));
+
+        // The first search builds the SearchIndex
+        long start = System.nanoTime();
+        tracks.search("warm", searchTableView.createSearchPredicate("warm"), true, () -> false);
+        System.out.printf("%d tracks, search index built in %d ms%n", tracks.size(),
+                (System.nanoTime() - start) / 1_000_000);
+
+        final List<String> searchTexts = typedPrefixes(random);
+
+        for (String searchText : searchTexts.subList(0, Math.min(warmUpSearches, searchTexts.size()))) {
+            tracks.search(searchText, searchTableView.createSearchPredicate(searchText), true, () -> false);
+        }
+
+        long[] fuzzyNanos = new long[searchTexts.size()];
+        long[] exactNanos = new long[searchTexts.size()];
+
+        // Modes alternate which goes first, neither always searches with the other's results in the cache
+        for (int i = 0; i < searchTexts.size(); i++) {
+            final String searchText = searchTexts.get(i);
+
+            for (int mode = 0; mode < 2; mode++) {
+                final boolean fuzzy = (i + mode) % 2 == 0;
+
+                start = System.nanoTime();
+                tracks.search(searchText, searchTableView.createSearchPredicate(searchText), fuzzy, () -> false);
+                (fuzzy ? fuzzyNanos : exactNanos)[i] = System.nanoTime() - start;
+            }
+        }
+
+        printPercentiles("fuzzy", searchTexts, fuzzyNanos);
+        printPercentiles("exact", searchTexts, exactNanos);
+    }
+
+    // Every prefix of each search text, the first ones as typed and the rest with two letters swapped
+    private static List<String> typedPrefixes(Random random) {
+        List<String> prefixes = new ArrayList<>();
+
+        for (int i = 0; i < searchTextCount; i++) {
+            String searchText;
+
+            if (i < typedSearchTexts.length) {
+                searchText = typedSearchTexts[i];
+
+            } else {
+                char[] letters = (SampleSearchTracks.word(random, 2000) + " " + SampleSearchTracks.word(random, 60_000))
+                        .toLowerCase().toCharArray();
+                final int swap = random.nextInt(letters.length - 1);
+
+                if (letters[swap] != ' ' && letters[swap + 1] != ' ') {
+                    final char letter = letters[swap];
+                    letters[swap] = letters[swap + 1];
+                    letters[swap + 1] = letter;
+                }
+
+                searchText = new String(letters);
+            }
+
+            for (int length = 1; length <= searchText.length(); length++) {
+                prefixes.add(searchText.substring(0, length));
+            }
+        }
+
+        return prefixes;
+    }
+
+    private static void printPercentiles(String mode, List<String> searchTexts, long[] nanos) {
+        long[] longSearchNanos = new long[nanos.length];
+        int longSearchCount = 0;
+
+        for (int i = 0; i < nanos.length; i++) {
+            if (searchTexts.get(i).trim().length() >= 3) {
+                longSearchNanos[longSearchCount++] = nanos[i];
+            }
+        }
+
+        printPercentiles(mode, nanos.clone());
+        printPercentiles(mode + " (3+ letters)", Arrays.copyOf(longSearchNanos, longSearchCount));
+    }
+
+    private static void printPercentiles(String label, long[] nanos) {
+        Arrays.sort(nanos);
+
+        System.out.printf("%-20s %4d searches  p50 %7.1f ms  p99 %7.1f ms  max %7.1f ms%n", label, nanos.length,
+                nanos[nanos.length / 2] / 1e6, nanos[(int) (nanos.length * 0.99)] / 1e6, nanos[nanos.length - 1] / 1e6);
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ *      Author: Ian Wallace, copyright 2022 all rights reserved.
+ *      Application: MusicPlayer
+ *      Class: FuzzySearchTest.java
+ *      Notes: Checks the search of LazyTrackList against a scan of every track. The exact search has to
+ *              find the tracks the search predicate matches, the fuzzy search those followed by the tracks
+ *              SearchIndex.fuzzyEdits() matches, fewest edits first and then in Table View order. The
+ *              searches are repeated after rounds of random adds, removes and edits so the index is
+ *              checked as it is kept up to date.
+ */
+
+package com.iandw.musicplayerjavafx.Libraries;
+
+import com.iandw.musicplayerjavafx.TrackMetadata;
+import com.iandw.musicplayerjavafx.Utilities.SearchTableView;
+import com.iandw.musicplayerjavafx.Utilities.TrackField;
+import com.iandw.musicplayerjavafx.Utilities.TrackFieldPredicate;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FuzzySearchTest {
+    private static final int trackCount = 5000;
+    private static final int rounds = 5;
+    private static final int editsPerRound = 200;
+    private static final String[] searchTexts = { "beatels", "sigur ros", "bjork", "motorhead", "motley crue",
+            "oystein", "strasse", "yesterdy", "radiohaed", "beatl", "the beatels ", "chidlren", "lov" };
+
+    private final SearchTableView searchTableView = new SearchTableView();
+
+    @Test
+    void misspelledSearchFindsKnownTrack() {
+        LazyTrackList tracks = new LazyTrackList(SampleSearchTracks.tracks(new Random(2), trackCount));
+
+        assertFinds(tracks, "the beatels let it", "Let It Be");
+        assertFinds(tracks, "sigur ros", "Hoppípolla");
+        assertFinds(tracks, "motley crue", "Kickstart My Heart");
+        assertFinds(tracks, "motorhaed", "Ace of Spades");
+        assertFinds(tracks, "bjork joga", "Jóga");
+    }
+
+    @Test
+    void exactSearchHasNoFuzzyResults() {
+        LazyTrackList tracks = new LazyTrackList(SampleSearchTracks.tracks(new Random(2), trackCount));
+
+        assertTrue(search(tracks, "beatels", false).isEmpty());
+        assertFalse(search(tracks, "beatles", false).isEmpty());
+    }
+
+    @Test
+    void searchMatchesScanOfEveryTrack() {
+        final Random random = new Random(2);
+        LazyTrackList tracks = new LazyTrackList(SampleSearchTracks.tracks(random, trackCount));
+
+        for (int round = 0; round < rounds; round++) {
+            for (String searchText : searchTexts) {
+                assertEquals(scan(tracks, searchText, false), search(tracks, searchText, false),
+                        "exact \"" + searchText + "\" round " + round);
+                assertEquals(scan(tracks, searchText, true), search(tracks, searchText, true),
+                        "fuzzy \"" + searchText + "\" round " + round);
+            }
+
+            for (int edit = 0; edit < editsPerRound; edit++) {
+                final int trackNumber = trackCount + round * editsPerRound + edit;
+
+                switch (random.nextInt(4)) {
+                    case 0 -> tracks.remove(random.nextInt(tracks.size()));
+                    case 1 -> tracks.add(random.nextInt(tracks.size() + 1), SampleSearchTracks.track(random, trackNumber));
+                    case 2 -> tracks.setField(random.nextInt(tracks.size()), TrackField.ARTIST,
+                            SampleSearchTracks.phrase(random));
+                    default -> tracks.set(random.nextInt(tracks.size()), SampleSearchTracks.track(random, trackNumber));
+                }
+            }
+        }
+    }
+
+    // The vocabulary words of the known tracks are in random tracks too, the known track is not always first
+    private void assertFinds(LazyTrackList tracks, String searchText, String trackTitleStr) {
+        assertTrue(search(tracks, searchText, true).stream()
+                        .anyMatch(trackMetadata -> trackTitleStr.equals(trackMetadata.getTrackTitleStr())),
+                "\"" + searchText + "\" did not find " + trackTitleStr);
+    }
+
+    private List<TrackMetadata> search(LazyTrackList tracks, String searchText, boolean fuzzy) {
+        return tracks.search(searchText, searchTableView.createSearchPredicate(searchText), fuzzy, () -> false);
+    }
+
+    // Matching tracks in Table View order, then the fuzzy matches by their edits
+    private List<TrackMetadata> scan(LazyTrackList tracks, String searchText, boolean fuzzy) {
+        final TrackFieldPredicate searchPredicate = searchTableView.createSearchPredicate(searchText);
+        List<TrackMetadata> results = new ArrayList<>();
+        List<int[]> fuzzyMatches = new ArrayList<>();
+
+        for (int i = 0; i < tracks.size(); i++) {
+            final TrackMetadata trackMetadata = tracks.get(i);
+
+            if (searchPredicate.test(trackMetadata)) {
+                results.add(trackMetadata);
+
+            } else if (fuzzy) {
+                final int edits = SearchIndex.fuzzyEdits(trackMetadata, searchText);
+
+                if (edits >= 0) {
+                    fuzzyMatches.add(new int[] { edits, i });
+                }
+            }
+        }
+
+        fuzzyMatches.sort(Comparator.<int[]>comparingInt(match -> match[0]).thenComparingInt(match -> match[1]));
+
+        for (int[] match : fuzzyMatches) {
+            results.add(tracks.get(match[1]));
+        }
+
+        return results;
+    }
+}
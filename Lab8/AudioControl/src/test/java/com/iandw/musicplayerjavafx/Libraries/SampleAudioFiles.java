@@ -0,0 +1,275 @@
+/**
+ *      Author: Ian Wallace, copyright 2022 all rights reserved.
+ *      Application: MusicPlayer
+ *      Class: SampleAudioFiles.java
+ *      Notes: Writes small audio files for FastTagReaderTest and FastTagReaderBenchmark. The audio is
+ *              silence, MP3s are constant bitrate MPEG 1 Layer III frames padded the way an encoder pads
+ *              them, WAV/AIFF files are written by javax.sound and M4A files are the atoms of an AAC track
+ *              around an mdat of silent frames. Tags are written by jaudiotagger, so the fast path is
+ *              checked against files it did not write itself.
+ */
+
+package com.iandw.musicplayerjavafx.Libraries;
+
+import org.jaudiotagger.audio.AudioFile;
+import org.jaudiotagger.audio.AudioFileIO;
+import org.jaudiotagger.audio.mp3.MP3File;
+import org.jaudiotagger.audio.wav.WavOptions;
+import org.jaudiotagger.audio.wav.WavSaveOptions;
+import org.jaudiotagger.tag.FieldKey;
+import org.jaudiotagger.tag.Tag;
+import org.jaudiotagger.tag.TagOptionSingleton;
+import org.jaudiotagger.tag.id3.AbstractID3v2Tag;
+import org.jaudiotagger.tag.id3.ID3v1Tag;
+import org.jaudiotagger.tag.id3.ID3v23Tag;
+import org.jaudiotagger.tag.id3.ID3v24Tag;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.LogManager;
+
+final class SampleAudioFiles {
+    // MPEG 1 Layer III, 128 kbps, 44.1 kHz, 417 bytes or 418 with the padding bit, 417.96 on average
+    private static final int mp3FrameHeader = 0xFFFB9000;
+    private static final int mp3PaddingBit = 0x200;
+    private static final double mp3AverageFrameBytes = 144.0 * 128000 / 44100;
+    private static final int mp3FrameCount = 2000;
+    private static final int pcmSeconds = 7;
+    // AAC frames of 1024 samples at 44.1 kHz, 128 kbps on average
+    private static final int aacSampleRate = 44100;
+    private static final int aacFrameCount = 301;
+    private static final int aacFrameBytes = 371;
+
+    enum Id3Version { V1, V23, V24 }
+
+    // WAV files can hold an id3 chunk, a LIST INFO chunk or both, AIFF only an ID3 chunk
+    enum PcmTag { NONE, ID3_CHUNK, INFO_CHUNK, BOTH_CHUNKS }
+
+    private SampleAudioFiles() {}
+
+    // jaudiotagger logs every file it reads and writes
+    static void quietJaudiotagger() {
+        LogManager.getLogManager().reset();
+    }
+
+    /**
+     * mp3() - about 52 seconds of MP3 frames with one ID3 tag
+     *
+     * @param trackPath => File to create
+     * @param id3Version => Tag written by jaudiotagger
+     * @return => trackPath
+     * @throws Exception => jaudiotagger write exceptions
+     */
+    static Path mp3(Path trackPath, Id3Version id3Version) throws Exception {
+        ByteBuffer frames = ByteBuffer.allocate((int) (mp3AverageFrameBytes * mp3FrameCount));
+
+        for (int i = 0; i < mp3FrameCount; i++) {
+            final int frameOffset = (int) (i * mp3AverageFrameBytes);
+            final int frameBytes = (int) ((i + 1) * mp3AverageFrameBytes) - frameOffset;
+
+            frames.putInt(frameOffset, frameBytes > 417 ? mp3FrameHeader | mp3PaddingBit : mp3FrameHeader);
+        }
+
+        Files.write(trackPath, frames.array());
+
+        MP3File mp3File = (MP3File) AudioFileIO.read(trackPath.toFile());
+
+        if (id3Version == Id3Version.V1) {
+            ID3v1Tag tag = new ID3v1Tag();
+            tag.setField(FieldKey.TITLE, "V1 Title");
+            tag.setField(FieldKey.ARTIST, "V1 Artist");
+            tag.setField(FieldKey.ALBUM, "V1 Album");
+            tag.setField(FieldKey.GENRE, "Rock");
+            mp3File.setID3v1Tag(tag);
+
+        } else {
+            AbstractID3v2Tag tag = id3Version == Id3Version.V23 ? new ID3v23Tag() : new ID3v24Tag();
+            setFields(tag);
+            tag.setField(FieldKey.ALBUM_ARTIST, "Album Artist");
+            tag.setField(FieldKey.TRACK, "3");
+            tag.setField(FieldKey.YEAR, "1999");
+            mp3File.setID3v2Tag(tag);
+        }
+
+        mp3File.commit();
+
+        return trackPath;
+    }
+
+    /**
+     * pcm() - 7 seconds of 16 bit stereo silence
+     *
+     * @param trackPath => File to create, .wav or .aiff
+     * @param pcmTag => Tag chunks added with jaudiotagger, any chunk but NONE is an ID3 chunk for AIFF
+     * @return => trackPath
+     * @throws Exception => javax.sound or jaudiotagger write exceptions
+     */
+    static Path pcm(Path trackPath, PcmTag pcmTag) throws Exception {
+        final boolean aiff = trackPath.getFileName().toString().endsWith(".aiff");
+        final javax.sound.sampled.AudioFormat pcmFormat = new javax.sound.sampled.AudioFormat(44100, 16, 2, true, aiff);
+        final byte[] pcm = new byte[44100 * 4 * pcmSeconds];
+
+        AudioSystem.write(new AudioInputStream(new ByteArrayInputStream(pcm), pcmFormat, pcm.length / 4),
+                aiff ? AudioFileFormat.Type.AIFF : AudioFileFormat.Type.WAVE, trackPath.toFile());
+
+        if (pcmTag == PcmTag.NONE) {
+            return trackPath;
+        }
+
+        TagOptionSingleton tagOptions = TagOptionSingleton.getInstance();
+
+        if (pcmTag != PcmTag.BOTH_CHUNKS) {
+            tagOptions.setWavOptions(pcmTag == PcmTag.ID3_CHUNK ? WavOptions.READ_ID3_ONLY : WavOptions.READ_INFO_ONLY);
+            tagOptions.setWavSaveOptions(WavSaveOptions.SAVE_ACTIVE);
+        } else {
+            tagOptions.setWavSaveOptions(WavSaveOptions.SAVE_BOTH);
+        }
+
+        try {
+            AudioFile audioFile = AudioFileIO.read(trackPath.toFile());
+            setFields(audioFile.getTagOrCreateAndSetDefault());
+            audioFile.commit();
+
+        } finally {
+            tagOptions.setToDefault();
+        }
+
+        return trackPath;
+    }
+
+    /**
+     * m4a() - 7 seconds of AAC frames in an M4A file, tagged with ilst items by jaudiotagger
+     *
+     * @param trackPath => File to create
+     * @return => trackPath
+     * @throws Exception => jaudiotagger write exceptions
+     */
+    static Path m4a(Path trackPath) throws Exception {
+        final byte[] ftyp = atom("ftyp", ascii("M4A "), ints(0), ascii("M4A mp42isom"));
+
+        // The chunk offset does not change the size of moov, the frames start after its header
+        final int chunkOffset = ftyp.length + moov(0).length + 8;
+
+        Files.write(trackPath, concat(ftyp, moov(chunkOffset), atom("mdat", new byte[aacFrameCount * aacFrameBytes])));
+
+        AudioFile audioFile = AudioFileIO.read(trackPath.toFile());
+        Tag tag = audioFile.getTagOrCreateAndSetDefault();
+        setFields(tag);
+        tag.setField(FieldKey.ALBUM_ARTIST, "Album Artist");
+        tag.setField(FieldKey.TRACK, "3");
+        tag.setField(FieldKey.DISC_NO, "2");
+        tag.setField(FieldKey.YEAR, "1999");
+        audioFile.commit();
+
+        return trackPath;
+    }
+
+    // One file of each kind in directory
+    static List<Path> everyKind(Path directory) throws Exception {
+        List<Path> trackPaths = new ArrayList<>();
+
+        for (Id3Version id3Version : Id3Version.values()) {
+            trackPaths.add(mp3(directory.resolve("id3" + id3Version.name().toLowerCase() + ".mp3"), id3Version));
+        }
+
+        trackPaths.add(pcm(directory.resolve("untagged.wav"), PcmTag.NONE));
+        trackPaths.add(pcm(directory.resolve("id3.wav"), PcmTag.ID3_CHUNK));
+        trackPaths.add(pcm(directory.resolve("info.wav"), PcmTag.INFO_CHUNK));
+        trackPaths.add(pcm(directory.resolve("untagged.aiff"), PcmTag.NONE));
+        trackPaths.add(pcm(directory.resolve("tagged.aiff"), PcmTag.ID3_CHUNK));
+        trackPaths.add(m4a(directory.resolve("tagged.m4a")));
+
+        return trackPaths;
+    }
+
+    private static void setFields(Tag tag) throws Exception {
+        tag.setField(FieldKey.TITLE, "Tïtle ✓");
+        tag.setField(FieldKey.ARTIST, "Artist");
+        tag.setField(FieldKey.ALBUM, "Album");
+        tag.setField(FieldKey.GENRE, "Jazz");
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          MP4 ATOMS
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    // One AAC LC 44.1 kHz stereo track with every frame in one chunk at chunkOffset
+    private static byte[] moov(int chunkOffset) {
+        final int duration = aacFrameCount * 1024;
+
+        // Version and flags, creation and modification times, time scale, duration, rate, volume,
+        // reserved, identity matrix, pre-defined and the next track id
+        final byte[] mvhd = atom("mvhd", ints(0, 0, 0, aacSampleRate, duration, 0x10000), shorts(0x100, 0),
+                ints(0, 0), matrix(), new byte[24], ints(2));
+        final byte[] tkhd = atom("tkhd", ints(7, 0, 0, 1, 0, duration, 0, 0), shorts(0, 0, 0x100, 0), matrix(),
+                ints(0, 0));
+        final byte[] mdhd = atom("mdhd", ints(0, 0, 0, aacSampleRate, duration), shorts(0x55C4, 0));
+        final byte[] hdlr = atom("hdlr", ints(0, 0), ascii("soun"), ints(0, 0, 0), new byte[1]);
+        final byte[] dinf = atom("dinf", atom("dref", ints(0, 1), atom("url ", ints(1))));
+
+        // ES, decoder config (AAC, audio stream, max and average bitrate), AudioSpecificConfig and SL descriptors
+        final byte[] esds = atom("esds", ints(0), new byte[] { 3, 25, 0, 1, 0, 4, 13, 0x40, 0x15, 0, 0, 0 },
+                ints(128000, 128000), new byte[] { 5, 2, 0x12, 0x10, 6, 1, 2 });
+        final byte[] mp4a = atom("mp4a", new byte[6], shorts(1), ints(0, 0), shorts(2, 16, 0, 0),
+                ints(aacSampleRate << 16), esds);
+        final byte[] stbl = atom("stbl", atom("stsd", ints(0, 1), mp4a),
+                atom("stts", ints(0, 1, aacFrameCount, 1024)),
+                atom("stsc", ints(0, 1, 1, aacFrameCount, 1)),
+                atom("stsz", ints(0, aacFrameBytes, aacFrameCount)),
+                atom("stco", ints(0, 1, chunkOffset)));
+        final byte[] minf = atom("minf", atom("smhd", ints(0, 0)), dinf, stbl);
+
+        return atom("moov", mvhd, atom("trak", tkhd, atom("mdia", mdhd, hdlr, minf)));
+    }
+
+    private static byte[] atom(String type, byte[]... contents) {
+        final byte[] content = concat(contents);
+
+        return concat(ints(8 + content.length), ascii(type), content);
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        for (byte[] part : parts) {
+            bytes.writeBytes(part);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static byte[] ints(int... values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 4);
+
+        for (int value : values) {
+            buffer.putInt(value);
+        }
+
+        return buffer.array();
+    }
+
+    private static byte[] shorts(int... values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 2);
+
+        for (int value : values) {
+            buffer.putShort((short) value);
+        }
+
+        return buffer.array();
+    }
+
+    private static byte[] ascii(String value) { return value.getBytes(StandardCharsets.ISO_8859_1); }
+
+    private static byte[] matrix() { return ints(0x10000, 0, 0, 0, 0x10000, 0, 0, 0, 0x40000000); }
+}
@@ -0,0 +1,106 @@
+/**
+ *      Author: Ian Wallace, copyright 2022 all rights reserved.
+ *      Application: MusicPlayer
+ *      Class: SampleSearchTracks.java
+ *      Notes: Synthetic tracks for the search tests and benchmark. Titles, albums, artists and genres are
+ *              phrases of one to three words from a 60000 word vocabulary, common words more often than
+ *              rare ones, as in a real music library. A few known tracks with accented names are mixed in.
+ */
+
+package com.iandw.musicplayerjavafx.Libraries;
+
+import com.iandw.musicplayerjavafx.TrackMetadata;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+final class SampleSearchTracks {
+    private static final int vocabularySize = 60_000;
+    private static final String[] words = vocabulary();
+
+    // Title, artist, album
+    static final String[][] knownTracks = {
+            { "Hoppípolla", "Sigur Rós", "Takk..." },
+            { "Let It Be", "The Beatles", "Let It Be" },
+            { "Kickstart My Heart", "Mötley Crüe", "Dr. Feelgood" },
+            { "Children", "Robert Miles", "Dreamland" },
+            { "Ace of Spades", "Motörhead", "Ace of Spades" },
+            { "Jóga", "Björk", "Homogenic" }
+    };
+
+    private SampleSearchTracks() {}
+
+    /**
+     * tracks() - trackCount random tracks with the knownTracks in the middle
+     *
+     * @param random => Seeded Random, the same seed gives the same tracks
+     * @param trackCount => Number of random tracks
+     * @return => Tracks in Table View order
+     */
+    static List<TrackMetadata> tracks(Random random, int trackCount) {
+        List<TrackMetadata> tracks = new ArrayList<>(trackCount + knownTracks.length);
+
+        for (int i = 0; i < trackCount; i++) {
+            tracks.add(track(random, i));
+        }
+
+        for (int i = 0; i < knownTracks.length; i++) {
+            tracks.add(trackCount / 2 + i, new TrackMetadata(knownTracks[i][1], "known" + i + ".mp3", ".mp3",
+                    knownTracks[i][0], knownTracks[i][2], null, "01:00", "/music/known" + i + ".mp3", null));
+        }
+
+        return tracks;
+    }
+
+    static TrackMetadata track(Random random, int trackNumber) {
+        return new TrackMetadata(phrase(random), "track" + trackNumber + ".mp3", ".mp3", phrase(random),
+                phrase(random), random.nextBoolean() ? null : phrase(random), "01:00",
+                "/music/track" + trackNumber + ".mp3", null);
+    }
+
+    static String phrase(Random random) {
+        StringBuilder phrase = new StringBuilder();
+        final int wordCount = 1 + random.nextInt(3);
+
+        for (int i = 0; i < wordCount; i++) {
+            if (i > 0) {
+                phrase.append(' ');
+            }
+
+            phrase.append(word(random, words.length));
+        }
+
+        return phrase.toString();
+    }
+
+    // One of the mostCommon words of the vocabulary, the most common ones most often
+    static String word(Random random, int mostCommon) {
+        final int index = (int) Math.min(mostCommon - 1, Math.abs(random.nextGaussian()) * mostCommon / 3);
+
+        return words[index];
+    }
+
+    private static String[] vocabulary() {
+        Random random = new Random(9);
+        List<String> vocabulary = new ArrayList<>(List.of("The", "Beatles", "Sigur", "Rós", "Björk", "Motörhead",
+                "Love", "Blue", "Yesterday", "Children", "Radiohead", "Mötley", "Crüe", "Øystein", "Straße"));
+
+        while (vocabulary.size() < vocabularySize) {
+            StringBuilder word = new StringBuilder();
+            final int length = 3 + random.nextInt(9);
+
+            for (int i = 0; i < length; i++) {
+                word.append((char) ('a' + random.nextInt(26)));
+            }
+
+            if (random.nextBoolean()) {
+                word.setCharAt(0, Character.toUpperCase(word.charAt(0)));
+            }
+
+            vocabulary.add(word.toString());
+        }
+
+        return vocabulary.toArray(String[]::new);
+    }
+}
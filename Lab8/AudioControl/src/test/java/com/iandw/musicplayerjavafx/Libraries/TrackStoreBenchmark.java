@@ -0,0 +1,177 @@
+/**
+ *      Author: Ian Wallace, copyright 2022 all rights reserved.
+ *      Application: MusicPlayer
+ *      Class: TrackStoreBenchmark.java
+ *      Notes: Retained heap of the Music Library tracks, held three ways:
+ *                  - properties - one object per track with a SimpleStringProperty per field, as
+ *                    TrackMetadata was before TrackStore
+ *                  - plain fields - a list of TrackMetadata
+ *                  - TrackStore - a LazyTrackList with the TrackMetadata of 40 rows held, i.e. the rows
+ *                    the Table View shows
+ *              Every track gets its own copy of the Strings it shares with other tracks, as the tags
+ *              of separately parsed files do. Not run by the test phase, run it with
+ *
+ *                  mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/classpath.txt
+ *                  java -Xmx2g -cp target/test-classes:target/classes:$(cat target/classpath.txt) \
+ *                      com.iandw.musicplayerjavafx.Libraries.TrackStoreBenchmark [track count...]
+ */
+
+package com.iandw.musicplayerjavafx.Libraries;
+
+import com.iandw.musicplayerjavafx.TrackMetadata;
+import com.iandw.musicplayerjavafx.Utilities.TrackPathTable;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import javafx.beans.property.SimpleStringProperty;
+
+public class TrackStoreBenchmark {
+    private static final int[] defaultTrackCounts = { 10_000, 100_000, 1_000_000 };
+    private static final int shownRows = 40;
+    private static final String[] genres = { "Rock", "Jazz", "Pop", "Folk" };
+
+    public static void main(String[] args) {
+        int[] trackCounts = defaultTrackCounts;
+
+        if (args.length > 0) {
+            trackCounts = new int[args.length];
+
+            for (int i = 0; i < args.length; i++) {
+                trackCounts[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        for (int trackCount : trackCounts) {
+            // Directories are shared by all three, they are interned before measuring
+            for (int i = 0; i < trackCount; i += 20) {
+                TrackPathTable.internDirectory(directoryStr(i));
+            }
+
+            measure("properties", trackCount, TrackStoreBenchmark::propertyTracks);
+            measure("plain fields", trackCount, TrackStoreBenchmark::plainTracks);
+            measure("TrackStore", trackCount, TrackStoreBenchmark::storedTracks);
+        }
+    }
+
+    private static void measure(String label, int trackCount, IntFunction<Object> build) {
+        final long baseline = usedHeap();
+        final long start = System.nanoTime();
+        Object tracks = build.apply(trackCount);
+        final long buildNanos = System.nanoTime() - start;
+        final long retained = usedHeap() - baseline;
+
+        System.out.printf("%8d tracks %-12s %8.1f MB retained (%4d bytes per track), built in %5d ms%n",
+                trackCount, label, retained / 1e6, retained / trackCount, buildNanos / 1_000_000);
+
+        // Keeps tracks reachable until after usedHeap()
+        if (tracks.hashCode() == 0) {
+            System.out.println();
+        }
+    }
+
+    private static long usedHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+
+            try {
+                Thread.sleep(100);
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /** * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+     *
+     *                          SAMPLE TRACKS
+     *
+     * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+    private static Object propertyTracks(int trackCount) {
+        List<PropertyTrack> tracks = new ArrayList<>(trackCount);
+
+        for (int i = 0; i < trackCount; i++) {
+            tracks.add(new PropertyTrack(sampleTrack(i)));
+        }
+
+        return tracks;
+    }
+
+    private static Object plainTracks(int trackCount) {
+        List<TrackMetadata> tracks = new ArrayList<>(trackCount);
+
+        for (int i = 0; i < trackCount; i++) {
+            tracks.add(sampleTrack(i));
+        }
+
+        return tracks;
+    }
+
+    // The sample tracks are only made while the TrackStore is filled
+    private static Object storedTracks(int trackCount) {
+        LazyTrackList tracks = new LazyTrackList(new AbstractList<>() {
+            @Override
+            public TrackMetadata get(int index) { return sampleTrack(index); }
+
+            @Override
+            public int size() { return trackCount; }
+        });
+
+        List<TrackMetadata> shownTracks = new ArrayList<>(shownRows);
+
+        for (int i = 0; i < shownRows; i++) {
+            shownTracks.add(tracks.get(i * 7 % trackCount));
+        }
+
+        return List.of(tracks, shownTracks);
+    }
+
+    private static String directoryStr(int i) { return "/music/Artist " + (i / 200) + "/Album " + (i / 20) + "/"; }
+
+    private static TrackMetadata sampleTrack(int i) {
+        final String trackFileNameStr = String.format("%02d Track %d.mp3", i % 20 + 1, i);
+
+        return new TrackMetadata(new String("Artist " + (i / 200)), trackFileNameStr, new String(".mp3"),
+                "Title " + i, new String("Album " + (i / 20)), new String(genres[i % genres.length]),
+                new String("03:" + (10 + i % 50)), directoryStr(i) + trackFileNameStr, null);
+    }
+
+    // TrackMetadata fields before TrackStore, the track path was already split by TrackPathTable
+    private static final class PropertyTrack {
+        private final SimpleStringProperty artistNameStr;
+        private final SimpleStringProperty trackFileNameStr;
+        private final SimpleStringProperty trackContainerTypeStr;
+        private final SimpleStringProperty trackTitleStr;
+        private final SimpleStringProperty albumTitleStr;
+        private final SimpleStringProperty trackGenreStr;
+        private final SimpleStringProperty trackDurationStr;
+        private final SimpleStringProperty playlistStr;
+        private final int trackDirectoryId;
+        private final String trackPathName;
+
+        PropertyTrack(TrackMetadata trackMetadata) {
+            final String trackPathStr = trackMetadata.getTrackPathStr();
+            final int nameIndex = TrackPathTable.nameIndex(trackPathStr);
+
+            artistNameStr = new SimpleStringProperty(trackMetadata.getArtistNameStr());
+            trackFileNameStr = new SimpleStringProperty(trackMetadata.getTrackFileNameStr());
+            trackContainerTypeStr = new SimpleStringProperty(trackMetadata.getTrackContainerTypeStr());
+            trackTitleStr = new SimpleStringProperty(trackMetadata.getTrackTitleStr());
+            albumTitleStr = new SimpleStringProperty(trackMetadata.getAlbumTitleStr());
+            trackGenreStr = new SimpleStringProperty(trackMetadata.getTrackGenreStr());
+            trackDurationStr = new SimpleStringProperty(trackMetadata.getTrackDurationStr());
+            playlistStr = new SimpleStringProperty(trackMetadata.getPlaylistStr());
+            trackDirectoryId = TrackPathTable.internDirectory(trackPathStr.substring(0, nameIndex));
+            trackPathName = trackPathStr.substring(nameIndex).equals(trackMetadata.getTrackFileNameStr())
+                    ? trackMetadata.getTrackFileNameStr() : trackPathStr.substring(nameIndex);
+        }
+    }
+}